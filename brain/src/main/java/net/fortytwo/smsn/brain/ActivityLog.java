@@ -1,69 +1,163 @@
 package net.fortytwo.smsn.brain;
 
 import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.Filter;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.util.List;
 
-public class ActivityLog {
-    private final OutputStreamWriter out;
+/**
+ * A log of the atoms viewed, created and changed through the brain
+ */
+public abstract class ActivityLog {
 
-    public ActivityLog(FileWriter out) {
-        this.out = out;
+    public enum ActivityType {
+        Create(1, "create"),
+        View(2, "view"),
+        ChangeValue(3, "change-value"),
+        SetProperties(4, "set-props"),
+        Link(5, "link"),
+        Unlink(6, "unlink"),
+        Children(7, "children"),
+        RemoveIsolatedAtoms(8, "remove-isolated"),
+        // markers of the records of a transaction, which are written ahead of the commit of the graph
+        Begin(9, "begin"),
+        Commit(10, "commit"),
+        Abort(11, "abort");
+
+        private static final ActivityType[] byCode = new ActivityType[16];
+
+        static {
+            for (ActivityType type : values()) {
+                byCode[type.code] = type;
+            }
+        }
+
+        private final int code;
+        private final String name;
+
+        ActivityType(final int code, final String name) {
+            this.code = code;
+            this.name = name;
+        }
+
+        /**
+         * @return the code of this type in binary logs, which does not change between versions
+         */
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * @return the name of this type in text logs
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the type with the given code, or null if there is none
+         */
+        public static ActivityType fromCode(final int code) {
+            return code >= 0 && code < byCode.length ? byCode[code] : null;
+        }
     }
 
     public void logCreate(final Atom a) {
-        log("create", a);
+        log(System.currentTimeMillis(), ActivityType.Create, a, null);
     }
 
     public void logView(final Atom a) {
-        log("view", a);
+        log(System.currentTimeMillis(), ActivityType.View, a, null);
     }
 
     public void logUpdate(final Atom a) {
-        log("change-value", a);
+        log(System.currentTimeMillis(), ActivityType.ChangeValue, a, null);
     }
 
     public void logSetProperties(final Atom a) {
-        log("set-props", a);
+        log(System.currentTimeMillis(), ActivityType.SetProperties, a, null);
     }
 
     public void logLink(final Atom tail,
                         final Atom head) {
-        log("link", tail, head);
+        log(System.currentTimeMillis(), ActivityType.Link, tail, head);
     }
 
     public void logUnlink(final Atom tail,
                           final Atom head) {
-        log("unlink", tail, head);
+        log(System.currentTimeMillis(), ActivityType.Unlink, tail, head);
     }
 
-    public void flush() {
-        try {
-            out.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * Logs the links and unlinks of a single update to a list of children as one batch of entries,
+     * which share a timestamp
+     */
+    public void logLinks(final Atom tail,
+                         final List<Atom> linkedHeads,
+                         final List<Atom> unlinkedHeads) {
+        long timestamp = System.currentTimeMillis();
+        for (Atom head : unlinkedHeads) {
+            log(timestamp, ActivityType.Unlink, tail, head);
+        }
+        for (Atom head : linkedHeads) {
+            log(timestamp, ActivityType.Link, tail, head);
         }
     }
 
-    public void shutDown() throws IOException {
-        out.close();
+    /**
+     * Logs the list of children of an atom once it has changed, in its entirety
+     */
+    public void logChildren(final Atom a) {
+        log(System.currentTimeMillis(), ActivityType.Children, a, null);
     }
 
-    private void log(final String action, final Atom... a) {
-        try {
-            out.append("")
-                    .append("").append(String.valueOf(System.currentTimeMillis()))
-                    .append("\t").append(action);
+    public void logRemoveIsolatedAtoms(final Filter filter) {
+        logRemoval(System.currentTimeMillis(), filter);
+    }
 
-            for (Atom atom : a) {
-                out.append("\t").append(atom.getId());
-            }
+    /**
+     * Begins a transaction in the current thread. Entries logged by the thread are held back
+     * until the transaction is prepared or committed, and dropped if it is rolled back before being prepared.
+     * By default, entries are logged as they come
+     */
+    public void begin() {
+    }
 
-            out.append("\n");
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * Writes the entries of the current transaction ahead of the commit of the graph,
+     * so that a change committed to the graph is never missing from the log
+     */
+    public void prepare() {
+    }
+
+    /**
+     * Ends the current transaction once the graph has committed it, preparing it first if need be
+     */
+    public void commit() {
     }
+
+    /**
+     * Ends the current transaction without committing it. If it has been prepared, it is marked as aborted
+     */
+    public void rollback() {
+    }
+
+    /**
+     * Marks the end of a request, after which the entries logged so far should be written out
+     */
+    public abstract void flush();
+
+    public abstract void shutDown() throws IOException;
+
+    /**
+     * @param subject the atom acted upon
+     * @param object  the other atom of a link or unlink, or null
+     */
+    protected abstract void log(long timestamp, ActivityType type, Atom subject, Atom object);
+
+    /**
+     * @param filter the filter of the atoms which were removed if isolated
+     */
+    protected abstract void logRemoval(long timestamp, Filter filter);
 }
@@ -1,6 +1,8 @@
 package net.fortytwo.smsn.brain;
 
 import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.log.AtomGraphSnapshot;
+import net.fortytwo.smsn.brain.log.BinaryActivityLog;
 import net.fortytwo.smsn.brain.model.AtomGraph;
 import net.fortytwo.smsn.brain.rdf.KnowledgeBase;
 import net.fortytwo.smsn.util.TypedProperties;
@@ -8,6 +10,7 @@ import net.fortytwo.smsn.util.TypedProperties;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Brain {
@@ -19,6 +22,13 @@ public class Brain {
      */
     public static final String PROP_BRAINSTREAM = "net.fortytwo.smsn.brain.brainStream";
 
+    /**
+     * Values of the activity log format property. A binary log is a directory of files
+     */
+    public static final String
+            ACTIVITY_LOG_FORMAT_TEXT = "text",
+            ACTIVITY_LOG_FORMAT_BINARY = "binary";
+
     // TODO: make this configurable
     private static final int EVENT_STACK_CAPACITY = 50;
 
@@ -39,6 +49,9 @@ public class Brain {
 
     private final EventStack eventStack;
 
+    private final SearchCache searchCache;
+    private final ViewCache viewCache;
+
     public Brain(final AtomGraph atomGraph) throws BrainException {
         this.atomGraph = atomGraph;
 
@@ -50,9 +63,40 @@ public class Brain {
             throw new BrainException(e);
         }
 
+        File snapshotFile;
+        try {
+            snapshotFile = SemanticSynchrony.getConfiguration().getFile(
+                    KnowledgeBase.PROP_CLASSIFICATION_SNAPSHOT, null);
+        } catch (TypedProperties.PropertyException e) {
+            throw new BrainException(e);
+        }
+
+        if (null != snapshotFile) {
+            knowledgeBase.setSnapshotFile(snapshotFile);
+            try {
+                if (!knowledgeBase.readSnapshot(snapshotFile)) {
+                    logger.info("no classification snapshot at " + snapshotFile.getPath() + "; will create one");
+                }
+            } catch (IOException e) {
+                // classifications will be inferred from scratch
+                logger.log(Level.WARNING, "failed to read classification snapshot", e);
+            }
+        }
+
         File logFile;
+        String logFormat;
+        long logMaxFileSize, logSyncInterval;
+        boolean logSyncOnCommit;
         try {
             logFile = SemanticSynchrony.getConfiguration().getFile(SemanticSynchrony.ACTIVITY_LOG, null);
+            logFormat = SemanticSynchrony.getConfiguration().getString(
+                    SemanticSynchrony.ACTIVITY_LOG_FORMAT, ACTIVITY_LOG_FORMAT_TEXT);
+            logMaxFileSize = SemanticSynchrony.getConfiguration().getLong(
+                    BinaryActivityLog.PROP_MAX_FILE_SIZE, BinaryActivityLog.DEFAULT_MAX_FILE_SIZE);
+            logSyncInterval = SemanticSynchrony.getConfiguration().getLong(
+                    BinaryActivityLog.PROP_SYNC_INTERVAL, BinaryActivityLog.DEFAULT_SYNC_INTERVAL);
+            logSyncOnCommit = SemanticSynchrony.getConfiguration().getBoolean(
+                    BinaryActivityLog.PROP_SYNC_ON_COMMIT, BinaryActivityLog.DEFAULT_SYNC_ON_COMMIT);
         } catch (TypedProperties.PropertyException e) {
             throw new BrainException(e);
         }
@@ -61,9 +105,20 @@ public class Brain {
             logger.warning("no activity log specified");
             activityLog = null;
         } else {
-            logger.info("will use activity log at " + logFile.getPath());
+            logger.info("will use " + logFormat + " activity log at " + logFile.getPath());
             try {
-                activityLog = new ActivityLog(new FileWriter(logFile, true));
+                switch (logFormat) {
+                    case ACTIVITY_LOG_FORMAT_TEXT:
+                        activityLog = new TextActivityLog(new FileWriter(logFile, true));
+                        break;
+                    case ACTIVITY_LOG_FORMAT_BINARY:
+                        activityLog = new BinaryActivityLog(
+                                logFile, logMaxFileSize, logSyncInterval, logSyncOnCommit);
+                        break;
+                    default:
+                        throw new BrainException(
+                                new IllegalArgumentException("unknown activity log format: " + logFormat));
+                }
             } catch (IOException e) {
                 throw new BrainException(e);
             }
@@ -72,6 +127,24 @@ public class Brain {
         priorities = new Priorities();
 
         eventStack = new EventStack(EVENT_STACK_CAPACITY);
+
+        int searchCacheSize, viewCacheSize;
+        long searchCacheTtl, viewCacheTtl;
+        try {
+            searchCacheSize = SemanticSynchrony.getConfiguration().getInt(
+                    SearchCache.PROP_SEARCH_CACHE_SIZE, SearchCache.DEFAULT_SEARCH_CACHE_SIZE);
+            searchCacheTtl = SemanticSynchrony.getConfiguration().getLong(
+                    SearchCache.PROP_SEARCH_CACHE_TTL, SearchCache.DEFAULT_SEARCH_CACHE_TTL);
+            viewCacheSize = SemanticSynchrony.getConfiguration().getInt(
+                    ViewCache.PROP_VIEW_CACHE_SIZE, ViewCache.DEFAULT_VIEW_CACHE_SIZE);
+            viewCacheTtl = SemanticSynchrony.getConfiguration().getLong(
+                    ViewCache.PROP_VIEW_CACHE_TTL, ViewCache.DEFAULT_VIEW_CACHE_TTL);
+        } catch (TypedProperties.PropertyException e) {
+            throw new BrainException(e);
+        }
+
+        searchCache = searchCacheSize > 0 ? new SearchCache(atomGraph, searchCacheSize, searchCacheTtl) : null;
+        viewCache = viewCacheSize > 0 ? new ViewCache(atomGraph, viewCacheSize, viewCacheTtl) : null;
     }
 
     public void startBackgroundTasks() {
@@ -94,6 +167,26 @@ public class Brain {
         return activityLog;
     }
 
+    /**
+     * Writes a snapshot of the atom graph, from which the graph may be restored together with the activity log.
+     * The graph is not to be written to while the snapshot is taken
+     *
+     * @return the sequence number of the last record of the activity log which the snapshot reflects
+     */
+    public long writeSnapshot(final File file) throws IOException {
+        if (!(activityLog instanceof BinaryActivityLog)) {
+            throw new IllegalStateException("snapshots require a binary activity log");
+        }
+
+        // changes are logged once committed, so the graph reflects at least the records forced to disk so far
+        BinaryActivityLog log = (BinaryActivityLog) activityLog;
+        log.sync();
+        long sequence = log.getSyncedSequence();
+
+        AtomGraphSnapshot.write(atomGraph, sequence, file);
+        return sequence;
+    }
+
     public Priorities getPriorities() {
         return priorities;
     }
@@ -102,6 +195,20 @@ public class Brain {
         return eventStack;
     }
 
+    /**
+     * @return a cache of search results, or null if search results are not cached
+     */
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    /**
+     * @return a cache of views, or null if views are not cached
+     */
+    public ViewCache getViewCache() {
+        return viewCache;
+    }
+
     public class BrainException extends Exception {
         public BrainException(final Throwable cause) {
             super(cause);
@@ -0,0 +1,181 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.util.LruCache;
+import org.parboiled.common.Preconditions;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A cache of generated note trees, each of which is discarded when it expires
+ * or when a change to the graph may have affected it.
+ * Subclasses decide which changes affect which trees,
+ * given the ids of all atoms in a tree.
+ *
+ * @param <K> the type of the parameters from which a tree is generated
+ */
+public abstract class NoteCache<K> {
+
+    private final AtomGraph atomGraph;
+    private final LruCache<K, Entry<K>> cache;
+    private final long ttl;
+
+    // incremented with each change to the graph, so that trees generated concurrently with a change are not kept
+    private long generation;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param atomGraph the graph from which trees are generated, whose changes are tracked
+     * @param capacity  the maximum number of trees to keep
+     * @param ttl       the time in milliseconds for which a tree is kept
+     */
+    protected NoteCache(final AtomGraph atomGraph, final int capacity, final long ttl) {
+        Preconditions.checkArgNotNull(atomGraph, "atomGraph");
+        Preconditions.checkArgument(ttl > 0, "ttl must be positive");
+
+        this.atomGraph = atomGraph;
+        this.cache = new LruCache<>(capacity);
+        this.ttl = ttl;
+
+        atomGraph.addChangeListener(new AtomGraph.ChangeListener() {
+            @Override
+            public void propertiesChanged(final String atomId) {
+                synchronized (NoteCache.this) {
+                    generation++;
+                    cache.removeIf(entry -> isAffectedByProperties(entry.key, entry.atomIds, atomId));
+                }
+            }
+
+            @Override
+            public void childrenChanged(final String atomId) {
+                synchronized (NoteCache.this) {
+                    generation++;
+                    cache.removeIf(entry -> isAffectedByChildren(entry.key, entry.atomIds, atomId));
+                }
+            }
+
+            @Override
+            public void rolledBack() {
+                // trees generated within the transaction may contain changes which have been undone
+                clear();
+            }
+        });
+    }
+
+    /**
+     * @param key      the parameters from which a tree was generated
+     * @param atomIds  the ids of all atoms in the tree
+     * @param atomId   the id of an atom whose properties have changed
+     * @return whether the tree is to be discarded
+     */
+    protected abstract boolean isAffectedByProperties(K key, Set<String> atomIds, String atomId);
+
+    /**
+     * @param key      the parameters from which a tree was generated
+     * @param atomIds  the ids of all atoms in the tree
+     * @param atomId   the id of an atom whose list of children has changed
+     * @return whether the tree is to be discarded
+     */
+    protected abstract boolean isAffectedByChildren(K key, Set<String> atomIds, String atomId);
+
+    /**
+     * @return whether a tree is to be discarded whenever the graph's time of last update changes,
+     * e.g. for changes, such as the removal of atoms, which are not reported to change listeners
+     */
+    protected boolean expiresOnUpdate() {
+        return false;
+    }
+
+    /**
+     * @param key      the parameters of a tree
+     * @param generate a function which generates the tree, if it is not cached
+     * @return the tree, which the caller is free to modify
+     */
+    public Note get(final K key, final Supplier<Note> generate) {
+        long startGeneration;
+        long lastUpdate;
+        synchronized (this) {
+            Entry<K> entry = cache.peek(key);
+            lastUpdate = atomGraph.getLastUpdate();
+            if (null != entry) {
+                if (isValid(entry, lastUpdate)) {
+                    hits++;
+                    return new Note(entry.tree);
+                } else {
+                    cache.remove(key);
+                }
+            }
+            misses++;
+            startGeneration = generation;
+        }
+
+        Note tree = generate.get();
+
+        synchronized (this) {
+            if (generation == startGeneration) {
+                cache.put(key, new Entry<>(key, new Note(tree), lastUpdate));
+            }
+        }
+
+        return tree;
+    }
+
+    public synchronized void clear() {
+        generation++;
+        cache.clear();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of lookups which were answered from the cache, or 0 if there have been none
+     */
+    public synchronized float getHitRatio() {
+        long total = hits + misses;
+        return 0 == total ? 0f : hits / (float) total;
+    }
+
+    private boolean isValid(final Entry<K> entry, final long currentLastUpdate) {
+        return (!expiresOnUpdate() || currentLastUpdate == entry.lastUpdate)
+                && System.currentTimeMillis() - entry.created < ttl;
+    }
+
+    private static class Entry<K> {
+        private final K key;
+        private final Note tree;
+        private final Set<String> atomIds = new HashSet<>();
+        private final long lastUpdate;
+        private final long created = System.currentTimeMillis();
+
+        private Entry(final K key, final Note tree, final long lastUpdate) {
+            this.key = key;
+            this.tree = tree;
+            this.lastUpdate = lastUpdate;
+            addAtomIds(tree);
+        }
+
+        private void addAtomIds(final Note note) {
+            if (null != note.getId()) {
+                atomIds.add(note.getId());
+            }
+            for (Note child : note.getChildren()) {
+                addAtomIds(child);
+            }
+        }
+    }
+}
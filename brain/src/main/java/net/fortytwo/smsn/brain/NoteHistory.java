@@ -4,9 +4,14 @@ import net.fortytwo.smsn.brain.model.Atom;
 import net.fortytwo.smsn.brain.model.AtomGraph;
 import net.fortytwo.smsn.brain.model.Filter;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 
+/**
+ * A history of visited atoms, which may be shared by concurrent requests
+ */
 public class NoteHistory {
     private static final int CAPACITY = 1000;
 
@@ -18,7 +23,7 @@ public class NoteHistory {
         totalVisits = 0;
     }
 
-    public void visit(final String atomId) {
+    public synchronized void visit(final String atomId) {
         // repeated actions upon the same atom count as a single visit
         if (totalVisits == 0 || !atomId.equals(getLastVisit())) {
             appendVisit(atomId);
@@ -30,15 +35,12 @@ public class NoteHistory {
                                      final Filter filter) {
         Collection<Atom> atoms = new LinkedList<>();
 
-        int low = Math.max(totalVisits - CAPACITY, 0);
-
-        for (int i = totalVisits - 1; i >= low; i--) {
+        // atoms are looked up without holding the lock, so that a slow graph does not hold back visits
+        for (String id : getVisits()) {
             if (atoms.size() >= maxlen) {
                 break;
             }
 
-            String id = visitedAtoms[i % CAPACITY];
-
             Atom a = graph.getAtomById(id);
             if (null != a && filter.isVisible(a)) {
                 atoms.add(a);
@@ -48,6 +50,18 @@ public class NoteHistory {
         return atoms;
     }
 
+    // the ids of visited atoms, most recent first
+    private synchronized List<String> getVisits() {
+        List<String> ids = new ArrayList<>();
+
+        int low = Math.max(totalVisits - CAPACITY, 0);
+        for (int i = totalVisits - 1; i >= low; i--) {
+            ids.add(visitedAtoms[i % CAPACITY]);
+        }
+
+        return ids;
+    }
+
     private String getLastVisit() {
         return visitedAtoms[(totalVisits - 1) % CAPACITY];
     }
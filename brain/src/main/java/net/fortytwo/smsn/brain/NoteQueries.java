@@ -10,6 +10,7 @@ import net.fortytwo.smsn.brain.rdf.KnowledgeBase;
 import net.fortytwo.smsn.brain.util.ListDiff;
 import org.parboiled.common.Preconditions;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -17,8 +18,9 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.logging.Logger;
 
 public class NoteQueries {
@@ -29,9 +31,21 @@ public class NoteQueries {
         FullText, Acronym, Shortcut, Ripple
     }
 
+    // shared by all parallel views; its threads are created on demand
+    private static final ForkJoinPool viewPool = new ForkJoinPool();
+
+    // the number of view tasks which each worker thread is computing, one within another
+    private static final ThreadLocal<int[]> viewTaskDepth = ThreadLocal.withInitial(() -> new int[1]);
+
+    // a diff with more edits than this is applied to a list of children in a single pass, rather than edit by edit
+    private static final int BATCH_UPDATE_THRESHOLD = 8;
+
     private final Brain brain;
     //private final QueryEngine rippleQueryEngine;
 
+    // 0 for sequential views
+    private int parallelViewThreshold;
+
     /**
      * @param brain the Extend-o-Brain instance to query and update
      */
@@ -41,6 +55,19 @@ public class NoteQueries {
         this.brain = brain;
     }
 
+    /**
+     * Enables parallel construction of views, for read-only use of this object.
+     * Parallel views read the graph from worker threads, so they do not see uncommitted changes.
+     *
+     * @param threshold the minimum number of linked atoms of a note for their subtrees to be built in parallel,
+     *                  or 0 to always build views sequentially
+     */
+    public void setParallelViewThreshold(final int threshold) {
+        Preconditions.checkArgument(threshold >= 0, "threshold must be non-negative");
+
+        this.parallelViewThreshold = threshold;
+    }
+
     /**
      * Generates a view of the graph.
      *
@@ -67,7 +94,29 @@ public class NoteQueries {
             brain.getActivityLog().logView(root);
         }
 
-        return viewInternal(root, height, filter, style, true, null);
+        ViewCache cache = brain.getViewCache();
+        if (null == cache) {
+            return viewMaybeInParallel(root, height, filter, style);
+        } else {
+            return cache.get(new ViewCache.Key(root.getId(), height, filter, style),
+                    () -> viewMaybeInParallel(root, height, filter, style));
+        }
+    }
+
+    private Note viewMaybeInParallel(final Atom root,
+                                     final int height,
+                                     final Filter filter,
+                                     final ViewStyle style) {
+        if (0 == parallelViewThreshold || height <= 1) {
+            return viewInternal(root, height, filter, style, true, null);
+        }
+
+        // a small view is built on the request thread, without handing it to the pool
+        List<Atom> linked = new ArrayList<>();
+        style.getLinked(root, filter).forEach(linked::add);
+        return linked.size() < parallelViewThreshold
+                ? viewInternal(root, height, filter, style, true, null)
+                : viewPool.invoke(new ViewTask(root, height, filter, style, linked));
     }
 
     public Note customView(final Iterable<Atom> atoms,
@@ -131,24 +180,58 @@ public class NoteQueries {
                        final int height,
                        final Filter filter,
                        final ViewStyle style) {
+        return search(queryType, query, 0, Integer.MAX_VALUE, height, filter, style);
+    }
+
+    /**
+     * Generates a page of search results, building views only of the atoms in that page
+     *
+     * @param offset the number of top-ranked results to skip
+     * @param limit  the maximum number of results to include
+     */
+    public Note search(final QueryType queryType,
+                       final String query,
+                       final int offset,
+                       final int limit,
+                       final int height,
+                       final Filter filter,
+                       final ViewStyle style) {
         checkQueryTypeArg(queryType);
         checkQueryArg(query);
         checkHeightArg(height, 1);
         checkFilterArg(filter);
         checkStyleArg(style, false);
+        Preconditions.checkArgument(offset >= 0, "offset must be non-negative");
+        Preconditions.checkArgument(limit > 0, "limit must be positive");
 
+        SearchCache cache = brain.getSearchCache();
+        if (null == cache) {
+            return searchInternal(queryType, query, offset, limit, height, filter, style);
+        } else {
+            return cache.get(new SearchCache.Key(queryType, query, offset, limit, height, filter, style),
+                    () -> searchInternal(queryType, query, offset, limit, height, filter, style));
+        }
+    }
+
+    private Note searchInternal(final QueryType queryType,
+                                final String query,
+                                final int offset,
+                                final int limit,
+                                final int height,
+                                final Filter filter,
+                                final ViewStyle style) {
         Note result = new Note();
 
         List<Atom> results;
         switch (queryType) {
             case FullText:
-                results = brain.getAtomGraph().getAtomsByValueQuery(query, filter);
+                results = brain.getAtomGraph().getAtomsByValueQuery(query, filter, offset, limit);
                 break;
             case Acronym:
-                results = brain.getAtomGraph().getAtomsByAcronym(query, filter);
+                results = brain.getAtomGraph().getAtomsByAcronym(query, filter, offset, limit);
                 break;
             case Shortcut:
-                results = brain.getAtomGraph().getAtomsByShortcut(query, filter);
+                results = brain.getAtomGraph().getAtomsByShortcut(query, filter, offset, limit);
                 break;
             default:
                 throw new IllegalStateException("unexpected query type: " + queryType);
@@ -163,6 +246,28 @@ public class NoteQueries {
         return result;
     }
 
+    /**
+     * Finds atoms for type-ahead lookup, without building any views beyond the atoms themselves
+     *
+     * @param prefix a prefix of the acronym, shortcut or value of an atom
+     * @param limit  the maximum number of results to include
+     */
+    public Note autocomplete(final String prefix,
+                             final int limit,
+                             final Filter filter) {
+        checkQueryArg(prefix);
+        checkFilterArg(filter);
+        Preconditions.checkArgument(limit > 0, "limit must be positive");
+
+        Note result = new Note();
+        for (Atom a : brain.getAtomGraph().getAtomsByPrefix(prefix, filter, limit)) {
+            result.addChild(viewInternal(a, 0, filter, forwardViewStyle, true, null));
+        }
+
+        result.setValue("completions of \"" + prefix + "\"");
+        return result;
+    }
+
     public Note findRootAtoms(final Filter filter,
                               final ViewStyle style,
                               final int height) {
@@ -199,9 +304,8 @@ public class NoteQueries {
         Note result = new Note();
         result.setValue("priority queue with up to " + maxResults + " results");
 
-        Queue<Atom> queue = priorities.getQueue();
         int i = 0;
-        for (Atom a : queue) {
+        for (Atom a : priorities.getAtoms()) {
             if (filter.isVisible(a)) {
                 result.addChild(toNote(a, true, true));
 
@@ -289,8 +393,7 @@ public class NoteQueries {
 
         // If the note is visible, we can see its children (although we will not be able to read the values of any
         // children which are themselves invisible).
-        Iterable<Atom> children = style.getLinked(root, filter);
-        return children.iterator().hasNext();
+        return style.hasLinked(root, filter);
     }
 
     private Note viewInternal(final Atom root,
@@ -321,6 +424,73 @@ public class NoteQueries {
         return n;
     }
 
+    /**
+     * Builds a view in the same way as viewInternal, but forks the subtrees of any note with enough linked atoms.
+     * The children of each note are joined in order.
+     */
+    private class ViewTask extends RecursiveTask<Note> {
+        private final Atom root;
+        private final int height;
+        private final Filter filter;
+        private final ViewStyle style;
+        // the atoms linked from the root, if already found
+        private final List<Atom> linked;
+
+        private ViewTask(final Atom root,
+                         final int height,
+                         final Filter filter,
+                         final ViewStyle style,
+                         final List<Atom> linked) {
+            this.root = root;
+            this.height = height;
+            this.filter = filter;
+            this.style = style;
+            this.linked = linked;
+        }
+
+        @Override
+        protected Note compute() {
+            // subtasks run inline or joined by this thread share its transaction,
+            // which is released only once the outermost task on the thread has finished
+            int[] depth = viewTaskDepth.get();
+            depth[0]++;
+            try {
+                return build();
+            } finally {
+                if (0 == --depth[0]) {
+                    brain.getAtomGraph().releaseThread();
+                }
+            }
+        }
+
+        private Note build() {
+            if (height <= 1) {
+                return viewInternal(root, height, filter, style, true, null);
+            }
+
+            Note n = toNote(root, filter.isVisible(root), true);
+
+            List<ViewTask> subtrees = new ArrayList<>();
+            for (Atom target : null == linked ? style.getLinked(root, filter) : linked) {
+                int h = filter.isVisible(target) ? height - 1 : 0;
+                subtrees.add(new ViewTask(target, h, filter, style, null));
+            }
+
+            if (subtrees.size() >= parallelViewThreshold) {
+                invokeAll(subtrees);
+                for (ViewTask t : subtrees) {
+                    n.addChild(t.join());
+                }
+            } else {
+                for (ViewTask t : subtrees) {
+                    n.addChild(t.build());
+                }
+            }
+
+            return n;
+        }
+    }
+
     private void updateInternal(final Note rootNote,
                                 final int height,
                                 final Filter filter,
@@ -347,6 +517,7 @@ public class NoteQueries {
 
         Set<String> childrenAdded = new HashSet<>();
         Set<String> childrenCreated = new HashSet<>();
+        boolean[] childrenChanged = new boolean[]{false};
 
         ListDiff.DiffEditor<Note> editor = new ListDiff.DiffEditor<Note>() {
             @Override
@@ -361,6 +532,7 @@ public class NoteQueries {
                 rootAtom.addChildAt(atom, position);
 
                 childrenAdded.add(atom.getId());
+                childrenChanged[0] = true;
 
                 // log this activity
                 if (null != brain.getActivityLog()) {
@@ -376,6 +548,7 @@ public class NoteQueries {
                 }
 
                 rootAtom.deleteChildAt(position);
+                childrenChanged[0] = true;
 
                 // log this activity
                 if (null != brain.getActivityLog()) {
@@ -383,14 +556,41 @@ public class NoteQueries {
                     brain.getActivityLog().logUnlink(rootAtom, a);
                 }
             }
+
+            @Override
+            public void move(final int from,
+                             final int to,
+                             final Note note) {
+                // a style which only adds or only deletes treats a move as a deletion and an addition
+                if (!style.addOnUpdate() || !style.deleteOnUpdate()) {
+                    delete(from, note);
+                    add(to, note);
+                    return;
+                }
+
+                // the child is neither linked nor unlinked; only the new order of the list is logged
+                rootAtom.moveChild(from, to);
+                childrenChanged[0] = true;
+            }
         };
 
         List<Note> before = viewInternal(rootAtom, 1, filter, style, false, cache).getChildren();
         List<Note> after = rootNote.getChildren();
-        List<Note> lcs = ListDiff.longestCommonSubsequence(before, after, compareById);
 
         // we are pre-ordered w.r.t. updating lists of children
-        ListDiff.applyDiff(before, after, lcs, compareById, editor);
+        int[] sources = style.addOnUpdate() && style.deleteOnUpdate()
+                ? ListDiff.findSources(before, after, compareById) : null;
+        if (null != sources && ListDiff.countEdits(sources, before.size()) > BATCH_UPDATE_THRESHOLD) {
+            setChildren(rootAtom, before.size(), after, sources, filter, childrenAdded, childrenCreated, cache);
+            childrenChanged[0] = true;
+        } else {
+            ListDiff.applyDiff(before, after, compareById, editor);
+        }
+
+        // the list as a whole is logged once, so that the log may be replayed
+        if (childrenChanged[0] && null != brain.getActivityLog()) {
+            brain.getActivityLog().logChildren(rootAtom);
+        }
 
         for (Note n : rootNote.getChildren()) {
             // upon adding children:
@@ -410,6 +610,46 @@ public class NoteQueries {
         }
     }
 
+    // applies an edit script to the children of an atom at once, logging its links and unlinks as one batch
+    private void setChildren(final Atom rootAtom,
+                             final int size,
+                             final List<Note> after,
+                             final int[] sources,
+                             final Filter filter,
+                             final Set<String> childrenAdded,
+                             final Set<String> childrenCreated,
+                             final Map<String, Atom> cache) {
+        List<Atom> current = new ArrayList<>(size);
+        rootAtom.getChildren().forEach(current::add);
+
+        List<Atom> children = new ArrayList<>(after.size());
+        List<Atom> linked = new LinkedList<>();
+        for (int j = 0; j < sources.length; j++) {
+            if (-1 == sources[j]) {
+                Atom atom = getAtomForNote(after.get(j), filter, childrenCreated, cache);
+                childrenAdded.add(atom.getId());
+                linked.add(atom);
+                children.add(atom);
+            } else {
+                children.add(current.get(sources[j]));
+            }
+        }
+
+        List<Atom> unlinked = new LinkedList<>();
+        boolean[] kept = ListDiff.findKept(sources, size);
+        for (int i = 0; i < size; i++) {
+            if (!kept[i]) {
+                unlinked.add(current.get(i));
+            }
+        }
+
+        rootAtom.setChildren(children, sources);
+
+        if (null != brain.getActivityLog()) {
+            brain.getActivityLog().logLinks(rootAtom, linked, unlinked);
+        }
+    }
+
     private Map<String, Atom> createCache() {
         return new HashMap<>();
     }
@@ -475,8 +715,8 @@ public class NoteQueries {
     }
 
     private boolean isAdjacent(final Atom a, final boolean includeChildren, final boolean includeParents) {
-        return (includeChildren && null != a.getNotes())
-                || (includeParents && a.getFirstOf().size() > 0);
+        return (includeChildren && a.getNumberOfChildren() > 0)
+                || (includeParents && a.getNumberOfParents() > 0);
     }
 
     private Note findAtoms(final Filter filter,
@@ -594,6 +834,8 @@ public class NoteQueries {
             // as well as to avoid displaying any child notes.
             if (isVisible) {
                 note.setValue(atom.getValue());
+                // note: not the number of parents, which may change without any change to a view or its atoms
+                note.setNumberOfChildren(atom.getNumberOfChildren());
             }
 
             if (null != brain.getKnowledgeBase()) {
@@ -621,6 +863,13 @@ public class NoteQueries {
 
         Iterable<Atom> getLinked(Atom root, Filter filter);
 
+        /**
+         * @return whether getLinked would yield any atoms, which styles may find without visiting them
+         */
+        default boolean hasLinked(Atom root, Filter filter) {
+            return getLinked(root, filter).iterator().hasNext();
+        }
+
         boolean addOnUpdate();
 
         boolean deleteOnUpdate();
@@ -638,7 +887,7 @@ public class NoteQueries {
         throw new IllegalArgumentException("unknown view style: " + name);
     }
 
-    // TODO: switch to a true linked-list model so that we won't have to create temporary collections for iteration
+    // note: prefer Atom.getChildren, which does not create a temporary collection
     // TODO: see also BrainGraph.toList
     public static Iterable<Atom> toIterable(AtomList l) {
         List<Atom> ll = new LinkedList<>();
@@ -659,7 +908,13 @@ public class NoteQueries {
         @Override
         public Iterable<Atom> getLinked(final Atom root,
                                         final Filter filter) {
-            return toIterable(root.getNotes());
+            return root.getChildren();
+        }
+
+        @Override
+        public boolean hasLinked(final Atom root,
+                                 final Filter filter) {
+            return root.getNumberOfChildren() > 0;
         }
 
         @Override
@@ -687,7 +942,13 @@ public class NoteQueries {
         @Override
         public Iterable<Atom> getLinked(final Atom root,
                                         final Filter filter) {
-            return toIterable(root.getNotes());
+            return root.getChildren();
+        }
+
+        @Override
+        public boolean hasLinked(final Atom root,
+                                 final Filter filter) {
+            return root.getNumberOfChildren() > 0;
         }
 
         @Override
@@ -716,15 +977,7 @@ public class NoteQueries {
         public Iterable<Atom> getLinked(final Atom root,
                                         final Filter filter) {
             List<Atom> results = new LinkedList<>();
-            root.forFirstOf(list -> {
-                AtomList cur = list;
-                AtomList prev = null;
-                while (null != cur) {
-                    prev = cur;
-                    cur = cur.getRestOf();
-                }
-
-                Atom a = prev.getNotesOf();
+            root.forEachParent(a -> {
                 if (filter.isVisible(a)) {
                     results.add(a);
                 }
@@ -733,6 +986,13 @@ public class NoteQueries {
             return results;
         }
 
+        @Override
+        public boolean hasLinked(final Atom root,
+                                 final Filter filter) {
+            // only atoms with parents need to be visited, as parents may be invisible
+            return root.getNumberOfParents() > 0 && getLinked(root, filter).iterator().hasNext();
+        }
+
         @Override
         public boolean addOnUpdate() {
             return false;
@@ -14,12 +14,14 @@ public interface Params {
             HEIGHT = "height",
             ID = "id",
             INCLUDE_TYPES = "includeTypes",
+            LIMIT = "limit",
             MAX_RESULTS = "maxResults",
             MAX_SHARABILITY = "maxSharability",
             MAX_WEIGHT = "maxWeight",
             MIN_SHARABILITY = "minSharability",
             MIN_WEIGHT = "minWeight",
             NAME = "name",
+            OFFSET = "offset",
             QUERY = "query",
             QUERY_TYPE = "queryType",
             REQUEST = "request",
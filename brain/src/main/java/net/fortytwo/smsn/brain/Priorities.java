@@ -5,28 +5,76 @@ import net.fortytwo.smsn.brain.model.Atom;
 import net.fortytwo.smsn.brain.model.AtomGraph;
 
 import java.util.Comparator;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.logging.Logger;
 
 /**
- * A dynamically updated list of atoms ordered by their priority value
+ * A dynamically updated list of atoms ordered by their priority value.
+ * Atoms are indexed by id, so that the priority of an atom is updated in logarithmic time,
+ * and the list may be read while it is updated, from the highest priority downwards.
  */
 public class Priorities {
     private static final Logger logger = SemanticSynchrony.getLogger(Priorities.class);
 
-    private final PriorityQueue<Atom> queue;
+    private final Map<String, Entry> entriesById = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>(new EntryComparator());
 
-    public Priorities() {
-        queue = new PriorityQueue<>(1, new AtomPriorityComparator());
+    /**
+     * @return the prioritized atoms, highest priority first.
+     * The atoms are read lazily, so that taking the first few does not visit the rest
+     */
+    public Iterable<Atom> getAtoms() {
+        return () -> new Iterator<Atom>() {
+            private final Iterator<Entry> base = entries.iterator();
+            // an atom updated during iteration may be met again at its new position
+            private final Set<String> visited = new HashSet<>();
+            private Entry next;
+
+            @Override
+            public boolean hasNext() {
+                while (null == next && base.hasNext()) {
+                    Entry e = base.next();
+                    if (visited.add(e.atomId)) {
+                        next = e;
+                    }
+                }
+                return null != next;
+            }
+
+            @Override
+            public Atom next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Atom a = next.atom;
+                next = null;
+                return a;
+            }
+        };
     }
 
-    public Queue<Atom> getQueue() {
-        return queue;
+    /**
+     * @return the number of prioritized atoms
+     */
+    public int size() {
+        return entriesById.size();
     }
 
     public void refreshQueue(final AtomGraph graph) {
-        queue.clear();
+        // remove entries as updates do, so that none is left behind by an update made meanwhile
+        for (String id : entriesById.keySet()) {
+            entriesById.computeIfPresent(id, (k, e) -> {
+                entries.remove(e);
+                return null;
+            });
+        }
 
         new Thread(() -> {
             logger.info("generating priority queue");
@@ -44,28 +92,49 @@ public class Priorities {
     }
 
     public void updatePriority(final Atom a) {
-        queue.remove(a);
-        if (null != a.getPriority()) {
-            queue.add(a);
+        Float priority = a.getPriority();
+        Float weight = a.getWeight();
+
+        // updates of the same atom are applied one at a time
+        entriesById.compute(a.getId(), (id, old) -> {
+            if (null != old) {
+                entries.remove(old);
+            }
+
+            if (null == priority || 0 == priority) {
+                return null;
+            }
+
+            Entry e = new Entry(id, a, priority, null == weight ? 0f : weight);
+            entries.add(e);
+            return e;
+        });
+    }
+
+    // the priority and weight of an atom as of its last update, so that the order of entries does not change
+    // while they are in the index
+    private static class Entry {
+        private final String atomId;
+        private final Atom atom;
+        private final float priority;
+        private final float weight;
+
+        private Entry(final String atomId, final Atom atom, final float priority, final float weight) {
+            this.atomId = atomId;
+            this.atom = atom;
+            this.priority = priority;
+            this.weight = weight;
         }
     }
 
-    // order primarily by descending priority, secondarily by descending weight
-    private static class AtomPriorityComparator implements Comparator<Atom> {
-        public int compare(final Atom a, final Atom b) {
-            Float pa = a.getPriority();
-            Float pb = b.getPriority();
-
-            if (null == pa) {
-                return null == pb || 0 == pb ? 0 : -1;
-            } else if (null == pb) {
-                return 1;
-            } else {
-                int c = pa.compareTo(pb);
-                return 0 == c
-                        ? b.getWeight().compareTo(a.getWeight())
-                        : c;
+    // order primarily by descending priority, secondarily by descending weight, and finally by id
+    private static class EntryComparator implements Comparator<Entry> {
+        public int compare(final Entry a, final Entry b) {
+            int c = Float.compare(b.priority, a.priority);
+            if (0 == c) {
+                c = Float.compare(b.weight, a.weight);
             }
+            return 0 == c ? a.atomId.compareTo(b.atomId) : c;
         }
     }
 }
@@ -0,0 +1,92 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.model.Filter;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A cache of search results, for clients which repeat the same searches within a short time.
+ * A result is discarded when it expires; when the properties of any atom change,
+ * as this may change which atoms match a query; and when the children of any atom in its view change.
+ */
+public class SearchCache extends NoteCache<SearchCache.Key> {
+
+    public static final String
+            PROP_SEARCH_CACHE_SIZE = "net.fortytwo.smsn.brain.searchCacheSize",
+            PROP_SEARCH_CACHE_TTL = "net.fortytwo.smsn.brain.searchCacheTtl";
+
+    public static final int DEFAULT_SEARCH_CACHE_SIZE = 100;
+    public static final long DEFAULT_SEARCH_CACHE_TTL = 1000L * 60;
+
+    /**
+     * @param atomGraph the graph to be searched, whose changes are tracked
+     * @param capacity  the maximum number of results to keep
+     * @param ttl       the time in milliseconds for which a result is kept
+     */
+    public SearchCache(final AtomGraph atomGraph, final int capacity, final long ttl) {
+        super(atomGraph, capacity, ttl);
+    }
+
+    @Override
+    protected boolean isAffectedByProperties(final Key key, final Set<String> atomIds, final String atomId) {
+        return true;
+    }
+
+    @Override
+    protected boolean isAffectedByChildren(final Key key, final Set<String> atomIds, final String atomId) {
+        return atomIds.contains(atomId);
+    }
+
+    @Override
+    protected boolean expiresOnUpdate() {
+        return true;
+    }
+
+    public static class Key {
+        private final NoteQueries.QueryType queryType;
+        private final String query;
+        private final int offset;
+        private final int limit;
+        private final int height;
+        private final Filter filter;
+        private final NoteQueries.ViewStyle style;
+
+        public Key(final NoteQueries.QueryType queryType,
+                   final String query,
+                   final int offset,
+                   final int limit,
+                   final int height,
+                   final Filter filter,
+                   final NoteQueries.ViewStyle style) {
+            this.queryType = queryType;
+            this.query = query;
+            this.offset = offset;
+            this.limit = limit;
+            this.height = height;
+            // a filter is mutable, so the key keeps its own copy
+            this.filter = new Filter(filter);
+            this.style = style;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Key)) return false;
+
+            Key otherKey = (Key) other;
+            return queryType == otherKey.queryType
+                    && query.equals(otherKey.query)
+                    && offset == otherKey.offset
+                    && limit == otherKey.limit
+                    && height == otherKey.height
+                    && filter.equals(otherKey.filter)
+                    && style == otherKey.style;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(queryType, query, offset, limit, height, filter, style);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.Filter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * An activity log of tab-separated lines, written on the thread of each request.
+ * Lists of children and removals of isolated atoms, which are logged only so that a graph may be replayed
+ * from the binary log, are left out, so that the lines keep the format of earlier versions.
+ */
+public class TextActivityLog extends ActivityLog {
+    private final Writer out;
+
+    public TextActivityLog(final Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void shutDown() throws IOException {
+        out.close();
+    }
+
+    @Override
+    public void logChildren(final Atom a) {
+    }
+
+    @Override
+    public void logRemoveIsolatedAtoms(final Filter filter) {
+    }
+
+    @Override
+    protected void log(final long timestamp, final ActivityType type, final Atom subject, final Atom object) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(timestamp).append("\t").append(type.getName()).append("\t").append(subject.getId());
+        if (null != object) {
+            sb.append("\t").append(object.getId());
+        }
+        sb.append("\n");
+
+        append(sb);
+    }
+
+    @Override
+    protected void logRemoval(final long timestamp, final Filter filter) {
+        // removals are not logged in this format
+    }
+
+    private void append(final CharSequence line) {
+        try {
+            out.append(line);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
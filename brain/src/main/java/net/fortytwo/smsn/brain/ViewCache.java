@@ -0,0 +1,78 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.model.Filter;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A cache of views, for frequently viewed roots such as an inbox or journal.
+ * A view is discarded only when an atom inside it changes:
+ * when the properties of the atom change, or its children in the case of a forward view.
+ * As a new parent of an atom in a backward view lies outside of the view,
+ * a backward view is discarded whenever any atom's children change.
+ * A view is also discarded when it expires, so that inferred classes of its atoms are eventually refreshed.
+ */
+public class ViewCache extends NoteCache<ViewCache.Key> {
+
+    public static final String
+            PROP_VIEW_CACHE_SIZE = "net.fortytwo.smsn.brain.viewCacheSize",
+            PROP_VIEW_CACHE_TTL = "net.fortytwo.smsn.brain.viewCacheTtl";
+
+    public static final int DEFAULT_VIEW_CACHE_SIZE = 50;
+    public static final long DEFAULT_VIEW_CACHE_TTL = 1000L * 60 * 10;
+
+    /**
+     * @param atomGraph the graph to be viewed, whose changes are tracked
+     * @param capacity  the maximum number of views to keep
+     * @param ttl       the time in milliseconds for which a view is kept
+     */
+    public ViewCache(final AtomGraph atomGraph, final int capacity, final long ttl) {
+        super(atomGraph, capacity, ttl);
+    }
+
+    @Override
+    protected boolean isAffectedByProperties(final Key key, final Set<String> atomIds, final String atomId) {
+        return atomIds.contains(atomId);
+    }
+
+    @Override
+    protected boolean isAffectedByChildren(final Key key, final Set<String> atomIds, final String atomId) {
+        return key.style.getDirection() == NoteQueries.ViewStyle.Direction.Backward || atomIds.contains(atomId);
+    }
+
+    public static class Key {
+        private final String rootId;
+        private final int height;
+        private final Filter filter;
+        private final NoteQueries.ViewStyle style;
+
+        public Key(final String rootId,
+                   final int height,
+                   final Filter filter,
+                   final NoteQueries.ViewStyle style) {
+            this.rootId = rootId;
+            this.height = height;
+            // a filter is mutable, so the key keeps its own copy
+            this.filter = new Filter(filter);
+            this.style = style;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Key)) return false;
+
+            Key otherKey = (Key) other;
+            return rootId.equals(otherKey.rootId)
+                    && height == otherKey.height
+                    && filter.equals(otherKey.filter)
+                    && style == otherKey.style;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rootId, height, filter, style);
+        }
+    }
+}
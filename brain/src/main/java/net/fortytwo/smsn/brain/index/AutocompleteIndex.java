@@ -0,0 +1,137 @@
+package net.fortytwo.smsn.brain.index;
+
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.util.Acronyms;
+import org.parboiled.common.Preconditions;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory index for type-ahead lookup of atoms by any prefix of their acronym, their shortcut,
+ * or their value starting at one of its leading words.
+ * Each entry also stores the sharability and weight of its atom, so that a lookup can apply a filter
+ * without looking up any atoms.
+ *
+ * @param <K> the type of the keys by which atoms are identified
+ */
+public class AutocompleteIndex<K> {
+
+    // the number of leading words of a value at which a match may begin
+    private static final int MAX_LEADING_TOKENS = 8;
+    // the length to which keys derived from values are truncated; longer prefixes do not narrow a search further
+    private static final int MAX_KEY_LENGTH = 40;
+
+    private final PrefixTrie<K> trie = new PrefixTrie<>();
+    private final Map<K, Entry> entries = new HashMap<>();
+
+    /**
+     * Adds an atom to the index, replacing any previous entry for the same key
+     */
+    public synchronized void put(final K key, final String value, final String shortcut,
+                                 final float sharability, final float weight) {
+        Preconditions.checkArgNotNull(key, "key");
+
+        removeInternal(key);
+
+        Set<String> prefixKeys = new LinkedHashSet<>();
+        if (null != value) {
+            String acronym = Acronyms.fromValue(value);
+            if (null != acronym && acronym.length() > 0) {
+                prefixKeys.add(acronym);
+            }
+
+            List<String> tokens = FullTextIndex.tokenize(value);
+            for (int i = 0; i < tokens.size() && i < MAX_LEADING_TOKENS; i++) {
+                prefixKeys.add(join(tokens, i));
+            }
+        }
+        if (null != shortcut && shortcut.length() > 0) {
+            prefixKeys.add(shortcut.toLowerCase());
+        }
+
+        if (prefixKeys.isEmpty()) return;
+
+        float score = getScore(weight, value);
+        for (String prefixKey : prefixKeys) {
+            trie.put(prefixKey, key, score);
+        }
+        entries.put(key, new Entry(prefixKeys.toArray(new String[prefixKeys.size()]), sharability, weight));
+    }
+
+    public synchronized void remove(final K key) {
+        removeInternal(key);
+    }
+
+    public synchronized void clear() {
+        trie.clear();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param prefix a prefix, matched case-insensitively and with words separated by single spaces
+     * @param filter an optional filter for atoms
+     * @param limit  the maximum number of atoms to retrieve
+     * @return the keys of the highest-ranked atoms, by decreasing rank
+     */
+    public synchronized List<K> getTopByPrefix(final String prefix, final Filter filter, final int limit) {
+        Preconditions.checkArgNotNull(prefix, "prefix");
+
+        String normalized = normalize(prefix);
+        return trie.getTopByPrefix(normalized, limit, key -> {
+            if (null == filter) return true;
+            Entry entry = entries.get(key);
+            return filter.isVisible(entry.sharability, entry.weight);
+        });
+    }
+
+    private void removeInternal(final K key) {
+        Entry entry = entries.remove(key);
+        if (null == entry) return;
+
+        for (String prefixKey : entry.prefixKeys) {
+            trie.remove(prefixKey, key);
+        }
+    }
+
+    private static String normalize(final String prefix) {
+        String normalized = join(FullTextIndex.tokenize(prefix), 0);
+        // keep a trailing space, which completes the last word
+        return prefix.endsWith(" ") && normalized.length() > 0 && normalized.length() < MAX_KEY_LENGTH
+                ? normalized + " " : normalized;
+    }
+
+    private static String join(final List<String> tokens, final int start) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = start; i < tokens.size() && sb.length() < MAX_KEY_LENGTH; i++) {
+            if (i > start) sb.append(' ');
+            sb.append(tokens.get(i));
+        }
+        return sb.length() > MAX_KEY_LENGTH ? sb.substring(0, MAX_KEY_LENGTH) : sb.toString();
+    }
+
+    // consistent with the ranking of search results: weight, penalized for long values
+    private static float getScore(final float weight, final String value) {
+        float lengthPenalty = null == value || 0 == value.length() ? 1.0f : Math.min(1.0f, 15.0f / value.length());
+        return (Float.isNaN(weight) ? 0f : weight) * lengthPenalty;
+    }
+
+    private static class Entry {
+        private final String[] prefixKeys;
+        private final float sharability;
+        private final float weight;
+
+        private Entry(final String[] prefixKeys, final float sharability, final float weight) {
+            this.prefixKeys = prefixKeys;
+            this.sharability = sharability;
+            this.weight = weight;
+        }
+    }
+}
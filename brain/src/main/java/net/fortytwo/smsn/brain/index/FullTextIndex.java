@@ -0,0 +1,393 @@
+package net.fortytwo.smsn.brain.index;
+
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.util.TopK;
+import org.parboiled.common.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory inverted index over short texts, ranked with BM25.
+ * Each document also stores the sharability and weight of the atom it represents,
+ * so that a search can apply a filter without looking up any atoms,
+ * and a boost by which its relevance is multiplied.
+ * <p>
+ * A query is a disjunction of clauses, each of which is a term, a quoted phrase,
+ * or a term with a trailing * (a prefix) or with other * and ? wildcards.
+ * Matching is case-insensitive, and texts are split into terms at any character which is not a letter or digit.
+ *
+ * @param <K> the type of the keys by which documents are identified
+ */
+public class FullTextIndex<K> {
+
+    // BM25 parameters: term frequency saturation and length normalization
+    private static final float K1 = 1.2f, B = 0.75f;
+
+    // term -> key -> ascending positions of the term in the document
+    private final TreeMap<String, Map<K, int[]>> postings = new TreeMap<>();
+    private final Map<K, Document> documents = new HashMap<>();
+    private long totalLength;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds a document to the index, replacing any document with the same key
+     */
+    public void put(final K key, final String text,
+                    final float sharability, final float weight, final float boost) {
+        Preconditions.checkArgNotNull(key, "key");
+        Preconditions.checkArgNotNull(text, "text");
+
+        List<String> tokens = tokenize(text);
+        Map<String, List<Integer>> positionsByTerm = new LinkedHashMap<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            positionsByTerm.computeIfAbsent(tokens.get(i), t -> new ArrayList<>()).add(i);
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(key);
+
+            for (Map.Entry<String, List<Integer>> e : positionsByTerm.entrySet()) {
+                int[] positions = e.getValue().stream().mapToInt(Integer::intValue).toArray();
+                postings.computeIfAbsent(e.getKey(), t -> new HashMap<>()).put(key, positions);
+            }
+
+            String[] terms = positionsByTerm.keySet().toArray(new String[positionsByTerm.size()]);
+            documents.put(key, new Document(terms, tokens.size(), sharability, weight, boost));
+            totalLength += tokens.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(final K key) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param query  a full-text query
+     * @param filter a filter on sharability and weight, or null to include all documents
+     * @return the matching documents, by decreasing score
+     */
+    public List<Hit<K>> search(final String query, final Filter filter) {
+        return search(query, filter, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param query  a full-text query
+     * @param filter a filter on sharability and weight, or null to include all documents
+     * @param limit  the maximum number of hits to return
+     * @return the highest-scoring matching documents, by decreasing score
+     */
+    public List<Hit<K>> search(final String query, final Filter filter, final int limit) {
+        Preconditions.checkArgNotNull(query, "query");
+
+        List<Clause> clauses = parse(query);
+
+        lock.readLock().lock();
+        try {
+            Map<K, Float> scores = new HashMap<>();
+            for (Clause clause : clauses) {
+                for (Map.Entry<K, Float> e : clause.score(filter).entrySet()) {
+                    scores.merge(e.getKey(), e.getValue(), Float::sum);
+                }
+            }
+
+            TopK<Hit<K>> hits = new TopK<>(limit);
+            for (Map.Entry<K, Float> e : scores.entrySet()) {
+                float score = e.getValue() * documents.get(e.getKey()).boost;
+                hits.add(new Hit<>(e.getKey(), score), score);
+            }
+            return hits.toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static class Hit<K> {
+        private final K key;
+        private final float score;
+
+        private Hit(final K key, final float score) {
+            this.key = key;
+            this.score = score;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+
+    static List<String> tokenize(final String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inToken = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inToken && start < 0) {
+                start = i;
+            } else if (!inToken && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void removeInternal(final K key) {
+        Document doc = documents.remove(key);
+        if (null == doc) return;
+
+        for (String term : doc.terms) {
+            Map<K, int[]> docs = postings.get(term);
+            docs.remove(key);
+            if (docs.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= doc.length;
+    }
+
+    private List<Clause> parse(final String query) {
+        List<Clause> clauses = new ArrayList<>();
+
+        String rest = query;
+        int quote;
+        while ((quote = rest.indexOf('"')) >= 0) {
+            int end = rest.indexOf('"', quote + 1);
+            if (end < 0) break;
+            List<String> phrase = tokenize(rest.substring(quote + 1, end));
+            if (1 == phrase.size()) {
+                clauses.add(new TermClause(phrase.get(0)));
+            } else if (phrase.size() > 1) {
+                clauses.add(new PhraseClause(phrase));
+            }
+            rest = rest.substring(0, quote) + " " + rest.substring(end + 1);
+        }
+
+        for (String word : rest.split("\\s+")) {
+            int star = word.indexOf('*');
+            if (star < 0 && word.indexOf('?') < 0) {
+                for (String term : tokenize(word)) {
+                    clauses.add(new TermClause(term));
+                }
+            } else {
+                String pattern = word.toLowerCase().replaceAll("[^\\p{L}\\p{N}*?]", "");
+                if (pattern.replaceAll("[*?]", "").isEmpty()) continue;
+
+                if (star == word.length() - 1 && pattern.indexOf('*') == pattern.length() - 1
+                        && pattern.indexOf('?') < 0) {
+                    clauses.add(new PrefixClause(pattern.substring(0, pattern.length() - 1)));
+                } else {
+                    clauses.add(new WildcardClause(pattern));
+                }
+            }
+        }
+
+        return clauses;
+    }
+
+    private float idf(final int docFrequency) {
+        int n = documents.size();
+        return (float) Math.log(1 + (n - docFrequency + 0.5) / (docFrequency + 0.5));
+    }
+
+    private float termFrequencyNorm(final int frequency, final int length) {
+        float averageLength = documents.isEmpty() ? 1f : totalLength / (float) documents.size();
+        float norm = 1 - B + B * length / Math.max(averageLength, 1f);
+        return frequency * (K1 + 1) / (frequency + K1 * norm);
+    }
+
+    private boolean isVisible(final K key, final Filter filter) {
+        if (null == filter) return true;
+        Document doc = documents.get(key);
+        return filter.isVisible(doc.sharability, doc.weight);
+    }
+
+    private Map<K, Float> scoreTerm(final String term, final Filter filter) {
+        Map<K, Float> scores = new HashMap<>();
+        Map<K, int[]> docs = postings.get(term);
+        if (null != docs) {
+            float idf = idf(docs.size());
+            for (Map.Entry<K, int[]> e : docs.entrySet()) {
+                K key = e.getKey();
+                if (isVisible(key, filter)) {
+                    scores.put(key, idf * termFrequencyNorm(e.getValue().length, documents.get(key).length));
+                }
+            }
+        }
+        return scores;
+    }
+
+    private Map<K, Float> scoreExpansion(final Iterable<String> terms, final Filter filter) {
+        // a document which matches several expansions of a multi-term clause scores by the best of them
+        Map<K, Float> scores = new HashMap<>();
+        for (String term : terms) {
+            for (Map.Entry<K, Float> e : scoreTerm(term, filter).entrySet()) {
+                scores.merge(e.getKey(), e.getValue(), Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private abstract class Clause {
+        abstract Map<K, Float> score(Filter filter);
+    }
+
+    private class TermClause extends Clause {
+        private final String term;
+
+        private TermClause(final String term) {
+            this.term = term;
+        }
+
+        @Override
+        Map<K, Float> score(final Filter filter) {
+            return scoreTerm(term, filter);
+        }
+    }
+
+    private class PrefixClause extends Clause {
+        private final String prefix;
+
+        private PrefixClause(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        Map<K, Float> score(final Filter filter) {
+            return scoreExpansion(postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet(),
+                    filter);
+        }
+    }
+
+    private class WildcardClause extends Clause {
+        private final Pattern pattern;
+
+        private WildcardClause(final String wildcard) {
+            pattern = Pattern.compile(wildcard.replace("?", "[\\p{L}\\p{N}]").replace("*", "[\\p{L}\\p{N}]*"));
+        }
+
+        @Override
+        Map<K, Float> score(final Filter filter) {
+            List<String> terms = new ArrayList<>();
+            for (String term : postings.keySet()) {
+                if (pattern.matcher(term).matches()) {
+                    terms.add(term);
+                }
+            }
+            return scoreExpansion(terms, filter);
+        }
+    }
+
+    private class PhraseClause extends Clause {
+        private final String[] terms;
+
+        private PhraseClause(final List<String> terms) {
+            this.terms = terms.toArray(new String[terms.size()]);
+        }
+
+        @Override
+        Map<K, Float> score(final Filter filter) {
+            Map<K, Float> scores = new HashMap<>();
+
+            List<Map<K, int[]>> docsByTerm = new ArrayList<>(terms.length);
+            for (String term : terms) {
+                Map<K, int[]> docs = postings.get(term);
+                if (null == docs) return scores;
+                docsByTerm.add(docs);
+            }
+
+            // visit the documents of the rarest term
+            Map<K, int[]> rarest = docsByTerm.stream().min((a, b) -> Integer.compare(a.size(), b.size())).get();
+            float idf = 0;
+            for (Map<K, int[]> docs : docsByTerm) {
+                idf += idf(docs.size());
+            }
+
+            for (K key : rarest.keySet()) {
+                if (!isVisible(key, filter)) continue;
+
+                int frequency = countPhrase(key, docsByTerm);
+                if (frequency > 0) {
+                    scores.put(key, idf * termFrequencyNorm(frequency, documents.get(key).length));
+                }
+            }
+
+            return scores;
+        }
+
+        private int countPhrase(final K key, final List<Map<K, int[]>> docsByTerm) {
+            int[][] positions = new int[terms.length][];
+            for (int i = 0; i < terms.length; i++) {
+                positions[i] = docsByTerm.get(i).get(key);
+                if (null == positions[i]) return 0;
+            }
+
+            int count = 0;
+            for (int start : positions[0]) {
+                boolean match = true;
+                for (int i = 1; i < terms.length && match; i++) {
+                    match = Arrays.binarySearch(positions[i], start + i) >= 0;
+                }
+                if (match) count++;
+            }
+            return count;
+        }
+    }
+
+    private static class Document {
+        private final String[] terms;
+        private final int length;
+        private final float sharability;
+        private final float weight;
+        private final float boost;
+
+        private Document(final String[] terms, final int length,
+                         final float sharability, final float weight, final float boost) {
+            this.terms = terms;
+            this.length = length;
+            this.sharability = sharability;
+            this.weight = weight;
+            this.boost = boost;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package net.fortytwo.smsn.brain.index;
+
+import org.parboiled.common.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A character trie of scored items, from which the top-scoring items under a given prefix are retrieved
+ * without visiting the entire subtree of the prefix.
+ * Each node records the highest score beneath it, so that a best-first traversal can stop
+ * as soon as it has found enough items.
+ *
+ * @param <T> the type of the items
+ */
+public class PrefixTrie<T> {
+
+    private final Node<T> root = new Node<>();
+
+    public synchronized void put(final String key, final T item, final float score) {
+        Preconditions.checkArgNotNull(key, "key");
+        Preconditions.checkArgNotNull(item, "item");
+
+        Node<T> cur = root;
+        cur.max = Math.max(cur.max, score);
+        for (int i = 0; i < key.length(); i++) {
+            cur = cur.getOrAddChild(key.charAt(i));
+            cur.max = Math.max(cur.max, score);
+        }
+
+        if (null == cur.items) {
+            cur.items = new HashMap<>();
+        }
+        Float previous = cur.items.put(item, score);
+        if (null != previous && previous > score) {
+            // the item's score has decreased, so the bounds along the path may be too high
+            updateBounds(key);
+        }
+    }
+
+    /**
+     * @return whether the item was found under the given key
+     */
+    public synchronized boolean remove(final String key, final T item) {
+        Node<T> node = find(key);
+        if (null == node || null == node.items || null == node.items.remove(item)) {
+            return false;
+        }
+
+        if (node.items.isEmpty()) {
+            node.items = null;
+        }
+        updateBounds(key);
+        return true;
+    }
+
+    public synchronized void clear() {
+        root.labels = new char[0];
+        root.children = newNodeArray(0);
+        root.items = null;
+        root.max = Float.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * @param prefix a prefix of keys
+     * @param limit  the maximum number of items to retrieve
+     * @param accept a criterion for items, e.g. a filter
+     * @return the distinct, accepted items of highest score under keys beginning with the prefix,
+     * by decreasing score
+     */
+    public synchronized List<T> getTopByPrefix(final String prefix, final int limit, final Predicate<T> accept) {
+        Preconditions.checkArgNotNull(prefix, "prefix");
+        Preconditions.checkArgument(limit >= 0, "limit must be non-negative");
+
+        List<T> results = new ArrayList<>();
+        Node<T> start = find(prefix);
+        if (null == start || 0 == limit) {
+            return results;
+        }
+
+        Set<T> seen = new HashSet<>();
+        PriorityQueue<Candidate<T>> queue = new PriorityQueue<>();
+        long sequence = 0;
+        queue.add(new Candidate<>(start, null, start.max, sequence++));
+        while (!queue.isEmpty() && results.size() < limit) {
+            Candidate<T> next = queue.poll();
+            if (null == next.node) {
+                if (seen.add(next.item) && accept.test(next.item)) {
+                    results.add(next.item);
+                }
+            } else {
+                Node<T> node = next.node;
+                if (null != node.items) {
+                    for (Map.Entry<T, Float> e : node.items.entrySet()) {
+                        queue.add(new Candidate<>(null, e.getKey(), e.getValue(), sequence++));
+                    }
+                }
+                for (Node<T> child : node.children) {
+                    queue.add(new Candidate<>(child, null, child.max, sequence++));
+                }
+            }
+        }
+
+        return results;
+    }
+
+    private Node<T> find(final String key) {
+        Node<T> cur = root;
+        for (int i = 0; i < key.length() && null != cur; i++) {
+            cur = cur.getChild(key.charAt(i));
+        }
+        return cur;
+    }
+
+    // recomputes the bounds along the path of a key from the bottom up, pruning any empty nodes
+    private void updateBounds(final String key) {
+        List<Node<T>> path = new ArrayList<>(key.length() + 1);
+        Node<T> cur = root;
+        path.add(cur);
+        for (int i = 0; i < key.length(); i++) {
+            cur = cur.getChild(key.charAt(i));
+            path.add(cur);
+        }
+
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node<T> node = path.get(i);
+            node.max = node.computeMax();
+            if (i > 0 && null == node.items && 0 == node.children.length) {
+                path.get(i - 1).removeChild(key.charAt(i - 1));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newNodeArray(final int length) {
+        return (Node<T>[]) new Node[length];
+    }
+
+    private static class Node<T> {
+        // child labels in ascending order, parallel to the children
+        private char[] labels = new char[0];
+        private Node<T>[] children = newNodeArray(0);
+        // items whose key ends at this node, with their scores
+        private Map<T, Float> items;
+        // the highest score of any item at or beneath this node
+        private float max = Float.NEGATIVE_INFINITY;
+
+        private Node<T> getChild(final char label) {
+            int i = Arrays.binarySearch(labels, label);
+            return i >= 0 ? children[i] : null;
+        }
+
+        private Node<T> getOrAddChild(final char label) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i >= 0) {
+                return children[i];
+            }
+
+            int insertAt = -i - 1;
+            Node<T> child = new Node<>();
+            char[] newLabels = new char[labels.length + 1];
+            Node<T>[] newChildren = newNodeArray(children.length + 1);
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newLabels[insertAt] = label;
+            newChildren[insertAt] = child;
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        private void removeChild(final char label) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i < 0) return;
+
+            char[] newLabels = new char[labels.length - 1];
+            Node<T>[] newChildren = newNodeArray(children.length - 1);
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(labels, i + 1, newLabels, i, labels.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        private float computeMax() {
+            float m = Float.NEGATIVE_INFINITY;
+            if (null != items) {
+                for (float score : items.values()) {
+                    m = Math.max(m, score);
+                }
+            }
+            for (Node<T> child : children) {
+                m = Math.max(m, child.max);
+            }
+            return m;
+        }
+    }
+
+    private static class Candidate<T> implements Comparable<Candidate<T>> {
+        private final Node<T> node;
+        private final T item;
+        private final float score;
+        private final long sequence;
+
+        private Candidate(final Node<T> node, final T item, final float score, final long sequence) {
+            this.node = node;
+            this.item = item;
+            this.score = score;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final Candidate<T> other) {
+            // highest score first; of equal scores, items before nodes, then in order of discovery
+            int c = Float.compare(other.score, score);
+            if (0 != c) return c;
+            c = Boolean.compare(null != node, null != other.node);
+            return 0 != c ? c : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,573 @@
+package net.fortytwo.smsn.brain.log;
+
+import net.fortytwo.smsn.brain.ActivityLog;
+import net.fortytwo.smsn.brain.model.Filter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The files and blocks of a binary activity log.
+ * <p>
+ * A log is a directory of files, each a header followed by blocks. The header of a file holds the sequence number
+ * of its first record; records are numbered consecutively from 1 across files.
+ * A block is a header with its length, the number of its records,
+ * the least and greatest of their timestamps, and a checksum, followed by the records.
+ * A record is its timestamp as a variable-length offset from the least timestamp of the block,
+ * the code of its type, the ids of its atoms, and a byte of flags for the sections which follow:
+ * the properties of the subject, the ids of its children, and the filter of a removal of atoms.
+ * Strings are written as a variable-length length (zero for none) and UTF-8 bytes.
+ * <p>
+ * The file being written is named for the time it was opened, e.g. activity-1480000000000.bin.
+ * Once closed, a file is compressed and renamed for its range of timestamps as well,
+ * e.g. activity-1480000000000-1480000000123-1480000999999.bin.gz,
+ * so that readers may pass over it without opening it.
+ */
+final class ActivityLogFormat {
+
+    static final String FILE_PREFIX = "activity-", ACTIVE_SUFFIX = ".bin", COMPRESSED_SUFFIX = ".bin.gz";
+
+    private static final int FILE_MAGIC = 0x534d4c47, FILE_VERSION = 2;
+
+    static final int FILE_HEADER_LENGTH = 16, BLOCK_HEADER_LENGTH = 28;
+
+    private static final int
+            HAS_PROPERTIES = 0x01,
+            HAS_CHILDREN = 0x02,
+            HAS_FILTER = 0x04;
+
+    private static final int
+            HAS_VALUE = 0x01,
+            HAS_ALIAS = 0x02,
+            HAS_SHORTCUT = 0x04,
+            HAS_CREATED = 0x08,
+            HAS_WEIGHT = 0x10,
+            HAS_SHARABILITY = 0x20,
+            HAS_PRIORITY = 0x40;
+
+    // a longer block is taken to be the remains of an interrupted write
+    private static final int MAX_BLOCK_LENGTH = 64 * 1024 * 1024;
+
+    private ActivityLogFormat() {
+    }
+
+    static class BlockHeader {
+        int length;
+        int count;
+        long minTimestamp;
+        long maxTimestamp;
+        int checksum;
+
+        boolean overlaps(final long from, final long to) {
+            return maxTimestamp >= from && minTimestamp < to;
+        }
+    }
+
+    /**
+     * A file of a log, as identified by its name
+     */
+    static class LogFile {
+        final File file;
+        final long openedAt;
+        final boolean compressed;
+        // known only once the file is compressed
+        final long minTimestamp;
+        final long maxTimestamp;
+
+        private LogFile(final File file,
+                        final long openedAt,
+                        final boolean compressed,
+                        final long minTimestamp,
+                        final long maxTimestamp) {
+            this.file = file;
+            this.openedAt = openedAt;
+            this.compressed = compressed;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+        }
+
+        boolean mayOverlap(final long from, final long to) {
+            return !compressed || (maxTimestamp >= from && minTimestamp < to);
+        }
+    }
+
+    static String activeFileName(final long openedAt) {
+        return FILE_PREFIX + openedAt + ACTIVE_SUFFIX;
+    }
+
+    static String compressedFileName(final long openedAt, final long minTimestamp, final long maxTimestamp) {
+        return FILE_PREFIX + openedAt + "-" + minTimestamp + "-" + maxTimestamp + COMPRESSED_SUFFIX;
+    }
+
+    /**
+     * @return the log file of the given name, or null if it is not the name of a log file
+     */
+    static LogFile parse(final File file) {
+        String name = file.getName();
+        if (!name.startsWith(FILE_PREFIX)) {
+            return null;
+        }
+
+        try {
+            if (name.endsWith(COMPRESSED_SUFFIX)) {
+                String[] parts = name.substring(
+                        FILE_PREFIX.length(), name.length() - COMPRESSED_SUFFIX.length()).split("-");
+                if (3 != parts.length) {
+                    return null;
+                }
+                return new LogFile(file, Long.valueOf(parts[0]), true, Long.valueOf(parts[1]), Long.valueOf(parts[2]));
+            } else if (name.endsWith(ACTIVE_SUFFIX)) {
+                long openedAt = Long.valueOf(name.substring(FILE_PREFIX.length(), name.length() - ACTIVE_SUFFIX.length()));
+                return new LogFile(file, openedAt, false, Long.MIN_VALUE, Long.MAX_VALUE);
+            } else {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the files of the log in the given directory, in the order in which they were written.
+     * Where a file has been compressed but not yet removed, only the compressed file is included
+     */
+    static List<LogFile> listLogFiles(final File directory) {
+        Map<Long, LogFile> byOpenedAt = new HashMap<>();
+        File[] files = directory.listFiles();
+        if (null != files) {
+            for (File f : files) {
+                LogFile logFile = parse(f);
+                if (null != logFile) {
+                    LogFile other = byOpenedAt.get(logFile.openedAt);
+                    if (null == other || logFile.compressed) {
+                        byOpenedAt.put(logFile.openedAt, logFile);
+                    }
+                }
+            }
+        }
+
+        List<LogFile> result = new ArrayList<>(byOpenedAt.values());
+        result.sort(Comparator.comparingLong(f -> f.openedAt));
+        return result;
+    }
+
+    static InputStream open(final LogFile logFile) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(logFile.file));
+        return logFile.compressed ? new GZIPInputStream(in) : in;
+    }
+
+    static void writeFileHeader(final DataOutputStream out, final long firstSequence) throws IOException {
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(FILE_VERSION);
+        out.writeLong(firstSequence);
+    }
+
+    /**
+     * @return the sequence number of the first record of the file, or -1 if the file has no header.
+     * A file without one was left empty by an interrupted write
+     */
+    static long readFileHeader(final DataInputStream in) throws IOException {
+        int magic, version;
+        long firstSequence;
+        try {
+            magic = in.readInt();
+            version = in.readInt();
+            firstSequence = in.readLong();
+        } catch (EOFException e) {
+            return -1;
+        }
+
+        if (FILE_MAGIC != magic) {
+            throw new IOException("not an activity log file");
+        }
+        if (FILE_VERSION != version) {
+            throw new IOException("unsupported activity log version: " + version);
+        }
+        return firstSequence;
+    }
+
+    /**
+     * @return the sequence number of the first record of a file, or -1 if the file has no header
+     */
+    static long readFirstSequence(final LogFile logFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(open(logFile))) {
+            return readFileHeader(in);
+        }
+    }
+
+    /**
+     * @return the sequence number of the record which follows the last intact record in the given directory
+     */
+    static long findNextSequence(final File directory) throws IOException {
+        List<LogFile> files = listLogFiles(directory);
+        for (int i = files.size() - 1; i >= 0; i--) {
+            try (DataInputStream in = new DataInputStream(open(files.get(i)))) {
+                long sequence = readFileHeader(in);
+                if (sequence < 0) {
+                    continue;
+                }
+
+                BlockHeader header;
+                byte[] buffer = new byte[0];
+                while (null != (header = readBlockHeader(in))) {
+                    if (buffer.length < header.length) {
+                        buffer = new byte[header.length];
+                    }
+                    if (!readPayload(in, header, buffer)) {
+                        break;
+                    }
+                    sequence += header.count;
+                }
+                return sequence;
+            }
+        }
+
+        return 1;
+    }
+
+    /**
+     * @return a block of the given records, with its header
+     */
+    static byte[] encodeBlock(final List<ActivityRecord> records) throws IOException {
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (ActivityRecord r : records) {
+            min = Math.min(min, r.getTimestamp());
+            max = Math.max(max, r.getTimestamp());
+        }
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(32 * records.size());
+        for (ActivityRecord r : records) {
+            writeVarLong(payload, r.getTimestamp() - min);
+            payload.write(r.getType().getCode());
+            writeString(payload, r.getSubjectId());
+            writeString(payload, r.getObjectId());
+
+            int sections = (null == r.getProperties() ? 0 : HAS_PROPERTIES)
+                    | (null == r.getChildren() ? 0 : HAS_CHILDREN)
+                    | (null == r.getFilter() ? 0 : HAS_FILTER);
+            payload.write(sections);
+            if (null != r.getProperties()) {
+                writeProperties(payload, r.getProperties());
+            }
+            if (null != r.getChildren()) {
+                writeVarLong(payload, r.getChildren().size());
+                for (String id : r.getChildren()) {
+                    writeString(payload, id);
+                }
+            }
+            if (null != r.getFilter()) {
+                writeFilter(payload, r.getFilter());
+            }
+        }
+
+        BlockHeader header = new BlockHeader();
+        header.length = payload.size();
+        header.count = records.size();
+        header.minTimestamp = min;
+        header.maxTimestamp = max;
+        header.checksum = checksumOf(payload.toByteArray(), payload.size());
+
+        ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_HEADER_LENGTH + payload.size());
+        DataOutputStream out = new DataOutputStream(block);
+        writeBlock(out, header, payload.toByteArray());
+        out.flush();
+        return block.toByteArray();
+    }
+
+    static void writeBlock(final DataOutputStream out, final BlockHeader header, final byte[] payload)
+            throws IOException {
+        out.writeInt(header.length);
+        out.writeInt(header.count);
+        out.writeLong(header.minTimestamp);
+        out.writeLong(header.maxTimestamp);
+        out.writeInt(header.checksum);
+        out.write(payload, 0, header.length);
+    }
+
+    /**
+     * @return the header of the next block, or null if there are no more complete blocks
+     */
+    static BlockHeader readBlockHeader(final DataInputStream in) throws IOException {
+        BlockHeader header = new BlockHeader();
+        try {
+            header.length = in.readInt();
+            header.count = in.readInt();
+            header.minTimestamp = in.readLong();
+            header.maxTimestamp = in.readLong();
+            header.checksum = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+
+        return header.length < 0 || header.length > MAX_BLOCK_LENGTH || header.count < 0 ? null : header;
+    }
+
+    /**
+     * Reads the records of a block into a buffer of at least the length of the block
+     *
+     * @return whether the block is complete and intact
+     */
+    static boolean readPayload(final DataInputStream in, final BlockHeader header, final byte[] buffer)
+            throws IOException {
+        try {
+            in.readFully(buffer, 0, header.length);
+        } catch (EOFException e) {
+            return false;
+        }
+        return checksumOf(buffer, header.length) == header.checksum;
+    }
+
+    /**
+     * Passes over the records of a block without reading them
+     *
+     * @return whether the block is complete
+     */
+    static boolean skipPayload(final DataInputStream in, final BlockHeader header) throws IOException {
+        return skipFully(in, header.length);
+    }
+
+    /**
+     * @return whether as many bytes as were asked for have been passed over
+     */
+    static boolean skipFully(final DataInputStream in, final long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            int skipped = in.skipBytes((int) Math.min(remaining, Integer.MAX_VALUE));
+            if (0 == skipped) {
+                if (in.read() < 0) {
+                    return false;
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        return true;
+    }
+
+    /**
+     * @param firstSequence the sequence number of the first record of the block
+     */
+    static void decodeBlock(final BlockHeader header,
+                            final long firstSequence,
+                            final byte[] payload,
+                            final Consumer<ActivityRecord> consumer) throws IOException {
+        int[] position = new int[]{0};
+        for (int i = 0; i < header.count; i++) {
+            long timestamp = header.minTimestamp + readVarLong(payload, position);
+            int code = payload[position[0]++];
+            ActivityLog.ActivityType type = ActivityLog.ActivityType.fromCode(code);
+            if (null == type) {
+                throw new IOException("unknown activity type: " + code);
+            }
+            String subjectId = readString(payload, position);
+            String objectId = readString(payload, position);
+
+            int sections = payload[position[0]++];
+            ActivityRecord.Properties properties = 0 == (sections & HAS_PROPERTIES)
+                    ? null : readProperties(payload, position);
+            List<String> children = null;
+            if (0 != (sections & HAS_CHILDREN)) {
+                int count = (int) readVarLong(payload, position);
+                children = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    children.add(readString(payload, position));
+                }
+            }
+            Filter filter = 0 == (sections & HAS_FILTER) ? null : readFilter(payload, position);
+
+            consumer.accept(new ActivityRecord(firstSequence + i, timestamp, type, subjectId, objectId,
+                    properties, children, filter));
+        }
+    }
+
+    /**
+     * Copies the intact blocks of a closed file into a compressed file named for their range of timestamps,
+     * then removes the original
+     *
+     * @return the compressed file, or null if there were no blocks to keep
+     */
+    static File compress(final File file) throws IOException {
+        LogFile logFile = parse(file);
+        if (null == logFile || logFile.compressed) {
+            throw new IllegalArgumentException("not an uncompressed activity log file: " + file);
+        }
+
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        int blocks = 0;
+        try (DataInputStream in = new DataInputStream(open(logFile));
+             DataOutputStream out = new DataOutputStream(
+                     new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))) {
+            long firstSequence = readFileHeader(in);
+            if (firstSequence >= 0) {
+                writeFileHeader(out, firstSequence);
+
+                BlockHeader header;
+                byte[] buffer = new byte[0];
+                while (null != (header = readBlockHeader(in))) {
+                    if (buffer.length < header.length) {
+                        buffer = new byte[header.length];
+                    }
+                    if (!readPayload(in, header, buffer)) {
+                        break;
+                    }
+
+                    writeBlock(out, header, buffer);
+                    min = Math.min(min, header.minTimestamp);
+                    max = Math.max(max, header.maxTimestamp);
+                    blocks++;
+                }
+            }
+        }
+
+        if (0 == blocks) {
+            Files.delete(tmp.toPath());
+            Files.delete(file.toPath());
+            return null;
+        }
+
+        File compressed = new File(file.getParentFile(), compressedFileName(logFile.openedAt, min, max));
+        Files.move(tmp.toPath(), compressed.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(file.toPath());
+        return compressed;
+    }
+
+    private static int checksumOf(final byte[] bytes, final int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeProperties(final OutputStream out, final ActivityRecord.Properties p)
+            throws IOException {
+        int present = (null == p.getValue() ? 0 : HAS_VALUE)
+                | (null == p.getAlias() ? 0 : HAS_ALIAS)
+                | (null == p.getShortcut() ? 0 : HAS_SHORTCUT)
+                | (null == p.getCreated() ? 0 : HAS_CREATED)
+                | (null == p.getWeight() ? 0 : HAS_WEIGHT)
+                | (null == p.getSharability() ? 0 : HAS_SHARABILITY)
+                | (null == p.getPriority() ? 0 : HAS_PRIORITY);
+        out.write(present);
+
+        if (null != p.getValue()) writeString(out, p.getValue());
+        if (null != p.getAlias()) writeString(out, p.getAlias());
+        if (null != p.getShortcut()) writeString(out, p.getShortcut());
+        if (null != p.getCreated()) writeVarLong(out, p.getCreated());
+        if (null != p.getWeight()) writeFloat(out, p.getWeight());
+        if (null != p.getSharability()) writeFloat(out, p.getSharability());
+        if (null != p.getPriority()) writeFloat(out, p.getPriority());
+    }
+
+    private static ActivityRecord.Properties readProperties(final byte[] bytes, final int[] position) {
+        int present = bytes[position[0]++];
+
+        ActivityRecord.Properties p = new ActivityRecord.Properties();
+        if (0 != (present & HAS_VALUE)) p.setValue(readString(bytes, position));
+        if (0 != (present & HAS_ALIAS)) p.setAlias(readString(bytes, position));
+        if (0 != (present & HAS_SHORTCUT)) p.setShortcut(readString(bytes, position));
+        if (0 != (present & HAS_CREATED)) p.setCreated(readVarLong(bytes, position));
+        if (0 != (present & HAS_WEIGHT)) p.setWeight(readFloat(bytes, position));
+        if (0 != (present & HAS_SHARABILITY)) p.setSharability(readFloat(bytes, position));
+        if (0 != (present & HAS_PRIORITY)) p.setPriority(readFloat(bytes, position));
+        return p;
+    }
+
+    private static void writeFilter(final OutputStream out, final Filter filter) throws IOException {
+        writeFloat(out, filter.getMinWeight());
+        writeFloat(out, filter.getMaxWeight());
+        writeFloat(out, filter.getDefaultWeight());
+        writeFloat(out, filter.getMinSharability());
+        writeFloat(out, filter.getMaxSharability());
+        writeFloat(out, filter.getDefaultSharability());
+    }
+
+    private static Filter readFilter(final byte[] bytes, final int[] position) {
+        float minWeight = readFloat(bytes, position);
+        float maxWeight = readFloat(bytes, position);
+        float defaultWeight = readFloat(bytes, position);
+        float minSharability = readFloat(bytes, position);
+        float maxSharability = readFloat(bytes, position);
+        float defaultSharability = readFloat(bytes, position);
+        return new Filter(minWeight, maxWeight, defaultWeight, minSharability, maxSharability, defaultSharability);
+    }
+
+    private static void writeString(final OutputStream out, final String s) throws IOException {
+        if (null == s) {
+            writeVarLong(out, 0);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length + 1);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(final byte[] bytes, final int[] position) {
+        int length = (int) readVarLong(bytes, position);
+        if (0 == length) {
+            return null;
+        }
+
+        String s = new String(bytes, position[0], length - 1, StandardCharsets.UTF_8);
+        position[0] += length - 1;
+        return s;
+    }
+
+    private static void writeFloat(final OutputStream out, final float value) throws IOException {
+        int bits = Float.floatToIntBits(value);
+        out.write(bits >>> 24);
+        out.write(bits >>> 16);
+        out.write(bits >>> 8);
+        out.write(bits);
+    }
+
+    private static float readFloat(final byte[] bytes, final int[] position) {
+        int p = position[0];
+        int bits = (bytes[p] & 0xFF) << 24 | (bytes[p + 1] & 0xFF) << 16
+                | (bytes[p + 2] & 0xFF) << 8 | bytes[p + 3] & 0xFF;
+        position[0] += 4;
+        return Float.intBitsToFloat(bits);
+    }
+
+    // seven bits at a time, low bits first, with the high bit of each byte marking that more follow
+    private static void writeVarLong(final OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(final byte[] bytes, final int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,109 @@
+package net.fortytwo.smsn.brain.log;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Reads the records of a binary activity log within a range of time.
+ * Files and blocks outside of the range are passed over without their records being decoded,
+ * so that a short range of a long log is read quickly.
+ * The log may be read while it is written; a block still being written is not read.
+ */
+public class ActivityLogReader {
+    private final File directory;
+
+    /**
+     * @param directory the directory of the log
+     */
+    public ActivityLogReader(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads all records of the log
+     */
+    public void read(final Consumer<ActivityRecord> consumer) throws IOException {
+        read(Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Reads the records which follow a given record, in order
+     *
+     * @param sequence the sequence number of the last record not to be read, or 0 to read all records
+     * @return the sequence number of the last record read, or the given sequence number if there were none
+     */
+    public long readAfter(final long sequence, final Consumer<ActivityRecord> consumer) throws IOException {
+        ActivityLogTailer tailer = new ActivityLogTailer(directory, sequence);
+        tailer.poll(consumer);
+        return tailer.getSequence();
+    }
+
+    /**
+     * Reads the records with timestamps in a range, in the order in which they were logged.
+     * As entries are timestamped before they are logged, timestamps of nearby records may be out of order
+     *
+     * @param from     the least timestamp to read, inclusive
+     * @param to       the greatest timestamp to read, exclusive
+     * @param consumer a consumer for the records in the range
+     */
+    public void read(final long from, final long to, final Consumer<ActivityRecord> consumer) throws IOException {
+        for (ActivityLogFormat.LogFile logFile : ActivityLogFormat.listLogFiles(directory)) {
+            if (!logFile.mayOverlap(from, to)) {
+                continue;
+            }
+
+            try {
+                readFile(logFile, from, to, consumer);
+            } catch (FileNotFoundException e) {
+                // the file has been compressed since it was listed
+                for (ActivityLogFormat.LogFile other : ActivityLogFormat.listLogFiles(directory)) {
+                    if (other.openedAt == logFile.openedAt && other.compressed && other.mayOverlap(from, to)) {
+                        readFile(other, from, to, consumer);
+                    }
+                }
+            }
+        }
+    }
+
+    private void readFile(final ActivityLogFormat.LogFile logFile,
+                          final long from,
+                          final long to,
+                          final Consumer<ActivityRecord> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(ActivityLogFormat.open(logFile))) {
+            long sequence = ActivityLogFormat.readFileHeader(in);
+            if (sequence < 0) {
+                return;
+            }
+
+            ActivityLogFormat.BlockHeader header;
+            byte[] buffer = new byte[0];
+            while (null != (header = ActivityLogFormat.readBlockHeader(in))) {
+                long firstSequence = sequence;
+                sequence += header.count;
+
+                if (!header.overlaps(from, to)) {
+                    if (!ActivityLogFormat.skipPayload(in, header)) {
+                        return;
+                    }
+                    continue;
+                }
+
+                if (buffer.length < header.length) {
+                    buffer = new byte[header.length];
+                }
+                if (!ActivityLogFormat.readPayload(in, header, buffer)) {
+                    return;
+                }
+
+                ActivityLogFormat.decodeBlock(header, firstSequence, buffer, record -> {
+                    if (record.getTimestamp() >= from && record.getTimestamp() < to) {
+                        consumer.accept(record);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package net.fortytwo.smsn.brain.log;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Follows a binary activity log as it is written, reading each record once and in order.
+ * The position of the tailer in the file being read is kept between polls,
+ * so that a poll reads only the blocks written since the last one.
+ */
+public class ActivityLogTailer {
+    private final File directory;
+
+    private long sequence;
+
+    // the file being read, the offset in it of the first block not yet read, and the sequence number of that block
+    private long openedAt = -1;
+    private long offset;
+    private long nextSequence;
+
+    private int polled;
+
+    /**
+     * @param directory the directory of the log
+     * @param sequence  the sequence number of the last record not to be read, or 0 to read all records
+     */
+    public ActivityLogTailer(final File directory, final long sequence) {
+        this.directory = directory;
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return the sequence number of the last record read
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Reads the records written since the last poll
+     *
+     * @return the number of records read
+     */
+    public int poll(final Consumer<ActivityRecord> consumer) throws IOException {
+        polled = 0;
+
+        List<ActivityLogFormat.LogFile> files = ActivityLogFormat.listLogFiles(directory);
+        for (int i = 0; i < files.size(); i++) {
+            ActivityLogFormat.LogFile logFile = files.get(i);
+            boolean last = i == files.size() - 1;
+            if (logFile.openedAt < openedAt) {
+                continue;
+            }
+
+            if (logFile.openedAt > openedAt) {
+                // on the first poll, files which end before the first record to be read are passed over unopened
+                if (openedAt < 0 && !last) {
+                    long following = ActivityLogFormat.readFirstSequence(files.get(i + 1));
+                    if (following >= 0 && following <= sequence + 1) {
+                        continue;
+                    }
+                }
+
+                openedAt = logFile.openedAt;
+                offset = 0;
+            }
+
+            try {
+                readFile(logFile, consumer);
+            } catch (FileNotFoundException e) {
+                // the file has been compressed since it was listed, and will be read on the next poll
+                break;
+            }
+
+            // a file followed by another is no longer written to, so the remains of an incomplete block are passed over
+            if (last) {
+                break;
+            }
+        }
+
+        return polled;
+    }
+
+    private void readFile(final ActivityLogFormat.LogFile logFile,
+                          final Consumer<ActivityRecord> consumer) throws IOException {
+        // a compressed file holds the same bytes as the file from which it was compressed, up to its last intact block
+        try (DataInputStream in = new DataInputStream(ActivityLogFormat.open(logFile))) {
+            if (0 == offset) {
+                long first = ActivityLogFormat.readFileHeader(in);
+                if (first < 0) {
+                    return;
+                }
+                nextSequence = first;
+                offset = ActivityLogFormat.FILE_HEADER_LENGTH;
+            } else if (!ActivityLogFormat.skipFully(in, offset)) {
+                return;
+            }
+
+            ActivityLogFormat.BlockHeader header;
+            byte[] buffer = new byte[0];
+            while (null != (header = ActivityLogFormat.readBlockHeader(in))) {
+                if (nextSequence + header.count <= sequence + 1) {
+                    if (!ActivityLogFormat.skipPayload(in, header)) {
+                        return;
+                    }
+                } else {
+                    if (buffer.length < header.length) {
+                        buffer = new byte[header.length];
+                    }
+                    if (!ActivityLogFormat.readPayload(in, header, buffer)) {
+                        return;
+                    }
+
+                    ActivityLogFormat.decodeBlock(header, nextSequence, buffer, record -> {
+                        if (record.getSequence() > sequence) {
+                            consumer.accept(record);
+                            sequence = record.getSequence();
+                            polled++;
+                        }
+                    });
+                }
+
+                offset += ActivityLogFormat.BLOCK_HEADER_LENGTH + header.length;
+                nextSequence += header.count;
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package net.fortytwo.smsn.brain.log;
+
+import net.fortytwo.smsn.brain.ActivityLog;
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.Filter;
+
+import java.util.List;
+
+/**
+ * A single entry of a binary activity log.
+ * Entries which change the graph carry the state of what they changed, as it was after the change,
+ * so that they may be replayed, and replayed more than once, to the same effect
+ */
+public class ActivityRecord {
+    private final long sequence;
+    private final long timestamp;
+    private final ActivityLog.ActivityType type;
+    private final String subjectId;
+    private final String objectId;
+    private final Properties properties;
+    private final List<String> children;
+    private final Filter filter;
+
+    /**
+     * @param objectId the id of the other atom of a link or unlink, or null
+     */
+    public ActivityRecord(final long timestamp,
+                          final ActivityLog.ActivityType type,
+                          final String subjectId,
+                          final String objectId) {
+        this(0, timestamp, type, subjectId, objectId, null, null, null);
+    }
+
+    /**
+     * @param sequence   the position of the record in the log, counting from 1, or 0 if it has not been written
+     * @param properties the properties of the subject after a create or a change of properties, or null
+     * @param children   the ids of the children of the subject after a change to its children, or null
+     * @param filter     the filter of a removal of isolated atoms, or null
+     */
+    public ActivityRecord(final long sequence,
+                          final long timestamp,
+                          final ActivityLog.ActivityType type,
+                          final String subjectId,
+                          final String objectId,
+                          final Properties properties,
+                          final List<String> children,
+                          final Filter filter) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.subjectId = subjectId;
+        this.objectId = objectId;
+        this.properties = properties;
+        this.children = children;
+        this.filter = filter;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public ActivityLog.ActivityType getType() {
+        return type;
+    }
+
+    public String getSubjectId() {
+        return subjectId;
+    }
+
+    public String getObjectId() {
+        return objectId;
+    }
+
+    public Properties getProperties() {
+        return properties;
+    }
+
+    public List<String> getChildren() {
+        return children;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public String toString() {
+        return timestamp + "\t" + type.getName()
+                + (null == subjectId ? "" : "\t" + subjectId) + (null == objectId ? "" : "\t" + objectId);
+    }
+
+    /**
+     * The properties of an atom at a point in time. Any of them may be absent
+     */
+    public static class Properties {
+        private String value;
+        private String alias;
+        private String shortcut;
+        private Long created;
+        private Float weight;
+        private Float sharability;
+        private Float priority;
+
+        public static Properties of(final Atom a) {
+            Properties p = new Properties();
+            p.value = a.getValue();
+            p.alias = a.getAlias();
+            p.shortcut = a.getShortcut();
+            p.created = a.getCreated();
+            p.weight = a.getWeight();
+            p.sharability = a.getSharability();
+            p.priority = a.getPriority();
+            return p;
+        }
+
+        /**
+         * Gives an atom these properties. Absent optional properties are removed from the atom,
+         * while absent required properties are left as they are
+         *
+         * @return whether any property of the atom has changed
+         */
+        public boolean applyTo(final Atom a) {
+            boolean changed = false;
+            if (null != value) changed |= a.setValue(value);
+            if (null != created) changed |= a.setCreated(created);
+            if (null != weight) changed |= a.setWeight(weight);
+            if (null != sharability) changed |= a.setSharability(sharability);
+            changed |= a.setAlias(alias);
+            changed |= a.setShortcut(shortcut);
+            changed |= a.setPriority(priority);
+            return changed;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        public void setAlias(String alias) {
+            this.alias = alias;
+        }
+
+        public String getShortcut() {
+            return shortcut;
+        }
+
+        public void setShortcut(String shortcut) {
+            this.shortcut = shortcut;
+        }
+
+        public Long getCreated() {
+            return created;
+        }
+
+        public void setCreated(Long created) {
+            this.created = created;
+        }
+
+        public Float getWeight() {
+            return weight;
+        }
+
+        public void setWeight(Float weight) {
+            this.weight = weight;
+        }
+
+        public Float getSharability() {
+            return sharability;
+        }
+
+        public void setSharability(Float sharability) {
+            this.sharability = sharability;
+        }
+
+        public Float getPriority() {
+            return priority;
+        }
+
+        public void setPriority(Float priority) {
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package net.fortytwo.smsn.brain.log;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomGraph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A copy of an atom graph in a file, together with the sequence number of the last record of the activity log
+ * which it reflects. A graph is restored by reading the snapshot, then replaying the records which follow.
+ * <p>
+ * A snapshot is the number of its sequence, followed by each atom with its properties,
+ * then each atom with the ids of its children, then an end marker.
+ */
+public class AtomGraphSnapshot {
+
+    private static final int MAGIC = 0x534d5353, VERSION = 1;
+
+    private static final int END = 0, ATOM = 1, CHILDREN = 2;
+
+    private AtomGraphSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of a graph. The snapshot replaces any earlier one only once it is complete
+     *
+     * @param sequence the sequence number of a record of the activity log which the graph is known to reflect,
+     *                 along with all earlier records
+     */
+    public static void write(final AtomGraph graph, final long sequence, final File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+
+            for (Atom a : graph.getAllAtoms()) {
+                out.writeByte(ATOM);
+                writeString(out, a.getId());
+                writeProperties(out, ActivityRecord.Properties.of(a));
+            }
+
+            List<String> ids = new ArrayList<>();
+            for (Atom a : graph.getAllAtoms()) {
+                ids.clear();
+                for (Atom child : a.getChildren()) {
+                    ids.add(child.getId());
+                }
+                if (ids.isEmpty()) {
+                    continue;
+                }
+
+                out.writeByte(CHILDREN);
+                writeString(out, a.getId());
+                out.writeInt(ids.size());
+                for (String id : ids) {
+                    writeString(out, id);
+                }
+            }
+
+            out.writeByte(END);
+        }
+
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot into a graph, which is expected to be empty.
+     * Reading is not transactional; the caller is to begin and commit a transaction as needed
+     *
+     * @return the sequence number of the last record of the activity log which the snapshot reflects
+     */
+    public static long read(final File file, final AtomGraph graph) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+            if (MAGIC != in.readInt()) {
+                throw new IOException("not a snapshot file: " + file.getPath());
+            }
+            int version = in.readInt();
+            if (VERSION != version) {
+                throw new IOException("unsupported snapshot version: " + version);
+            }
+            long sequence = in.readLong();
+
+            int tag;
+            while (END != (tag = in.readByte())) {
+                switch (tag) {
+                    case ATOM:
+                        Atom a = graph.createAtom(readString(in));
+                        readProperties(in).applyTo(a);
+                        if (null != a.getValue()) {
+                            graph.reindexAtom(a);
+                        }
+                        break;
+                    case CHILDREN:
+                        Atom parent = getRequiredAtom(graph, readString(in));
+                        int count = in.readInt();
+                        List<Atom> children = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            children.add(getRequiredAtom(graph, readString(in)));
+                        }
+                        int[] sources = new int[count];
+                        Arrays.fill(sources, -1);
+                        parent.setChildren(children, sources);
+                        break;
+                    default:
+                        throw new IOException("corrupt snapshot file: " + file.getPath());
+                }
+            }
+
+            return sequence;
+        }
+    }
+
+    private static Atom getRequiredAtom(final AtomGraph graph, final String id) throws IOException {
+        Atom a = graph.getAtomById(id);
+        if (null == a) {
+            throw new IOException("snapshot refers to missing atom " + id);
+        }
+        return a;
+    }
+
+    private static void writeProperties(final DataOutputStream out, final ActivityRecord.Properties p)
+            throws IOException {
+        writeString(out, p.getValue());
+        writeString(out, p.getAlias());
+        writeString(out, p.getShortcut());
+        out.writeLong(null == p.getCreated() ? -1 : p.getCreated());
+        out.writeFloat(null == p.getWeight() ? Float.NaN : p.getWeight());
+        out.writeFloat(null == p.getSharability() ? Float.NaN : p.getSharability());
+        out.writeFloat(null == p.getPriority() ? Float.NaN : p.getPriority());
+    }
+
+    private static ActivityRecord.Properties readProperties(final DataInputStream in) throws IOException {
+        ActivityRecord.Properties p = new ActivityRecord.Properties();
+        p.setValue(readString(in));
+        p.setAlias(readString(in));
+        p.setShortcut(readString(in));
+        long created = in.readLong();
+        p.setCreated(-1 == created ? null : created);
+        p.setWeight(toFloat(in.readFloat()));
+        p.setSharability(toFloat(in.readFloat()));
+        p.setPriority(toFloat(in.readFloat()));
+        return p;
+    }
+
+    private static Float toFloat(final float f) {
+        return Float.isNaN(f) ? null : f;
+    }
+
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+        if (null == s) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,468 @@
+package net.fortytwo.smsn.brain.log;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.ActivityLog;
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.util.RingBuffer;
+import org.parboiled.common.Preconditions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An activity log in a compact binary format, written on a background thread.
+ * Request threads only add records to a ring buffer; the writer thread takes them in batches,
+ * writes each batch as a block, and forces blocks to disk at most once per sync interval.
+ * Files are rotated once they reach a maximum size, and compressed once closed.
+ * <p>
+ * Records of changes carry the state of the atoms they changed, so that the log may serve as a write-ahead log
+ * from which the graph is restored or a standby graph is kept up to date. Imports are logged as the final state
+ * of the atoms they touched.
+ * <p>
+ * Records logged within a transaction are held back until it is prepared, just before the graph commits it.
+ * The records of a transaction which changes the graph are then added between a begin and a commit marker:
+ * the begin marker and the records are forced to disk before the graph commits, and the commit marker follows
+ * once it has. If the graph fails to commit, an abort marker follows instead, and the records are passed over
+ * on replay. A transaction which has only viewed atoms is added without markers, and is not forced.
+ * Forcing may be turned off, at the cost of losing the last changes to a crash.
+ *
+ * @see ActivityLogReader
+ * @see LogReplayer
+ */
+public class BinaryActivityLog extends ActivityLog {
+    private static final Logger logger = SemanticSynchrony.getLogger(BinaryActivityLog.class);
+
+    public static final String
+            PROP_MAX_FILE_SIZE = "net.fortytwo.smsn.activityLog.maxFileSize",
+            PROP_SYNC_INTERVAL = "net.fortytwo.smsn.activityLog.syncInterval",
+            PROP_SYNC_ON_COMMIT = "net.fortytwo.smsn.activityLog.syncOnCommit";
+
+    public static final long
+            DEFAULT_MAX_FILE_SIZE = 64L * 1024 * 1024,
+            DEFAULT_SYNC_INTERVAL = 1000;
+
+    public static final boolean DEFAULT_SYNC_ON_COMMIT = true;
+
+    private static final int BUFFER_CAPACITY = 1 << 16;
+    private static final int MAX_BLOCK_RECORDS = 4096;
+
+    private final File directory;
+    private final long maxFileSize;
+    private final long syncIntervalNanos;
+    private final boolean syncOnCommit;
+
+    private final RingBuffer<ActivityRecord> buffer = new RingBuffer<>(BUFFER_CAPACITY);
+    private final Thread writerThread;
+    private final ExecutorService compressor;
+
+    private final ThreadLocal<Transaction> transaction = new ThreadLocal<>();
+
+    private volatile boolean running = true;
+    private final AtomicBoolean syncRequested = new AtomicBoolean();
+    private final Object syncLock = new Object();
+    private long syncedCount;
+    private volatile long syncedSequence;
+    private IOException failure;
+
+    // used only by the writer thread, once started
+    private FileChannel channel;
+    private File currentFile;
+    private long lastSync;
+    private boolean unsynced;
+    private long nextSequence;
+
+    /**
+     * @param directory    the directory of the log, which is created if it does not exist
+     * @param maxFileSize  the size in bytes at which a file is closed and a new one begun
+     * @param syncInterval the longest time, in milliseconds, for which written records may remain unforced to disk
+     */
+    public BinaryActivityLog(final File directory,
+                             final long maxFileSize,
+                             final long syncInterval) throws IOException {
+        this(directory, maxFileSize, syncInterval, DEFAULT_SYNC_ON_COMMIT);
+    }
+
+    /**
+     * @param syncOnCommit whether the records of a transaction are forced to disk before the graph commits it
+     */
+    public BinaryActivityLog(final File directory,
+                             final long maxFileSize,
+                             final long syncInterval,
+                             final boolean syncOnCommit) throws IOException {
+        Preconditions.checkArgument(maxFileSize > 0, "max file size must be positive");
+        Preconditions.checkArgument(syncInterval >= 0, "sync interval must be non-negative");
+
+        this.directory = directory;
+        this.maxFileSize = maxFileSize;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncInterval);
+        this.syncOnCommit = syncOnCommit;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("could not create activity log directory " + directory.getPath());
+        }
+
+        // numbering continues from the last record written by an earlier process
+        nextSequence = ActivityLogFormat.findNextSequence(directory);
+        syncedSequence = nextSequence - 1;
+
+        compressor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "activity-log-compressor");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // files left uncompressed by an earlier process are compressed as if rotated now
+        for (ActivityLogFormat.LogFile logFile : ActivityLogFormat.listLogFiles(directory)) {
+            if (!logFile.compressed) {
+                compressInBackground(logFile.file);
+            }
+        }
+
+        openFile();
+
+        writerThread = new Thread(this::writeRecords, "activity-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void begin() {
+        transaction.set(new Transaction());
+    }
+
+    /**
+     * Adds the records of the current transaction to the buffer. If the transaction has changed the graph,
+     * its records are enclosed in markers, and if the log syncs on commit, they are forced to disk
+     * before this method returns
+     */
+    @Override
+    public void prepare() {
+        Transaction t = transaction.get();
+        if (null == t || t.prepared) {
+            return;
+        }
+        t.prepared = true;
+
+        for (ActivityRecord record : t.records) {
+            t.changed |= ActivityType.View != record.getType();
+        }
+
+        // a transaction which has only viewed atoms has nothing to lose
+        if (t.changed) {
+            add(marker(ActivityType.Begin));
+        }
+        t.records.forEach(this::add);
+        t.records.clear();
+
+        if (t.changed && syncOnCommit) {
+            try {
+                sync();
+            } catch (IOException e) {
+                // the graph is not to commit a transaction which could not be logged
+                throw new IllegalStateException("failed to force activity log", e);
+            }
+        }
+    }
+
+    /**
+     * Marks the current transaction as committed, once the graph has committed it
+     */
+    @Override
+    public void commit() {
+        Transaction t = transaction.get();
+        if (null == t) {
+            return;
+        }
+
+        prepare();
+        transaction.remove();
+        if (t.changed) {
+            add(marker(ActivityType.Commit));
+        }
+    }
+
+    /**
+     * Drops the records of the current transaction, or if they have already been written,
+     * marks the transaction as aborted
+     */
+    @Override
+    public void rollback() {
+        Transaction t = transaction.get();
+        transaction.remove();
+        if (null == t || !t.changed) {
+            return;
+        }
+
+        add(marker(ActivityType.Abort));
+        if (syncOnCommit) {
+            try {
+                sync();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "failed to force abort marker to activity log", e);
+            }
+        }
+    }
+
+    /**
+     * Asks that buffered records be written promptly. Does not wait for them to be written
+     */
+    @Override
+    public void flush() {
+        LockSupport.unpark(writerThread);
+    }
+
+    /**
+     * Waits until all records logged before this call have been written and forced to disk
+     *
+     * @throws IOException if records have failed to be written since the last call
+     */
+    public void sync() throws IOException {
+        long target = buffer.getAddedCount();
+        synchronized (syncLock) {
+            while (syncedCount < target && writerThread.isAlive()) {
+                syncRequested.set(true);
+                LockSupport.unpark(writerThread);
+                try {
+                    syncLock.wait(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+
+            IOException e = failure;
+            failure = null;
+            if (null != e) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return the sequence number of the last record forced to disk, or 0 if there is none.
+     * A snapshot of the graph taken after a sync reflects at least the records up to this one
+     */
+    public long getSyncedSequence() {
+        return syncedSequence;
+    }
+
+    /**
+     * Writes all buffered records, then closes and compresses the current file
+     */
+    @Override
+    public void shutDown() throws IOException {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+            compressor.shutdown();
+            compressor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+
+        synchronized (syncLock) {
+            if (null != failure) {
+                throw failure;
+            }
+        }
+    }
+
+    @Override
+    protected void log(final long timestamp, final ActivityType type, final Atom subject, final Atom object) {
+        if (!running) {
+            throw new IllegalStateException("activity log has been shut down");
+        }
+
+        // ids and state are read here, as atoms are not to be used outside of the transaction of the request
+        ActivityRecord.Properties properties = null;
+        List<String> children = null;
+        switch (type) {
+            case Create:
+            case ChangeValue:
+            case SetProperties:
+                properties = ActivityRecord.Properties.of(subject);
+                break;
+            case Children:
+                children = new ArrayList<>();
+                for (Atom child : subject.getChildren()) {
+                    children.add(child.getId());
+                }
+                break;
+            default:
+                break;
+        }
+
+        log(new ActivityRecord(0, timestamp, type, subject.getId(), null == object ? null : object.getId(),
+                properties, children, null));
+    }
+
+    @Override
+    protected void logRemoval(final long timestamp, final Filter filter) {
+        if (!running) {
+            throw new IllegalStateException("activity log has been shut down");
+        }
+
+        log(new ActivityRecord(0, timestamp, ActivityType.RemoveIsolatedAtoms, null, null,
+                null, null, new Filter(filter)));
+    }
+
+    private void log(final ActivityRecord record) {
+        Transaction t = transaction.get();
+        if (null != t && !t.prepared) {
+            t.records.add(record);
+        } else {
+            add(record);
+        }
+    }
+
+    private static ActivityRecord marker(final ActivityType type) {
+        return new ActivityRecord(0, System.currentTimeMillis(), type, null, null, null, null, null);
+    }
+
+    private void add(final ActivityRecord record) {
+        if (!buffer.offer(record)) {
+            LockSupport.unpark(writerThread);
+            buffer.put(record);
+        }
+    }
+
+    private void writeRecords() {
+        List<ActivityRecord> batch = new ArrayList<>(MAX_BLOCK_RECORDS);
+        long written = 0;
+
+        while (true) {
+            // read before draining, so that no record logged before a shutdown is left behind
+            boolean stopping = !running;
+            boolean syncNow = syncRequested.getAndSet(false) || stopping;
+
+            int drained = 0;
+            while (buffer.drainTo(batch, MAX_BLOCK_RECORDS) > 0) {
+                drained += batch.size();
+                try {
+                    writeBlock(batch);
+                } catch (IOException e) {
+                    fail(e);
+                }
+                written += batch.size();
+                batch.clear();
+            }
+
+            if (unsynced && (syncNow || System.nanoTime() - lastSync >= syncIntervalNanos)) {
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    fail(e);
+                }
+                lastSync = System.nanoTime();
+                unsynced = false;
+            }
+            if (!unsynced) {
+                synchronized (syncLock) {
+                    syncedCount = written;
+                    syncedSequence = nextSequence - 1;
+                    syncLock.notifyAll();
+                }
+            }
+
+            if (stopping) {
+                try {
+                    channel.close();
+                    compressInBackground(currentFile);
+                } catch (IOException e) {
+                    fail(e);
+                }
+                return;
+            }
+
+            if (0 == drained) {
+                LockSupport.parkNanos(this, unsynced
+                        ? Math.max(0, syncIntervalNanos - (System.nanoTime() - lastSync))
+                        : Math.max(syncIntervalNanos, TimeUnit.MILLISECONDS.toNanos(10)));
+            }
+        }
+    }
+
+    private void writeBlock(final List<ActivityRecord> records) throws IOException {
+        ByteBuffer block = ByteBuffer.wrap(ActivityLogFormat.encodeBlock(records));
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+        unsynced = true;
+        nextSequence += records.size();
+
+        if (channel.position() >= maxFileSize) {
+            rotate();
+        }
+    }
+
+    private void rotate() throws IOException {
+        channel.force(false);
+        channel.close();
+        lastSync = System.nanoTime();
+        unsynced = false;
+
+        compressInBackground(currentFile);
+        openFile();
+    }
+
+    private void openFile() throws IOException {
+        long openedAt = System.currentTimeMillis();
+        File file;
+        while ((file = new File(directory, ActivityLogFormat.activeFileName(openedAt))).exists()) {
+            openedAt++;
+        }
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        currentFile = file;
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        ActivityLogFormat.writeFileHeader(new DataOutputStream(header), nextSequence);
+        ByteBuffer bytes = ByteBuffer.wrap(header.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        lastSync = System.nanoTime();
+    }
+
+    private void compressInBackground(final File file) {
+        compressor.submit(() -> {
+            try {
+                ActivityLogFormat.compress(file);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "failed to compress activity log file " + file.getPath(), e);
+            }
+        });
+    }
+
+    private void fail(final IOException e) {
+        logger.log(Level.SEVERE, "failed to write activity log", e);
+        synchronized (syncLock) {
+            if (null == failure) {
+                failure = e;
+            }
+        }
+    }
+
+    private static class Transaction {
+        private final List<ActivityRecord> records = new ArrayList<>();
+        private boolean prepared;
+        private boolean changed;
+    }
+}
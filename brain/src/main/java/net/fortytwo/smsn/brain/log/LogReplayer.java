@@ -0,0 +1,250 @@
+package net.fortytwo.smsn.brain.log;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.util.ListDiff;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Applies the records of a binary activity log to an atom graph.
+ * As each record of a change carries the state which the change left behind, records may be applied
+ * to a graph which already reflects some of them, such as a graph read from a snapshot taken while the log
+ * was being written, and the graph will reach the same state as the graph from which the log was written.
+ * <p>
+ * The records of a transaction are applied once its commit marker has been read, and passed over if an abort
+ * marker follows them instead. As records are forced to disk before the graph commits, a transaction left
+ * undecided by a crash is presumed to have been committed, once it is clear that no marker will follow.
+ */
+public class LogReplayer {
+    private static final Logger logger = SemanticSynchrony.getLogger(LogReplayer.class);
+
+    // the number of records applied in each transaction when restoring a graph
+    private static final int BATCH_SIZE = 1000;
+
+    private static final ListDiff.StringComparator compareIds = new ListDiff.StringComparator();
+
+    private final AtomGraph graph;
+
+    private long sequence;
+
+    // the records of a transaction whose commit or abort marker has not yet been read
+    private List<ActivityRecord> pending;
+
+    /**
+     * @param graph    the graph to which records are applied
+     * @param sequence the sequence number of the last record which the graph already reflects
+     */
+    public LogReplayer(final AtomGraph graph, final long sequence) {
+        this.graph = graph;
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return the sequence number of the last record applied
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Restores a graph from a snapshot and the records of the log which follow it
+     *
+     * @param graph        an empty graph
+     * @param snapshot     a snapshot of the graph
+     * @param logDirectory the directory of the log from which the snapshot was taken
+     * @return a replayer positioned after the last record of the log,
+     * which may be used to keep the graph up to date with further records
+     */
+    public static LogReplayer restore(final AtomGraph graph,
+                                      final File snapshot,
+                                      final File logDirectory) throws IOException {
+        long before = System.currentTimeMillis();
+
+        long[] snapshotSequence = new long[1];
+        AtomGraph.wrapInTransaction(graph, () -> snapshotSequence[0] = AtomGraphSnapshot.read(snapshot, graph));
+
+        LogReplayer replayer = new LogReplayer(graph, snapshotSequence[0]);
+        int count = replayer.replay(new ActivityLogTailer(logDirectory, snapshotSequence[0]));
+        AtomGraph.wrapInTransaction(graph, replayer::presumeCommitted);
+
+        long after = System.currentTimeMillis();
+        logger.info("restored graph of " + graph.getAtomCount() + " atoms from snapshot at record "
+                + snapshotSequence[0] + " and " + count + " further records in " + (after - before) + " ms");
+        return replayer;
+    }
+
+    /**
+     * Applies the records newly read by a tailer, a batch at a time, each batch in its own transaction
+     *
+     * @return the number of records applied
+     */
+    public int replay(final ActivityLogTailer tailer) throws IOException {
+        List<ActivityRecord> batch = new ArrayList<>();
+        int[] count = new int[1];
+        tailer.poll(record -> {
+            batch.add(record);
+            if (batch.size() >= BATCH_SIZE) {
+                count[0] += applyBatch(batch);
+            }
+        });
+        count[0] += applyBatch(batch);
+        return count[0];
+    }
+
+    /**
+     * Applies the records of a transaction whose commit marker has not been read, as the transaction
+     * which wrote them is known to have ended, for instance when the log is complete because the brain
+     * which wrote it has stopped
+     */
+    public void presumeCommitted() {
+        if (null != pending) {
+            logger.warning("applying transaction without commit marker at record " + (sequence + 1));
+            List<ActivityRecord> records = pending;
+            pending = null;
+            records.forEach(this::applyRecord);
+        }
+    }
+
+    /**
+     * Applies a record to the graph, or holds it back until the transaction which wrote it has committed.
+     * Records which do not change the graph, and records which the graph is already known to reflect,
+     * are passed over
+     */
+    public void apply(final ActivityRecord record) {
+        if (record.getSequence() > 0 && record.getSequence() <= sequence) {
+            return;
+        }
+
+        switch (record.getType()) {
+            case Begin:
+                // transactions are logged one at a time, so that the one before must have ended
+                presumeCommitted();
+                // the sequence is not advanced until the transaction has ended,
+                // so that the transaction is read again in full if a batch fails
+                pending = new ArrayList<>();
+                break;
+            case Commit:
+                if (null != pending) {
+                    List<ActivityRecord> records = pending;
+                    pending = null;
+                    records.forEach(this::applyRecord);
+                }
+                advance(record);
+                break;
+            case Abort:
+                pending = null;
+                advance(record);
+                break;
+            default:
+                if (null != pending) {
+                    pending.add(record);
+                } else {
+                    applyRecord(record);
+                }
+        }
+    }
+
+    private void applyRecord(final ActivityRecord record) {
+        switch (record.getType()) {
+            case Create:
+            case ChangeValue:
+            case SetProperties:
+                setProperties(record);
+                break;
+            case Children:
+                setChildren(record);
+                break;
+            case RemoveIsolatedAtoms:
+                graph.removeIsolatedAtoms(record.getFilter());
+                break;
+            default:
+                // views, links and unlinks are followed by the records of the changes they involve
+                break;
+        }
+
+        advance(record);
+    }
+
+    private void advance(final ActivityRecord record) {
+        if (record.getSequence() > 0) {
+            sequence = record.getSequence();
+        }
+    }
+
+    private int applyBatch(final List<ActivityRecord> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        long before = sequence;
+        boolean success = false;
+        graph.begin();
+        try {
+            batch.forEach(this::apply);
+            success = true;
+        } finally {
+            if (success) {
+                graph.commit();
+            } else {
+                graph.rollback();
+                sequence = before;
+                pending = null;
+            }
+        }
+
+        int count = batch.size();
+        batch.clear();
+        return count;
+    }
+
+    private void setProperties(final ActivityRecord record) {
+        if (null == record.getProperties()) {
+            return;
+        }
+
+        Atom a = graph.getAtomById(record.getSubjectId());
+        if (null == a) {
+            a = graph.createAtom(record.getSubjectId());
+        }
+
+        if (record.getProperties().applyTo(a) && null != a.getValue()) {
+            graph.reindexAtom(a);
+        }
+    }
+
+    private void setChildren(final ActivityRecord record) {
+        Atom parent = graph.getAtomById(record.getSubjectId());
+        if (null == parent || null == record.getChildren()) {
+            logger.warning("can't replay change to children of missing atom " + record.getSubjectId());
+            return;
+        }
+
+        List<String> ids = new ArrayList<>(record.getChildren().size());
+        List<Atom> children = new ArrayList<>(record.getChildren().size());
+        for (String id : record.getChildren()) {
+            Atom child = graph.getAtomById(id);
+            if (null == child) {
+                logger.warning("can't replay link from " + record.getSubjectId() + " to missing atom " + id);
+            } else {
+                ids.add(id);
+                children.add(child);
+            }
+        }
+
+        List<String> currentIds = new ArrayList<>();
+        for (Atom child : parent.getChildren()) {
+            currentIds.add(child.getId());
+        }
+        if (currentIds.equals(ids)) {
+            return;
+        }
+
+        parent.setChildren(children, ListDiff.findSources(currentIds, ids, compareIds));
+    }
+}
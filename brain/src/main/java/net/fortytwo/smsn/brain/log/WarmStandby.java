@@ -0,0 +1,113 @@
+package net.fortytwo.smsn.brain.log;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import org.parboiled.common.Preconditions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps an atom graph up to date with a brain by following the brain's binary activity log,
+ * so that the graph may take the brain's place without first being restored
+ */
+public class WarmStandby {
+    private static final Logger logger = SemanticSynchrony.getLogger(WarmStandby.class);
+
+    private final LogReplayer replayer;
+    private final File logDirectory;
+    private final long pollInterval;
+
+    private ActivityLogTailer tailer;
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * @param replayer     a replayer for the standby graph, positioned after the last record the graph reflects
+     * @param logDirectory the directory of the log of the brain
+     * @param pollInterval the time, in milliseconds, to wait for new records once all records have been applied
+     */
+    public WarmStandby(final LogReplayer replayer, final File logDirectory, final long pollInterval) {
+        Preconditions.checkArgument(pollInterval > 0, "poll interval must be positive");
+
+        this.replayer = replayer;
+        this.logDirectory = logDirectory;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * @return the sequence number of the last record applied to the standby graph
+     */
+    public long getSequence() {
+        return replayer.getSequence();
+    }
+
+    public synchronized void start() {
+        if (null != thread) {
+            throw new IllegalStateException("already started");
+        }
+
+        running = true;
+        thread = new Thread(this::follow, "warm-standby");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops following the log once the records already read have been applied
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (null == thread) {
+            return;
+        }
+
+        running = false;
+        thread.interrupt();
+        thread.join();
+        thread = null;
+    }
+
+    /**
+     * Applies any new records of the log
+     *
+     * @return the number of records applied
+     */
+    public int poll() throws IOException {
+        if (null == tailer) {
+            tailer = new ActivityLogTailer(logDirectory, replayer.getSequence());
+        }
+
+        boolean success = false;
+        try {
+            int count = replayer.replay(tailer);
+            success = true;
+            return count;
+        } finally {
+            // records read but not applied are read again on the next poll
+            if (!success) {
+                tailer = null;
+            }
+        }
+    }
+
+    private void follow() {
+        while (running) {
+            int count = 0;
+            try {
+                count = poll();
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "failed to apply activity log to standby graph", e);
+            }
+
+            if (0 == count) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(pollInterval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package net.fortytwo.smsn.brain.model;
 
+import net.fortytwo.smsn.brain.util.ListDiff;
+
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.function.Consumer;
 
 public interface Atom {
@@ -39,11 +45,142 @@ public interface Atom {
 
     boolean setNotes(AtomList notes);
 
+    /**
+     * @return the children of this atom, in order, without copying them into a temporary collection
+     */
+    default Iterable<Atom> getChildren() {
+        return () -> new Iterator<Atom>() {
+            private AtomList cur = getNotes();
+
+            @Override
+            public boolean hasNext() {
+                return null != cur;
+            }
+
+            @Override
+            public Atom next() {
+                if (null == cur) {
+                    throw new NoSuchElementException();
+                }
+
+                Atom first = cur.getFirst();
+                cur = cur.getRest();
+                return first;
+            }
+        };
+    }
+
+    /**
+     * @return the number of children of this atom, counting each occurrence of a child.
+     * Graphs which maintain the count override this, so that it is found without visiting the children
+     */
+    default int getNumberOfChildren() {
+        int count = 0;
+        for (Atom ignored : getChildren()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of occurrences of this atom as a child.
+     * Graphs which maintain the count override this, so that it is found without visiting the parents
+     */
+    default int getNumberOfParents() {
+        int[] count = {0};
+        forEachParent(parent -> count[0]++);
+        return count[0];
+    }
+
     void forFirstOf(Consumer<AtomList> consumer);
 
+    /**
+     * Visits the parent of each occurrence of this atom as a child.
+     * By default, each parent is found by walking back from an occurrence to the head of its list;
+     * graphs which index parents directly override this.
+     */
+    default void forEachParent(Consumer<Atom> consumer) {
+        forFirstOf(list -> {
+            AtomList head = list;
+            AtomList prev;
+            while (null != (prev = head.getRestOf())) {
+                head = prev;
+            }
+
+            Atom parent = head.getNotesOf();
+            if (null != parent) {
+                consumer.accept(parent);
+            }
+        });
+    }
+
     void addChildAt(final Atom child, int position);
 
     void deleteChildAt(int position);
 
+    /**
+     * Moves a child from one position to another, as if it were deleted and then added at the new position.
+     * Graphs override this to relink the child in place.
+     */
+    default void moveChild(int from, int to) {
+        Atom child = null;
+        int i = 0;
+        for (Atom a : getChildren()) {
+            if (i++ == from) {
+                child = a;
+                break;
+            }
+        }
+        if (from < 0 || null == child) {
+            throw new IndexOutOfBoundsException("no child at position " + from);
+        }
+
+        deleteChildAt(from);
+        addChildAt(child, to);
+    }
+
+    /**
+     * Replaces the children of this atom according to an edit script, in a single pass over the list.
+     * By default, the script is applied as a series of deletions, moves and additions;
+     * graphs override this to rewrite the list at once.
+     *
+     * @param children the new children, in order
+     * @param sources  for each new child, the position of the current child which it keeps, or -1 if it is added.
+     *                 Current children which are not kept are deleted
+     */
+    default void setChildren(final List<Atom> children, final int[] sources) {
+        if (children.size() != sources.length) {
+            throw new IllegalArgumentException("edit script does not match list of children");
+        }
+        int count = getNumberOfChildren();
+        boolean[] kept = ListDiff.findKept(sources, count);
+
+        // the working list holds the position among the current children of each remaining child
+        List<Integer> work = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            work.add(i);
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            if (!kept[i]) {
+                deleteChildAt(i);
+                work.remove(i);
+            }
+        }
+
+        // each position is final once visited
+        for (int j = 0; j < sources.length; j++) {
+            if (-1 == sources[j]) {
+                addChildAt(children.get(j), j);
+                work.add(j, -1);
+            } else {
+                int from = work.indexOf(sources[j]);
+                if (from != j) {
+                    moveChild(from, j);
+                    work.add(j, work.remove(from));
+                }
+            }
+        }
+    }
+
     Collection<AtomList> getFirstOf();
 }
@@ -17,13 +17,47 @@ public interface AtomGraph {
 
     Iterable<Atom> getAllAtoms();
 
+    /**
+     * @return the number of atoms in this graph, which is maintained as atoms are added and removed
+     * rather than counted on demand
+     */
+    long getAtomCount();
+
     Atom getAtomById(String id);
 
-    List<Atom> getAtomsByAcronym(String acronym, Filter filter);
+    default List<Atom> getAtomsByAcronym(String acronym, Filter filter) {
+        return getAtomsByAcronym(acronym, filter, 0, Integer.MAX_VALUE);
+    }
 
-    List<Atom> getAtomsByShortcut(String shortcut, Filter filter);
+    default List<Atom> getAtomsByShortcut(String shortcut, Filter filter) {
+        return getAtomsByShortcut(shortcut, filter, 0, Integer.MAX_VALUE);
+    }
 
-    List<Atom> getAtomsByValueQuery(String value, Filter filter);
+    default List<Atom> getAtomsByValueQuery(String value, Filter filter) {
+        return getAtomsByValueQuery(value, filter, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param offset the number of top-ranked results to skip
+     * @param limit  the maximum number of results to return
+     * @return a page of matching atoms, by decreasing relevance.
+     * Only offset + limit results are ranked, so a small page of a broad query is cheap.
+     */
+    List<Atom> getAtomsByAcronym(String acronym, Filter filter, int offset, int limit);
+
+    List<Atom> getAtomsByShortcut(String shortcut, Filter filter, int offset, int limit);
+
+    List<Atom> getAtomsByValueQuery(String value, Filter filter, int offset, int limit);
+
+    /**
+     * Finds atoms for type-ahead lookup
+     *
+     * @param prefix a prefix of the acronym, shortcut, or value of an atom,
+     *               where a value may also be matched starting at any of its first few words
+     * @param limit  the maximum number of results to return
+     * @return the matching atoms of highest weight, by decreasing weight
+     */
+    List<Atom> getAtomsByPrefix(String prefix, Filter filter, int limit);
 
     String idOfAtom(Atom a);
 
@@ -53,6 +87,39 @@ public interface AtomGraph {
 
     AtomGraph createFilteredGraph(Filter filter);
 
+    /**
+     * Registers a listener to be notified of each change to an atom in this graph,
+     * whether the change is made through the atom itself or through one of its lists
+     */
+    void addChangeListener(ChangeListener listener);
+
+    void removeChangeListener(ChangeListener listener);
+
+    /**
+     * Releases anything, such as an implicitly opened transaction, which reads have acquired in the current thread.
+     * This is called by worker threads which read from the graph on behalf of a request in another thread.
+     */
+    default void releaseThread() {
+    }
+
+    interface ChangeListener {
+        /**
+         * @param atomId the id of an atom one or more of whose properties have changed
+         */
+        void propertiesChanged(String atomId);
+
+        /**
+         * @param atomId the id of an atom whose list of children has changed
+         */
+        void childrenChanged(String atomId);
+
+        /**
+         * Indicates that a transaction has been rolled back, undoing any changes made within it
+         */
+        default void rolledBack() {
+        }
+    }
+
     interface IORunnable {
         void run() throws IOException;
     }
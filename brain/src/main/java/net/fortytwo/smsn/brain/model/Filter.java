@@ -1,6 +1,7 @@
 package net.fortytwo.smsn.brain.model;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 public class Filter implements Serializable {
 
@@ -55,6 +56,15 @@ public class Filter implements Serializable {
         this.defaultWeight = defaultWeight;
     }
 
+    public Filter(final Filter copy) {
+        this.minSharability = copy.minSharability;
+        this.maxSharability = copy.maxSharability;
+        this.defaultSharability = copy.defaultSharability;
+        this.minWeight = copy.minWeight;
+        this.maxWeight = copy.maxWeight;
+        this.defaultWeight = copy.defaultWeight;
+    }
+
     public float getMinSharability() {
         return minSharability;
     }
@@ -108,12 +118,31 @@ public class Filter implements Serializable {
     }
 
     public boolean isVisible(final Atom atom) {
-        float sharability = atom.getSharability();
-        float weight = atom.getWeight();
+        return isVisible(atom.getSharability(), atom.getWeight());
+    }
 
+    public boolean isVisible(final float sharability, final float weight) {
         // Strictly greater than the minimum, less than or equal to the maximum.
         // Values range from 0 (exclusive) to 1 (inclusive).
         return sharability > minSharability && sharability <= maxSharability
                 && weight > minWeight && weight <= maxWeight;
     }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof Filter)) return false;
+
+        Filter otherFilter = (Filter) other;
+        return minSharability == otherFilter.minSharability
+                && maxSharability == otherFilter.maxSharability
+                && defaultSharability == otherFilter.defaultSharability
+                && minWeight == otherFilter.minWeight
+                && maxWeight == otherFilter.maxWeight
+                && defaultWeight == otherFilter.defaultWeight;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minSharability, maxSharability, defaultSharability, minWeight, maxWeight, defaultWeight);
+    }
 }
@@ -11,6 +11,8 @@ public class Note {
 
     private final List<Note> children;
     private boolean hasChildren;
+    // the total number of children of an atom, which may not all be present in a view
+    private Integer numberOfChildren;
     private String value;
     private String id;
     private Float weight;
@@ -36,8 +38,10 @@ public class Note {
         this.priority = copy.priority;
         this.created = copy.created;
         this.alias = copy.alias;
+        this.shortcut = copy.shortcut;
 
         this.hasChildren = copy.hasChildren;
+        this.numberOfChildren = copy.numberOfChildren;
         //this.type = copy.type;
         this.meta = copy.meta;
 
@@ -175,6 +179,14 @@ public class Note {
         hasChildren = b;
     }
 
+    public Integer getNumberOfChildren() {
+        return numberOfChildren;
+    }
+
+    public void setNumberOfChildren(final Integer numberOfChildren) {
+        this.numberOfChildren = numberOfChildren;
+    }
+
     // note: deliberately leaves hasChildren unaffected
     public void truncate(final int depth) {
         if (depth <= 1) {
@@ -0,0 +1,614 @@
+package net.fortytwo.smsn.brain.model.cached;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.model.AtomList;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.util.LruCache;
+import org.parboiled.common.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An atom graph which keeps the properties and children of recently used atoms of a base graph in memory,
+ * so that they may be read repeatedly, and across requests, without going back to the store.
+ * Entries are invalidated through the change listener of the base graph, so writes made directly to the base graph
+ * are seen as well as writes made through this graph.
+ * The cache is cleared when a transaction is rolled back.
+ * Atoms changed in a transaction are invalidated again when it commits, as a request which reads the graph
+ * concurrently with the transaction may have cached their committed values in the meantime.
+ */
+public class CachingAtomGraph implements AtomGraph {
+
+    /**
+     * The configurable maximum number of atoms to cache. Zero disables the cache.
+     */
+    public static final String PROP_ATOM_CACHE_SIZE = "net.fortytwo.smsn.brain.atomCacheSize";
+
+    public static final int DEFAULT_ATOM_CACHE_SIZE = 10000;
+
+    private static final int
+            ALIAS = 0,
+            CREATED = 1,
+            VALUE = 2,
+            PRIORITY = 3,
+            SHARABILITY = 4,
+            SHORTCUT = 5,
+            WEIGHT = 6,
+            NUMBER_OF_PROPERTIES = 7;
+
+    private static final CachingAtom[] NO_CHILDREN = new CachingAtom[0];
+
+    private final AtomGraph baseGraph;
+    private final LruCache<String, Entry> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // the ids of the atoms changed in the current transaction of each thread
+    private final ThreadLocal<Set<String>> changedAtoms = ThreadLocal.withInitial(HashSet::new);
+
+    public CachingAtomGraph(final AtomGraph baseGraph, final int capacity) {
+        Preconditions.checkArgNotNull(baseGraph, "baseGraph");
+
+        this.baseGraph = baseGraph;
+        this.cache = new LruCache<>(capacity);
+
+        baseGraph.addChangeListener(new ChangeListener() {
+            @Override
+            public void propertiesChanged(final String atomId) {
+                Entry entry = cache.peek(atomId);
+                if (null != entry) {
+                    entry.invalidateProperties();
+                }
+                changedAtoms.get().add(atomId);
+            }
+
+            @Override
+            public void childrenChanged(final String atomId) {
+                Entry entry = cache.peek(atomId);
+                if (null != entry) {
+                    entry.invalidateChildren();
+                }
+                changedAtoms.get().add(atomId);
+            }
+        });
+    }
+
+    public AtomGraph getBaseGraph() {
+        return baseGraph;
+    }
+
+    /**
+     * @return the number of reads of atoms and their properties and children which have been answered from memory
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of reads of atoms and their properties and children which have gone to the base graph
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of atoms currently in the cache
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Discards all cached atoms, e.g. after the base graph has been modified other than through its atoms
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public Iterable<Atom> getAllAtoms() {
+        return () -> {
+            Iterator<Atom> base = baseGraph.getAllAtoms().iterator();
+            return new Iterator<Atom>() {
+                @Override
+                public boolean hasNext() {
+                    return base.hasNext();
+                }
+
+                @Override
+                public Atom next() {
+                    return wrap(base.next());
+                }
+            };
+        };
+    }
+
+    @Override
+    public long getAtomCount() {
+        return baseGraph.getAtomCount();
+    }
+
+    @Override
+    public Atom getAtomById(final String id) {
+        Entry entry = cache.get(id);
+        if (null != entry) {
+            hits.incrementAndGet();
+            return entry.atom;
+        }
+
+        misses.incrementAndGet();
+        Atom base = baseGraph.getAtomById(id);
+        return null == base ? null : new CachingAtom(id, base);
+    }
+
+    @Override
+    public List<Atom> getAtomsByAcronym(final String acronym, final Filter filter,
+                                        int offset, final int limit) {
+        return wrap(baseGraph.getAtomsByAcronym(acronym, filter, offset, limit));
+    }
+
+    @Override
+    public List<Atom> getAtomsByShortcut(final String shortcut, final Filter filter,
+                                         int offset, final int limit) {
+        return wrap(baseGraph.getAtomsByShortcut(shortcut, filter, offset, limit));
+    }
+
+    @Override
+    public List<Atom> getAtomsByValueQuery(final String value, final Filter filter,
+                                           int offset, final int limit) {
+        return wrap(baseGraph.getAtomsByValueQuery(value, filter, offset, limit));
+    }
+
+    @Override
+    public List<Atom> getAtomsByPrefix(final String prefix, final Filter filter, final int limit) {
+        return wrap(baseGraph.getAtomsByPrefix(prefix, filter, limit));
+    }
+
+    @Override
+    public String idOfAtom(final Atom a) {
+        return a.getId();
+    }
+
+    @Override
+    public String iriOfAtom(final Atom a) {
+        return baseGraph.iriOfAtom(unwrap(a));
+    }
+
+    @Override
+    public Atom createAtom(final String id) {
+        return wrap(baseGraph.createAtom(id));
+    }
+
+    @Override
+    public Atom createAtomWithProperties(final Filter filter, final String id) {
+        return wrap(baseGraph.createAtomWithProperties(filter, id));
+    }
+
+    @Override
+    public AtomList createAtomList(final String id) {
+        return wrap(baseGraph.createAtomList(id));
+    }
+
+    @Override
+    public AtomList createAtomList(final Atom... elements) {
+        Atom[] baseElements = new Atom[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            baseElements[i] = unwrap(elements[i]);
+        }
+        return wrap(baseGraph.createAtomList(baseElements));
+    }
+
+    @Override
+    public void removeIsolatedAtoms(final Filter filter) {
+        baseGraph.removeIsolatedAtoms(filter);
+        cache.clear();
+    }
+
+    @Override
+    public void notifyOfUpdate() {
+        baseGraph.notifyOfUpdate();
+    }
+
+    @Override
+    public void reindexAtom(final Atom a) {
+        baseGraph.reindexAtom(unwrap(a));
+    }
+
+    @Override
+    public long getLastUpdate() {
+        return baseGraph.getLastUpdate();
+    }
+
+    @Override
+    public void begin() {
+        changedAtoms.get().clear();
+        baseGraph.begin();
+    }
+
+    @Override
+    public void commit() {
+        baseGraph.commit();
+
+        Set<String> changed = changedAtoms.get();
+        for (String id : changed) {
+            Entry entry = cache.peek(id);
+            if (null != entry) {
+                entry.invalidateProperties();
+                entry.invalidateChildren();
+            }
+        }
+        changed.clear();
+    }
+
+    @Override
+    public void rollback() {
+        // values read or invalidated within the transaction may no longer be valid
+        changedAtoms.get().clear();
+        cache.clear();
+        baseGraph.rollback();
+    }
+
+    @Override
+    public AtomGraph createFilteredGraph(final Filter filter) {
+        return baseGraph.createFilteredGraph(filter);
+    }
+
+    @Override
+    public void addChangeListener(final ChangeListener listener) {
+        baseGraph.addChangeListener(listener);
+    }
+
+    @Override
+    public void removeChangeListener(final ChangeListener listener) {
+        baseGraph.removeChangeListener(listener);
+    }
+
+    @Override
+    public void releaseThread() {
+        baseGraph.releaseThread();
+    }
+
+    private Atom wrap(final Atom base) {
+        return null == base ? null : new CachingAtom(base.getId(), base);
+    }
+
+    private List<Atom> wrap(final Collection<Atom> base) {
+        List<Atom> wrapped = new LinkedList<>();
+        for (Atom a : base) {
+            wrapped.add(wrap(a));
+        }
+        return wrapped;
+    }
+
+    private AtomList wrap(final AtomList base) {
+        return null == base ? null : new CachingAtomList(base);
+    }
+
+    private Atom unwrap(final Atom atom) {
+        return atom instanceof CachingAtom ? ((CachingAtom) atom).base : atom;
+    }
+
+    private AtomList unwrap(final AtomList list) {
+        return list instanceof CachingAtomList ? ((CachingAtomList) list).base : list;
+    }
+
+    private Entry getEntry(final CachingAtom atom) {
+        Entry entry = cache.get(atom.id);
+        if (null == entry) {
+            entry = new Entry(atom);
+            cache.put(atom.id, entry);
+        }
+        return entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getProperty(final CachingAtom atom, final int index, final Function<Atom, T> getter) {
+        Entry entry = getEntry(atom);
+        int version;
+        synchronized (entry) {
+            if (entry.isLoaded(index)) {
+                hits.incrementAndGet();
+                return (T) entry.properties[index];
+            }
+            version = entry.propertiesVersion;
+        }
+
+        misses.incrementAndGet();
+        T value = getter.apply(atom.base);
+        synchronized (entry) {
+            // don't cache a value which may have been changed while it was being read
+            if (version == entry.propertiesVersion) {
+                entry.properties[index] = value;
+                entry.loaded |= 1 << index;
+            }
+        }
+        return value;
+    }
+
+    private CachingAtom[] getChildren(final CachingAtom atom) {
+        Entry entry = getEntry(atom);
+        int version;
+        synchronized (entry) {
+            if (null != entry.children) {
+                hits.incrementAndGet();
+                return entry.children;
+            }
+            version = entry.childrenVersion;
+        }
+
+        misses.incrementAndGet();
+        List<CachingAtom> children = new LinkedList<>();
+        for (Atom child : atom.base.getChildren()) {
+            children.add(new CachingAtom(child.getId(), child));
+        }
+        CachingAtom[] array = children.isEmpty() ? NO_CHILDREN : children.toArray(new CachingAtom[children.size()]);
+        synchronized (entry) {
+            if (version == entry.childrenVersion) {
+                entry.children = array;
+            }
+        }
+        return array;
+    }
+
+    private static class Entry {
+        private final CachingAtom atom;
+        private final Object[] properties = new Object[NUMBER_OF_PROPERTIES];
+        private int loaded;
+        private int propertiesVersion;
+        private CachingAtom[] children;
+        private int childrenVersion;
+
+        private Entry(final CachingAtom atom) {
+            this.atom = atom;
+        }
+
+        private boolean isLoaded(final int index) {
+            return 0 != (loaded & (1 << index));
+        }
+
+        private synchronized void invalidateProperties() {
+            Arrays.fill(properties, null);
+            loaded = 0;
+            propertiesVersion++;
+        }
+
+        private synchronized void invalidateChildren() {
+            children = null;
+            childrenVersion++;
+        }
+    }
+
+    private class CachingAtom implements Atom {
+        private final String id;
+        private final Atom base;
+
+        private CachingAtom(final String id, final Atom base) {
+            this.id = id;
+            this.base = base;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getAlias() {
+            return getProperty(this, ALIAS, Atom::getAlias);
+        }
+
+        @Override
+        public boolean setAlias(String alias) {
+            return base.setAlias(alias);
+        }
+
+        @Override
+        public Long getCreated() {
+            return getProperty(this, CREATED, Atom::getCreated);
+        }
+
+        @Override
+        public boolean setCreated(Long created) {
+            return base.setCreated(created);
+        }
+
+        @Override
+        public String getValue() {
+            return getProperty(this, VALUE, Atom::getValue);
+        }
+
+        @Override
+        public boolean setValue(String value) {
+            return base.setValue(value);
+        }
+
+        @Override
+        public Float getPriority() {
+            return getProperty(this, PRIORITY, Atom::getPriority);
+        }
+
+        @Override
+        public boolean setPriority(Float priority) {
+            return base.setPriority(priority);
+        }
+
+        @Override
+        public Float getSharability() {
+            return getProperty(this, SHARABILITY, Atom::getSharability);
+        }
+
+        @Override
+        public boolean setSharability(Float sharability) {
+            return base.setSharability(sharability);
+        }
+
+        @Override
+        public String getShortcut() {
+            return getProperty(this, SHORTCUT, Atom::getShortcut);
+        }
+
+        @Override
+        public boolean setShortcut(String shortcut) {
+            return base.setShortcut(shortcut);
+        }
+
+        @Override
+        public Float getWeight() {
+            return getProperty(this, WEIGHT, Atom::getWeight);
+        }
+
+        @Override
+        public boolean setWeight(Float weight) {
+            return base.setWeight(weight);
+        }
+
+        @Override
+        public AtomList getNotes() {
+            // an atom known to have no children needs no list
+            Entry entry = cache.peek(id);
+            if (null != entry) {
+                synchronized (entry) {
+                    if (null != entry.children && 0 == entry.children.length) {
+                        hits.incrementAndGet();
+                        return null;
+                    }
+                }
+            }
+
+            return wrap(base.getNotes());
+        }
+
+        @Override
+        public boolean setNotes(AtomList notes) {
+            return base.setNotes(unwrap(notes));
+        }
+
+        @Override
+        public Iterable<Atom> getChildren() {
+            return Arrays.asList((Atom[]) CachingAtomGraph.this.getChildren(this));
+        }
+
+        @Override
+        public void forFirstOf(Consumer<AtomList> consumer) {
+            base.forFirstOf(list -> consumer.accept(wrap(list)));
+        }
+
+        @Override
+        public int getNumberOfChildren() {
+            return base.getNumberOfChildren();
+        }
+
+        @Override
+        public int getNumberOfParents() {
+            return base.getNumberOfParents();
+        }
+
+        @Override
+        public void forEachParent(Consumer<Atom> consumer) {
+            base.forEachParent(parent -> consumer.accept(wrap(parent)));
+        }
+
+        @Override
+        public void addChildAt(Atom child, int position) {
+            base.addChildAt(unwrap(child), position);
+        }
+
+        @Override
+        public void deleteChildAt(int position) {
+            base.deleteChildAt(position);
+        }
+
+        @Override
+        public void moveChild(int from, int to) {
+            base.moveChild(from, to);
+        }
+
+        @Override
+        public void setChildren(List<Atom> children, int[] sources) {
+            List<Atom> baseChildren = new ArrayList<>(children.size());
+            for (Atom child : children) {
+                baseChildren.add(unwrap(child));
+            }
+            base.setChildren(baseChildren, sources);
+        }
+
+        @Override
+        public Collection<AtomList> getFirstOf() {
+            List<AtomList> result = new LinkedList<>();
+            for (AtomList list : base.getFirstOf()) {
+                result.add(wrap(list));
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof CachingAtom && ((CachingAtom) other).id.equals(id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+    }
+
+    private class CachingAtomList implements AtomList {
+        private final AtomList base;
+
+        private CachingAtomList(final AtomList base) {
+            this.base = base;
+        }
+
+        @Override
+        public String getId() {
+            return base.getId();
+        }
+
+        @Override
+        public Atom getFirst() {
+            return wrap(base.getFirst());
+        }
+
+        @Override
+        public boolean setFirst(Atom first) {
+            return base.setFirst(unwrap(first));
+        }
+
+        @Override
+        public AtomList getRest() {
+            return wrap(base.getRest());
+        }
+
+        @Override
+        public boolean setRest(AtomList rest) {
+            return base.setRest(unwrap(rest));
+        }
+
+        @Override
+        public AtomList getRestOf() {
+            return wrap(base.getRestOf());
+        }
+
+        @Override
+        public Atom getNotesOf() {
+            return wrap(base.getNotesOf());
+        }
+
+        @Override
+        public List<Atom> toJavaList() {
+            return wrap(base.toJavaList());
+        }
+    }
+}
@@ -0,0 +1,1200 @@
+package net.fortytwo.smsn.brain.model.compact;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.error.InvalidUpdateException;
+import net.fortytwo.smsn.brain.index.AutocompleteIndex;
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.model.AtomList;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.util.Acronyms;
+import net.fortytwo.smsn.brain.util.ListDiff;
+import net.fortytwo.smsn.brain.util.TopK;
+import net.fortytwo.smsn.util.TypedProperties;
+import org.parboiled.common.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory atom graph which keeps atoms in parallel primitive arrays rather than as property graph vertices.
+ * Each atom is addressed by an integer handle, its properties occupy one slot in each column,
+ * and its children are stored as an array of handles, so that list nodes exist only as transient views.
+ * <p>
+ * Estimated footprint per atom on a 64-bit JVM with compressed references, not counting the characters of values,
+ * aliases and shortcuts (which cost the same in any implementation):
+ * <ul>
+ * <li>id table: 16 bytes (one packed long, and one hash slot at a load factor of at most 1/2)</li>
+ * <li>value, alias, shortcut and acronym references: 16 bytes, plus about 48 bytes for the acronym itself</li>
+ * <li>weight, sharability and priority: 12 bytes; creation time: 8 bytes</li>
+ * <li>child and parent arrays: 16 bytes for references and counts, about 24 bytes for a parent array with one
+ * entry, and 4 bytes for each child</li>
+ * </ul>
+ * which comes to roughly 140 bytes for a typical atom with one parent.
+ * By comparison, the same atom in a PGAtomGraph over TinkerGraph costs an atom vertex with six properties
+ * (about 900 bytes of vertex, property map, property and boxed value objects), plus a list node vertex with its own
+ * id property and its FIRST and REST edges, each of which is also entered in the edge maps of both of its endpoints
+ * (together about 900 bytes more), or roughly 1.8 kilobytes in all.
+ * These figures are estimated from object layouts rather than measured.
+ * <p>
+ * Value queries and acronym and shortcut lookups are answered by scanning the columns,
+ * and prefix lookups by an index which is updated as atoms are reindexed; there is no persistence,
+ * and transactions are not supported, as with TinkerGraph.
+ * <p>
+ * This graph is not synchronized. It may be read from multiple threads at once, but no thread may read it while
+ * another writes to it: a write may replace the columns as they grow, or shift a list of children in place,
+ * underneath a reader. Callers are to hold a read/write lock, such as the per-brain lock of the server's
+ * request scheduler, taking the write lock for any change. In particular, exports which run alongside writers
+ * rely on the isolation of graph transactions, which this graph does not provide.
+ */
+public class CompactAtomGraph implements AtomGraph {
+
+    private static final String REDACTED_VALUE = "";
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    // marks an empty list slot, e.g. a list node without a first element
+    private static final int NONE = -1;
+
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final int[] NO_HANDLES = new int[0];
+
+    private static final String thingNamespace;
+
+    static {
+        try {
+            thingNamespace = SemanticSynchrony.getConfiguration().getString(PROP_THING_NAMESPACE, DEFAULT_THING_NAMESPACE);
+        } catch (TypedProperties.PropertyException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final IdTable idTable;
+
+    private int capacity;
+    // all handles below the high water mark have been allocated at some point
+    private int highWater;
+    private int atomCount;
+    private int[] freeHandles = new int[16];
+    private int freeCount;
+
+    private String[] values;
+    private String[] aliases;
+    private String[] shortcuts;
+    private String[] acronyms;
+    // NaN indicates an absent value
+    private float[] weights;
+    private float[] sharabilities;
+    private float[] priorities;
+    private long[] created;
+
+    private int[][] children;
+    private int[] childCounts;
+    // parents are kept with multiplicity, i.e. once for each occurrence of the atom as a child
+    private int[][] parents;
+    private int[] parentCounts;
+
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+    // keyed by handle
+    private final AutocompleteIndex<Integer> autocompleteIndex = new AutocompleteIndex<>();
+
+    private long lastUpdate;
+
+    public CompactAtomGraph() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CompactAtomGraph(final int initialCapacity) {
+        Preconditions.checkArgument(initialCapacity > 0, "invalid initial capacity");
+
+        capacity = initialCapacity;
+        idTable = new IdTable(initialCapacity);
+
+        values = new String[capacity];
+        aliases = new String[capacity];
+        shortcuts = new String[capacity];
+        acronyms = new String[capacity];
+        weights = new float[capacity];
+        sharabilities = new float[capacity];
+        priorities = new float[capacity];
+        created = new long[capacity];
+        children = new int[capacity][];
+        childCounts = new int[capacity];
+        parents = new int[capacity][];
+        parentCounts = new int[capacity];
+    }
+
+    /**
+     * @return the number of atoms in this graph
+     */
+    public int size() {
+        return atomCount;
+    }
+
+    @Override
+    public Iterable<Atom> getAllAtoms() {
+        return () -> new Iterator<Atom>() {
+            private final int limit = highWater;
+            private int next = advance(0);
+
+            private int advance(int handle) {
+                while (handle < limit && !isLive(handle)) {
+                    handle++;
+                }
+                return handle;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < limit;
+            }
+
+            @Override
+            public Atom next() {
+                if (next >= limit) {
+                    throw new NoSuchElementException();
+                }
+                Atom atom = new CompactAtom(next);
+                next = advance(next + 1);
+                return atom;
+            }
+        };
+    }
+
+    @Override
+    public long getAtomCount() {
+        return atomCount;
+    }
+
+    @Override
+    public Atom getAtomById(final String id) {
+        int handle = idTable.getHandle(id);
+        return NONE == handle ? null : new CompactAtom(handle);
+    }
+
+    @Override
+    public List<Atom> getAtomsByAcronym(final String acronym, final Filter filter,
+                                        final int offset, final int limit) {
+        return search(acronyms, new ValueMatcher(acronym.toLowerCase()), filter, offset, limit);
+    }
+
+    @Override
+    public List<Atom> getAtomsByShortcut(final String shortcut, final Filter filter,
+                                         final int offset, final int limit) {
+        TopK<Integer> hits = new TopK<>(TopK.capacityFor(offset, limit));
+        for (int handle = 0; handle < highWater; handle++) {
+            if (shortcut.equals(shortcuts[handle]) && isLive(handle)) {
+                addHit(hits, handle, 1f, filter);
+            }
+        }
+
+        return toAtoms(hits.toList(offset));
+    }
+
+    @Override
+    public List<Atom> getAtomsByValueQuery(final String query, final Filter filter,
+                                           final int offset, final int limit) {
+        return search(values, new ValueMatcher(query), filter, offset, limit);
+    }
+
+    @Override
+    public List<Atom> getAtomsByPrefix(final String prefix, final Filter filter, final int limit) {
+        List<Atom> atoms = toAtoms(autocompleteIndex.getTopByPrefix(prefix, filter, limit));
+        // the index filters by the sharability and weight of an atom as of its last reindexing
+        if (null != filter) {
+            atoms.removeIf(a -> !filter.isVisible(a));
+        }
+        return atoms;
+    }
+
+    @Override
+    public String idOfAtom(final Atom a) {
+        return a.getId();
+    }
+
+    @Override
+    public String iriOfAtom(final Atom a) {
+        return thingNamespace + idOfAtom(a);
+    }
+
+    @Override
+    public Atom createAtom(final String id) {
+        String nonNullId = null == id ? SemanticSynchrony.createRandomId() : id;
+        if (NONE != idTable.getHandle(nonNullId)) {
+            throw new InvalidUpdateException("atom with id " + nonNullId + " already exists");
+        }
+
+        int handle = allocateHandle();
+        idTable.put(nonNullId, handle);
+        atomCount++;
+
+        return new CompactAtom(handle);
+    }
+
+    @Override
+    public Atom createAtomWithProperties(final Filter filter, final String id) {
+        Atom atom = createAtom(id);
+
+        atom.setCreated(new Date().getTime());
+        atom.setSharability(filter.getDefaultSharability());
+        atom.setWeight(filter.getDefaultWeight());
+
+        return atom;
+    }
+
+    @Override
+    public AtomList createAtomList(final String id) {
+        DetachedList list = new DetachedList(id, 1);
+        list.elements[0] = NONE;
+        list.count = 1;
+        return new CompactAtomList(list, 0);
+    }
+
+    @Override
+    public AtomList createAtomList(final Atom... elements) {
+        if (0 == elements.length) {
+            throw new IllegalArgumentException("empty list");
+        }
+
+        DetachedList list = new DetachedList(null, elements.length);
+        for (Atom a : elements) {
+            list.elements[list.count++] = handleOf(a);
+        }
+        return new CompactAtomList(list, 0);
+    }
+
+    @Override
+    public void removeIsolatedAtoms(final Filter filter) {
+        Preconditions.checkArgNotNull(filter, "filter");
+
+        for (int handle = 0; handle < highWater; handle++) {
+            if (isLive(handle)
+                    && 0 == childCounts[handle]
+                    && 0 == parentCounts[handle]
+                    && filter.isVisible(new CompactAtom(handle))) {
+                removeAtom(handle);
+            }
+        }
+
+        notifyOfUpdate();
+    }
+
+    @Override
+    public void addChangeListener(final ChangeListener listener) {
+        Preconditions.checkArgNotNull(listener, "listener");
+
+        changeListeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(final ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    @Override
+    public void notifyOfUpdate() {
+        this.lastUpdate = System.currentTimeMillis();
+    }
+
+    @Override
+    public void reindexAtom(final Atom a) {
+        int handle = handleOf(a);
+        String value = values[handle];
+        acronyms[handle] = null == value ? null : Acronyms.fromValue(value);
+
+        float weight = weights[handle], sharability = sharabilities[handle];
+        autocompleteIndex.put(handle, value, shortcuts[handle],
+                Float.isNaN(sharability) ? 0f : sharability, Float.isNaN(weight) ? 0f : weight);
+    }
+
+    @Override
+    public long getLastUpdate() {
+        return lastUpdate;
+    }
+
+    @Override
+    public void begin() {
+        // do nothing
+    }
+
+    @Override
+    public void commit() {
+        // do nothing
+    }
+
+    @Override
+    public void rollback() {
+        // do nothing
+    }
+
+    @Override
+    public AtomGraph createFilteredGraph(final Filter filter) {
+        return copyGraph(filter);
+    }
+
+    public CompactAtomGraph copyGraph(final Filter filter) {
+        CompactAtomGraph newGraph = new CompactAtomGraph(Math.max(atomCount, DEFAULT_CAPACITY));
+
+        for (int handle = 0; handle < highWater; handle++) {
+            if (isLive(handle) && filter.isVisible(new CompactAtom(handle))) {
+                int newHandle = findOrCopyAtom(handle, filter, newGraph);
+                for (int i = 0; i < childCounts[handle]; i++) {
+                    int child = children[handle][i];
+                    newGraph.insertChild(newHandle,
+                            NONE == child ? NONE : findOrCopyAtom(child, filter, newGraph),
+                            newGraph.childCounts[newHandle]);
+                }
+            }
+        }
+
+        return newGraph;
+    }
+
+    private int findOrCopyAtom(final int handle, final Filter filter, final CompactAtomGraph newGraph) {
+        String id = idTable.getId(handle);
+        int newHandle = newGraph.idTable.getHandle(id);
+        if (NONE != newHandle) return newHandle;
+
+        Atom original = new CompactAtom(handle);
+        Atom newAtom = newGraph.createAtomWithProperties(filter, id);
+        newAtom.setSharability(original.getSharability());
+
+        if (filter.isVisible(original)) {
+            newAtom.setValue(original.getValue());
+            newAtom.setWeight(original.getWeight());
+            newAtom.setShortcut(original.getShortcut());
+            newAtom.setPriority(original.getPriority());
+            newAtom.setAlias(original.getAlias());
+            newAtom.setCreated(original.getCreated());
+        } else {
+            newAtom.setValue(REDACTED_VALUE);
+        }
+        newGraph.reindexAtom(newAtom);
+
+        return ((CompactAtom) newAtom).handle;
+    }
+
+    private boolean isLive(final int handle) {
+        return null != idTable.getId(handle);
+    }
+
+    private int handleOf(final Atom atom) {
+        if (null == atom) {
+            return NONE;
+        }
+
+        if (atom instanceof CompactAtom && ((CompactAtom) atom).getGraph() == this) {
+            return ((CompactAtom) atom).handle;
+        }
+
+        int handle = idTable.getHandle(atom.getId());
+        if (NONE == handle) {
+            throw new IllegalArgumentException("no such atom in this graph: " + atom.getId());
+        }
+        return handle;
+    }
+
+    private int allocateHandle() {
+        int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            if (highWater == capacity) {
+                grow(capacity * 2);
+            }
+            handle = highWater++;
+        }
+
+        values[handle] = null;
+        aliases[handle] = null;
+        shortcuts[handle] = null;
+        acronyms[handle] = null;
+        weights[handle] = Float.NaN;
+        sharabilities[handle] = Float.NaN;
+        priorities[handle] = Float.NaN;
+        created[handle] = NO_TIMESTAMP;
+        children[handle] = NO_HANDLES;
+        childCounts[handle] = 0;
+        parents[handle] = NO_HANDLES;
+        parentCounts[handle] = 0;
+
+        return handle;
+    }
+
+    private void removeAtom(final int handle) {
+        idTable.remove(handle);
+        autocompleteIndex.remove(handle);
+        values[handle] = null;
+        aliases[handle] = null;
+        shortcuts[handle] = null;
+        acronyms[handle] = null;
+        children[handle] = NO_HANDLES;
+        parents[handle] = NO_HANDLES;
+
+        if (freeCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+        }
+        freeHandles[freeCount++] = handle;
+        atomCount--;
+    }
+
+    private void grow(final int newCapacity) {
+        values = Arrays.copyOf(values, newCapacity);
+        aliases = Arrays.copyOf(aliases, newCapacity);
+        shortcuts = Arrays.copyOf(shortcuts, newCapacity);
+        acronyms = Arrays.copyOf(acronyms, newCapacity);
+        weights = Arrays.copyOf(weights, newCapacity);
+        sharabilities = Arrays.copyOf(sharabilities, newCapacity);
+        priorities = Arrays.copyOf(priorities, newCapacity);
+        created = Arrays.copyOf(created, newCapacity);
+        children = Arrays.copyOf(children, newCapacity);
+        childCounts = Arrays.copyOf(childCounts, newCapacity);
+        parents = Arrays.copyOf(parents, newCapacity);
+        parentCounts = Arrays.copyOf(parentCounts, newCapacity);
+        capacity = newCapacity;
+    }
+
+    private static int[] ensureLength(final int[] array, final int length) {
+        return array.length >= length ? array : Arrays.copyOf(array, Math.max(length, array.length + (array.length >> 1) + 2));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // children and the parent index
+
+    private void insertChild(final int parent, final int child, final int position) {
+        int count = childCounts[parent];
+        if (position < 0 || position > count) {
+            throw new IndexOutOfBoundsException("position " + position + " in list of " + count + " children");
+        }
+
+        int[] array = ensureLength(children[parent], count + 1);
+        System.arraycopy(array, position, array, position + 1, count - position);
+        array[position] = child;
+        children[parent] = array;
+        childCounts[parent] = count + 1;
+
+        addParent(child, parent);
+        notifyOfChildrenChanged(parent);
+    }
+
+    private void removeChild(final int parent, final int position) {
+        int count = childCounts[parent];
+        if (position < 0 || position >= count) {
+            throw new IndexOutOfBoundsException("position " + position + " in list of " + count + " children");
+        }
+
+        int[] array = children[parent];
+        int child = array[position];
+        System.arraycopy(array, position + 1, array, position, count - position - 1);
+        childCounts[parent] = count - 1;
+
+        removeParent(child, parent);
+        notifyOfChildrenChanged(parent);
+    }
+
+    // the parents of the child are unaffected, as it remains a child of the same atom
+    private void moveChild(final int parent, final int from, final int to) {
+        int count = childCounts[parent];
+        if (from < 0 || from >= count || to < 0 || to >= count) {
+            throw new IndexOutOfBoundsException("move from " + from + " to " + to + " in list of " + count + " children");
+        }
+        if (from == to) return;
+
+        int[] array = children[parent];
+        int child = array[from];
+        if (from < to) {
+            System.arraycopy(array, from + 1, array, from, to - from);
+        } else {
+            System.arraycopy(array, to, array, to + 1, from - to);
+        }
+        array[to] = child;
+
+        notifyOfChildrenChanged(parent);
+    }
+
+    // rewrites the array of children at once; only the parents of added and deleted children change
+    private void setChildren(final int parent, final int[] elements, final int[] sources) {
+        if (elements.length != sources.length) {
+            throw new IllegalArgumentException("edit script does not match list of children");
+        }
+        int count = childCounts[parent];
+        int[] array = children[parent];
+        boolean[] kept = ListDiff.findKept(sources, count);
+        for (int j = 0; j < sources.length; j++) {
+            if (NONE != sources[j] && array[sources[j]] != elements[j]) {
+                throw new IllegalArgumentException("child at position " + sources[j] + " is not kept at position " + j);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (!kept[i]) {
+                removeParent(array[i], parent);
+            }
+        }
+        for (int j = 0; j < sources.length; j++) {
+            if (NONE == sources[j]) {
+                addParent(elements[j], parent);
+            }
+        }
+        children[parent] = 0 == elements.length ? NO_HANDLES : elements;
+        childCounts[parent] = elements.length;
+
+        notifyOfChildrenChanged(parent);
+    }
+
+    private void truncateChildren(final int parent, final int newCount) {
+        int[] array = children[parent];
+        for (int i = newCount; i < childCounts[parent]; i++) {
+            removeParent(array[i], parent);
+        }
+        childCounts[parent] = Math.min(newCount, childCounts[parent]);
+        if (0 == childCounts[parent]) {
+            children[parent] = NO_HANDLES;
+        }
+        notifyOfChildrenChanged(parent);
+    }
+
+    private void appendChildren(final int parent, final int[] elements, final int count) {
+        int oldCount = childCounts[parent];
+        int[] array = ensureLength(children[parent], oldCount + count);
+        System.arraycopy(elements, 0, array, oldCount, count);
+        children[parent] = array;
+        childCounts[parent] = oldCount + count;
+
+        for (int i = 0; i < count; i++) {
+            addParent(elements[i], parent);
+        }
+        notifyOfChildrenChanged(parent);
+    }
+
+    private void notifyOfChildrenChanged(final int parent) {
+        if (!changeListeners.isEmpty()) {
+            String id = idTable.getId(parent);
+            for (ChangeListener listener : changeListeners) {
+                listener.childrenChanged(id);
+            }
+        }
+    }
+
+    private void notifyOfPropertiesChanged(final int handle) {
+        if (!changeListeners.isEmpty()) {
+            String id = idTable.getId(handle);
+            for (ChangeListener listener : changeListeners) {
+                listener.propertiesChanged(id);
+            }
+        }
+    }
+
+    private void addParent(final int child, final int parent) {
+        if (NONE == child) return;
+
+        int count = parentCounts[child];
+        int[] array = ensureLength(parents[child], count + 1);
+        array[count] = parent;
+        parents[child] = array;
+        parentCounts[child] = count + 1;
+    }
+
+    private void removeParent(final int child, final int parent) {
+        if (NONE == child) return;
+
+        int count = parentCounts[child];
+        int[] array = parents[child];
+        for (int i = 0; i < count; i++) {
+            if (array[i] == parent) {
+                array[i] = array[count - 1];
+                parentCounts[child] = count - 1;
+                return;
+            }
+        }
+    }
+
+    private void forEachOccurrence(final int child, final Consumer<AtomList> consumer) {
+        int count = parentCounts[child];
+        int[] array = parents[child];
+        for (int i = 0; i < count; i++) {
+            int parent = array[i];
+
+            // visit each parent only once, however many times the child occurs in its list
+            boolean seen = false;
+            for (int j = 0; j < i; j++) {
+                if (array[j] == parent) {
+                    seen = true;
+                    break;
+                }
+            }
+            if (seen) continue;
+
+            int[] siblings = children[parent];
+            for (int k = 0; k < childCounts[parent]; k++) {
+                if (siblings[k] == child) {
+                    consumer.accept(new CompactAtomList(parent, k));
+                }
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // search
+
+    private List<Atom> search(final String[] column, final ValueMatcher matcher, final Filter filter,
+                              final int offset, final int limit) {
+        TopK<Integer> hits = new TopK<>(TopK.capacityFor(offset, limit));
+        for (int handle = 0; handle < highWater; handle++) {
+            String text = column[handle];
+            if (null != text && isLive(handle)) {
+                float score = matcher.score(text);
+                if (score > 0) {
+                    addHit(hits, handle, score, filter);
+                }
+            }
+        }
+
+        return toAtoms(hits.toList(offset));
+    }
+
+    private void addHit(final TopK<Integer> hits, final int handle, final float nativeScore, final Filter filter) {
+        if (!filter.isVisible(new CompactAtom(handle))) return;
+
+        float weight = weights[handle];
+        String value = values[handle];
+        float lengthPenalty = null == value || 0 == value.length() ? 1.0f : Math.min(1.0f, 15.0f / value.length());
+        hits.add(handle, nativeScore * (Float.isNaN(weight) ? 0f : weight) * lengthPenalty);
+    }
+
+    private List<Atom> toAtoms(final List<Integer> handles) {
+        List<Atom> result = new ArrayList<>(handles.size());
+        for (int handle : handles) {
+            result.add(new CompactAtom(handle));
+        }
+        return result;
+    }
+
+    /**
+     * A simple approximation of a full-text query: the query is split into terms and quoted phrases,
+     * terms may contain * and ? wildcards, and a text scores by the fraction of those clauses it matches
+     */
+    private static class ValueMatcher {
+        private final List<String> phrases = new LinkedList<>();
+        private final List<String> terms = new LinkedList<>();
+        private final List<Pattern> patterns = new LinkedList<>();
+        private final int clauseCount;
+
+        private ValueMatcher(final String query) {
+            String rest = query.toLowerCase();
+            int quote;
+            while ((quote = rest.indexOf('"')) >= 0) {
+                int end = rest.indexOf('"', quote + 1);
+                if (end < 0) break;
+                String phrase = String.join(" ", tokenize(rest.substring(quote + 1, end)));
+                if (phrase.length() > 0) {
+                    phrases.add(" " + phrase + " ");
+                }
+                rest = rest.substring(0, quote) + " " + rest.substring(end + 1);
+            }
+
+            for (String term : rest.split("\\s+")) {
+                if (term.contains("*") || term.contains("?")) {
+                    patterns.add(Pattern.compile(term.replaceAll("[^a-z0-9*?]", "")
+                            .replace("?", "[a-z0-9]").replace("*", "[a-z0-9]*")));
+                } else {
+                    terms.addAll(tokenize(term));
+                }
+            }
+
+            clauseCount = phrases.size() + terms.size() + patterns.size();
+        }
+
+        private float score(final String text) {
+            if (0 == clauseCount) return 0;
+
+            List<String> tokens = tokenize(text.toLowerCase());
+            int matched = 0;
+            for (String term : terms) {
+                if (tokens.contains(term)) matched++;
+            }
+            for (Pattern pattern : patterns) {
+                for (String token : tokens) {
+                    if (pattern.matcher(token).matches()) {
+                        matched++;
+                        break;
+                    }
+                }
+            }
+            if (phrases.size() > 0) {
+                String normalized = " " + String.join(" ", tokens) + " ";
+                for (String phrase : phrases) {
+                    if (normalized.contains(phrase)) matched++;
+                }
+            }
+
+            return matched / (float) clauseCount;
+        }
+
+        private static List<String> tokenize(final String text) {
+            List<String> tokens = new ArrayList<>();
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                boolean inToken = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+                if (inToken && start < 0) {
+                    start = i;
+                } else if (!inToken && start >= 0) {
+                    tokens.add(text.substring(start, i));
+                    start = -1;
+                }
+            }
+            return tokens;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // atoms and lists
+
+    private class CompactAtom implements Atom {
+        private final int handle;
+
+        private CompactAtom(final int handle) {
+            this.handle = handle;
+        }
+
+        private CompactAtomGraph getGraph() {
+            return CompactAtomGraph.this;
+        }
+
+        @Override
+        public String getId() {
+            return idTable.getId(handle);
+        }
+
+        @Override
+        public String getAlias() {
+            return aliases[handle];
+        }
+
+        @Override
+        public boolean setAlias(String alias) {
+            return setString(aliases, alias, false, SemanticSynchrony.ALIAS);
+        }
+
+        @Override
+        public Long getCreated() {
+            long value = created[handle];
+            return NO_TIMESTAMP == value ? null : value;
+        }
+
+        @Override
+        public boolean setCreated(Long created) {
+            requireNonNull(created, SemanticSynchrony.CREATED);
+            if (CompactAtomGraph.this.created[handle] == created) return false;
+            CompactAtomGraph.this.created[handle] = created;
+            notifyOfPropertiesChanged(handle);
+            return true;
+        }
+
+        @Override
+        public String getValue() {
+            return values[handle];
+        }
+
+        @Override
+        public boolean setValue(String value) {
+            return setString(values, value, true, SemanticSynchrony.VALUE);
+        }
+
+        @Override
+        public Float getPriority() {
+            float value = priorities[handle];
+            return Float.isNaN(value) ? null : value;
+        }
+
+        @Override
+        public boolean setPriority(Float priority) {
+            return setFloat(priorities, priority, false, SemanticSynchrony.PRIORITY);
+        }
+
+        @Override
+        public Float getSharability() {
+            float value = sharabilities[handle];
+            return Float.isNaN(value) ? 0f : value;
+        }
+
+        @Override
+        public boolean setSharability(Float sharability) {
+            return setFloat(sharabilities, sharability, true, SemanticSynchrony.SHARABILITY);
+        }
+
+        @Override
+        public String getShortcut() {
+            return shortcuts[handle];
+        }
+
+        @Override
+        public boolean setShortcut(String shortcut) {
+            return setString(shortcuts, shortcut, false, SemanticSynchrony.SHORTCUT);
+        }
+
+        @Override
+        public Float getWeight() {
+            float value = weights[handle];
+            return Float.isNaN(value) ? 0f : value;
+        }
+
+        @Override
+        public boolean setWeight(Float weight) {
+            return setFloat(weights, weight, true, SemanticSynchrony.WEIGHT);
+        }
+
+        @Override
+        public AtomList getNotes() {
+            return 0 == childCounts[handle] ? null : new CompactAtomList(handle, 0);
+        }
+
+        @Override
+        public Iterable<Atom> getChildren() {
+            int[] handles = Arrays.copyOf(children[handle], childCounts[handle]);
+            return () -> new Iterator<Atom>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < handles.length;
+                }
+
+                @Override
+                public Atom next() {
+                    if (next >= handles.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return new CompactAtom(handles[next++]);
+                }
+            };
+        }
+
+        @Override
+        public boolean setNotes(AtomList notes) {
+            if (null == notes) {
+                boolean changed = childCounts[handle] > 0;
+                truncateChildren(handle, 0);
+                return changed;
+            }
+
+            CompactAtomList list = (CompactAtomList) notes;
+            if (!list.resolve()) {
+                return setNotes(null);
+            }
+            if (list.owner == handle && 0 == list.index) {
+                return false;
+            }
+
+            int[] elements = list.copyElements();
+            truncateChildren(handle, 0);
+            appendChildren(handle, elements, elements.length);
+
+            // later changes through views of the detached list now apply to this atom's children
+            if (null != list.detached && 0 == list.index) {
+                list.detached.attachTo(handle, 0);
+            }
+
+            return true;
+        }
+
+        @Override
+        public void forFirstOf(Consumer<AtomList> consumer) {
+            forEachOccurrence(handle, consumer);
+        }
+
+        @Override
+        public int getNumberOfChildren() {
+            return childCounts[handle];
+        }
+
+        @Override
+        public int getNumberOfParents() {
+            return parentCounts[handle];
+        }
+
+        @Override
+        public void forEachParent(Consumer<Atom> consumer) {
+            int count = parentCounts[handle];
+            int[] array = parents[handle];
+            for (int i = 0; i < count; i++) {
+                consumer.accept(new CompactAtom(array[i]));
+            }
+        }
+
+        @Override
+        public void addChildAt(final Atom child, int position) {
+            insertChild(handle, handleOf(child), position);
+        }
+
+        @Override
+        public void deleteChildAt(int position) {
+            removeChild(handle, position);
+        }
+
+        @Override
+        public void moveChild(int from, int to) {
+            CompactAtomGraph.this.moveChild(handle, from, to);
+        }
+
+        @Override
+        public void setChildren(final List<Atom> children, final int[] sources) {
+            int[] elements = new int[children.size()];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = handleOf(children.get(i));
+            }
+            CompactAtomGraph.this.setChildren(handle, elements, sources);
+        }
+
+        @Override
+        public Collection<AtomList> getFirstOf() {
+            List<AtomList> result = new LinkedList<>();
+            forEachOccurrence(handle, result::add);
+            return result;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof CompactAtom
+                    && ((CompactAtom) other).handle == handle
+                    && ((CompactAtom) other).getGraph() == getGraph();
+        }
+
+        @Override
+        public int hashCode() {
+            return handle;
+        }
+
+        private boolean setString(final String[] column, final String value, final boolean required, final String name) {
+            if (required) requireNonNull(value, name);
+
+            String previous = column[handle];
+            if (null == value ? null == previous : value.equals(previous)) {
+                return false;
+            }
+            column[handle] = value;
+            notifyOfPropertiesChanged(handle);
+            return true;
+        }
+
+        private boolean setFloat(final float[] column, final Float value, final boolean required, final String name) {
+            if (required) requireNonNull(value, name);
+
+            float previous = column[handle];
+            float newValue = null == value ? Float.NaN : value;
+            if (Float.isNaN(previous) ? Float.isNaN(newValue) : previous == newValue) {
+                return false;
+            }
+            column[handle] = newValue;
+            notifyOfPropertiesChanged(handle);
+            return true;
+        }
+
+        private void requireNonNull(final Object value, final String name) {
+            if (null == value) {
+                throw new InvalidUpdateException("can't clear required property '" + name
+                        + "' on atom " + getId());
+            }
+        }
+    }
+
+    /**
+     * A list which has not (yet) been attached to an atom as its children.
+     * Once attached, its elements are handed over to the atom, and views of the list are forwarded accordingly.
+     */
+    private static class DetachedList {
+        private final String id;
+        private int[] elements;
+        private int count;
+
+        private DetachedList forwardList;
+        private int forwardOwner = NONE;
+        private int forwardOffset;
+
+        private DetachedList(final String id, final int capacity) {
+            this.id = id;
+            this.elements = new int[capacity];
+        }
+
+        private boolean isForwarded() {
+            return null != forwardList || NONE != forwardOwner;
+        }
+
+        private void attachTo(final int owner, final int offset) {
+            forwardOwner = owner;
+            forwardOffset = offset;
+            elements = null;
+            count = 0;
+        }
+
+        private void attachTo(final DetachedList list, final int offset) {
+            forwardList = list;
+            forwardOffset = offset;
+            elements = null;
+            count = 0;
+        }
+    }
+
+    /**
+     * A view of the tail of an atom's children, or of a detached list, starting at a given index
+     */
+    private class CompactAtomList implements AtomList {
+        private int owner;
+        private DetachedList detached;
+        private int index;
+
+        private CompactAtomList(final int owner, final int index) {
+            this.owner = owner;
+            this.index = index;
+        }
+
+        private CompactAtomList(final DetachedList detached, final int index) {
+            this.owner = NONE;
+            this.detached = detached;
+            this.index = index;
+        }
+
+        /**
+         * Follows any forwarding of a detached list
+         *
+         * @return whether this view still points to an element
+         */
+        private boolean resolve() {
+            while (null != detached && detached.isForwarded()) {
+                index += detached.forwardOffset;
+                if (null != detached.forwardList) {
+                    detached = detached.forwardList;
+                } else {
+                    owner = detached.forwardOwner;
+                    detached = null;
+                }
+            }
+
+            return index < count() && (null != detached || isLive(owner));
+        }
+
+        private int count() {
+            return null == detached ? childCounts[owner] : detached.count;
+        }
+
+        private int[] elements() {
+            return null == detached ? children[owner] : detached.elements;
+        }
+
+        private int[] copyElements() {
+            return Arrays.copyOfRange(elements(), index, count());
+        }
+
+        @Override
+        public String getId() {
+            resolve();
+            return null == detached
+                    ? idTable.getId(owner) + ":" + index
+                    : null == detached.id || index > 0 ? "list:" + System.identityHashCode(detached) + ":" + index
+                    : detached.id;
+        }
+
+        @Override
+        public Atom getFirst() {
+            if (!resolve()) return null;
+            int first = elements()[index];
+            return NONE == first ? null : new CompactAtom(first);
+        }
+
+        @Override
+        public boolean setFirst(final Atom first) {
+            if (!resolve()) return false;
+
+            int newFirst = handleOf(first);
+            int[] elements = elements();
+            int oldFirst = elements[index];
+            if (oldFirst == newFirst) {
+                return false;
+            }
+
+            elements[index] = newFirst;
+            if (null == detached) {
+                removeParent(oldFirst, owner);
+                addParent(newFirst, owner);
+                notifyOfChildrenChanged(owner);
+            }
+            return true;
+        }
+
+        @Override
+        public AtomList getRest() {
+            if (!resolve() || index + 1 >= count()) return null;
+
+            return null == detached
+                    ? new CompactAtomList(owner, index + 1)
+                    : new CompactAtomList(detached, index + 1);
+        }
+
+        @Override
+        public boolean setRest(final AtomList rest) {
+            if (!resolve()) return false;
+
+            // take a snapshot of the new tail before truncating, as it may be a tail of this very list
+            CompactAtomList restList = (CompactAtomList) rest;
+            int[] tail = null != restList && restList.resolve() ? restList.copyElements() : NO_HANDLES;
+            boolean changed = count() != index + 1 || tail.length > 0;
+
+            if (null == detached) {
+                truncateChildren(owner, index + 1);
+                appendChildren(owner, tail, tail.length);
+            } else {
+                detached.elements = ensureLength(detached.elements, index + 1 + tail.length);
+                System.arraycopy(tail, 0, detached.elements, index + 1, tail.length);
+                detached.count = index + 1 + tail.length;
+            }
+
+            if (null != restList && null != restList.detached && 0 == restList.index
+                    && restList.detached != detached) {
+                if (null == detached) {
+                    restList.detached.attachTo(owner, index + 1);
+                } else {
+                    restList.detached.attachTo(detached, index + 1);
+                }
+            }
+
+            return changed;
+        }
+
+        @Override
+        public AtomList getRestOf() {
+            if (!resolve() || 0 == index) return null;
+
+            return null == detached
+                    ? new CompactAtomList(owner, index - 1)
+                    : new CompactAtomList(detached, index - 1);
+        }
+
+        @Override
+        public Atom getNotesOf() {
+            return resolve() && null == detached && 0 == index ? new CompactAtom(owner) : null;
+        }
+
+        @Override
+        public List<Atom> toJavaList() {
+            List<Atom> list = new LinkedList<>();
+            if (resolve()) {
+                int[] elements = elements();
+                for (int i = index; i < count(); i++) {
+                    list.add(NONE == elements[i] ? null : new CompactAtom(elements[i]));
+                }
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package net.fortytwo.smsn.brain.model.compact;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A mapping between atom ids and integer handles.
+ * Ids of up to ten characters drawn from the base-64 alphabet of generated ids are packed into a single long,
+ * and are found through an open-addressing table of handles; any other ids fall back to a hash map.
+ */
+class IdTable {
+
+    private static final String ALPHABET
+            = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    private static final int MAX_PACKED_LENGTH = 10;
+    private static final int BITS_PER_CHAR = 6;
+    private static final int LENGTH_SHIFT = 60;
+
+    // neither of these can be produced by pack(), as lengths greater than ten are never packed
+    private static final long NOT_PACKED = -1L;
+    private static final long FREE = -2L;
+
+    private static final int EMPTY_SLOT = 0;
+    private static final int DELETED_SLOT = -1;
+
+    private static final byte[] CHAR_CODES = new byte[128];
+
+    static {
+        Arrays.fill(CHAR_CODES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            CHAR_CODES[ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    // packed id by handle
+    private long[] packedIds;
+    // handle + 1 by hash slot
+    private int[] slots;
+    private int usedSlots;
+
+    private final Map<String, Integer> irregularHandles = new HashMap<>();
+    private final Map<Integer, String> irregularIds = new HashMap<>();
+
+    IdTable(final int initialCapacity) {
+        packedIds = new long[initialCapacity];
+        Arrays.fill(packedIds, FREE);
+        slots = new int[tableSizeFor(initialCapacity)];
+    }
+
+    int getHandle(final String id) {
+        long packed = pack(id);
+        if (NOT_PACKED == packed) {
+            Integer handle = irregularHandles.get(id);
+            return null == handle ? -1 : handle;
+        }
+
+        int mask = slots.length - 1;
+        for (int i = hash(packed) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (EMPTY_SLOT == slot) {
+                return -1;
+            } else if (DELETED_SLOT != slot && packedIds[slot - 1] == packed) {
+                return slot - 1;
+            }
+        }
+    }
+
+    String getId(final int handle) {
+        if (handle < 0 || handle >= packedIds.length) {
+            return null;
+        }
+
+        long packed = packedIds[handle];
+        if (FREE == packed) {
+            return null;
+        } else if (NOT_PACKED == packed) {
+            return irregularIds.get(handle);
+        } else {
+            return unpack(packed);
+        }
+    }
+
+    void put(final String id, final int handle) {
+        ensureHandleCapacity(handle + 1);
+
+        long packed = pack(id);
+        packedIds[handle] = packed;
+        if (NOT_PACKED == packed) {
+            irregularHandles.put(id, handle);
+            irregularIds.put(handle, id);
+            return;
+        }
+
+        if ((usedSlots + 1) * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+
+        int mask = slots.length - 1;
+        for (int i = hash(packed) & mask; ; i = (i + 1) & mask) {
+            if (EMPTY_SLOT == slots[i]) {
+                slots[i] = handle + 1;
+                usedSlots++;
+                return;
+            }
+        }
+    }
+
+    void remove(final int handle) {
+        long packed = packedIds[handle];
+        if (FREE == packed) {
+            return;
+        }
+
+        packedIds[handle] = FREE;
+        if (NOT_PACKED == packed) {
+            irregularHandles.remove(irregularIds.remove(handle));
+            return;
+        }
+
+        int mask = slots.length - 1;
+        for (int i = hash(packed) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (EMPTY_SLOT == slot) {
+                return;
+            } else if (handle + 1 == slot) {
+                // the slot remains in use as a tombstone until the next rehash
+                slots[i] = DELETED_SLOT;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the approximate number of bytes held by this table per handle, not counting irregular ids
+     */
+    static int bytesPerHandle() {
+        // one packed long, plus one int slot at a load factor of at most one half
+        return 8 + 2 * 4;
+    }
+
+    private void ensureHandleCapacity(final int capacity) {
+        if (capacity > packedIds.length) {
+            int oldLength = packedIds.length;
+            packedIds = Arrays.copyOf(packedIds, Math.max(capacity, oldLength * 2));
+            Arrays.fill(packedIds, oldLength, packedIds.length, FREE);
+        }
+    }
+
+    private void rehash(final int newSize) {
+        int[] oldSlots = slots;
+        slots = new int[newSize];
+        usedSlots = 0;
+
+        int mask = newSize - 1;
+        for (int slot : oldSlots) {
+            if (EMPTY_SLOT != slot && DELETED_SLOT != slot) {
+                long packed = packedIds[slot - 1];
+                int i = hash(packed) & mask;
+                while (EMPTY_SLOT != slots[i]) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = slot;
+                usedSlots++;
+            }
+        }
+    }
+
+    private static long pack(final String id) {
+        int length = id.length();
+        if (length > MAX_PACKED_LENGTH) {
+            return NOT_PACKED;
+        }
+
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            int code = c < 128 ? CHAR_CODES[c] : -1;
+            if (code < 0) {
+                return NOT_PACKED;
+            }
+            bits = (bits << BITS_PER_CHAR) | code;
+        }
+
+        return ((long) length << LENGTH_SHIFT) | bits;
+    }
+
+    private static String unpack(final long packed) {
+        int length = (int) (packed >>> LENGTH_SHIFT);
+        char[] chars = new char[length];
+        long bits = packed;
+        for (int i = length - 1; i >= 0; i--) {
+            chars[i] = ALPHABET.charAt((int) (bits & 0x3f));
+            bits >>>= BITS_PER_CHAR;
+        }
+        return new String(chars);
+    }
+
+    private static int hash(final long packed) {
+        long h = packed * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(final int capacity) {
+        int size = 16;
+        while (size < capacity * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
@@ -56,6 +56,11 @@ public class FilteredAtomGraph implements AtomGraph {
         return wrapAtoms(baseGraph.getAllAtoms());
     }
 
+    @Override
+    public long getAtomCount() {
+        return baseGraph.getAtomCount();
+    }
+
     @Override
     public String idOfAtom(Atom a) {
         return baseGraph.idOfAtom(((FilteredAtom) a).baseAtom);
@@ -96,24 +101,47 @@ public class FilteredAtomGraph implements AtomGraph {
         baseGraph.removeIsolatedAtoms(filter);
     }
 
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        baseGraph.addChangeListener(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ChangeListener listener) {
+        baseGraph.removeChangeListener(listener);
+    }
+
+    @Override
+    public void releaseThread() {
+        baseGraph.releaseThread();
+    }
+
     @Override
     public void notifyOfUpdate() {
         baseGraph.notifyOfUpdate();
     }
 
     @Override
-    public List<Atom> getAtomsByShortcut(String shortcut, Filter filter) {
-        return wrapAtoms(baseGraph.getAtomsByShortcut(shortcut, filter));
+    public List<Atom> getAtomsByShortcut(String shortcut, Filter filter,
+                                         int offset, int limit) {
+        return wrapAtoms(baseGraph.getAtomsByShortcut(shortcut, filter, offset, limit));
+    }
+
+    @Override
+    public List<Atom> getAtomsByValueQuery(String value, Filter filter,
+                                           int offset, int limit) {
+        return wrapAtoms(baseGraph.getAtomsByValueQuery(value, filter, offset, limit));
     }
 
     @Override
-    public List<Atom> getAtomsByValueQuery(String value, Filter filter) {
-        return wrapAtoms(baseGraph.getAtomsByValueQuery(value, filter));
+    public List<Atom> getAtomsByAcronym(String acronym, Filter filter,
+                                        int offset, int limit) {
+        return wrapAtoms(baseGraph.getAtomsByAcronym(acronym, filter, offset, limit));
     }
 
     @Override
-    public List<Atom> getAtomsByAcronym(String acronym, Filter filter) {
-        return wrapAtoms(baseGraph.getAtomsByAcronym(acronym, filter));
+    public List<Atom> getAtomsByPrefix(String prefix, Filter filter, int limit) {
+        return wrapAtoms(baseGraph.getAtomsByPrefix(prefix, filter, limit));
     }
 
     @Override
@@ -247,6 +275,21 @@ public class FilteredAtomGraph implements AtomGraph {
             if (isVisible()) baseAtom.forFirstOf(consumer);
         }
 
+        @Override
+        public int getNumberOfChildren() {
+            return isVisible() ? baseAtom.getNumberOfChildren() : 0;
+        }
+
+        @Override
+        public int getNumberOfParents() {
+            return isVisible() ? baseAtom.getNumberOfParents() : 0;
+        }
+
+        @Override
+        public void forEachParent(Consumer<Atom> consumer) {
+            if (isVisible()) baseAtom.forEachParent(parent -> consumer.accept(wrapAtom(parent)));
+        }
+
         @Override
         public void addChildAt(Atom child, int position) {
             if (isVisible()) baseAtom.addChildAt(wrapAtom(child), position);
@@ -257,6 +300,16 @@ public class FilteredAtomGraph implements AtomGraph {
             if (isVisible()) baseAtom.deleteChildAt(position);
         }
 
+        @Override
+        public void moveChild(int from, int to) {
+            if (isVisible()) baseAtom.moveChild(from, to);
+        }
+
+        @Override
+        public void setChildren(List<Atom> children, int[] sources) {
+            if (isVisible()) baseAtom.setChildren(children, sources);
+        }
+
         @Override
         public Collection<AtomList> getFirstOf() {
             return wrapLists(baseAtom.getFirstOf());
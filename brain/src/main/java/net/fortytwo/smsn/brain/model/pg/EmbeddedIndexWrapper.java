@@ -0,0 +1,97 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import com.google.common.collect.Iterators;
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.index.FullTextIndex;
+import net.fortytwo.smsn.brain.model.Filter;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A full-text index which is kept in memory, independently of the graph database,
+ * and which is built from the graph when it is first used
+ */
+class EmbeddedIndexWrapper extends IndexWrapper {
+    private final GraphWrapper wrapper;
+    private final FullTextIndex<Object> index = new FullTextIndex<>();
+
+    private boolean built;
+
+    public EmbeddedIndexWrapper(final String key, final GraphWrapper wrapper) {
+        super(key);
+        this.wrapper = wrapper;
+    }
+
+    @Override
+    public Iterator<Sortable<Vertex, Float>> get(final String value) {
+        return get(value, null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean appliesFilter() {
+        return true;
+    }
+
+    @Override
+    public Iterator<Sortable<Vertex, Float>> get(final String value, final Filter filter, final int limit) {
+        ensureBuilt();
+
+        List<FullTextIndex.Hit<Object>> ranked = index.search(value, filter, limit);
+        Iterator<Sortable<Vertex, Float>> hits = Iterators.transform(ranked.iterator(), hit -> {
+            Iterator<Vertex> vertices = wrapper.getGraph().vertices(hit.getKey());
+            return vertices.hasNext() ? new Sortable<>(vertices.next(), hit.getScore()) : null;
+        });
+        // vertices removed without being reindexed are skipped
+        return Iterators.filter(hits, hit -> null != hit);
+    }
+
+    @Override
+    public void add(final Vertex vertex, final String key, final Object value) {
+        ensureBuilt();
+        put(vertex, value);
+    }
+
+    @Override
+    public void remove(final Vertex vertex, final String key) {
+        ensureBuilt();
+        index.remove(vertex.id());
+    }
+
+    @Override
+    public synchronized void rollback() {
+        // rebuild from the graph as of the rollback
+        built = false;
+        index.clear();
+    }
+
+    private synchronized void ensureBuilt() {
+        if (built) return;
+        built = true;
+
+        Iterator<Vertex> atoms = wrapper.getVerticesByLabel(SemanticSynchrony.ATOM);
+        while (atoms.hasNext()) {
+            Vertex vertex = atoms.next();
+            VertexProperty<Object> property = vertex.property(key);
+            if (property.isPresent()) {
+                put(vertex, property.value());
+            }
+        }
+    }
+
+    private void put(final Vertex vertex, final Object value) {
+        float sharability = getFloat(vertex, SemanticSynchrony.SHARABILITY);
+        float weight = getFloat(vertex, SemanticSynchrony.WEIGHT);
+        VertexProperty<String> atomValue = vertex.property(SemanticSynchrony.VALUE);
+        float boost = PGAtomGraph.getRankingBoost(weight, atomValue.isPresent() ? atomValue.value() : null);
+
+        index.put(vertex.id(), value.toString(), sharability, weight, boost);
+    }
+
+    private float getFloat(final Vertex vertex, final String key) {
+        VertexProperty<Number> property = vertex.property(key);
+        return property.isPresent() ? property.value().floatValue() : 0f;
+    }
+}
@@ -1,6 +1,8 @@
 package net.fortytwo.smsn.brain.model.pg;
 
 import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.util.TypedProperties;
 import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.apache.tinkerpop.gremlin.structure.T;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
@@ -8,25 +10,64 @@ import org.apache.tinkerpop.gremlin.structure.VertexProperty;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Logger;
 
 public abstract class GraphWrapper {
     private static final Logger logger = SemanticSynchrony.getLogger(GraphWrapper.class);
 
+    /**
+     * The implementation of the full-text indices of atom values and acronyms
+     */
+    public enum FullTextBackend {
+        // the full-text indexing of the underlying graph database, if any
+        Native,
+        // an in-memory index with BM25 ranking, which behaves the same way for any graph database
+        Embedded
+    }
+
+    public static final String
+            PROP_FULL_TEXT_BACKEND = "net.fortytwo.smsn.brain.fullTextBackend";
+
+    private static final FullTextBackend defaultFullTextBackend;
+
+    static {
+        try {
+            String backend = SemanticSynchrony.getConfiguration().getString(
+                    PROP_FULL_TEXT_BACKEND, FullTextBackend.Native.name());
+            defaultFullTextBackend = FullTextBackend.valueOf(backend);
+        } catch (TypedProperties.PropertyException | IllegalArgumentException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     protected final Graph graph;
 
     private final Map<String, IndexWrapper> indices = new HashMap<>();
 
+    // vertices whose index entries are deferred until the end of a bulk import, keyed on vertex id
+    private final Map<Object, Vertex> pendingReindex = new LinkedHashMap<>();
+    private int bulkImportDepth = 0;
+
     protected GraphWrapper(Graph graph) {
+        this(graph, defaultFullTextBackend);
+    }
+
+    protected GraphWrapper(Graph graph, FullTextBackend fullTextBackend) {
         this.graph = graph;
 
         // TODO: add id strategy
         add(createExactIndex(SemanticSynchrony.ID_V, true));
         add(createExactIndex(SemanticSynchrony.SHORTCUT, true));
 
-        add(createFullTextIndex(SemanticSynchrony.VALUE));
-        add(createFullTextIndex(SemanticSynchrony.ACRONYM));
+        if (FullTextBackend.Embedded == fullTextBackend) {
+            add(new EmbeddedIndexWrapper(SemanticSynchrony.VALUE, this));
+            add(new EmbeddedIndexWrapper(SemanticSynchrony.ACRONYM, this));
+        } else {
+            add(createFullTextIndex(SemanticSynchrony.VALUE));
+            add(createFullTextIndex(SemanticSynchrony.ACRONYM));
+        }
     }
 
     protected abstract IndexWrapper createFullTextIndex(String key);
@@ -43,6 +84,25 @@ public abstract class GraphWrapper {
 
     public abstract void shutdown();
 
+    /**
+     * @param label a vertex label, e.g. that of atoms
+     * @return all vertices with the given label, found without visiting vertices with other labels where possible
+     */
+    public abstract Iterator<Vertex> getVerticesByLabel(String label);
+
+    public boolean supportsTransactions() {
+        return graph.features().graph().supportsTransactions();
+    }
+
+    /**
+     * Closes any transaction opened by reads in the current thread, discarding nothing but the reads themselves
+     */
+    public void closeThreadTransaction() {
+        if (supportsTransactions() && graph.tx().isOpen()) {
+            graph.tx().rollback();
+        }
+    }
+
     public Vertex createVertex(final String id, final String label) {
         Vertex vertex = graph.addVertex(T.label, label);
         // TODO: use id strategy
@@ -54,10 +114,55 @@ public abstract class GraphWrapper {
     }
 
     public void reindex(final Vertex vertex) {
-        updateIndex(vertex, SemanticSynchrony.ID_V);
-        updateIndex(vertex, SemanticSynchrony.VALUE);
-        updateIndex(vertex, SemanticSynchrony.ACRONYM);
-        updateIndex(vertex, SemanticSynchrony.SHORTCUT);
+        if (bulkImportDepth > 0) {
+            pendingReindex.put(vertex.id(), vertex);
+        } else {
+            reindexNow(vertex);
+        }
+    }
+
+    /**
+     * Enters bulk import mode, in which index maintenance is deferred until the matching call to endBulkImport.
+     * Id lookups remain available throughout, as vertex ids are still indexed on creation.
+     * Bulk imports may be nested; deferred vertices are reindexed when the outermost one ends.
+     */
+    public void beginBulkImport() {
+        bulkImportDepth++;
+    }
+
+    public void endBulkImport() {
+        if (0 == bulkImportDepth) {
+            throw new IllegalStateException("not in a bulk import");
+        }
+
+        if (0 == --bulkImportDepth) {
+            long before = System.currentTimeMillis();
+            int count = 0;
+            for (Vertex vertex : pendingReindex.values()) {
+                // skip any vertex which was removed after it was last changed
+                if (graph.vertices(vertex.id()).hasNext()) {
+                    reindexNow(vertex);
+                    count++;
+                }
+            }
+            pendingReindex.clear();
+            long after = System.currentTimeMillis();
+            logger.info("reindexed " + count + " vertices in " + (after - before) + " ms");
+        }
+    }
+
+    public boolean isInBulkImport() {
+        return bulkImportDepth > 0;
+    }
+
+    /**
+     * Discards index changes which were not rolled back along with the graph
+     */
+    public void rollbackIndices() {
+        pendingReindex.clear();
+        for (IndexWrapper index : indices.values()) {
+            index.rollback();
+        }
     }
 
     public Graph getGraph() {
@@ -76,6 +181,25 @@ public abstract class GraphWrapper {
         return getVerticesByKeyValue(SemanticSynchrony.ACRONYM, acronym);
     }
 
+    /**
+     * @return whether the index of the given key applies filters itself,
+     * in which case it may be searched with a filter and its results need no further ranking
+     */
+    public boolean appliesFilter(final String key) {
+        IndexWrapper index = getIndex(key);
+        return null != index && index.appliesFilter();
+    }
+
+    public Iterator<Sortable<Vertex, Float>> getVerticesByValue(final String term, final Filter filter,
+                                                                final int limit) {
+        return getIndex(SemanticSynchrony.VALUE).get(term, filter, limit);
+    }
+
+    public Iterator<Sortable<Vertex, Float>> getVerticesByAcronym(final String acronym, final Filter filter,
+                                                                  final int limit) {
+        return getIndex(SemanticSynchrony.ACRONYM).get(acronym, filter, limit);
+    }
+
     public Iterator<Sortable<Vertex, Float>> getVerticesByShortcut(final String shortcut) {
         return getVerticesByKeyValue(SemanticSynchrony.SHORTCUT, shortcut);
     }
@@ -92,6 +216,13 @@ public abstract class GraphWrapper {
         indices.put(index.key, index);
     }
 
+    private void reindexNow(final Vertex vertex) {
+        updateIndex(vertex, SemanticSynchrony.ID_V);
+        updateIndex(vertex, SemanticSynchrony.VALUE);
+        updateIndex(vertex, SemanticSynchrony.ACRONYM);
+        updateIndex(vertex, SemanticSynchrony.SHORTCUT);
+    }
+
     private void updateIndex(final Vertex vertex,
                              final String key) {
         VertexProperty property = vertex.property(key);
@@ -1,5 +1,6 @@
 package net.fortytwo.smsn.brain.model.pg;
 
+import net.fortytwo.smsn.brain.model.Filter;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 
 import java.util.Iterator;
@@ -16,4 +17,26 @@ abstract class IndexWrapper {
     public abstract void add(final Vertex vertex, final String key, final Object value);
 
     public abstract void remove(final Vertex vertex, final String key);
+
+    /**
+     * @return whether this index stores the sharability and weight of each vertex,
+     * so that it can apply a filter and rank results by itself
+     */
+    public boolean appliesFilter() {
+        return false;
+    }
+
+    /**
+     * @return up to limit vertices matching the given value and visible through the given filter, in order of
+     * decreasing score, where the score already accounts for the weight of each vertex
+     */
+    public Iterator<Sortable<Vertex, Float>> get(final String value, final Filter filter, final int limit) {
+        throw new UnsupportedOperationException("index does not apply filters");
+    }
+
+    /**
+     * Discards any changes to the index made in the current transaction, where the index itself is not transactional
+     */
+    public void rollback() {
+    }
 }
@@ -61,6 +61,12 @@ public class Neo4jGraphWrapper extends GraphWrapper {
         graph.tx().rollback();
     }
 
+    @Override
+    public Iterator<Vertex> getVerticesByLabel(final String label) {
+        // the Neo4j graph step turns a label filter into a scan of Neo4j's label store
+        return graph.traversal().V().hasLabel(label);
+    }
+
     @Override
     protected IndexWrapper createFullTextIndex(final String key) {
         Index<Node> index = createIndex(key, IndexManager.PROVIDER, "lucene", "type", "fulltext");
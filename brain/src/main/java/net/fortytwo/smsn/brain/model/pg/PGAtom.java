@@ -1,18 +1,27 @@
 package net.fortytwo.smsn.brain.model.pg;
 
 import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.error.InvalidGraphException;
 import net.fortytwo.smsn.brain.model.Atom;
 import net.fortytwo.smsn.brain.model.AtomList;
+import net.fortytwo.smsn.brain.util.ListDiff;
 import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.function.Consumer;
 
 public abstract class PGAtom extends PGGraphEntity implements Atom {
 
+    private static final long[] NO_EDGES = new long[0];
+
     protected PGAtom(final Vertex vertex) {
         super(vertex);
     }
@@ -94,22 +103,73 @@ public abstract class PGAtom extends PGGraphEntity implements Atom {
 
     @Override
     public AtomList getNotes() {
-        return asAtomList(getAtMostOneVertex(SemanticSynchrony.NOTES, Direction.OUT));
+        Vertex head = getAtMostOneVertex(SemanticSynchrony.NOTES, Direction.OUT);
+        if (null != head) {
+            return asAtomList(head);
+        }
+
+        return getChildEdgeIds().length > 0 ? new PGChildList(this, 0) : null;
     }
 
     @Override
     public boolean setNotes(AtomList notes) {
-        return setNotes(notes, null);
+        if (!usesIndexedChildren()) {
+            return setNotes(notes, null);
+        }
+
+        List<Atom> children = null == notes ? new LinkedList<>() : consumeList(notes);
+        boolean changed = removeAllChildEdges();
+        appendChildEdges(children);
+        childrenChanged();
+        return changed || children.size() > 0;
     }
 
     public boolean setNotes(AtomList notes, final Object edgeId) {
-        boolean changed = removeNotes();
-        if (null != notes) {
-            addOutEdge(edgeId, ((PGGraphEntity) notes).asVertex(), SemanticSynchrony.NOTES);
+        if (null != notes && !(notes instanceof PGAtomList)) {
+            // a view of indexed children; copy it into list nodes
+            List<Atom> children = notes.toJavaList();
+            notes = getAtomGraph().createAtomList(children.toArray(new Atom[children.size()]));
+        }
+
+        List<PGAtom> oldChildren = getListNodeChildren();
+        boolean changed = replaceNotes(notes, edgeId);
+        for (PGAtom child : oldChildren) {
+            child.removeParent(this);
+        }
+        for (PGAtom child : getListNodeChildren()) {
+            child.addParent(this);
         }
+        recountChildren();
+        childrenChanged();
         return changed;
     }
 
+    @Override
+    public Iterable<Atom> getChildren() {
+        if (hasListNodes()) {
+            return Atom.super.getChildren();
+        }
+
+        long[] edgeIds = getChildEdgeIds();
+        return () -> new Iterator<Atom>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < edgeIds.length;
+            }
+
+            @Override
+            public Atom next() {
+                if (next >= edgeIds.length) {
+                    throw new NoSuchElementException();
+                }
+
+                return asAtom(getChildEdge(edgeIds[next++]).inVertex());
+            }
+        };
+    }
+
     @Override
     public void forFirstOf(Consumer<AtomList> consumer) {
         forEachAdjacentVertex(SemanticSynchrony.FIRST, Direction.IN, new Consumer<Vertex>() {
@@ -118,34 +178,86 @@ public abstract class PGAtom extends PGGraphEntity implements Atom {
                 consumer.accept(asAtomList(vertex));
             }
         });
+
+        asVertex().edges(Direction.IN, SemanticSynchrony.CHILD).forEachRemaining(edge -> {
+            PGAtom parent = (PGAtom) asAtom(edge.outVertex());
+            int index = indexOf(parent.getChildEdgeIds(), toEdgeId(edge));
+            if (index >= 0) {
+                consumer.accept(new PGChildList(parent, index));
+            }
+        });
+    }
+
+    @Override
+    public int getNumberOfChildren() {
+        if (!hasListNodes()) {
+            return getChildEdgeIds().length;
+        }
+
+        Integer count = getOptionalProperty(SemanticSynchrony.CHILD_COUNT);
+        return null == count ? countListNodes() : count;
+    }
+
+    @Override
+    public int getNumberOfParents() {
+        Integer count = hasIndexedParents() ? getOptionalProperty(SemanticSynchrony.PARENT_COUNT) : null;
+        return null == count ? Atom.super.getNumberOfParents() : count;
+    }
+
+    @Override
+    public void forEachParent(Consumer<Atom> consumer) {
+        if (!hasIndexedParents()) {
+            Atom.super.forEachParent(consumer);
+            return;
+        }
+
+        forEachAdjacentVertex(SemanticSynchrony.PARENT, Direction.OUT, vertex -> consumer.accept(asAtom(vertex)));
+        forEachAdjacentVertex(SemanticSynchrony.CHILD, Direction.IN, vertex -> consumer.accept(asAtom(vertex)));
     }
 
     @Override
     public void addChildAt(final Atom child, int position) {
+        if (usesIndexedChildren()) {
+            insertChildEdge(child, position);
+            childrenChanged();
+            return;
+        }
+
         // create a list node for the atom and insert it
-        AtomList list = createList();
-        list.setFirst(child);
+        PGAtomList list = (PGAtomList) createList();
+        list.replaceFirst(child, null);
         if (0 == position) {
-            list.setRest(getNotes());
-            setNotes(list);
+            list.replaceRest(getNotes(), null);
+            replaceNotes(list, null);
         } else {
             AtomList prev = getNotes();
             for (int i = 1; i < position; i++) {
                 prev = prev.getRest();
             }
 
-            list.setRest(prev.getRest());
-            prev.setRest(list);
+            list.replaceRest(prev.getRest(), null);
+            ((PGAtomList) prev).replaceRest(list, null);
         }
+        ((PGAtom) child).addParent(this);
+        childCountChanged(1);
+        childrenChanged();
     }
 
     @Override
     public void deleteChildAt(int position) {
+        if (usesIndexedChildren()) {
+            removeChildEdge(position);
+            childrenChanged();
+            return;
+        }
+
         AtomList list = getNotes();
 
         // remove the atom's list node
+        PGAtom child;
         if (0 == position) {
-            setNotes(list.getRest());
+            child = (PGAtom) list.getFirst();
+            replaceNotes(list.getRest(), null);
 
             deleteListNode(list);
         } else {
@@ -155,19 +267,527 @@ public abstract class PGAtom extends PGGraphEntity implements Atom {
             }
 
             AtomList l = prev.getRest();
-            prev.setRest(l.getRest());
+            child = (PGAtom) l.getFirst();
+            ((PGAtomList) prev).replaceRest(l.getRest(), null);
             deleteListNode(l);
         }
+        child.removeParent(this);
+        childCountChanged(-1);
+        childrenChanged();
+    }
+
+    @Override
+    public void moveChild(final int from, final int to) {
+        int count = getNumberOfChildren();
+        if (from < 0 || from >= count || to < 0 || to >= count) {
+            throw new IndexOutOfBoundsException("move from " + from + " to " + to + " in list of " + count + " children");
+        }
+        if (from == to) {
+            return;
+        }
+
+        // the parents of the child are unaffected, as it remains a child of this atom
+        if (usesIndexedChildren()) {
+            long[] edgeIds = getChildEdgeIds().clone();
+            long edgeId = edgeIds[from];
+            if (from < to) {
+                System.arraycopy(edgeIds, from + 1, edgeIds, from, to - from);
+            } else {
+                System.arraycopy(edgeIds, to, edgeIds, to + 1, from - to);
+            }
+            edgeIds[to] = edgeId;
+            setChildEdgeIds(edgeIds);
+            childrenChanged();
+            return;
+        }
+
+        // unlink the child's list node, then link it in at its new position
+        PGAtomList list;
+        if (0 == from) {
+            list = (PGAtomList) getNotes();
+            AtomList next = list.getRest();
+            list.replaceRest(null, null);
+            replaceNotes(next, null);
+        } else {
+            PGAtomList prev = (PGAtomList) getNotes();
+            for (int i = 1; i < from; i++) {
+                prev = (PGAtomList) prev.getRest();
+            }
+            list = (PGAtomList) prev.getRest();
+            AtomList next = list.getRest();
+            list.replaceRest(null, null);
+            prev.replaceRest(next, null);
+        }
+
+        if (0 == to) {
+            list.replaceRest(getNotes(), null);
+            replaceNotes(list, null);
+        } else {
+            PGAtomList prev = (PGAtomList) getNotes();
+            for (int i = 1; i < to; i++) {
+                prev = (PGAtomList) prev.getRest();
+            }
+            list.replaceRest(prev.getRest(), null);
+            prev.replaceRest(list, null);
+        }
+        childrenChanged();
+    }
+
+    @Override
+    public void setChildren(final List<Atom> children, final int[] sources) {
+        if (children.size() != sources.length) {
+            throw new IllegalArgumentException("edit script does not match list of children");
+        }
+
+        if (usesIndexedChildren()) {
+            long[] edgeIds = getChildEdgeIds();
+            boolean[] kept = ListDiff.findKept(sources, edgeIds.length);
+            for (int i = 0; i < edgeIds.length; i++) {
+                if (!kept[i]) {
+                    deleteChildEdge(getChildEdge(edgeIds[i]));
+                }
+            }
+
+            long[] newIds = new long[sources.length];
+            for (int j = 0; j < sources.length; j++) {
+                newIds[j] = -1 == sources[j] ? toEdgeId(addChildEdge(children.get(j))) : edgeIds[sources[j]];
+            }
+            setChildEdgeIds(newIds);
+            childrenChanged();
+            return;
+        }
+
+        // the list is walked once; kept list nodes are reused, and only links which change are rewritten
+        List<PGAtomList> nodes = getListNodes();
+        boolean[] kept = ListDiff.findKept(sources, nodes.size());
+        PGAtomList[] newNodes = new PGAtomList[sources.length];
+        for (int j = 0; j < sources.length; j++) {
+            if (-1 == sources[j]) {
+                PGAtomList node = (PGAtomList) createList();
+                node.replaceFirst(children.get(j), null);
+                ((PGAtom) children.get(j)).addParent(this);
+                newNodes[j] = node;
+            } else {
+                newNodes[j] = nodes.get(sources[j]);
+            }
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            if (!kept[i]) {
+                ((PGAtom) nodes.get(i).getFirst()).removeParent(this);
+                deleteListNode(nodes.get(i));
+            }
+        }
+
+        for (int j = 0; j < newNodes.length; j++) {
+            newNodes[j].linkRest(j + 1 < newNodes.length ? newNodes[j + 1] : null);
+        }
+        Vertex head = getAtMostOneVertex(SemanticSynchrony.NOTES, Direction.OUT);
+        PGAtomList newHead = 0 == newNodes.length ? null : newNodes[0];
+        if (null == newHead ? null != head : null == head || !head.id().equals(newHead.asVertex().id())) {
+            replaceNotes(newHead, null);
+        }
+
+        childCountChanged(newNodes.length - nodes.size());
+        childrenChanged();
     }
 
     @Override
     public Collection<AtomList> getFirstOf() {
         List<AtomList> result = new LinkedList<>();
-        forAllVertices(SemanticSynchrony.FIRST, Direction.IN, result::add);
+        forFirstOf(result::add);
 
         return result;
     }
 
+    /**
+     * Converts a chain of list nodes, if any, into indexed children, deleting the list nodes
+     *
+     * @return whether this atom had list nodes to convert
+     */
+    public boolean migrateChildren() {
+        Edge notesEdge = getAtMostOneEdge(SemanticSynchrony.NOTES, Direction.OUT);
+        if (null == notesEdge) {
+            return false;
+        }
+
+        List<Atom> children = new ArrayList<>();
+        List<Vertex> listNodes = new ArrayList<>();
+        AtomList cur = asAtomList(notesEdge.inVertex());
+        while (null != cur) {
+            children.add(cur.getFirst());
+            listNodes.add(((PGGraphEntity) cur).asVertex());
+            cur = cur.getRest();
+        }
+
+        notesEdge.remove();
+        for (Vertex v : listNodes) {
+            v.remove();
+        }
+        for (Atom child : children) {
+            ((PGAtom) child).removeParent(this);
+        }
+        // the number of indexed children is the length of their array of edge ids
+        asVertex().property(SemanticSynchrony.CHILD_COUNT).remove();
+
+        appendChildEdges(children);
+
+        return true;
+    }
+
+    /**
+     * @return whether the "parent" edges of this atom are known to match its occurrences in lists of list nodes.
+     * Atoms are indexed when created; atoms from older graphs are indexed by PGAtomGraph.rebuildParentIndex
+     */
+    public boolean hasIndexedParents() {
+        return null != getOptionalProperty(SemanticSynchrony.PARENTS_INDEXED);
+    }
+
+    /**
+     * Replaces any "parent" edges of this atom with one for each of its occurrences in lists of list nodes
+     */
+    public void indexParents() {
+        removeEdge(SemanticSynchrony.PARENT, Direction.OUT);
+        int[] count = {0};
+        forEachAdjacentVertex(SemanticSynchrony.CHILD, Direction.IN, vertex -> count[0]++);
+        forEachAdjacentVertex(SemanticSynchrony.FIRST, Direction.IN, vertex -> {
+            AtomList head = asAtomList(vertex);
+            AtomList prev;
+            while (null != (prev = head.getRestOf())) {
+                head = prev;
+            }
+
+            Atom parent = head.getNotesOf();
+            if (null != parent) {
+                addParentEdge((PGAtom) parent);
+                count[0]++;
+            }
+        });
+        // set directly, as these are not changes to the atom
+        asVertex().property(SemanticSynchrony.PARENT_COUNT, count[0]);
+        asVertex().property(SemanticSynchrony.PARENTS_INDEXED, true);
+    }
+
+    /**
+     * Stores the number of children of this atom, if they are held in list nodes
+     */
+    public void countChildren() {
+        recountChildren();
+    }
+
+    void addParent(final PGAtom parent) {
+        if (hasIndexedParents()) {
+            addParentEdge(parent);
+            parentCountChanged(1);
+        }
+    }
+
+    // removes one "parent" edge, as an atom may occur more than once in the same list
+    void removeParent(final PGAtom parent) {
+        if (!hasIndexedParents()) {
+            return;
+        }
+
+        Object parentId = parent.asVertex().id();
+        Iterator<Edge> edges = asVertex().edges(Direction.OUT, SemanticSynchrony.PARENT);
+        while (edges.hasNext()) {
+            Edge edge = edges.next();
+            if (edge.inVertex().id().equals(parentId)) {
+                edge.remove();
+                parentCountChanged(-1);
+                return;
+            }
+        }
+    }
+
+    // called when list nodes have been added to or removed from the children of this atom
+    void childCountChanged(final int delta) {
+        Integer count = getOptionalProperty(SemanticSynchrony.CHILD_COUNT);
+        if (null == count || !hasListNodes()) {
+            recountChildren();
+        } else {
+            asVertex().property(SemanticSynchrony.CHILD_COUNT, count + delta);
+        }
+    }
+
+    int getNumberOfChildEdges() {
+        return getChildEdgeIds().length;
+    }
+
+    Atom getChildAt(final int position) {
+        long[] edgeIds = getChildEdgeIds();
+        return position < edgeIds.length ? asAtom(getChildEdge(edgeIds[position]).inVertex()) : null;
+    }
+
+    boolean setChildAt(final int position, final Atom child) {
+        long[] edgeIds = getChildEdgeIds();
+        if (position >= edgeIds.length) {
+            return false;
+        }
+
+        if (null == child) {
+            removeChildEdge(position);
+            childrenChanged();
+            return true;
+        }
+
+        Edge old = getChildEdge(edgeIds[position]);
+        if (old.inVertex().id().equals(((PGGraphEntity) child).asVertex().id())) {
+            return false;
+        }
+        deleteChildEdge(old);
+
+        long[] newIds = edgeIds.clone();
+        newIds[position] = toEdgeId(addChildEdge(child));
+        setChildEdgeIds(newIds);
+        childrenChanged();
+        return true;
+    }
+
+    boolean setChildrenAfter(final int position, final AtomList rest) {
+        List<Atom> tail = null == rest ? new LinkedList<>() : consumeList(rest);
+
+        long[] edgeIds = getChildEdgeIds();
+        if (position >= edgeIds.length) {
+            return false;
+        }
+
+        boolean changed = edgeIds.length > position + 1 || tail.size() > 0;
+        for (int i = position + 1; i < edgeIds.length; i++) {
+            deleteChildEdge(getChildEdge(edgeIds[i]));
+        }
+
+        long[] newIds = Arrays.copyOf(edgeIds, position + 1 + tail.size());
+        int i = position + 1;
+        for (Atom child : tail) {
+            newIds[i++] = toEdgeId(addChildEdge(child));
+        }
+        setChildEdgeIds(newIds);
+        if (changed) {
+            childrenChanged();
+        }
+
+        return changed;
+    }
+
+    @Override
+    protected void propertyChanged(final String name) {
+        if (getAtomGraph().hasChangeListeners()) {
+            getAtomGraph().notifyOfPropertiesChanged(getId());
+        }
+    }
+
+    private void childrenChanged() {
+        if (getAtomGraph().hasChangeListeners()) {
+            getAtomGraph().notifyOfChildrenChanged(getId());
+        }
+    }
+
+    private void parentCountChanged(final int delta) {
+        if (!hasIndexedParents()) {
+            return;
+        }
+
+        Integer count = getOptionalProperty(SemanticSynchrony.PARENT_COUNT);
+        if (null != count) {
+            asVertex().property(SemanticSynchrony.PARENT_COUNT, count + delta);
+        }
+    }
+
+    private void recountChildren() {
+        if (hasListNodes()) {
+            asVertex().property(SemanticSynchrony.CHILD_COUNT, countListNodes());
+        } else {
+            asVertex().property(SemanticSynchrony.CHILD_COUNT).remove();
+        }
+    }
+
+    private int countListNodes() {
+        int count = 0;
+        Vertex head = getAtMostOneVertex(SemanticSynchrony.NOTES, Direction.OUT);
+        AtomList cur = null == head ? null : asAtomList(head);
+        while (null != cur) {
+            count++;
+            cur = cur.getRest();
+        }
+        return count;
+    }
+
+    private void addParentEdge(final PGAtom parent) {
+        asVertex().addEdge(SemanticSynchrony.PARENT, parent.asVertex());
+    }
+
+    private List<PGAtomList> getListNodes() {
+        List<PGAtomList> nodes = new ArrayList<>();
+        Vertex head = getAtMostOneVertex(SemanticSynchrony.NOTES, Direction.OUT);
+        AtomList cur = null == head ? null : asAtomList(head);
+        while (null != cur) {
+            nodes.add((PGAtomList) cur);
+            cur = cur.getRest();
+        }
+        return nodes;
+    }
+
+    private List<PGAtom> getListNodeChildren() {
+        List<PGAtom> children = new ArrayList<>();
+        Vertex head = getAtMostOneVertex(SemanticSynchrony.NOTES, Direction.OUT);
+        AtomList cur = null == head ? null : asAtomList(head);
+        while (null != cur) {
+            Atom first = cur.getFirst();
+            if (null != first) {
+                children.add((PGAtom) first);
+            }
+            cur = cur.getRest();
+        }
+        return children;
+    }
+
+    // sets the head of the list of list nodes without updating the index of parents, which is left to the caller
+    private boolean replaceNotes(final AtomList notes, final Object edgeId) {
+        boolean changed = removeNotes();
+        if (null != notes) {
+            addOutEdge(edgeId, ((PGGraphEntity) notes).asVertex(), SemanticSynchrony.NOTES);
+        }
+        return changed;
+    }
+
+    private boolean hasListNodes() {
+        return asVertex().edges(Direction.OUT, SemanticSynchrony.NOTES).hasNext();
+    }
+
+    // chooses the layout of children for a write, migrating from list nodes to indexed children if so configured
+    private boolean usesIndexedChildren() {
+        if (hasListNodes()) {
+            if (PGAtomGraph.ChildLayout.Indexed == getAtomGraph().getChildLayout()) {
+                migrateChildren();
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        return getChildEdgeIds().length > 0
+                || PGAtomGraph.ChildLayout.Indexed == getAtomGraph().getChildLayout();
+    }
+
+    private long[] getChildEdgeIds() {
+        long[] edgeIds = getOptionalProperty(SemanticSynchrony.CHILDREN);
+        return null == edgeIds ? NO_EDGES : edgeIds;
+    }
+
+    // note: the array is never modified in place after it has been stored, as an in-memory graph may keep a reference
+    private void setChildEdgeIds(final long[] edgeIds) {
+        if (0 == edgeIds.length) {
+            asVertex().property(SemanticSynchrony.CHILDREN).remove();
+        } else {
+            asVertex().property(SemanticSynchrony.CHILDREN, edgeIds);
+        }
+    }
+
+    private Edge getChildEdge(final long edgeId) {
+        Iterator<Edge> edges = getPropertyGraph().edges(edgeId);
+        if (!edges.hasNext()) {
+            throw new InvalidGraphException("atom vertex " + getId() + " is missing child edge " + edgeId);
+        }
+        return edges.next();
+    }
+
+    private Edge addChildEdge(final Atom child) {
+        Edge edge = asVertex().addEdge(SemanticSynchrony.CHILD, ((PGGraphEntity) child).asVertex());
+        ((PGAtom) child).parentCountChanged(1);
+        return edge;
+    }
+
+    private void deleteChildEdge(final Edge edge) {
+        PGAtom child = (PGAtom) asAtom(edge.inVertex());
+        edge.remove();
+        child.parentCountChanged(-1);
+    }
+
+    // the array of edge ids is written once, however many children are appended
+    private void appendChildEdges(final List<Atom> children) {
+        long[] edgeIds = getChildEdgeIds();
+        long[] newIds = Arrays.copyOf(edgeIds, edgeIds.length + children.size());
+        for (int i = 0; i < children.size(); i++) {
+            newIds[edgeIds.length + i] = toEdgeId(addChildEdge(children.get(i)));
+        }
+        setChildEdgeIds(newIds);
+    }
+
+    private void insertChildEdge(final Atom child, final int position) {
+        long[] edgeIds = getChildEdgeIds();
+        if (position < 0 || position > edgeIds.length) {
+            throw new IndexOutOfBoundsException("position " + position + " in list of " + edgeIds.length + " children");
+        }
+
+        long[] newIds = new long[edgeIds.length + 1];
+        System.arraycopy(edgeIds, 0, newIds, 0, position);
+        newIds[position] = toEdgeId(addChildEdge(child));
+        System.arraycopy(edgeIds, position, newIds, position + 1, edgeIds.length - position);
+        setChildEdgeIds(newIds);
+    }
+
+    private void removeChildEdge(final int position) {
+        long[] edgeIds = getChildEdgeIds();
+        if (position < 0 || position >= edgeIds.length) {
+            throw new IndexOutOfBoundsException("position " + position + " in list of " + edgeIds.length + " children");
+        }
+
+        deleteChildEdge(getChildEdge(edgeIds[position]));
+
+        long[] newIds = new long[edgeIds.length - 1];
+        System.arraycopy(edgeIds, 0, newIds, 0, position);
+        System.arraycopy(edgeIds, position + 1, newIds, position, edgeIds.length - position - 1);
+        setChildEdgeIds(newIds);
+    }
+
+    private boolean removeAllChildEdges() {
+        long[] edgeIds = getChildEdgeIds();
+        for (long edgeId : edgeIds) {
+            deleteChildEdge(getChildEdge(edgeId));
+        }
+        setChildEdgeIds(NO_EDGES);
+        return edgeIds.length > 0;
+    }
+
+    // copies the elements of a list; a chain of list nodes not attached to any atom is deleted once copied
+    private List<Atom> consumeList(final AtomList list) {
+        List<Atom> atoms = new ArrayList<>();
+        AtomList cur = list;
+        while (null != cur) {
+            Atom first = cur.getFirst();
+            if (null != first) {
+                atoms.add(first);
+            }
+            cur = cur.getRest();
+        }
+
+        if (list instanceof PGAtomList) {
+            Vertex head = ((PGAtomList) list).asVertex();
+            if (!head.edges(Direction.IN, SemanticSynchrony.NOTES, SemanticSynchrony.REST).hasNext()) {
+                List<Vertex> listNodes = new ArrayList<>();
+                cur = list;
+                while (null != cur) {
+                    listNodes.add(((PGAtomList) cur).asVertex());
+                    cur = cur.getRest();
+                }
+                listNodes.forEach(Vertex::remove);
+            }
+        }
+
+        return atoms;
+    }
+
+    private static long toEdgeId(final Edge edge) {
+        return ((Number) edge.id()).longValue();
+    }
+
+    private static int indexOf(final long[] edgeIds, final long edgeId) {
+        for (int i = 0; i < edgeIds.length; i++) {
+            if (edgeIds[i] == edgeId) return i;
+        }
+        return -1;
+    }
+
     private void deleteListNode(final AtomList l) {
         ((PGGraphEntity) l).asVertex().remove();
     }
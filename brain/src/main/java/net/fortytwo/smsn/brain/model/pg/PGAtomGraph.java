@@ -1,10 +1,14 @@
 package net.fortytwo.smsn.brain.model.pg;
 
+import com.google.common.collect.Iterators;
 import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.index.AutocompleteIndex;
 import net.fortytwo.smsn.brain.model.Atom;
 import net.fortytwo.smsn.brain.model.AtomGraph;
 import net.fortytwo.smsn.brain.model.AtomList;
 import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.util.Acronyms;
+import net.fortytwo.smsn.brain.util.TopK;
 import net.fortytwo.smsn.util.TypedProperties;
 import org.apache.tinkerpop.gremlin.structure.Direction;
 import org.apache.tinkerpop.gremlin.structure.Graph;
@@ -13,26 +17,41 @@ import org.apache.tinkerpop.gremlin.structure.VertexProperty;
 import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
 import org.parboiled.common.Preconditions;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class PGAtomGraph implements AtomGraph {
 
+    /**
+     * The way in which the ordered children of an atom are stored in the property graph
+     */
+    public enum ChildLayout {
+        // a linked list of list vertices, connected by "notes", "first" and "rest" edges
+        ListNodes,
+        // a "child" edge to each child, ordered by an array of edge ids held by the parent
+        Indexed
+    }
+
+    public static final String
+            PROP_CHILD_LAYOUT = "net.fortytwo.smsn.brain.childLayout";
+
     private static final String REDACTED_VALUE = "";
 
     private static final String thingNamespace;
+    private static final ChildLayout defaultChildLayout;
 
     static {
         try {
             thingNamespace = SemanticSynchrony.getConfiguration().getString(PROP_THING_NAMESPACE, DEFAULT_THING_NAMESPACE);
-        } catch (TypedProperties.PropertyException e) {
+            String layout = SemanticSynchrony.getConfiguration().getString(
+                    PROP_CHILD_LAYOUT, ChildLayout.ListNodes.name());
+            defaultChildLayout = ChildLayout.valueOf(layout);
+        } catch (TypedProperties.PropertyException | IllegalArgumentException e) {
             throw new ExceptionInInitializerError(e);
         }
     }
@@ -40,12 +59,29 @@ public class PGAtomGraph implements AtomGraph {
     private final GraphWrapper wrapper;
     private final Graph propertyGraph;
     private final PGAtomGraph thisGraph;
+    private final ChildLayout childLayout;
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    // keyed by vertex id; built from the graph when first used
+    private final AutocompleteIndex<Object> autocompleteIndex = new AutocompleteIndex<>();
+    private boolean autocompleteIndexBuilt;
+
+    // the number of atoms as of the last commit, or -1 if it is not currently known
+    private long committedAtomCount = -1;
+    // the change in the number of atoms in the current transaction of each thread
+    private final ThreadLocal<Long> atomCountDelta = ThreadLocal.withInitial(() -> 0L);
 
     private long lastUpdate;
 
     public PGAtomGraph(final GraphWrapper wrapper) {
+        this(wrapper, defaultChildLayout);
+    }
+
+    public PGAtomGraph(final GraphWrapper wrapper, final ChildLayout childLayout) {
+        Preconditions.checkArgNotNull(childLayout, "childLayout");
+
         this.wrapper = wrapper;
         this.propertyGraph = wrapper.getGraph();
+        this.childLayout = childLayout;
         thisGraph = this;
     }
 
@@ -53,6 +89,96 @@ public class PGAtomGraph implements AtomGraph {
         return propertyGraph;
     }
 
+    /**
+     * @return the layout in which new children are stored.
+     * Atoms whose children are in another layout are read as they are,
+     * and with the indexed layout, they are migrated when their children are next changed.
+     */
+    public ChildLayout getChildLayout() {
+        return childLayout;
+    }
+
+    /**
+     * @return whether any atom keeps its children as an array of edge ids. Atoms may do so in a graph
+     * configured for list nodes, if they were written while the graph was configured for indexed children
+     */
+    public boolean hasIndexedChildren() {
+        Iterator<Vertex> iter = wrapper.getVerticesByLabel(SemanticSynchrony.ATOM);
+        while (iter.hasNext()) {
+            if (iter.next().property(SemanticSynchrony.CHILDREN).isPresent()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Converts the list nodes of up to a given number of atoms to indexed children,
+     * so that a large graph can be migrated in a series of short transactions
+     *
+     * @param limit the maximum number of atoms to migrate
+     * @return the number of atoms migrated, which is less than the limit only if no list nodes remain
+     */
+    public int migrateChildLayout(final int limit) {
+        Preconditions.checkArgument(limit > 0, "limit must be positive");
+
+        List<Vertex> toMigrate = new LinkedList<>();
+        Iterator<Vertex> iter = wrapper.getVerticesByLabel(SemanticSynchrony.ATOM);
+        while (iter.hasNext() && toMigrate.size() < limit) {
+            Vertex v = iter.next();
+            if (v.edges(Direction.OUT, SemanticSynchrony.NOTES).hasNext()) {
+                toMigrate.add(v);
+            }
+        }
+
+        for (Vertex v : toMigrate) {
+            ((PGAtom) getAtom(v)).migrateChildren();
+        }
+
+        return toMigrate.size();
+    }
+
+    /**
+     * Adds "parent" edges and counts of parents and children to up to a given number of atoms
+     * which do not yet have them, so that the parents of atoms in a graph created before the index was introduced
+     * can be found without walking lists of list nodes
+     *
+     * @param limit the maximum number of atoms to index
+     * @return the number of atoms indexed, which is less than the limit only if all atoms are now indexed
+     */
+    public int rebuildParentIndex(final int limit) {
+        Preconditions.checkArgument(limit > 0, "limit must be positive");
+
+        List<PGAtom> toIndex = new LinkedList<>();
+        Iterator<Vertex> iter = wrapper.getVerticesByLabel(SemanticSynchrony.ATOM);
+        while (iter.hasNext() && toIndex.size() < limit) {
+            PGAtom a = (PGAtom) getAtom(iter.next());
+            if (!a.hasIndexedParents()) {
+                toIndex.add(a);
+            }
+        }
+
+        for (PGAtom a : toIndex) {
+            a.indexParents();
+            a.countChildren();
+        }
+
+        return toIndex.size();
+    }
+
+    /**
+     * Defers the indexing of reindexed atoms until the matching call to endBulkImport,
+     * so that an atom changed many times in the course of an import is indexed only once
+     */
+    public void beginBulkImport() {
+        wrapper.beginBulkImport();
+    }
+
+    public void endBulkImport() {
+        wrapper.endBulkImport();
+    }
+
     public String idOfAtom(final Atom a) {
         return a.getId();
     }
@@ -79,11 +205,65 @@ public class PGAtomGraph implements AtomGraph {
     @Override
     public void commit() {
         wrapper.commit();
+
+        long delta = atomCountDelta.get();
+        atomCountDelta.set(0L);
+        synchronized (this) {
+            if (committedAtomCount >= 0) {
+                committedAtomCount += delta;
+            }
+        }
     }
 
     @Override
     public void rollback() {
         wrapper.rollback();
+        wrapper.rollbackIndices();
+        invalidateAutocompleteIndex();
+        for (ChangeListener listener : changeListeners) {
+            listener.rolledBack();
+        }
+
+        atomCountDelta.set(0L);
+        // atoms may have been added or removed in the transaction without being counted, e.g. by a bulk import
+        invalidateAtomCount();
+    }
+
+    @Override
+    public void releaseThread() {
+        wrapper.closeThreadTransaction();
+    }
+
+    @Override
+    public long getAtomCount() {
+        synchronized (this) {
+            if (committedAtomCount < 0) {
+                // a count made within a transaction includes that transaction's own changes
+                committedAtomCount = Iterators.size(wrapper.getVerticesByLabel(SemanticSynchrony.ATOM))
+                        - atomCountDelta.get();
+            }
+            return committedAtomCount + atomCountDelta.get();
+        }
+    }
+
+    /**
+     * Causes atoms to be counted again when the count is next needed,
+     * e.g. after atom vertices have been added to the property graph directly
+     */
+    public synchronized void invalidateAtomCount() {
+        committedAtomCount = -1;
+    }
+
+    private void addToAtomCount(final long delta) {
+        if (wrapper.supportsTransactions()) {
+            atomCountDelta.set(atomCountDelta.get() + delta);
+        } else {
+            synchronized (this) {
+                if (committedAtomCount >= 0) {
+                    committedAtomCount += delta;
+                }
+            }
+        }
     }
 
     @Override
@@ -92,6 +272,34 @@ public class PGAtomGraph implements AtomGraph {
         return copyGraph(filter);
     }
 
+    @Override
+    public void addChangeListener(final ChangeListener listener) {
+        Preconditions.checkArgNotNull(listener, "listener");
+
+        changeListeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(final ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    boolean hasChangeListeners() {
+        return !changeListeners.isEmpty();
+    }
+
+    void notifyOfPropertiesChanged(final String atomId) {
+        for (ChangeListener listener : changeListeners) {
+            listener.propertiesChanged(atomId);
+        }
+    }
+
+    void notifyOfChildrenChanged(final String atomId) {
+        for (ChangeListener listener : changeListeners) {
+            listener.childrenChanged(atomId);
+        }
+    }
+
     @Override
     public void notifyOfUpdate() {
         this.lastUpdate = System.currentTimeMillis();
@@ -116,17 +324,18 @@ public class PGAtomGraph implements AtomGraph {
             throw new IllegalArgumentException("empty list");
         }
 
-        AtomList last = null;
-        AtomList head = null;
+        // the list is not yet attached to any atom, so there are no parents to index and no listeners to notify
+        PGAtomList last = null;
+        PGAtomList head = null;
         for (Atom a : elements) {
-            AtomList cur = createAtomList();
+            PGAtomList cur = (PGAtomList) createAtomList();
             if (null == head) {
                 head = cur;
             }
             if (last != null) {
-                last.setRest(cur);
+                last.replaceRest(cur, null);
             }
-            cur.setFirst(a);
+            cur.replaceFirst(a, null);
             last = cur;
         }
 
@@ -136,6 +345,10 @@ public class PGAtomGraph implements AtomGraph {
     @Override
     public Atom createAtom(final String id) {
         Vertex vertex = wrapper.createVertex(id, SemanticSynchrony.ATOM);
+        // a new atom has no parents, so its (empty) set of parent edges is already complete
+        vertex.property(SemanticSynchrony.PARENT_COUNT, 0);
+        vertex.property(SemanticSynchrony.PARENTS_INDEXED, true);
+        addToAtomCount(1);
 
         return new PGAtomImpl(vertex);
     }
@@ -163,20 +376,21 @@ public class PGAtomGraph implements AtomGraph {
 
         List<Vertex> toRemove = new LinkedList<>();
 
-        propertyGraph.vertices().forEachRemaining(v -> {
-            if (isAtomVertex(v)
-                    && !v.edges(Direction.IN).hasNext()
-                    && !v.edges(Direction.OUT).hasNext()) {
-                if (filter.isVisible(getAtom(v))) {
+        wrapper.getVerticesByLabel(SemanticSynchrony.ATOM).forEachRemaining(v -> {
+            Atom a = getAtom(v);
+            if (0 == a.getNumberOfChildren() && 0 == a.getNumberOfParents()) {
+                if (filter.isVisible(a)) {
                     toRemove.add(v);
                 }
             }
         });
 
         for (Vertex v : toRemove) {
-            // note: we assume from the above that there are no dependent vertices (i.e. list nodes) to remove first
+            // note: an atom without children has no dependent vertices (i.e. list nodes) to remove first
+            removeFromAutocompleteIndex(v);
             v.remove();
         }
+        addToAtomCount(-toRemove.size());
 
         notifyOfUpdate();
     }
@@ -188,6 +402,12 @@ public class PGAtomGraph implements AtomGraph {
         updateAcronym((PGAtom) atom, vertex);
 
         wrapper.reindex(vertex);
+
+        synchronized (autocompleteIndex) {
+            if (autocompleteIndexBuilt) {
+                putInAutocompleteIndex(atom);
+            }
+        }
     }
 
     /**
@@ -196,25 +416,82 @@ public class PGAtomGraph implements AtomGraph {
      */
     @Override
     public Iterable<Atom> getAllAtoms() {
-        return () -> asFilteredStream(
-                getPropertyGraph().vertices(),
-                this::isAtomVertex)
-                .map(this::getAtom).iterator();
+        return () -> Iterators.transform(wrapper.getVerticesByLabel(SemanticSynchrony.ATOM), this::getAtom);
+    }
+
+    @Override
+    public List<Atom> getAtomsByValueQuery(final String query, final Filter filter,
+                                           final int offset, final int limit) {
+        int capacity = TopK.capacityFor(offset, limit);
+        return wrapper.appliesFilter(SemanticSynchrony.VALUE)
+                ? toAtoms(wrapper.getVerticesByValue(query, filter, capacity), filter, offset)
+                : filterAndSort(wrapper.getVerticesByValue(query), filter, offset, limit);
     }
 
     @Override
-    public List<Atom> getAtomsByValueQuery(final String query, final Filter filter) {
-        return filterAndSort(wrapper.getVerticesByValue(query), filter);
+    public List<Atom> getAtomsByAcronym(final String acronym, final Filter filter,
+                                        final int offset, final int limit) {
+        String lowerCase = acronym.toLowerCase();
+        int capacity = TopK.capacityFor(offset, limit);
+        return wrapper.appliesFilter(SemanticSynchrony.ACRONYM)
+                ? toAtoms(wrapper.getVerticesByAcronym(lowerCase, filter, capacity), filter, offset)
+                : filterAndSort(wrapper.getVerticesByAcronym(lowerCase), filter, offset, limit);
     }
 
     @Override
-    public List<Atom> getAtomsByAcronym(final String acronym, final Filter filter) {
-        return filterAndSort(wrapper.getVerticesByAcronym(acronym.toLowerCase()), filter);
+    public List<Atom> getAtomsByShortcut(final String shortcut, final Filter filter,
+                                         final int offset, final int limit) {
+        return filterAndSort(wrapper.getVerticesByShortcut(shortcut), filter, offset, limit);
     }
 
     @Override
-    public List<Atom> getAtomsByShortcut(final String shortcut, final Filter filter) {
-        return filterAndSort(wrapper.getVerticesByShortcut(shortcut), filter);
+    public List<Atom> getAtomsByPrefix(final String prefix, final Filter filter, final int limit) {
+        synchronized (autocompleteIndex) {
+            if (!autocompleteIndexBuilt) {
+                getAllAtoms().forEach(this::putInAutocompleteIndex);
+                autocompleteIndexBuilt = true;
+            }
+        }
+
+        List<Atom> atoms = new LinkedList<>();
+        for (Object id : autocompleteIndex.getTopByPrefix(prefix, filter, limit)) {
+            Iterator<Vertex> vertices = propertyGraph.vertices(id);
+            // vertices removed without being reindexed are skipped
+            if (!vertices.hasNext()) {
+                continue;
+            }
+
+            // the index filters by the sharability and weight of an atom as of its last reindexing
+            Atom a = getAtom(vertices.next());
+            if (null == filter || filter.isVisible(a)) {
+                atoms.add(a);
+            }
+        }
+        return atoms;
+    }
+
+    private void putInAutocompleteIndex(final Atom atom) {
+        autocompleteIndex.put(((PGAtom) atom).asVertex().id(), atom.getValue(), atom.getShortcut(),
+                toFloat(atom.getSharability()), toFloat(atom.getWeight()));
+    }
+
+    private void removeFromAutocompleteIndex(final Vertex vertex) {
+        synchronized (autocompleteIndex) {
+            if (autocompleteIndexBuilt) {
+                autocompleteIndex.remove(vertex.id());
+            }
+        }
+    }
+
+    private void invalidateAutocompleteIndex() {
+        synchronized (autocompleteIndex) {
+            autocompleteIndexBuilt = false;
+            autocompleteIndex.clear();
+        }
+    }
+
+    private static float toFloat(final Float value) {
+        return null == value ? 0f : value;
     }
 
     private Atom getAtom(final Vertex vertex) {
@@ -223,14 +500,9 @@ public class PGAtomGraph implements AtomGraph {
         return new PGAtomImpl(vertex);
     }
 
-    private boolean isAtomVertex(final Vertex v) {
-        // Here, a vertex is considered an atom if it has a creation timestamp
-        return v.property(SemanticSynchrony.CREATED).isPresent();
-    }
-
     private void updateAcronym(final PGAtom atom, final Vertex asVertex) {
         String value = atom.getValue();
-        String acronym = valueToAcronym(value);
+        String acronym = Acronyms.fromValue(value);
 
         VertexProperty<String> previousProperty = asVertex.property(SemanticSynchrony.ACRONYM);
         if (null != previousProperty) {
@@ -242,42 +514,36 @@ public class PGAtomGraph implements AtomGraph {
         }
     }
 
-    private String valueToAcronym(final String value) {
-        // index only short, name-like values, avoiding free-form text if possible
-        if (value.length() <= 100) {
-            String clean = cleanForAcronym(value);
-            StringBuilder acronym = new StringBuilder();
-            boolean isInside = false;
-            for (byte b : clean.getBytes()) {
-                // TODO: support international letter characters as such
-                if (b >= 'a' && b <= 'z') {
-                    if (!isInside) {
-                        acronym.append((char) b);
-                        isInside = true;
-                    }
-                } else if (' ' == b) {
-                    isInside = false;
-                }
-            }
-
-            return acronym.toString();
-        } else {
-            return null;
-        }
+    public PGAtomGraph copyGraph(final Filter filter) {
+        return copyGraph(filter, childLayout);
     }
 
-    public PGAtomGraph copyGraph(final Filter filter) {
+    public PGAtomGraph copyGraph(final Filter filter, final ChildLayout newChildLayout) {
         Object edgeId;
         GraphWrapper newWrapper = new TinkerGraphWrapper(TinkerGraph.open());
-        PGAtomGraph newGraph = new PGAtomGraph(newWrapper);
+        PGAtomGraph newGraph = new PGAtomGraph(newWrapper, newChildLayout);
 
         for (Atom originalAtom : getAllAtoms()) {
             if (filter.isVisible(originalAtom)) {
                 PGAtom newAtom = findOrCopyAtom(originalAtom, filter, newGraph);
-                PGAtomList notes = (PGAtomList) originalAtom.getNotes();
-                if (null != notes) {
+                AtomList notes = originalAtom.getNotes();
+                if (notes instanceof PGAtomList) {
                     edgeId = getOutEdgeId((PGAtom) originalAtom, SemanticSynchrony.NOTES);
-                    newAtom.setNotes(copyAtomList(notes, filter, newGraph), edgeId);
+                    AtomList newNotes = copyAtomList((PGAtomList) notes, filter, newGraph);
+                    if (ChildLayout.Indexed == newChildLayout) {
+                        newAtom.setNotes(newNotes);
+                    } else {
+                        newAtom.setNotes(newNotes, edgeId);
+                    }
+                } else if (null != notes) {
+                    // all children are new to the copy, so the list of children is written at once
+                    List<Atom> children = new ArrayList<>();
+                    for (Atom child : originalAtom.getChildren()) {
+                        children.add(findOrCopyAtom(child, filter, newGraph));
+                    }
+                    int[] sources = new int[children.size()];
+                    Arrays.fill(sources, -1);
+                    newAtom.setChildren(children, sources);
                 }
             }
         }
@@ -285,31 +551,55 @@ public class PGAtomGraph implements AtomGraph {
         return newGraph;
     }
 
-    private String cleanForAcronym(final String value) {
-        return value.toLowerCase().replaceAll("[-_\t\n\r]", " ").trim();
-    }
-
     private List<Atom> filterAndSort(
             final Iterator<Sortable<Vertex, Float>> unranked,
-            final Filter filter) {
+            final Filter filter,
+            final int offset,
+            final int limit) {
 
-        List<Sortable<Atom, Float>> ranked = new LinkedList<>();
+        // only the top offset + limit hits are kept, however many there are
+        TopK<Atom> ranked = new TopK<>(TopK.capacityFor(offset, limit));
         while (unranked.hasNext()) {
             Sortable<Vertex, Float> in = unranked.next();
             Atom a = getAtom(in.getEntity());
             if (!filter.isVisible(a)) continue;
 
             float nativeScore = in.getScore();
-            float weight = a.getWeight();
-            String value = a.getValue();
-            float lengthPenalty = Math.min(1.0f, 15.0f/value.length());
-            float score = nativeScore * weight * lengthPenalty;
-            ranked.add(new Sortable<>(a, score));
+            float score = nativeScore * getRankingBoost(a.getWeight(), a.getValue());
+            ranked.add(a, score);
         }
 
-        Collections.sort(ranked);
+        return ranked.toList(offset);
+    }
+
+    // for an index which has already applied the filter and ranked its results.
+    // The filter is checked again against the atoms themselves, in case an atom has not been reindexed
+    // since its weight or sharability last changed
+    private List<Atom> toAtoms(final Iterator<Sortable<Vertex, Float>> ranked, final Filter filter, final int offset) {
+        List<Atom> atoms = new LinkedList<>();
+        int skipped = 0;
+        while (ranked.hasNext()) {
+            Atom a = getAtom(ranked.next().getEntity());
+            if (!filter.isVisible(a)) {
+                continue;
+            }
+
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                atoms.add(a);
+            }
+        }
+        return atoms;
+    }
 
-        return ranked.stream().map(Sortable::getEntity).collect(Collectors.toList());
+    /**
+     * @return the factor by which the text relevance of an atom is multiplied in search results,
+     * favoring atoms of greater weight and with shorter values
+     */
+    static float getRankingBoost(final float weight, final String value) {
+        float lengthPenalty = null == value ? 1.0f : Math.min(1.0f, 15.0f / value.length());
+        return weight * lengthPenalty;
     }
 
     private PGAtom findOrCopyAtom(final Atom original, final Filter filter, final AtomGraph newGraph) {
@@ -333,6 +623,7 @@ public class PGAtomGraph implements AtomGraph {
         return newAtom;
     }
 
+    // the copy is detached until the caller attaches it to an atom, which notifies listeners once for the whole list
     private AtomList copyAtomList(final PGAtomList original, final Filter filter, final PGAtomGraph newGraph) {
         Object edgeId;
         PGAtomList originalCur = original, originalPrev = null;
@@ -342,13 +633,13 @@ public class PGAtomGraph implements AtomGraph {
             edgeId = getOutEdgeId(originalCur, SemanticSynchrony.FIRST);
             Atom originalFirst = originalCur.getFirst();
             PGAtom newAtom = findOrCopyAtom(originalFirst, filter, newGraph);
-            newCur.setFirst(newAtom, edgeId);
+            newCur.replaceFirst(newAtom, edgeId);
 
             if (null == newPrev) {
                 newHead = newCur;
             } else {
                 edgeId = getOutEdgeId(originalPrev, SemanticSynchrony.REST);
-                newPrev.setRest(newCur, edgeId);
+                newPrev.replaceRest(newCur, edgeId);
             }
 
             newPrev = newCur;
@@ -363,13 +654,6 @@ public class PGAtomGraph implements AtomGraph {
         return entity.getExactlyOneEdge(label, Direction.OUT).id();
     }
 
-    private <A> Stream<A> asFilteredStream(Iterator<A> sourceIterator, Predicate<A> filter) {
-        Iterable<A> iterable = () -> sourceIterator;
-        Stream<A> stream = StreamSupport.stream(iterable.spliterator(), false);
-
-        return stream.filter(filter);
-    }
-
     private class PGAtomImpl extends PGAtom {
         protected PGAtomImpl(Vertex vertex) {
             super(vertex);
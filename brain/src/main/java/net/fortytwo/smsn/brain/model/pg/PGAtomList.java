@@ -31,13 +31,30 @@ public abstract class PGAtomList extends PGGraphEntity implements AtomList {
     }
 
     public boolean setFirst(Atom first, final Object edgeId) {
-        boolean changed = removeFirst();
-        if (null != first) {
-            addOutEdge(edgeId, ((PGGraphEntity) first).asVertex(), SemanticSynchrony.FIRST);
+        PGAtom parent = findParent();
+        PGAtom oldFirst = null == parent ? null : (PGAtom) asAtom(getAtMostOneVertex(SemanticSynchrony.FIRST, Direction.OUT));
+
+        boolean changed = putFirst(first, edgeId);
+
+        if (null != parent) {
+            if (null != oldFirst) {
+                oldFirst.removeParent(parent);
+            }
+            if (null != first) {
+                ((PGAtom) first).addParent(parent);
+            }
+            notifyOfChildrenChanged(parent);
         }
         return changed;
     }
 
+    // sets the first element without updating the index of parents or notifying listeners,
+    // which is left to the caller: a list is built or rewritten one node at a time,
+    // and the atom which owns it is notified once the list is complete
+    boolean replaceFirst(final Atom first, final Object edgeId) {
+        return putFirst(first, edgeId);
+    }
+
     @Override
     public AtomList getRest() {
         return asAtomList(getAtMostOneVertex(SemanticSynchrony.REST, Direction.OUT));
@@ -49,13 +66,43 @@ public abstract class PGAtomList extends PGGraphEntity implements AtomList {
     }
 
     public boolean setRest(AtomList rest, final Object edgeId) {
-        boolean changed = removeRest();
-        if (null != rest) {
-            addOutEdge(edgeId, ((PGGraphEntity) rest).asVertex(), SemanticSynchrony.REST);
+        PGAtom parent = findParent();
+        List<PGAtom> oldElements = null == parent ? null : getElements(getRest());
+        int oldLength = null == parent ? 0 : length(getRest());
+
+        boolean changed = putRest(rest, edgeId);
+
+        if (null != parent) {
+            for (PGAtom a : oldElements) {
+                a.removeParent(parent);
+            }
+            for (PGAtom a : getElements(rest)) {
+                a.addParent(parent);
+            }
+            parent.childCountChanged(length(rest) - oldLength);
+            notifyOfChildrenChanged(parent);
         }
         return changed;
     }
 
+    // sets the rest of the list without updating the index of parents or notifying listeners,
+    // which is left to the caller
+    boolean replaceRest(final AtomList rest, final Object edgeId) {
+        return putRest(rest, edgeId);
+    }
+
+    // links this list node to another unless already linked, without updating the index of parents or notifying listeners;
+    // used in rewriting a whole list, after which listeners are notified once
+    boolean linkRest(final PGAtomList rest) {
+        Vertex current = getAtMostOneVertex(SemanticSynchrony.REST, Direction.OUT);
+        if (null == rest ? null == current : null != current && current.id().equals(rest.asVertex().id())) {
+            return false;
+        }
+
+        putRest(rest, null);
+        return true;
+    }
+
     @Override
     public AtomList getRestOf() {
         return asAtomList(getAtMostOneVertex(SemanticSynchrony.REST, Direction.IN));
@@ -77,6 +124,62 @@ public abstract class PGAtomList extends PGGraphEntity implements AtomList {
         return list;
     }
 
+    private void notifyOfChildrenChanged(final PGAtom parent) {
+        if (getAtomGraph().hasChangeListeners()) {
+            getAtomGraph().notifyOfChildrenChanged(parent.getId());
+        }
+    }
+
+    // finds the atom, if any, at the head of this list; a detached list node is recognized at once
+    private PGAtom findParent() {
+        AtomList head = this;
+        AtomList prev;
+        while (null != (prev = head.getRestOf())) {
+            head = prev;
+        }
+
+        return (PGAtom) head.getNotesOf();
+    }
+
+    private static List<PGAtom> getElements(final AtomList list) {
+        List<PGAtom> elements = new LinkedList<>();
+        AtomList cur = list;
+        while (null != cur) {
+            Atom first = cur.getFirst();
+            if (null != first) {
+                elements.add((PGAtom) first);
+            }
+            cur = cur.getRest();
+        }
+        return elements;
+    }
+
+    private static int length(final AtomList list) {
+        int length = 0;
+        AtomList cur = list;
+        while (null != cur) {
+            length++;
+            cur = cur.getRest();
+        }
+        return length;
+    }
+
+    private boolean putFirst(final Atom first, final Object edgeId) {
+        boolean changed = removeFirst();
+        if (null != first) {
+            addOutEdge(edgeId, ((PGGraphEntity) first).asVertex(), SemanticSynchrony.FIRST);
+        }
+        return changed;
+    }
+
+    private boolean putRest(final AtomList rest, final Object edgeId) {
+        boolean changed = removeRest();
+        if (null != rest) {
+            addOutEdge(edgeId, ((PGGraphEntity) rest).asVertex(), SemanticSynchrony.REST);
+        }
+        return changed;
+    }
+
     private boolean removeFirst() {
         return removeEdge(SemanticSynchrony.FIRST, Direction.OUT);
     }
@@ -0,0 +1,81 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomList;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A view of the indexed children of an atom, from a given position to the end, as a list node.
+ * There is no list vertex behind the view; reads and writes go directly to the parent's children.
+ */
+class PGChildList implements AtomList {
+
+    private final PGAtom parent;
+    private final int index;
+
+    PGChildList(final PGAtom parent, final int index) {
+        this.parent = parent;
+        this.index = index;
+    }
+
+    @Override
+    public String getId() {
+        return parent.getId() + ":" + index;
+    }
+
+    @Override
+    public Atom getFirst() {
+        return parent.getChildAt(index);
+    }
+
+    @Override
+    public boolean setFirst(final Atom first) {
+        return parent.setChildAt(index, first);
+    }
+
+    @Override
+    public AtomList getRest() {
+        return index + 1 < parent.getNumberOfChildEdges() ? new PGChildList(parent, index + 1) : null;
+    }
+
+    @Override
+    public boolean setRest(final AtomList rest) {
+        return parent.setChildrenAfter(index, rest);
+    }
+
+    @Override
+    public AtomList getRestOf() {
+        return index > 0 ? new PGChildList(parent, index - 1) : null;
+    }
+
+    @Override
+    public Atom getNotesOf() {
+        return 0 == index ? parent : null;
+    }
+
+    @Override
+    public List<Atom> toJavaList() {
+        List<Atom> list = new LinkedList<>();
+        int i = 0;
+        for (Atom child : parent.getChildren()) {
+            if (i++ >= index) {
+                list.add(child);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof PGChildList
+                && ((PGChildList) other).index == index
+                && ((PGChildList) other).parent.asVertex().id().equals(parent.asVertex().id());
+    }
+
+    @Override
+    public int hashCode() {
+        return parent.asVertex().id().hashCode() + index;
+    }
+}
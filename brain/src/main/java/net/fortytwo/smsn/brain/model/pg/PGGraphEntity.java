@@ -95,18 +95,21 @@ abstract class PGGraphEntity {
     }
 
     private <T> boolean setProperty(String name, T value) {
-        Object previousValue = vertex.property(name);
+        VertexProperty<T> previousProperty = vertex.property(name);
+        Object previousValue = previousProperty.isPresent() ? previousProperty.value() : null;
 
         if (null == value) {
             if (null == previousValue) {
                 return false;
             } else {
-                vertex.property(name).remove();
+                previousProperty.remove();
+                propertyChanged(name);
                 return true;
             }
         } else {
             if (null == previousValue || !value.equals(previousValue)) {
                 vertex.property(name, value);
+                propertyChanged(name);
                 return true;
             } else {
                 return false;
@@ -114,6 +117,9 @@ abstract class PGGraphEntity {
         }
     }
 
+    protected void propertyChanged(final String name) {
+    }
+
     protected boolean setOptionalProperty(String name, Object value) {
         return setProperty(name, value);
     }
@@ -12,6 +12,10 @@ public class TinkerGraphWrapper extends GraphWrapper {
         super(graph);
     }
 
+    public TinkerGraphWrapper(TinkerGraph graph, FullTextBackend fullTextBackend) {
+        super(graph, fullTextBackend);
+    }
+
     @Override
     protected IndexWrapper createFullTextIndex(String key) {
         return new TinkerIndexWrapper(key);
@@ -51,6 +55,12 @@ public class TinkerGraphWrapper extends GraphWrapper {
         // do nothing
     }
 
+    @Override
+    public Iterator<Vertex> getVerticesByLabel(final String label) {
+        // TinkerGraph has no label index, but comparing labels in memory avoids any property lookups
+        return Iterators.filter(graph.vertices(), vertex -> label.equals(vertex.label()));
+    }
+
     private boolean hasVertexIndex(final String key) {
         return ((TinkerGraph) graph).getIndexedKeys(Vertex.class).contains(key);
     }
@@ -1,8 +1,12 @@
 package net.fortytwo.smsn.brain.rdf;
 
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomList;
+
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class AtomRegex {
@@ -21,6 +25,17 @@ public class AtomRegex {
         return elements;
     }
 
+    /**
+     * Compiles this regex into an automaton whose alternatives are sets of class ordinals
+     *
+     * @param ordinals the ordinal of each known class.
+     *                 Alternatives which are not known classes are dropped, as no atom can be classified with them
+     * @return a table-driven automaton which matches atoms in the same way as this regex
+     */
+    public Automaton compile(final Map<Class<? extends AtomClass>, Integer> ordinals) {
+        return new Automaton(elements, ordinals);
+    }
+
     public static class El {
         private final AtomClass.FieldHandler fieldHandler;
         private final Modifier modifier;
@@ -60,4 +75,164 @@ public class AtomRegex {
             return weight;
         }
     }
+
+    /**
+     * Matches one member of an atom against the element of an automaton in a given state
+     */
+    public interface MemberMatcher {
+        /**
+         * @param member the member to match, or null if the atom has no members
+         * @param regex  the automaton being run
+         * @param state  the current state of the automaton
+         * @return the points scored by the member, or a negative number if it does not match
+         */
+        int match(Atom member, Automaton regex, int state);
+    }
+
+    /**
+     * A regex compiled into transition tables.
+     * Element i of the regex has two states: 2i, in which it has not yet matched,
+     * and 2i + 1, in which a one-or-more element has matched at least once and so is optional.
+     * Reaching the final state, 2n, means that the regex is exhausted.
+     * Matching is greedy, as with the regex itself, and allocates nothing.
+     */
+    public static class Automaton {
+        public static final int FAIL = -1;
+
+        private final int finalState;
+        private final int[] onMatch;
+        private final int[] onMiss;
+        private final long[][] alternatives;
+        private final boolean[] wildcard;
+        private final int[] weight;
+        private final AtomClass.FieldHandler[] fieldHandler;
+
+        private Automaton(final List<El> elements,
+                          final Map<Class<? extends AtomClass>, Integer> ordinals) {
+            int n = elements.size();
+            finalState = 2 * n;
+            onMatch = new int[2 * n];
+            onMiss = new int[2 * n];
+            alternatives = new long[n][];
+            wildcard = new boolean[n];
+            weight = new int[n];
+            fieldHandler = new AtomClass.FieldHandler[n];
+
+            int words = 1;
+            for (Integer ordinal : ordinals.values()) {
+                words = Math.max(words, (ordinal >>> 6) + 1);
+            }
+
+            for (int i = 0; i < n; i++) {
+                El el = elements.get(i);
+                int fresh = 2 * i, repeated = 2 * i + 1, next = 2 * i + 2;
+
+                switch (el.getModifier()) {
+                    case ZeroOrOne:
+                        onMatch[fresh] = next;
+                        onMiss[fresh] = next;
+                        break;
+                    case ZeroOrMore:
+                        onMatch[fresh] = fresh;
+                        onMiss[fresh] = next;
+                        break;
+                    case One:
+                        onMatch[fresh] = next;
+                        onMiss[fresh] = FAIL;
+                        break;
+                    case OneOrMore:
+                        onMatch[fresh] = repeated;
+                        onMiss[fresh] = FAIL;
+                        break;
+                }
+                // only reached from a one-or-more element, which then behaves as zero-or-more
+                onMatch[repeated] = repeated;
+                onMiss[repeated] = next;
+
+                alternatives[i] = new long[words];
+                for (Class<? extends AtomClass> c : el.getAlternatives()) {
+                    Integer ordinal = ordinals.get(c);
+                    if (null != ordinal) {
+                        alternatives[i][ordinal >>> 6] |= 1L << ordinal;
+                    }
+                }
+                wildcard[i] = 0 == el.getAlternatives().size();
+                weight[i] = el.getWeight();
+                fieldHandler[i] = el.getFieldHandler();
+            }
+        }
+
+        /**
+         * Runs this automaton over the members of an atom
+         *
+         * @param members the list of members, or null if there are none
+         * @param matcher the matcher for individual members
+         * @return the total points scored by the members, or FAIL if the members do not match
+         */
+        public int run(final AtomList members, final MemberMatcher matcher) {
+            AtomList cur = members;
+            Atom member = null;
+            boolean advanceInput = true;
+            int score = 0;
+            int state = 0;
+
+            while (state != finalState) {
+                if (advanceInput) {
+                    advanceInput = false;
+
+                    if (null == cur) {
+                        // the input is exhausted; the current element is passed over if it is optional.
+                        // As with the interpreted regex, the last member (if any) is then matched against the next
+                        // element
+                        state = onMiss[state];
+                        if (FAIL == state) {
+                            return FAIL;
+                        }
+                        continue;
+                    }
+
+                    member = cur.getFirst();
+                    cur = cur.getRest();
+                }
+
+                int points = matcher.match(member, this, state);
+                if (points >= 0) {
+                    score += points;
+                    state = onMatch[state];
+                    advanceInput = true;
+                } else {
+                    state = onMiss[state];
+                    if (FAIL == state) {
+                        return FAIL;
+                    }
+                }
+            }
+
+            // the regex is exhausted; the input must also be
+            return null == cur ? score : FAIL;
+        }
+
+        /**
+         * @return whether the element of the given state accepts members of the class with the given ordinal
+         */
+        public boolean accepts(final int state, final int classOrdinal) {
+            int i = state >>> 1;
+            return wildcard[i] || 0 != (alternatives[i][classOrdinal >>> 6] & (1L << classOrdinal));
+        }
+
+        /**
+         * @return whether the element of the given state accepts any member, including an unclassified one
+         */
+        public boolean isWildcard(final int state) {
+            return wildcard[state >>> 1];
+        }
+
+        public int getWeight(final int state) {
+            return weight[state >>> 1];
+        }
+
+        public AtomClass.FieldHandler getFieldHandler(final int state) {
+            return fieldHandler[state >>> 1];
+        }
+    }
 }
@@ -0,0 +1,345 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The classifications of atoms, keyed by atom id.
+ * A classification is an array of entries, each packed into a long: the ordinal of a class,
+ * and the out-score and in-score of the atom for that class.
+ * Arrays are replaced rather than changed in place, so that a classification may be read while inference continues.
+ * The store also keeps, for each classified atom, the evidence which its classification lends to its members.
+ */
+public class ClassificationStore {
+
+    public static final int MAX_ORDINAL = 0xFFFF;
+    public static final int MAX_SCORE = 0xFFFFFF;
+
+    private static final int SCORE_BITS = 24;
+
+    private static final int SNAPSHOT_MAGIC = 0x534d534e, SNAPSHOT_VERSION = 1;
+
+    private final Map<String, long[]> classifications = new ConcurrentHashMap<>();
+    private final Map<String, Evidence> evidence = new ConcurrentHashMap<>();
+
+    /**
+     * @return an entry for the given class and scores, where scores are limited to MAX_SCORE
+     */
+    public static long pack(final int ordinal, final int outScore, final int inScore) {
+        if (ordinal < 0 || ordinal > MAX_ORDINAL) {
+            throw new IllegalArgumentException("class ordinal out of range: " + ordinal);
+        }
+
+        return ((long) ordinal << 2 * SCORE_BITS)
+                | ((long) clamp(outScore) << SCORE_BITS)
+                | clamp(inScore);
+    }
+
+    public static int ordinalOf(final long entry) {
+        return (int) (entry >>> 2 * SCORE_BITS);
+    }
+
+    public static int outScoreOf(final long entry) {
+        return (int) (entry >>> SCORE_BITS) & MAX_SCORE;
+    }
+
+    public static int inScoreOf(final long entry) {
+        return (int) entry & MAX_SCORE;
+    }
+
+    public static long withInScore(final long entry, final int inScore) {
+        return (entry & ~(long) MAX_SCORE) | clamp(inScore);
+    }
+
+    private static int clamp(final int score) {
+        return score < 0 ? 0 : score > MAX_SCORE ? MAX_SCORE : score;
+    }
+
+    /**
+     * @return the entries of the given atom, in the order in which member regexes try them,
+     * or null if the atom is not classified. The array must not be modified
+     */
+    public long[] get(final String atomId) {
+        return classifications.get(atomId);
+    }
+
+    /**
+     * @param entries the new entries of the atom. If there are none, the atom becomes unclassified
+     */
+    public void put(final String atomId, final long[] entries) {
+        if (null == entries || 0 == entries.length) {
+            classifications.remove(atomId);
+        } else {
+            classifications.put(atomId, entries);
+        }
+    }
+
+    public void remove(final String atomId) {
+        classifications.remove(atomId);
+        evidence.remove(atomId);
+    }
+
+    /**
+     * @return the index of the entry for the given class, or -1 if there is none
+     */
+    public static int indexOf(final long[] entries, final int ordinal) {
+        for (int i = 0; i < entries.length; i++) {
+            if (ordinalOf(entries[i]) == ordinal) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds to the in-score of an atom for a class, if the atom has an entry for that class.
+     * In-scores do not fall below zero
+     *
+     * @return whether the atom has an entry for the class
+     */
+    public boolean addToInScore(final String atomId, final int ordinal, final int delta) {
+        long[] entries = classifications.get(atomId);
+        int i = null == entries ? -1 : indexOf(entries, ordinal);
+        if (i < 0) {
+            return false;
+        }
+
+        long[] copy = Arrays.copyOf(entries, entries.length);
+        copy[i] = withInScore(entries[i], inScoreOf(entries[i]) + delta);
+        classifications.put(atomId, copy);
+        return true;
+    }
+
+    /**
+     * @return the number of classified atoms
+     */
+    public int size() {
+        return classifications.size();
+    }
+
+    /**
+     * @return the ids of all classified atoms, as a live view
+     */
+    public Set<String> getAtomIds() {
+        return classifications.keySet();
+    }
+
+    public Evidence getEvidence(final String atomId) {
+        return evidence.get(atomId);
+    }
+
+    public void putEvidence(final String atomId, final Evidence e) {
+        evidence.put(atomId, e);
+    }
+
+    public Evidence removeEvidence(final String atomId) {
+        return evidence.remove(atomId);
+    }
+
+    public void clearEvidence() {
+        evidence.clear();
+    }
+
+    public void clear() {
+        classifications.clear();
+        evidence.clear();
+    }
+
+    /**
+     * Writes all classifications and evidence
+     *
+     * @param out        the stream to write to
+     * @param classNames the name of the class of each ordinal, so that ordinals may be mapped to different classes
+     *                   when the snapshot is read
+     */
+    public void writeSnapshot(final OutputStream out, final List<String> classNames) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(SNAPSHOT_MAGIC);
+        data.writeInt(SNAPSHOT_VERSION);
+
+        data.writeInt(classNames.size());
+        for (String name : classNames) {
+            data.writeUTF(name);
+        }
+
+        // copy the classifications, which may be added to during the write
+        Map<String, long[]> classificationsCopy = new HashMap<>(classifications);
+        data.writeInt(classificationsCopy.size());
+        for (Map.Entry<String, long[]> e : classificationsCopy.entrySet()) {
+            data.writeUTF(e.getKey());
+            data.writeInt(e.getValue().length);
+            for (long entry : e.getValue()) {
+                data.writeLong(entry);
+            }
+        }
+
+        Map<String, Evidence> evidenceCopy = new HashMap<>(evidence);
+        data.writeInt(evidenceCopy.size());
+        for (Map.Entry<String, Evidence> e : evidenceCopy.entrySet()) {
+            Evidence ev = e.getValue();
+            data.writeUTF(e.getKey());
+            data.writeInt(ev.size());
+            for (int i = 0; i < ev.size(); i++) {
+                data.writeUTF(ev.getMemberId(i));
+                data.writeShort(ev.getOrdinal(i));
+            }
+        }
+
+        data.flush();
+    }
+
+    /**
+     * Replaces all classifications and evidence with those of a snapshot.
+     * Entries and evidence for classes which are no longer known are dropped.
+     * The snapshot is read in full before any classification is replaced; if it cannot be read,
+     * the store is left empty rather than with a mixture of old and new classifications.
+     *
+     * @param in       the stream to read from
+     * @param ordinals the ordinal of each known class, by name
+     */
+    public void readSnapshot(final InputStream in, final Map<String, Integer> ordinals) throws IOException {
+        Map<String, long[]> newClassifications = new HashMap<>();
+        Map<String, Evidence> newEvidence = new HashMap<>();
+        boolean success = false;
+        try {
+            readSnapshot(new DataInputStream(in), ordinals, newClassifications, newEvidence);
+            success = true;
+        } finally {
+            clear();
+            if (success) {
+                classifications.putAll(newClassifications);
+                evidence.putAll(newEvidence);
+            }
+        }
+    }
+
+    private static void readSnapshot(final DataInputStream data,
+                                     final Map<String, Integer> ordinals,
+                                     final Map<String, long[]> classifications,
+                                     final Map<String, Evidence> evidence) throws IOException {
+        if (SNAPSHOT_MAGIC != data.readInt()) {
+            throw new IOException("not a classification snapshot");
+        }
+        int version = data.readInt();
+        if (SNAPSHOT_VERSION != version) {
+            throw new IOException("unsupported snapshot version: " + version);
+        }
+
+        // counts which size an array are bounded, so that a corrupt file cannot exhaust memory
+        int[] mapping = new int[readCount(data, MAX_ORDINAL + 1)];
+        for (int i = 0; i < mapping.length; i++) {
+            Integer ordinal = ordinals.get(data.readUTF());
+            mapping[i] = null == ordinal ? -1 : ordinal;
+        }
+
+        int atoms = readCount(data, Integer.MAX_VALUE);
+        for (int i = 0; i < atoms; i++) {
+            String atomId = data.readUTF();
+            // an atom has at most one entry for each class
+            long[] entries = new long[readCount(data, mapping.length)];
+            int size = 0;
+            for (int j = 0; j < entries.length; j++) {
+                long entry = data.readLong();
+                int ordinal = mapOrdinal(mapping, ordinalOf(entry));
+                if (ordinal >= 0) {
+                    entries[size++] = pack(ordinal, outScoreOf(entry), inScoreOf(entry));
+                }
+            }
+            if (size > 0) {
+                classifications.put(atomId, Arrays.copyOf(entries, size));
+            }
+        }
+
+        int withEvidence = readCount(data, Integer.MAX_VALUE);
+        for (int i = 0; i < withEvidence; i++) {
+            String atomId = data.readUTF();
+            int size = readCount(data, Integer.MAX_VALUE);
+            Evidence ev = new Evidence();
+            for (int j = 0; j < size; j++) {
+                String memberId = data.readUTF();
+                int ordinal = mapOrdinal(mapping, data.readUnsignedShort());
+                if (ordinal >= 0) {
+                    ev.add(memberId, ordinal);
+                }
+            }
+            evidence.put(atomId, ev);
+        }
+    }
+
+    private static int readCount(final DataInputStream data, final int max) throws IOException {
+        int count = data.readInt();
+        if (count < 0) {
+            throw new IOException("corrupt classification snapshot: negative count");
+        } else if (count > max) {
+            throw new IOException("corrupt classification snapshot: count " + count + " exceeds " + max);
+        }
+        return count;
+    }
+
+    private static int mapOrdinal(final int[] mapping, final int ordinal) throws IOException {
+        if (ordinal >= mapping.length) {
+            throw new IOException("corrupt classification snapshot: unknown class ordinal " + ordinal);
+        }
+        return mapping[ordinal];
+    }
+
+    /**
+     * The members of an atom whose in-scores its classification adds to, each with the class it supports.
+     * A member appears once for each reference.
+     */
+    public static class Evidence {
+        private String[] memberIds;
+        private int[] ordinals;
+        private int size;
+
+        public Evidence() {
+            this(4);
+        }
+
+        public Evidence(final int capacity) {
+            memberIds = new String[Math.max(1, capacity)];
+            ordinals = new int[memberIds.length];
+        }
+
+        public void add(final String memberId, final int ordinal) {
+            if (size == memberIds.length) {
+                memberIds = Arrays.copyOf(memberIds, size * 2);
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+
+            memberIds[size] = memberId;
+            ordinals[size] = ordinal;
+            size++;
+        }
+
+        /**
+         * Discards all but the first items of evidence
+         */
+        public void truncate(final int newSize) {
+            while (size > newSize) {
+                memberIds[--size] = null;
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public String getMemberId(final int index) {
+            return memberIds[index];
+        }
+
+        public int getOrdinal(final int index) {
+            return ordinals[index];
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import net.fortytwo.smsn.brain.util.LongHashSet;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * An RDF handler which passes each distinct statement on to another handler as soon as it is received,
+ * dropping duplicates.
+ * Rather than the statements themselves, only a 64-bit fingerprint of each statement is kept,
+ * so that memory grows by a few bytes per distinct statement.
+ * Two distinct statements with the same fingerprint are possible, though very unlikely at the size of a brain;
+ * the second of them would be dropped.
+ */
+public class DeduplicatingRDFHandler implements RDFHandler {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L, FNV_PRIME = 0x100000001b3L;
+
+    private final RDFHandler baseHandler;
+    private final LongHashSet fingerprints;
+
+    private long duplicates;
+
+    public DeduplicatingRDFHandler(final RDFHandler baseHandler) {
+        this.baseHandler = baseHandler;
+        this.fingerprints = new LongHashSet();
+    }
+
+    /**
+     * @return the number of distinct statements passed on
+     */
+    public long getStatementCount() {
+        return fingerprints.size();
+    }
+
+    /**
+     * @return the number of statements dropped as duplicates
+     */
+    public long getDuplicateCount() {
+        return duplicates;
+    }
+
+    @Override
+    public void startRDF() throws RDFHandlerException {
+        baseHandler.startRDF();
+    }
+
+    @Override
+    public void endRDF() throws RDFHandlerException {
+        baseHandler.endRDF();
+    }
+
+    @Override
+    public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+        baseHandler.handleNamespace(prefix, uri);
+    }
+
+    @Override
+    public void handleStatement(Statement statement) throws RDFHandlerException {
+        if (fingerprints.add(fingerprintOf(statement))) {
+            baseHandler.handleStatement(statement);
+        } else {
+            duplicates++;
+        }
+    }
+
+    @Override
+    public void handleComment(String comment) throws RDFHandlerException {
+        baseHandler.handleComment(comment);
+    }
+
+    static long fingerprintOf(final Statement statement) {
+        long h = FNV_OFFSET_BASIS;
+        h = hash(h, statement.getSubject());
+        h = hash(h, statement.getPredicate());
+        h = hash(h, statement.getObject());
+        h = hash(h, statement.getContext());
+
+        // mix the final bits, as FNV leaves the last characters poorly distributed
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // 64-bit FNV-1a over the kind and the string form of a value (which for a literal includes its datatype or
+    // language), followed by a separator, so that adjacent values cannot run together
+    private static long hash(long h, final Value value) {
+        char kind = null == value ? '0' : value instanceof Literal ? 'L' : value instanceof BNode ? 'B' : 'I';
+        h = (h ^ kind) * FNV_PRIME;
+
+        if (null != value) {
+            String s = value.toString();
+            for (int i = 0; i < s.length(); i++) {
+                h = (h ^ s.charAt(i)) * FNV_PRIME;
+            }
+        }
+
+        return (h ^ 0xFFFF) * FNV_PRIME;
+    }
+}
@@ -1,6 +1,5 @@
 package net.fortytwo.smsn.brain.rdf;
 
-import info.aduna.iteration.CloseableIteration;
 import net.fortytwo.smsn.SemanticSynchrony;
 import net.fortytwo.smsn.brain.model.Atom;
 import net.fortytwo.smsn.brain.model.AtomList;
@@ -34,28 +33,40 @@ import net.fortytwo.smsn.brain.rdf.classes.collections.PersonCollection;
 import net.fortytwo.smsn.brain.rdf.classes.collections.QuotedValueCollection;
 import net.fortytwo.smsn.brain.rdf.classes.collections.TODOCollection;
 import net.fortytwo.smsn.brain.rdf.classes.collections.TopicCollection;
-import org.openrdf.model.Statement;
 import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.SimpleValueFactory;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.rio.Rio;
-import org.openrdf.sail.Sail;
-import org.openrdf.sail.SailConnection;
-import org.openrdf.sail.SailException;
-import org.openrdf.sail.memory.MemoryStore;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -63,20 +74,67 @@ import java.util.logging.Logger;
  * An inference layer for an Extend-o-Brain graph, supporting automatic classification of atoms and exporting to RDF
  */
 public class KnowledgeBase {
+    /**
+     * A configuration property naming a file to which classifications are periodically written,
+     * and from which they are restored on startup
+     */
+    public static final String PROP_CLASSIFICATION_SNAPSHOT = "net.fortytwo.smsn.brain.classificationSnapshot";
+
     private static final Logger logger = SemanticSynchrony.getLogger(KnowledgeBase.class);
 
+    // shared by all knowledge bases; its threads are created on demand
+    private static final ForkJoinPool inferencePool = new ForkJoinPool();
+
+    // the smallest number of atoms classified by a single task of a parallel inference step
+    private static final int MIN_INFERENCE_BATCH = 64;
+
+    // warm-up steps before incremental inference, starting from scratch or from a snapshot
+    private static final int WARM_UP_STEPS = 4, WARM_UP_STEPS_AFTER_RESTORE = 1;
+
     private final AtomGraph atomGraph;
 
     private final Map<Class<? extends AtomClass>, AtomClass> classes;
 
-    private final Map<Atom, List<AtomClassEntry>> atomClassifications;
+    // classes in the order in which they are matched, with their member regexes compiled against that order
+    private final Map<Class<? extends AtomClass>, Integer> classOrdinals;
+    private AtomClass[] classesByOrdinal = new AtomClass[0];
+    private AtomRegex.Automaton[] memberAutomata = new AtomRegex.Automaton[0];
+
+    private final ThreadLocal<ClassMatcher> classMatcher = ThreadLocal.withInitial(ClassMatcher::new);
+
+    // classifications and evidence by atom id
+    private final ClassificationStore store;
+
+    // for each atom classified as a collection, the memory of each of its entries, in the order of the entries.
+    // These are needed only for RDF, and are not included in snapshots
+    private final Map<String, AtomCollectionMemory[]> collectionMemories;
+
+    // atoms changed since the last inference, which may be added to by any thread
+    private final Set<String> changedAtomIds;
 
     private ValueFactory valueFactory = SimpleValueFactory.getInstance();
 
+    private File snapshotFile;
+
     public KnowledgeBase(final AtomGraph atomGraph) {
         this.atomGraph = atomGraph;
-        this.atomClassifications = new HashMap<>();
+        this.store = new ClassificationStore();
+        this.collectionMemories = new ConcurrentHashMap<>();
+        this.changedAtomIds = ConcurrentHashMap.newKeySet();
         this.classes = new HashMap<>();
+        this.classOrdinals = new HashMap<>();
+
+        atomGraph.addChangeListener(new AtomGraph.ChangeListener() {
+            @Override
+            public void propertiesChanged(final String atomId) {
+                changedAtomIds.add(atomId);
+            }
+
+            @Override
+            public void childrenChanged(final String atomId) {
+                changedAtomIds.add(atomId);
+            }
+        });
     }
 
     /**
@@ -88,9 +146,19 @@ public class KnowledgeBase {
         this.valueFactory = valueFactory;
     }
 
+    /**
+     * Sets a file to which automatic inference writes snapshots of classifications
+     *
+     * @param snapshotFile the snapshot file, or null to write no snapshots
+     */
+    public void setSnapshotFile(final File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
     // note: graph and vocabulary are not affected by this operation
     public synchronized void reset() {
-        atomClassifications.clear();
+        store.clear();
+        collectionMemories.clear();
     }
 
     /**
@@ -102,14 +170,16 @@ public class KnowledgeBase {
      * or a list of classifications of the given atom, sorted in descending order by score
      */
     public List<AtomClassEntry> getClassInfo(final Atom a) {
-        List<AtomClassEntry> entries = atomClassifications.get(a);
+        long[] entries = store.get(a.getId());
 
-        if (null == entries || 0 == entries.size()) {
-            return entries;
+        if (null == entries) {
+            return null;
         } else {
             // sort in descending order by total score, putting the top-ranked class first
-            List<KnowledgeBase.AtomClassEntry> helper = new LinkedList<>();
-            helper.addAll(entries);
+            List<KnowledgeBase.AtomClassEntry> helper = new ArrayList<>(entries.length);
+            for (long entry : entries) {
+                helper.add(new AtomClassEntry(entry));
+            }
             Collections.sort(helper, KnowledgeBase.AtomClassificationComparator.INSTANCE);
             return helper;
         }
@@ -169,11 +239,28 @@ public class KnowledgeBase {
         for (Class<? extends AtomClass> atomClass : vocabulary) {
             classes.put(atomClass, atomClass.newInstance());
         }
+
+        compileClasses();
+    }
+
+    private void compileClasses() {
+        classOrdinals.clear();
+        classesByOrdinal = classes.values().toArray(new AtomClass[classes.size()]);
+        for (int i = 0; i < classesByOrdinal.length; i++) {
+            classOrdinals.put(classesByOrdinal[i].getClass(), i);
+        }
+
+        memberAutomata = new AtomRegex.Automaton[classesByOrdinal.length];
+        for (int i = 0; i < classesByOrdinal.length; i++) {
+            AtomRegex memberRegex = classesByOrdinal[i].memberRegex;
+            if (null != memberRegex) {
+                memberAutomata[i] = memberRegex.compile(classOrdinals);
+            }
+        }
     }
 
 
     public void inferAutomatically(final long initialWait, final long interval) {
-        final int totalSteps = 4;
         new Thread(() -> {
             try {
                 Thread.sleep(initialWait);
@@ -181,15 +268,14 @@ public class KnowledgeBase {
                 logger.log(Level.WARNING, "interrupted", e);
             }
 
+            // classifications restored from a snapshot need only be brought up to date with the graph
+            final int totalSteps = store.size() > 0 ? WARM_UP_STEPS_AFTER_RESTORE : WARM_UP_STEPS;
             for (int i = 0; i < totalSteps; i++) {
-                try {
-                    logger.info("performing warm-up inference step #" + (i + 1) + "/" + totalSteps);
-                    inferClasses(null, null);
-                } catch (RDFHandlerException e) {
-                    logger.log(Level.WARNING, "error in warm-up inference", e);
-                }
+                logger.info("performing warm-up inference step #" + (i + 1) + "/" + totalSteps);
+                inferClassesInParallel();
             }
             logger.info("completed warm-up inference");
+            writeSnapshotIfConfigured();
 
             long lastUpdate = atomGraph.getLastUpdate();
 
@@ -200,12 +286,14 @@ public class KnowledgeBase {
                     break;
                 }
 
-                // only repeat the inference step if there have been updates in the meantime
+                // only repeat the inference step if there have been updates in the meantime,
+                // and then only for the atoms affected by them
                 long u = atomGraph.getLastUpdate();
                 if (u > lastUpdate) {
                     try {
-                        logger.info("performing class inference");
-                        inferClasses(null, null);
+                        if (inferChangedClasses() > 0) {
+                            writeSnapshotIfConfigured();
+                        }
                     } catch (RDFHandlerException e) {
                         logger.log(Level.WARNING, "class inference failed. Will keep trying", e);
                     }
@@ -215,6 +303,70 @@ public class KnowledgeBase {
         }).start();
     }
 
+    private void writeSnapshotIfConfigured() {
+        if (null != snapshotFile) {
+            try {
+                writeSnapshot(snapshotFile);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "failed to write classification snapshot", e);
+            }
+        }
+    }
+
+    /**
+     * Writes all classifications to a file, replacing any previous snapshot only once the new one is complete
+     *
+     * @param file the snapshot file
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void writeSnapshot(final File file) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        // classes are identified by name, so that a snapshot survives changes to the vocabulary
+        List<String> classNames = new ArrayList<>(classesByOrdinal.length);
+        for (AtomClass c : classesByOrdinal) {
+            classNames.add(c.getClass().getName());
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
+            store.writeSnapshot(out, classNames);
+        }
+        Files.move(tmpFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long endTime = System.currentTimeMillis();
+        logger.info("wrote snapshot of " + store.size() + " classifications in " + (endTime - startTime) + "ms");
+    }
+
+    /**
+     * Replaces all classifications with those of a snapshot.
+     * Atoms changed since the snapshot was written keep their old classifications until the next full inference step
+     *
+     * @param file the snapshot file
+     * @return whether the snapshot exists and has been read
+     * @throws IOException if the snapshot cannot be read
+     */
+    public synchronized boolean readSnapshot(final File file) throws IOException {
+        if (!file.exists()) {
+            return false;
+        }
+
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (Map.Entry<Class<? extends AtomClass>, Integer> e : classOrdinals.entrySet()) {
+            ordinals.put(e.getKey().getName(), e.getValue());
+        }
+
+        // the store is left empty if the snapshot cannot be read
+        collectionMemories.clear();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            store.readSnapshot(in, ordinals);
+        }
+
+        logger.info("restored " + store.size() + " classifications from " + file.getPath());
+        return true;
+    }
+
     private void handleAllMembers(final AtomCollectionMemory memory,
                                   final AtomClass.FieldHandler fieldHandler,
                                   final RDFizationContext context,
@@ -243,14 +395,12 @@ public class KnowledgeBase {
         void execute() throws RDFHandlerException;
     }
 
-    private enum MatchResult {Unclassified, Supported, Unsupported, NoMatch}
-
-    private boolean isClassified(final List<AtomClassEntry> entries) {
-        if (null == entries || 0 == entries.size()) {
+    private static boolean isClassified(final long[] entries) {
+        if (null == entries) {
             return false;
         } else {
-            for (AtomClassEntry e : entries) {
-                if (e.getScore() > 0) {
+            for (long e : entries) {
+                if (ClassificationStore.outScoreOf(e) + ClassificationStore.inScoreOf(e) > 0) {
                     return true;
                 }
             }
@@ -263,54 +413,82 @@ public class KnowledgeBase {
         if (atom.asVertex().getId().equals("ynyUshJ")) {
             System.out.println("break here");
         }*/
-        List<AtomClassEntry> entries = atomClassifications.get(atom);
-        return isClassified(entries);
+        return isClassified(store.get(atom.getId()));
+    }
+
+    private AtomCollectionMemory getMemory(final String atomId, final int index) {
+        AtomCollectionMemory[] memories = collectionMemories.get(atomId);
+        return null == memories || index >= memories.length ? null : memories[index];
     }
 
     /*
-    Matches the children of an atom against an atom regex element (class or wildcard with quantifier)
+    Matches the children of an atom against the elements of a compiled member regex (class or wildcard with quantifier).
+    Each thread reuses a single matcher, so that matching allocates nothing unless RDF is to be generated.
      */
-    private MatchResult match(final Atom childAtom,
-                              final AtomRegex.El el,
-                              final List<AtomClassEntry> evidenceEntries,
-                              final AtomCollectionMemory memory,
-                              final RDFizationContext context,
-                              final Collection<RdfizationCallback> callbacks,
-                              final Filter filter) throws RDFHandlerException {
-        Set<Class<? extends AtomClass>> alts = el.getAlternatives();
-
-        final List<AtomClassEntry> entries = atomClassifications.get(childAtom);
-        if (null == entries) { // unclassified
-            // The unclassified atom matches if the element has no alternatives, i.e. accepts everything.
-            // note: (as yet) unclassified atoms are only allowed to be trivial matches;
-            // we don't attempt to rdfize them
-            return 0 == alts.size() ? MatchResult.Unclassified : MatchResult.NoMatch;
-        } else { // one or more classes
-            for (final AtomClassEntry entry : entries) {
+    private class ClassMatcher implements AtomRegex.MemberMatcher {
+        private final List<Atom> memberAtoms = new ArrayList<>();
+        private final List<AtomCollectionMemory> memberCollections = new ArrayList<>();
+        private ClassificationStore.Evidence evidence;
+        private Collection<RdfizationCallback> callbacks;
+        private RDFizationContext context;
+        private Filter filter;
+
+        private void reset(final ClassificationStore.Evidence evidence,
+                           final Collection<RdfizationCallback> callbacks,
+                           final RDFizationContext context,
+                           final Filter filter) {
+            this.evidence = evidence;
+            this.callbacks = callbacks;
+            this.context = context;
+            this.filter = filter;
+            memberAtoms.clear();
+            memberCollections.clear();
+        }
+
+        @Override
+        public int match(final Atom childAtom, final AtomRegex.Automaton regex, final int state) {
+            // the child is null for an atom without children, which is then matched as if unclassified
+            final long[] entries = null == childAtom ? null : store.get(childAtom.getId());
+            if (null == entries) { // unclassified
+                // The unclassified atom matches if the element has no alternatives, i.e. accepts everything.
+                // note: (as yet) unclassified atoms are only allowed to be trivial matches;
+                // we don't attempt to rdfize them
+                return regex.isWildcard(state) ? 0 : -1;
+            }
+
+            // one or more classes
+            for (int i = 0; i < entries.length; i++) {
+                final int ordinal = ClassificationStore.ordinalOf(entries[i]);
+
                 // note: if multiple class entries are acceptable, only the first will match, in greedy fashion.
                 // The entries are sorted in descending order such that one with the highest out-score,
                 // or self-classification, is encountered first
-                if (0 == alts.size() || alts.contains(entry.getInferredClass())) {
-                    final AtomClass atomClass = classes.get(entry.getInferredClass());
+                if (regex.accepts(state, ordinal)) {
+                    final AtomClass atomClass = classesByOrdinal[ordinal];
+                    final AtomCollectionMemory memory
+                            = atomClass.isCollectionClass() ? getMemory(childAtom.getId(), i) : null;
+                    int weight = regex.getWeight(state);
 
                     // only add evidence for specifically matched classes,
                     // omitting evidence if the element is scored as a wildcard.
-                    if (el.getWeight() > 0) {
-                        evidenceEntries.add(entry);
+                    if (weight > 0) {
+                        evidence.add(childAtom.getId(), ordinal);
                     }
 
                     // add an rdfization callback which will be executed if and only if the current classification is
                     // chosen for the parent atom.  Delaying execution avoids multiple-typing of atoms,
                     // or the wasted effort of generating RDF statements which are not allowed in the output.
                     if (null != callbacks) {
-                        final AtomClass.FieldHandler fieldHandler = el.getFieldHandler();
+                        final AtomClass.FieldHandler fieldHandler = regex.getFieldHandler(state);
+                        final RDFizationContext context = this.context;
+                        final Filter filter = this.filter;
 
                         // fieldHandler is optional
                         if (null != fieldHandler) {
                             callbacks.add(() -> {
                                 if (atomClass.isCollectionClass()) {
-                                    if (null != entry.memory) {
-                                        handleAllMembers(entry.memory, fieldHandler, context,
+                                    if (null != memory) {
+                                        handleAllMembers(memory, fieldHandler, context,
                                                 new HashSet<>(), filter);
                                     }
                                 } else if (null == filter || filter.isVisible(childAtom)) {
@@ -323,24 +501,250 @@ public class KnowledgeBase {
                         }
                     }
 
-                    // if the parent is in the process of being matched as a collection,
-                    // add this member to the collection memory
-                    if (null != memory) {
-                        if (atomClass.isCollectionClass()) {
-                            if (null != entry.memory) {
-                                memory.getMemberCollections().add(entry.memory);
-                            }
-                        } else {
-                            memory.getMemberAtoms().add(childAtom);
+                    // remember this member in case the parent is matched as a collection
+                    if (atomClass.isCollectionClass()) {
+                        if (null != memory) {
+                            memberCollections.add(memory);
                         }
+                    } else {
+                        memberAtoms.add(childAtom);
                     }
 
-                    return entry.getOutScore() > 0 ? MatchResult.Supported : MatchResult.Unsupported;
+                    // Members supported by internal evidence (i.e. having non-zero out-scores)
+                    // in turn support the parent more strongly than members which merely satisfy
+                    // the property constraints.
+                    // Assign a point only if the regex element matches a specific class, not a wildcard,
+                    // and the current element has not been marked to score as a wildcard.
+                    // Particularly significant elements may score extra points.
+                    return ClassificationStore.outScoreOf(entries[i]) > 0 ? weight * 2 : weight;
+                }
+            }
+
+            return -1;
+        }
+    }
+
+    /*
+    The result of matching an atom against each class: its entries in descending order of out-score,
+    with the collection memory (if any) and rdfization callbacks (if any) of each entry
+     */
+    private static class Classification {
+        private final long[] entries;
+        private final AtomCollectionMemory[] memories;
+        private final List<Collection<RdfizationCallback>> callbacks;
+
+        private Classification(final long[] entries,
+                               final AtomCollectionMemory[] memories,
+                               final List<Collection<RdfizationCallback>> callbacks) {
+            this.entries = entries;
+            this.memories = memories;
+            this.callbacks = callbacks;
+        }
+    }
+
+    private void putClassification(final String atomId, final Classification classification) {
+        store.put(atomId, classification.entries);
+        if (null == classification.memories) {
+            collectionMemories.remove(atomId);
+        } else {
+            collectionMemories.put(atomId, classification.memories);
+        }
+    }
+
+    /*
+    Classifies or re-classifies a single atom against each class, optionally generating RDF for its best classification.
+    Returns the members which the new classification counts as evidence, each once per reference;
+    the caller adds these to in-scores.
+     */
+    private ClassificationStore.Evidence classify(final Atom subject,
+                                                  final RDFizationContext context,
+                                                  final RDFHandler handler,
+                                                  final Filter filter) throws RDFHandlerException {
+        ClassificationStore.Evidence evidence = new ClassificationStore.Evidence();
+        Classification classification = findEntries(
+                subject, context, handler, filter, store.get(subject.getId()), evidence);
+
+        // replace the old classification (if any) with the new one (if any)
+        putClassification(subject.getId(), classification);
+
+        // perform rdfization, choosing at most one classification
+        if (null != handler && (null == filter || filter.isVisible(subject))) {
+            int best = -1;
+            AtomClassEntry bestEntry = null;
+            for (int i = 0; i < classification.entries.length; i++) {
+                AtomClassEntry entry = new AtomClassEntry(classification.entries[i]);
+                if (null == bestEntry || AtomClassificationComparator.INSTANCE.compare(entry, bestEntry) < 0) {
+                    best = i;
+                    bestEntry = entry;
+                }
+            }
+
+            if (null != bestEntry && bestEntry.isNonTrivial()) {
+                AtomClass clazz = classes.get(bestEntry.getInferredClass());
+                clazz.toRDF(subject, context);
+                for (RdfizationCallback callback : classification.callbacks.get(best)) {
+                    callback.execute();
+                }
+            }
+        }
+
+        return evidence;
+    }
+
+    /*
+    Matches a single atom against each class, reading the current classifications of its members.
+    The in-score of each new entry is carried over from the entry of the same class among the old entries, if given.
+    Evidence for the new entries is added to the given evidence.
+     */
+    private Classification findEntries(final Atom subject,
+                                       final RDFizationContext context,
+                                       final RDFHandler handler,
+                                       final Filter filter,
+                                       final long[] oldEntries,
+                                       final ClassificationStore.Evidence evidence) throws RDFHandlerException {
+        context.setSubject(subject);
+
+        String value = subject.getValue();
+        String alias = subject.getAlias();
+
+        int size = 0;
+        long[] entries = new long[classesByOrdinal.length];
+        AtomCollectionMemory[] memories = null;
+        List<Collection<RdfizationCallback>> callbackLists = null == handler ? null : new ArrayList<>();
+        ClassMatcher matcher = classMatcher.get();
+
+        for (int c = 0; c < classesByOrdinal.length; c++) {
+            AtomClass clazz = classesByOrdinal[c];
+            /* DO NOT REMOVE
+            if (subject.asVertex().getId().equals("0rYY9z0") && clazz.name.equals("person")) {// && null != handler) {
+                System.out.println("break point here");
+            }//*/
+
+            if (null != clazz.valueRegex) {
+                if (null == value || !clazz.valueRegex.matcher(value).matches()) {
+                    continue;
+                }
+            }
+
+            if (null != clazz.aliasRegex) {
+                if (null == alias || !clazz.aliasRegex.matcher(alias).matches()) {
+                    continue;
                 }
             }
 
-            return MatchResult.NoMatch;
+            Collection<RdfizationCallback> callbacks = null == handler
+                    ? null : new LinkedList<>();
+
+            // evidence is added as members are matched, and withdrawn if the class does not match.
+            // The caller augments the relevant in-scores of member atoms
+            int evidenceStart = evidence.size();
+            matcher.reset(evidence, callbacks, context, filter);
+
+            // out-score is the number of ways in which the member regex of the atom matches
+            // out-score is not affected by the value or alias regex, as these are considered necessary
+            // but not sufficient for classification
+            int outScore = 0;
+
+            if (null != memberAutomata[c]) {
+                outScore = memberAutomata[c].run(subject.getNotes(), matcher);
+                if (AtomRegex.Automaton.FAIL == outScore) {
+                    evidence.truncate(evidenceStart);
+                    continue;
+                }
+            }
+
+            // at this point, we have classified the atom
+
+            if (clazz.isCollectionClass()) {
+                AtomCollectionMemory memory = new AtomCollectionMemory(subject.getId());
+                memory.getMemberAtoms().addAll(matcher.memberAtoms);
+                memory.getMemberCollections().addAll(matcher.memberCollections);
+                if (null == memories) {
+                    memories = new AtomCollectionMemory[classesByOrdinal.length];
+                }
+                memories[size] = memory;
+            }
+
+            // It is necessary to preserve the in-score of an existing entry, if any
+            int oldIndex = null == oldEntries ? -1 : ClassificationStore.indexOf(oldEntries, c);
+            int inScore = oldIndex < 0 ? 0 : ClassificationStore.inScoreOf(oldEntries[oldIndex]);
+            entries[size++] = ClassificationStore.pack(c, outScore, inScore);
+            if (null != callbackLists) {
+                callbackLists.add(callbacks);
+            }
         }
+
+        // class entries are sorted in descending order based on out-score rather than total score so as to avoid
+        // feedback -- see match().  The final score for a class and atom is the sum of out-score and in-score.
+        // The sort is stable, so that entries with equal out-scores remain in class order
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> Integer.compare(
+                ClassificationStore.outScoreOf(entries[j]), ClassificationStore.outScoreOf(entries[i])));
+
+        long[] sortedEntries = new long[size];
+        AtomCollectionMemory[] sortedMemories = null == memories ? null : new AtomCollectionMemory[size];
+        List<Collection<RdfizationCallback>> sortedCallbacks = null == callbackLists ? null : new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sortedEntries[i] = entries[order[i]];
+            if (null != sortedMemories) {
+                sortedMemories[i] = memories[order[i]];
+            }
+            if (null != sortedCallbacks) {
+                sortedCallbacks.add(callbackLists.get(order[i]));
+            }
+        }
+
+        return new Classification(sortedEntries, sortedMemories, sortedCallbacks);
+    }
+
+    /*
+    Adds the given evidence to the in-scores of the given entries, which are not yet visible to other threads,
+    and returns the evidence which was counted, i.e. for members which have the supported class
+     */
+    private static ClassificationStore.Evidence countEvidence(final ClassificationStore.Evidence evidence,
+                                                              final Map<String, long[]> entriesById) {
+        ClassificationStore.Evidence counted = new ClassificationStore.Evidence(evidence.size());
+        for (int i = 0; i < evidence.size(); i++) {
+            long[] entries = entriesById.get(evidence.getMemberId(i));
+            int index = null == entries ? -1 : ClassificationStore.indexOf(entries, evidence.getOrdinal(i));
+            if (index >= 0) {
+                entries[index] = ClassificationStore.withInScore(
+                        entries[index], ClassificationStore.inScoreOf(entries[index]) + 1);
+                counted.add(evidence.getMemberId(i), evidence.getOrdinal(i));
+            }
+        }
+        return counted;
+    }
+
+    /*
+    Replaces all stored classifications and evidence, computing in-scores from the evidence
+     */
+    private void replaceClassifications(final Map<String, long[]> entriesById,
+                                        final Map<String, ClassificationStore.Evidence> evidenceById) {
+        Map<String, ClassificationStore.Evidence> counted = new HashMap<>();
+        for (Map.Entry<String, ClassificationStore.Evidence> e : evidenceById.entrySet()) {
+            counted.put(e.getKey(), countEvidence(e.getValue(), entriesById));
+        }
+
+        // entries are replaced one atom at a time, so that concurrent readers always find a classification
+        for (String id : new ArrayList<>(store.getAtomIds())) {
+            if (!entriesById.containsKey(id)) {
+                store.remove(id);
+            }
+        }
+        for (Map.Entry<String, long[]> e : entriesById.entrySet()) {
+            store.put(e.getKey(), e.getValue());
+        }
+
+        store.clearEvidence();
+        for (Map.Entry<String, ClassificationStore.Evidence> e : counted.entrySet()) {
+            store.putEvidence(e.getKey(), e.getValue());
+        }
+
+        collectionMemories.keySet().retainAll(entriesById.keySet());
     }
 
     /**
@@ -354,245 +758,190 @@ public class KnowledgeBase {
      * @throws org.openrdf.rio.RDFHandlerException if a downstream error occurs
      */
     public synchronized void inferClasses(final RDFHandler handler, final Filter filter) throws RDFHandlerException {
+        inferClasses(handler, filter, null);
+    }
+
+    private void inferClasses(final RDFHandler handler, final Filter filter, final RDFDelta delta)
+            throws RDFHandlerException {
         long startTime = System.currentTimeMillis();
 
         RDFizationContext context = new RDFizationContext(atomGraph, handler, valueFactory);
 
-        // class entries are sorted in descending order based on out-score rather than total score so as to avoid
-        // feedback -- see match().  The final score for a class and atom is the sum of out-score and in-score.
-        Comparator outScoreDescending = Collections.reverseOrder();
-        Comparator totalScoreDescending = new AtomClassificationComparator();
+        // a full pass takes account of all changes made before it begins
+        changedAtomIds.clear();
 
         // classify or re-classify each atom
+        Map<String, ClassificationStore.Evidence> newEvidence = new HashMap<>();
         for (Atom subject : atomGraph.getAllAtoms()) {
-            context.setSubject(subject);
+            if (null != delta) {
+                delta.startAtom(subject.getId());
+            }
+            newEvidence.put(subject.getId(), classify(subject, context, handler, filter));
+        }
 
-            String value = subject.getValue();
-            String alias = subject.getAlias();
+        // update all in-scores, globally.  Until now, the in-scores of the previous iteration have been in use
+        // atoms which are no longer in the graph are dropped
+        Map<String, long[]> newEntries = new HashMap<>();
+        for (String id : newEvidence.keySet()) {
+            long[] entries = store.get(id);
+            if (null != entries) {
+                newEntries.put(id, withoutInScores(entries));
+            }
+        }
+        replaceClassifications(newEntries, newEvidence);
 
-            List<AtomClassEntry> oldEntries = atomClassifications.get(subject);
-            List<AtomClassEntry> newEntries = new LinkedList<>();
+        long typed = store.size();
+        long total = atomGraph.getAtomCount();
 
-            for (AtomClass clazz : classes.values()) {
-                /* DO NOT REMOVE
-                if (subject.asVertex().getId().equals("0rYY9z0") && clazz.name.equals("person")) {// && null != handler) {
-                    System.out.println("break point here");
-                }//*/
+        long endTime = System.currentTimeMillis();
+        logger.info("classified " + typed + " of " + total + " atoms ("
+                + (total - typed) + " remaining) in " + (endTime - startTime) + "ms");
+    }
 
-                List<AtomClassEntry> evidenceEntries = new LinkedList<>();
+    /**
+     * Performs a step of SmSn type inference on the knowledge base in parallel, using the shared inference pool
+     *
+     * @see #inferClassesInParallel(java.util.concurrent.ForkJoinPool)
+     */
+    public void inferClassesInParallel() {
+        inferClassesInParallel(inferencePool);
+    }
 
-                Collection<RdfizationCallback> callbacks = null == handler
-                        ? null : new LinkedList<>();
+    /**
+     * Performs a step of SmSn type inference on the knowledge base in parallel, without generating RDF.
+     * Unlike the sequential step, in which an atom may be matched against members already re-classified in the
+     * same step, each atom is matched against the classifications of the previous step,
+     * so that the results do not depend on the order of atoms or on how they are divided among threads.
+     * Repeated steps are expected to settle on the same classifications as repeated sequential steps,
+     * though they may take an additional step to propagate a change through each level of members.
+     *
+     * @param pool the pool in which to classify atoms
+     */
+    public synchronized void inferClassesInParallel(final ForkJoinPool pool) {
+        long startTime = System.currentTimeMillis();
 
-                AtomCollectionMemory memory = clazz.isCollectionClass()
-                        ? new AtomCollectionMemory(subject.getId())
-                        : null;
+        changedAtomIds.clear();
 
-                if (null != clazz.valueRegex) {
-                    if (null == value || !clazz.valueRegex.matcher(value).matches()) {
-                        continue;
-                    }
-                }
+        List<Atom> atoms = new ArrayList<>();
+        for (Atom a : atomGraph.getAllAtoms()) {
+            atoms.add(a);
+        }
 
-                if (null != clazz.aliasRegex) {
-                    if (null == alias || !clazz.aliasRegex.matcher(alias).matches()) {
-                        continue;
-                    }
-                }
+        Map<String, Classification> newClassifications = new ConcurrentHashMap<>();
+        Map<String, ClassificationStore.Evidence> newEvidence = new ConcurrentHashMap<>();
+        int batchSize = Math.max(MIN_INFERENCE_BATCH, atoms.size() / (pool.getParallelism() * 4));
+        pool.invoke(new InferenceTask(atoms, 0, atoms.size(), batchSize, newClassifications, newEvidence));
 
-                // out-score is the number of ways in which the member regex of the atom matches
-                // out-score is not affected by the value or alias regex, as these are considered necessary
-                // but not sufficient for classification
-                int outScore = 0;
-
-                if (null != clazz.memberRegex) {
-                    AtomList cur = subject.getNotes();
-                    Atom first = null;
-                    int eli = 0;
-                    AtomRegex.El el = null;
-                    AtomRegex.Modifier mod = null;
-                    boolean advanceInput = true;
-                    boolean advanceRegex = true;
-                    boolean matched;
-                    boolean fail = false;
-
-                    // break out on failure or exhaustion of the regex
-                    while (!fail) {
-                        if (advanceRegex) {
-                            if (clazz.memberRegex.getElements().size() > eli) {
-                                el = clazz.memberRegex.getElements().get(eli++);
-                                mod = el.getModifier();
-                            } else {
-                                // we need to have exhausted the input
-                                if (null != cur) {
-                                    fail = true;
-                                }
+        // new entries start with in-scores of zero
+        Map<String, long[]> newEntries = new HashMap<>();
+        for (Map.Entry<String, Classification> e : newClassifications.entrySet()) {
+            newEntries.put(e.getKey(), e.getValue().entries);
+        }
+        replaceClassifications(newEntries, newEvidence);
 
-                                break;
-                            }
+        collectionMemories.clear();
+        for (Map.Entry<String, Classification> e : newClassifications.entrySet()) {
+            if (null != e.getValue().memories) {
+                collectionMemories.put(e.getKey(), e.getValue().memories);
+            }
+        }
 
-                            advanceRegex = false;
-                        }
+        long typed = store.size();
+        long total = atoms.size();
 
-                        if (advanceInput) {
-                            if (null == cur) {
-                                // we have exhausted the input
-                                if (AtomRegex.Modifier.One == mod || AtomRegex.Modifier.OneOrMore == mod) {
-                                    // additional input is required by the regex; fail
-                                    fail = true;
-                                    break;
-                                } else {
-                                    // try to exhaust the regex without further input
-                                    advanceRegex = true;
-                                    advanceInput = false;
-                                    continue;
-                                }
-                            } else {
-                                first = cur.getFirst();
-                                cur = cur.getRest();
-                                advanceInput = false;
-                            }
-                        }
+        long endTime = System.currentTimeMillis();
+        logger.info("classified " + typed + " of " + total + " atoms ("
+                + (total - typed) + " remaining) in " + (endTime - startTime) + "ms using "
+                + pool.getParallelism() + " threads");
+    }
 
-                        MatchResult matchResult = match(first, el, evidenceEntries, memory, context, callbacks, filter);
-
-                        // assign points per matched input element (rather than only per regex element)
-                        switch (matchResult) {
-                            case Unsupported:
-                                // Assign a point only if the regex element matches a specific class, not a wildcard,
-                                // and the current element has not been marked to score as a wildcard.
-                                // Particularly significant elements may score extra points.
-                                outScore += el.getWeight();
-                                break;
-                            case Supported:
-                                // Members supported by internal evidence (i.e. having non-zero out-scores)
-                                // in turn support the parent more strongly than members which merely satisfy
-                                // the property constraints.
-                                outScore += el.getWeight() * 2;
-                                break;
-                            case Unclassified: // fall through
-                            case NoMatch:
-                                break;
-                        }
+    /**
+     * Performs SmSn type inference incrementally, re-classifying only those atoms which have changed since the last
+     * inference, followed by the parents of any atom whose classification changes, as their member regexes refer to it.
+     * In-scores are adjusted by the changes in evidence of each re-classified atom, rather than recomputed globally.
+     *
+     * @return the number of atoms re-classified
+     * @throws org.openrdf.rio.RDFHandlerException if a downstream error occurs
+     */
+    public synchronized int inferChangedClasses() throws RDFHandlerException {
+        if (changedAtomIds.isEmpty()) {
+            return 0;
+        }
+        long startTime = System.currentTimeMillis();
 
-                        matched = matchResult != MatchResult.NoMatch;
+        RDFizationContext context = new RDFizationContext(atomGraph, null, valueFactory);
 
-                        switch (mod) {
-                            case ZeroOrOne:
-                                if (matched) {
-                                    advanceRegex = true;
-                                    advanceInput = true;
-                                } else {
-                                    advanceRegex = true;
-                                }
-                                break;
-                            case ZeroOrMore:
-                                if (matched) {
-                                    advanceInput = true;
-                                } else {
-                                    advanceRegex = true;
-                                }
-                                break;
-                            case One:
-                                if (matched) {
-                                    advanceRegex = true;
-                                    advanceInput = true;
-                                } else {
-                                    fail = true;
-                                }
-                                break;
-                            case OneOrMore:
-                                if (matched) {
-                                    mod = AtomRegex.Modifier.ZeroOrMore;
-                                    advanceInput = true;
-                                } else {
-                                    fail = true;
-                                }
-                                break;
-                        }
-                    }
+        Deque<String> queue = new ArrayDeque<>();
+        for (Iterator<String> iter = changedAtomIds.iterator(); iter.hasNext(); ) {
+            queue.add(iter.next());
+            iter.remove();
+        }
 
-                    if (fail) {
-                        continue;
-                    }
-                }
+        // each atom is re-classified at most once per call, as in a full pass
+        Set<String> visited = new HashSet<>();
+        int count = 0;
+        while (!queue.isEmpty()) {
+            String id = queue.removeFirst();
+            if (!visited.add(id)) {
+                continue;
+            }
 
-                // at this point, we have classified the atom
-
-                // update or create the atom's entry for this class.
-                // It is necessary to preserve an existing entry, if any, for the sake of the in-score
-                AtomClassEntry classEntry = null;
-                if (null != oldEntries) {
-                    for (AtomClassEntry e : oldEntries) {
-                        if (e.getInferredClass() == clazz.getClass()) {
-                            e.outScore = outScore;
-                            e.memory = memory;
-                            classEntry = e;
-                            break;
-                        }
-                    }
-                }
-                if (null == classEntry) {
-                    classEntry = new AtomClassEntry(clazz.getClass(), outScore, memory);
-                }
-                classEntry.callbacks = callbacks;
-                newEntries.add(classEntry);
+            long[] before = withoutInScores(store.get(id));
 
-                // augment relevant in-scores of member atoms
-                for (AtomClassEntry e : evidenceEntries) {
-                    e.futureInScore += 1;
+            // withdraw the evidence of the previous classification, if any
+            ClassificationStore.Evidence oldEvidence = store.removeEvidence(id);
+            if (null != oldEvidence) {
+                for (int i = 0; i < oldEvidence.size(); i++) {
+                    store.addToInScore(oldEvidence.getMemberId(i), oldEvidence.getOrdinal(i), -1);
                 }
             }
 
-            // remove old classification (if any) and replace with the new one (if any)
-            atomClassifications.remove(subject);
-            if (newEntries.size() > 0) {
-                Collections.sort(newEntries, outScoreDescending);
-                atomClassifications.put(subject, newEntries);
-            }
-
-            // perform rdfization, choosing at most one classification
-            if (null != handler && (null == filter || filter.isVisible(subject))) {
-                if (newEntries.size() > 0) {
-                    List<AtomClassEntry> helper = new LinkedList<>();
-                    helper.addAll(newEntries);
-                    Collections.sort(helper, totalScoreDescending);
-                    AtomClassEntry best = helper.get(0);
-                    if (best.isNonTrivial()) {
-                        AtomClass clazz = classes.get(best.getInferredClass());
-                        clazz.toRDF(subject, context);
-                        for (RdfizationCallback callback : best.callbacks) {
-                            callback.execute();
-                        }
-                    }
+            Atom subject = atomGraph.getAtomById(id);
+            if (null == subject) {
+                store.remove(id);
+                collectionMemories.remove(id);
+                continue;
+            }
+
+            ClassificationStore.Evidence evidence = classify(subject, context, null, null);
+            ClassificationStore.Evidence counted = new ClassificationStore.Evidence(evidence.size());
+            for (int i = 0; i < evidence.size(); i++) {
+                if (store.addToInScore(evidence.getMemberId(i), evidence.getOrdinal(i), 1)) {
+                    counted.add(evidence.getMemberId(i), evidence.getOrdinal(i));
                 }
             }
-        }
+            store.putEvidence(id, counted);
+            count++;
 
-        // update all in-scores, globally, and clear future in-scores in preparation for the next iteration
-        for (List<AtomClassEntry> l : atomClassifications.values()) {
-            for (AtomClassEntry e : l) {
-                e.inScore = e.futureInScore;
-                e.futureInScore = 0;
-                // also clear callbacks to free memory
-                e.callbacks = null;
+            // a parent already re-classified in this call is left for the next, so that cycles of atoms terminate
+            if (!Arrays.equals(before, withoutInScores(store.get(id)))) {
+                subject.forEachParent(parent -> {
+                    if (visited.contains(parent.getId())) {
+                        changedAtomIds.add(parent.getId());
+                    } else {
+                        queue.add(parent.getId());
+                    }
+                });
             }
         }
 
-        long typed = atomClassifications.size();
-        long total = countAtoms();
-
         long endTime = System.currentTimeMillis();
-        logger.info("classified " + typed + " of " + total + " atoms ("
-                + (total - typed) + " remaining) in " + (endTime - startTime) + "ms");
+        logger.info("re-classified " + count + " changed or affected atoms in " + (endTime - startTime) + "ms");
+        return count;
     }
 
-    private long countAtoms() {
-        long count = 0;
-        for (Atom a : atomGraph.getAllAtoms()) {
-            count++;
+    // a copy of the given entries with in-scores of zero; the classes and out-scores of an atom,
+    // which determine how member regexes match it
+    private static long[] withoutInScores(final long[] entries) {
+        if (null == entries) {
+            return new long[0];
         }
-        return count;
+
+        long[] copy = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            copy[i] = ClassificationStore.withInScore(entries[i], 0);
+        }
+        return copy;
     }
 
     /**
@@ -615,12 +964,9 @@ public class KnowledgeBase {
                 ? value.substring(0, 50)
                 : value;
         System.out.println("* :" + a.getId() + ": " + value50);
-        List<AtomClassEntry> entries = atomClassifications.get(a);
+        List<AtomClassEntry> entries = getClassInfo(a);
         if (null != entries) {
-            List<AtomClassEntry> helper = new LinkedList<>();
-            helper.addAll(entries);
-            Collections.sort(helper, AtomClassificationComparator.INSTANCE);
-            for (AtomClassEntry e : helper) {
+            for (AtomClassEntry e : entries) {
                 for (int i = 0; i <= indent; i++) System.out.print("\t");
                 System.out.println("@(" + e.getInferredClassName()
                         + " " + e.getScore() + "=" + e.getOutScore() + "+" + e.getInScore() + ")");
@@ -639,49 +985,116 @@ public class KnowledgeBase {
         }
     }
 
+    /**
+     * Exports the knowledge base as RDF, inferring classes as it goes.
+     * Statements are written as they are generated, without duplicates, rather than first being collected
+     *
+     * @param out    the stream to write to
+     * @param format the RDF format to write
+     * @param filter an optional sharability filter for generated statements
+     * @throws org.openrdf.rio.RDFHandlerException if a downstream error occurs
+     */
     public void exportRDF(final OutputStream out,
                           final RDFFormat format,
-                          final Filter filter) throws SailException, RDFHandlerException {
+                          final Filter filter) throws RDFHandlerException {
         logger.info("exporting RDF in format " + format);
-        long startTime, endTime;
-        Sail dedupSail = new MemoryStore();
-        dedupSail.initialize();
-        try {
-            SailConnection sc = dedupSail.getConnection();
-            try {
-                sc.begin();
+        long startTime = System.currentTimeMillis();
+
+        DeduplicatingRDFHandler handler = new DeduplicatingRDFHandler(Rio.createWriter(format, out));
+        handler.startRDF();
+        inferClasses(handler, filter);
+        handler.endRDF();
 
-                startTime = System.currentTimeMillis();
-                RDFHandler h0 = new SailAdder(sc);
-                h0.startRDF();
+        long endTime = System.currentTimeMillis();
+        logger.info("inferred classes and wrote " + handler.getStatementCount() + " statements ("
+                + handler.getDuplicateCount() + " duplicates dropped) in " + (endTime - startTime) + "ms");
+    }
 
-                inferClasses(h0, filter);
+    /**
+     * Exports the changes to the RDF of the knowledge base since the last delta export, inferring classes as it goes.
+     * The statements which are no longer generated, and those which are newly generated,
+     * are written as a SPARQL Update. The first delta export, for which there is no manifest, adds all statements.
+     * The same filter should be used for each delta export.
+     *
+     * @param out          the stream to write to
+     * @param filter       an optional sharability filter for generated statements
+     * @param manifestFile a record of the statements of the last delta export, which is replaced with a record of
+     *                     the statements of this one
+     * @throws IOException if the manifest cannot be read or written, or a downstream error occurs
+     */
+    public synchronized void exportRDFDelta(final OutputStream out,
+                                            final Filter filter,
+                                            final File manifestFile) throws IOException {
+        logger.info("exporting RDF delta against manifest " + manifestFile.getPath());
+        long startTime = System.currentTimeMillis();
 
-                h0.endRDF();
-                endTime = System.currentTimeMillis();
-                logger.info("inferred classes and generated RDF in " + (endTime - startTime) + "ms");
+        try (RDFDelta delta = new RDFDelta(manifestFile)) {
+            delta.startRDF();
+            inferClasses(delta, filter, delta);
+            delta.endRDF();
+            delta.writeUpdate(out);
+        } catch (RDFHandlerException e) {
+            throw new IOException(e);
+        }
 
-                sc.commit();
-                sc.begin();
+        long endTime = System.currentTimeMillis();
+        logger.info("inferred classes and wrote RDF delta in " + (endTime - startTime) + "ms");
+    }
 
-                startTime = System.currentTimeMillis();
-                RDFHandler h = Rio.createWriter(format, out);
-                h.startRDF();
-                try (CloseableIteration<? extends Statement, SailException> iter
-                             = sc.getStatements(null, null, null, false)) {
-                    while (iter.hasNext()) {
-                        h.handleStatement(iter.next());
+    /*
+    Classifies a range of atoms against the classifications of the previous step, which are not changed meanwhile.
+    New classifications and evidence are collected separately, and merged by the caller once all atoms have been
+    classified.
+     */
+    private class InferenceTask extends RecursiveAction {
+        private final List<Atom> atoms;
+        private final int from;
+        private final int to;
+        private final int batchSize;
+        private final Map<String, Classification> newClassifications;
+        private final Map<String, ClassificationStore.Evidence> newEvidence;
+
+        private InferenceTask(final List<Atom> atoms,
+                              final int from,
+                              final int to,
+                              final int batchSize,
+                              final Map<String, Classification> newClassifications,
+                              final Map<String, ClassificationStore.Evidence> newEvidence) {
+            this.atoms = atoms;
+            this.from = from;
+            this.to = to;
+            this.batchSize = batchSize;
+            this.newClassifications = newClassifications;
+            this.newEvidence = newEvidence;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > batchSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new InferenceTask(atoms, from, mid, batchSize, newClassifications, newEvidence),
+                        new InferenceTask(atoms, mid, to, batchSize, newClassifications, newEvidence));
+                return;
+            }
+
+            // a context is needed only for its subject, as no RDF is generated
+            RDFizationContext context = new RDFizationContext(atomGraph, null, valueFactory);
+            try {
+                for (int i = from; i < to; i++) {
+                    Atom subject = atoms.get(i);
+                    ClassificationStore.Evidence evidence = new ClassificationStore.Evidence();
+                    Classification classification = findEntries(subject, context, null, null, null, evidence);
+                    if (classification.entries.length > 0) {
+                        newClassifications.put(subject.getId(), classification);
                     }
+                    newEvidence.put(subject.getId(), evidence);
                 }
-                h.endRDF();
-                endTime = System.currentTimeMillis();
-                logger.info("wrote triples to disk in " + (endTime - startTime) + "ms");
+            } catch (RDFHandlerException e) {
+                // no handler is used
+                throw new IllegalStateException(e);
             } finally {
-                sc.rollback();
-                sc.close();
+                atomGraph.releaseThread();
             }
-        } finally {
-            dedupSail.shutDown();
         }
     }
 
@@ -696,59 +1109,18 @@ public class KnowledgeBase {
         }
     }
 
-    private static class SailAdder implements RDFHandler {
-        private final SailConnection sc;
-
-        private SailAdder(SailConnection sc) {
-            this.sc = sc;
-        }
-
-        @Override
-        public void startRDF() throws RDFHandlerException {
-        }
-
-        @Override
-        public void endRDF() throws RDFHandlerException {
-        }
-
-        @Override
-        public void handleNamespace(String s, String s2) throws RDFHandlerException {
-        }
-
-        @Override
-        public void handleStatement(Statement statement) throws RDFHandlerException {
-            try {
-                sc.addStatement(
-                        statement.getSubject(),
-                        statement.getPredicate(),
-                        statement.getObject(),
-                        statement.getContext());
-            } catch (SailException e) {
-                throw new RDFHandlerException(e);
-            }
-        }
-
-        @Override
-        public void handleComment(String s) throws RDFHandlerException {
-        }
-    }
-
+    /**
+     * A view of one entry of the classification of an atom: a class, and the scores of the atom for that class
+     */
     public class AtomClassEntry implements Comparable<AtomClassEntry> {
         private final Class<? extends AtomClass> inferredClass;
-        private int outScore;
-        private int inScore;
-        private int futureInScore;
-        private AtomCollectionMemory memory;
-        private Collection<RdfizationCallback> callbacks;
-
-        public AtomClassEntry(Class<? extends AtomClass> inferredClass, int outScore, AtomCollectionMemory memory) {
-            this.inferredClass = inferredClass;
-            this.outScore = outScore;
-            this.memory = memory;
+        private final int outScore;
+        private final int inScore;
 
-            // note explicitly that in-score and future in-score (the working score) start at 0 for each entry
-            inScore = 0;
-            futureInScore = 0;
+        private AtomClassEntry(final long entry) {
+            this.inferredClass = classesByOrdinal[ClassificationStore.ordinalOf(entry)].getClass();
+            this.outScore = ClassificationStore.outScoreOf(entry);
+            this.inScore = ClassificationStore.inScoreOf(entry);
         }
 
         public Class<? extends AtomClass> getInferredClass() {
@@ -0,0 +1,406 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import net.fortytwo.smsn.brain.util.LongHashSet;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * The difference between the RDF of a knowledge base and the RDF of its last delta export,
+ * written as a SPARQL Update which brings a downstream copy of the last export up to date.
+ * <p>
+ * Statements are attributed to the atom whose classification generated them.
+ * A manifest file records, for each atom, the fingerprints of its statements together with the statements
+ * themselves; only the fingerprints and the position of each atom's record are held in memory,
+ * and the statements of an atom are read back only if they need to be removed.
+ * A statement is added when the first atom generates it, and removed when the last atom stops generating it.
+ * Without a manifest, every statement is added.
+ */
+public class RDFDelta implements RDFHandler, Closeable {
+    private static final Logger logger = Logger.getLogger(RDFDelta.class.getName());
+
+    private static final int MANIFEST_MAGIC = 0x534d5244, MANIFEST_VERSION = 1;
+
+    private final File manifestFile;
+    private final File newManifestFile;
+    private final RandomAccessFile oldManifest;
+
+    // the old manifest: the record of each atom,
+    // and the number of atoms which generated each fingerprint, where that is more than one
+    private final Map<String, Record> oldRecords = new HashMap<>();
+    private final LongHashSet oldStatements = new LongHashSet();
+    private final Map<Long, Integer> oldSharedCounts = new HashMap<>();
+
+    private final DataOutputStream newManifest;
+    private final Set<String> visitedAtoms = new HashSet<>();
+
+    // for each fingerprint whose statement has been added or removed by any atom,
+    // the net change in the number of atoms generating it, and the statement itself
+    private final Map<Long, Integer> countChanges = new HashMap<>();
+    private final Map<Long, String> changedStatements = new HashMap<>();
+
+    private String currentAtomId;
+    private final Map<Long, String> currentStatements = new HashMap<>();
+
+    private boolean committed;
+
+    /**
+     * @param manifestFile the manifest of the last delta export, which need not exist.
+     *                     It is replaced by the manifest of this export once the update has been written
+     */
+    public RDFDelta(final File manifestFile) throws IOException {
+        this.manifestFile = manifestFile;
+        this.newManifestFile = new File(manifestFile.getPath() + ".new");
+
+        if (manifestFile.exists()) {
+            readManifestIndex();
+            oldManifest = new RandomAccessFile(manifestFile, "r");
+        } else {
+            // a manifest which has been lost or moved also ends up here, so the consumer is sent everything again
+            logger.warning("no RDF manifest at " + manifestFile.getPath()
+                    + "; starting a new delta, in which all statements will be added");
+            oldManifest = null;
+        }
+
+        newManifest = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newManifestFile)));
+        newManifest.writeInt(MANIFEST_MAGIC);
+        newManifest.writeInt(MANIFEST_VERSION);
+    }
+
+    /**
+     * Attributes the statements which follow to the given atom
+     */
+    public void startAtom(final String atomId) throws RDFHandlerException {
+        try {
+            finishAtom();
+        } catch (IOException e) {
+            throw new RDFHandlerException(e);
+        }
+        currentAtomId = atomId;
+    }
+
+    @Override
+    public void startRDF() throws RDFHandlerException {
+    }
+
+    @Override
+    public void endRDF() throws RDFHandlerException {
+        try {
+            finishAtom();
+        } catch (IOException e) {
+            throw new RDFHandlerException(e);
+        }
+    }
+
+    @Override
+    public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+    }
+
+    @Override
+    public void handleStatement(Statement statement) throws RDFHandlerException {
+        if (null == currentAtomId) {
+            throw new IllegalStateException("statement outside of any atom");
+        }
+        // blank nodes cannot appear in DELETE DATA, and would differ between exports in any case
+        if (statement.getSubject() instanceof BNode || statement.getObject() instanceof BNode) {
+            throw new RDFHandlerException("blank nodes are not supported in a delta export: " + statement);
+        }
+
+        currentStatements.put(DeduplicatingRDFHandler.fingerprintOf(statement), toNTriples(statement));
+    }
+
+    @Override
+    public void handleComment(String comment) throws RDFHandlerException {
+    }
+
+    /**
+     * Writes the statements removed and added since the last delta export as a SPARQL Update,
+     * then replaces the old manifest with the new one.
+     * Statements of atoms which are no longer in the graph are removed.
+     *
+     * @param out the stream to write to
+     */
+    public void writeUpdate(final OutputStream out) throws IOException {
+        finishAtom();
+
+        for (Map.Entry<String, Record> e : oldRecords.entrySet()) {
+            if (!visitedAtoms.contains(e.getKey())) {
+                Map<Long, String> oldStatements = readOldStatements(e.getValue());
+                for (long fingerprint : e.getValue().fingerprints) {
+                    changeCount(fingerprint, -1, oldStatements.get(fingerprint));
+                }
+            }
+        }
+
+        List<String> removed = new ArrayList<>();
+        List<String> added = new ArrayList<>();
+        for (Map.Entry<Long, Integer> e : countChanges.entrySet()) {
+            int oldCount = oldCountOf(e.getKey());
+            int newCount = oldCount + e.getValue();
+            if (oldCount > 0 && newCount <= 0) {
+                removed.add(changedStatements.get(e.getKey()));
+            } else if (0 == oldCount && newCount > 0) {
+                added.add(changedStatements.get(e.getKey()));
+            }
+        }
+        // sorted, so that the same delta is always written the same way
+        Collections.sort(removed);
+        Collections.sort(added);
+
+        Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writeBlock(w, "DELETE DATA", removed);
+        w.write(";\n");
+        writeBlock(w, "INSERT DATA", added);
+        w.flush();
+
+        newManifest.close();
+        Files.move(newManifestFile.toPath(), manifestFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+
+        logger.info("wrote RDF delta of " + removed.size() + " removed and " + added.size()
+                + " added statements, for " + visitedAtoms.size() + " atoms");
+    }
+
+    /**
+     * Releases the manifests. If no update has been written, the old manifest is left as it was
+     */
+    @Override
+    public void close() throws IOException {
+        if (null != oldManifest) {
+            oldManifest.close();
+        }
+        if (!committed) {
+            newManifest.close();
+            Files.deleteIfExists(newManifestFile.toPath());
+        }
+    }
+
+    private void finishAtom() throws IOException {
+        if (null == currentAtomId) {
+            return;
+        }
+
+        long[] fingerprints = new long[currentStatements.size()];
+        int i = 0;
+        for (Long fingerprint : currentStatements.keySet()) {
+            fingerprints[i++] = fingerprint;
+        }
+        Arrays.sort(fingerprints);
+
+        if (fingerprints.length > 0) {
+            newManifest.writeUTF(currentAtomId);
+            newManifest.writeInt(fingerprints.length);
+            for (long fingerprint : fingerprints) {
+                newManifest.writeLong(fingerprint);
+                writeString(newManifest, currentStatements.get(fingerprint));
+            }
+        }
+
+        Record oldRecord = oldRecords.get(currentAtomId);
+        long[] old = null == oldRecord ? new long[0] : oldRecord.fingerprints;
+        if (!Arrays.equals(old, fingerprints)) {
+            for (long fingerprint : fingerprints) {
+                if (Arrays.binarySearch(old, fingerprint) < 0) {
+                    changeCount(fingerprint, 1, currentStatements.get(fingerprint));
+                }
+            }
+
+            Map<Long, String> oldStatements = null;
+            for (long fingerprint : old) {
+                if (Arrays.binarySearch(fingerprints, fingerprint) < 0) {
+                    if (null == oldStatements) {
+                        oldStatements = readOldStatements(oldRecord);
+                    }
+                    changeCount(fingerprint, -1, oldStatements.get(fingerprint));
+                }
+            }
+        }
+
+        visitedAtoms.add(currentAtomId);
+        currentAtomId = null;
+        currentStatements.clear();
+    }
+
+    private void changeCount(final long fingerprint, final int change, final String statement) {
+        countChanges.merge(fingerprint, change, Integer::sum);
+        changedStatements.putIfAbsent(fingerprint, statement);
+    }
+
+    private int oldCountOf(final long fingerprint) {
+        if (!oldStatements.contains(fingerprint)) {
+            return 0;
+        }
+        Integer count = oldSharedCounts.get(fingerprint);
+        return null == count ? 1 : count;
+    }
+
+    private void readManifestIndex() throws IOException {
+        try (CountingInputStream counter = new CountingInputStream(
+                new BufferedInputStream(new FileInputStream(manifestFile)))) {
+            DataInputStream in = new DataInputStream(counter);
+            if (MANIFEST_MAGIC != in.readInt() || MANIFEST_VERSION != in.readInt()) {
+                throw new IOException("not an RDF manifest: " + manifestFile.getPath());
+            }
+
+            while (true) {
+                long position = counter.getCount();
+                String atomId;
+                try {
+                    atomId = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                long[] fingerprints = new long[in.readInt()];
+                for (int i = 0; i < fingerprints.length; i++) {
+                    fingerprints[i] = in.readLong();
+                    skipString(in);
+
+                    if (!oldStatements.add(fingerprints[i])) {
+                        oldSharedCounts.merge(fingerprints[i], 2, (a, b) -> a + 1);
+                    }
+                }
+
+                oldRecords.put(atomId, new Record(position, (int) (counter.getCount() - position), fingerprints));
+            }
+        }
+    }
+
+    private Map<Long, String> readOldStatements(final Record record) throws IOException {
+        byte[] bytes = new byte[record.length];
+        oldManifest.seek(record.position);
+        oldManifest.readFully(bytes);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        in.readUTF();
+        int count = in.readInt();
+        Map<Long, String> statements = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            long fingerprint = in.readLong();
+            statements.put(fingerprint, readString(in));
+        }
+        return statements;
+    }
+
+    private static void writeBlock(final Writer w, final String operation, final List<String> statements)
+            throws IOException {
+        w.write(operation);
+        w.write(" {\n");
+        for (String s : statements) {
+            w.write("  ");
+            w.write(s);
+            w.write("\n");
+        }
+        w.write("}\n");
+    }
+
+    // N-Triples syntax for terms is also SPARQL syntax, so each statement is written once and read back as is
+    private static String toNTriples(final Statement statement) {
+        return NTriplesUtil.toNTriplesString(statement.getSubject()) + " "
+                + NTriplesUtil.toNTriplesString(statement.getPredicate()) + " "
+                + NTriplesUtil.toNTriplesString(statement.getObject()) + " .";
+    }
+
+    // statements may be longer than writeUTF allows
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length != in.skipBytes(length)) {
+            throw new EOFException();
+        }
+    }
+
+    private static class Record {
+        private final long position;
+        private final int length;
+        private final long[] fingerprints;
+
+        private Record(final long position, final int length, final long[] fingerprints) {
+            this.position = position;
+            this.length = length;
+            this.fingerprints = fingerprints;
+        }
+    }
+
+    // keeps track of the position in the manifest, above any buffering
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        private long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
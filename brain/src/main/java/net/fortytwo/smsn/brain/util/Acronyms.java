@@ -0,0 +1,52 @@
+package net.fortytwo.smsn.brain.util;
+
+/**
+ * Derivation of the acronym under which an atom is indexed, shared by the atom graph implementations
+ */
+public class Acronyms {
+
+    private static final int MAX_VALUE_LENGTH = 100;
+
+    /**
+     * @param value the value of an atom
+     * @return the lowercase acronym of the value, or null if the value is too long to be name-like
+     */
+    public static String fromValue(final String value) {
+        // index only short, name-like values, avoiding free-form text if possible
+        if (value.length() > MAX_VALUE_LENGTH) {
+            return null;
+        }
+
+        // a single pass over the value, as this is done whenever an atom is reindexed
+        StringBuilder acronym = new StringBuilder();
+        boolean isInside = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = Character.toLowerCase(value.charAt(i));
+            // TODO: support international letter characters as such
+            if (c >= 'a' && c <= 'z') {
+                if (!isInside) {
+                    acronym.append(c);
+                    isInside = true;
+                }
+            } else if (isSeparator(c)) {
+                isInside = false;
+            }
+        }
+
+        return acronym.toString();
+    }
+
+    private static boolean isSeparator(final char c) {
+        switch (c) {
+            case ' ':
+            case '-':
+            case '_':
+            case '\t':
+            case '\n':
+            case '\r':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package net.fortytwo.smsn.brain.util;
 
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.TreeMap;
 
 /**
- * Note: the LCS algorithm is probably not optimal in the sense of minimizing vertex and edge churn
- * e.g. ab to ba destroys one vertex and one edge, and creates one vertex and one edge.
- * A better algorithm would use a swap operation, merely deleting one edge and creating one edge.
+ * Differences between lists, found with Myers' O(ND) algorithm in linear space.
+ * Elements which are deleted from one position and added at another may be applied as moves,
+ * so that a reordering merely relinks elements rather than destroying and recreating them.
  */
 public class ListDiff {
 
@@ -30,35 +34,16 @@ public class ListDiff {
     }
 
     public static <T> List<T> longestCommonSubsequence(List<T> a, List<T> b, Comparator<T> comp) {
-        int[][] lengths = new int[a.size() + 1][b.size() + 1];
-
-        // row 0 and column 0 are initialized to 0 already
-        for (int i = 0; i < a.size(); i++)
-            for (int j = 0; j < b.size(); j++)
-                if (0 == comp.compare(a.get(i), b.get(j)))
-                    lengths[i + 1][j + 1] = lengths[i][j] + 1;
-                else
-                    lengths[i + 1][j + 1] =
-                            Math.max(lengths[i + 1][j], lengths[i][j + 1]);
-
-        // read the substring out from the matrix
+        List<T> aList = new ArrayList<>(a);
+        int[] matches = match(aList, new ArrayList<>(b), comp);
+
         List<T> result = new LinkedList<>();
-        for (int x = a.size(), y = b.size();
-             x != 0 && y != 0; ) {
-            if (lengths[x][y] == lengths[x - 1][y])
-                x--;
-            else if (lengths[x][y] == lengths[x][y - 1])
-                y--;
-            else {
-                assert 0 == comp.compare(a.get(x - 1), b.get(y - 1));
-                result.add(a.get(x - 1));
-                x--;
-                y--;
+        for (int i = 0; i < matches.length; i++) {
+            if (NONE != matches[i]) {
+                result.add(aList.get(i));
             }
         }
 
-        Collections.reverse(result);
-
         return result;
     }
 
@@ -73,19 +58,23 @@ public class ListDiff {
                                      final List<T> l,
                                      final Comparator<T> cmp,
                                      final DiffEditor<T> ed) {
+        List<T> aList = a instanceof ArrayList ? a : new ArrayList<>(a);
+        List<T> bList = b instanceof ArrayList ? b : new ArrayList<>(b);
+        List<T> lList = l instanceof ArrayList ? l : new ArrayList<>(l);
+
         int acur = 0;
         int bcur = 0;
         int lcur = 0;
         int ecur = 0;
 
-        while (lcur < l.size()) {
-            if (0 != cmp.compare(l.get(lcur), a.get(acur))) {
+        while (lcur < lList.size()) {
+            if (0 != cmp.compare(lList.get(lcur), aList.get(acur))) {
                 // absent in the subsequence but present in the original
-                ed.delete(ecur, a.get(acur));
+                ed.delete(ecur, aList.get(acur));
                 acur++;
-            } else if (0 != cmp.compare(l.get(lcur), b.get(bcur))) {
+            } else if (0 != cmp.compare(lList.get(lcur), bList.get(bcur))) {
                 // absent in the subsequence but present in the second sequence
-                ed.add(ecur, b.get(bcur));
+                ed.add(ecur, bList.get(bcur));
                 bcur++;
                 ecur++;
             } else {
@@ -96,23 +85,345 @@ public class ListDiff {
             }
         }
 
-        int aleftover = a.size() - acur;
-        int bleftover = b.size() - bcur;
+        int aleftover = aList.size() - acur;
+        int bleftover = bList.size() - bcur;
 
         for (int i = 0; i < aleftover; i++) {
-            ed.delete(ecur, a.get(acur));
+            ed.delete(ecur, aList.get(acur));
             acur++;
         }
         for (int i = 0; i < bleftover; i++) {
-            ed.add(ecur, b.get(bcur));
+            ed.add(ecur, bList.get(bcur));
             bcur++;
             ecur++;
         }
     }
 
+    /**
+     * Transforms one list into another through an editor, moving rather than deleting and re-adding
+     * any element which is outside of the longest common subsequence but present in both lists.
+     * Deletions come first, followed by additions and moves in the order of the second list.
+     *
+     * @param a   the original list
+     * @param b   the list into which the original is to be transformed
+     * @param cmp a comparator which finds elements equal
+     * @param ed  an editor to which each change is applied in turn
+     */
+    public static <T> void applyDiff(final List<T> a,
+                                     final List<T> b,
+                                     final Comparator<T> cmp,
+                                     final DiffEditor<T> ed) {
+        List<T> aList = new ArrayList<>(a);
+        List<T> bList = new ArrayList<>(b);
+        int[] aToB = match(aList, bList, cmp);
+        int[] bToA = invert(aToB, bList.size());
+        int[] movedFrom = pairUnmatched(aList, bList, aToB, bToA, cmp);
+        boolean[] moved = new boolean[aList.size()];
+        for (int i : movedFrom) {
+            if (NONE != i) {
+                moved[i] = true;
+            }
+        }
+
+        // the working list holds the index in the original list of each element, or a negative number for an added element
+        List<Integer> work = new ArrayList<>(aList.size());
+        for (int i = 0; i < aList.size(); i++) {
+            work.add(i);
+        }
+
+        // delete from the end, so that the positions of the remaining deletions are unaffected
+        for (int i = aList.size() - 1; i >= 0; i--) {
+            if (NONE == aToB[i] && !moved[i]) {
+                ed.delete(i, aList.get(i));
+                work.remove(i);
+            }
+        }
+
+        // The elements of the common subsequence stay in place. Each added or moved element is placed
+        // directly after its predecessor in the second list; moved elements not yet placed may lie anywhere.
+        int previous = NONE;
+        for (int j = 0; j < bList.size(); j++) {
+            int to = NONE == previous ? 0 : previous + 1;
+            if (NONE != bToA[j]) {
+                previous = work.indexOf(bToA[j]);
+            } else if (NONE != movedFrom[j]) {
+                int from = work.indexOf(movedFrom[j]);
+                if (from < to) {
+                    to--;
+                }
+                if (from != to) {
+                    ed.move(from, to, bList.get(j));
+                    work.add(to, work.remove(from));
+                }
+                previous = to;
+            } else {
+                ed.add(to, bList.get(j));
+                // distinguishes added elements from each other, as none of them is looked up
+                work.add(to, NONE - 1 - j);
+                previous = to;
+            }
+        }
+    }
+
+    /**
+     * Finds the changes between two lists in the form of an edit script which may be applied in a single pass:
+     * for each element of the second list, the position of the element of the original list which it keeps,
+     * whether in place or moved, or -1 if the element is added.
+     * Elements of the original list which are not kept are deleted.
+     *
+     * @param a   the original list
+     * @param b   the list into which the original is to be transformed
+     * @param cmp a comparator which finds elements equal
+     * @return the position in the original list of each element of the second list, or -1
+     */
+    public static <T> int[] findSources(final List<T> a,
+                                        final List<T> b,
+                                        final Comparator<T> cmp) {
+        List<T> aList = new ArrayList<>(a);
+        List<T> bList = new ArrayList<>(b);
+        int[] aToB = match(aList, bList, cmp);
+        int[] bToA = invert(aToB, bList.size());
+        int[] movedFrom = pairUnmatched(aList, bList, aToB, bToA, cmp);
+
+        for (int j = 0; j < bToA.length; j++) {
+            if (NONE == bToA[j]) {
+                bToA[j] = movedFrom[j];
+            }
+        }
+        return bToA;
+    }
+
+    /**
+     * Finds which elements of the original list are kept by an edit script
+     *
+     * @param sources an edit script, as found by findSources
+     * @param size    the length of the original list
+     * @return whether each element of the original list is kept
+     * @throws IllegalArgumentException if the script refers to a position outside of the original list,
+     *                                  or to the same position more than once
+     */
+    public static boolean[] findKept(final int[] sources, final int size) {
+        boolean[] kept = new boolean[size];
+        for (int source : sources) {
+            if (NONE == source) {
+                continue;
+            }
+            if (source < 0 || source >= size) {
+                throw new IllegalArgumentException("position " + source + " in list of " + size + " elements");
+            }
+            if (kept[source]) {
+                throw new IllegalArgumentException("position " + source + " is kept more than once");
+            }
+            kept[source] = true;
+        }
+        return kept;
+    }
+
+    /**
+     * @param sources an edit script, as found by findSources
+     * @param size    the length of the original list
+     * @return the least number of additions, deletions and moves with which the script may be applied
+     */
+    public static int countEdits(final int[] sources, final int size) {
+        // the elements which need not move are those of a longest increasing subsequence of kept positions
+        int[] tails = new int[sources.length];
+        int kept = 0;
+        int inPlace = 0;
+        for (int source : sources) {
+            if (NONE == source) {
+                continue;
+            }
+            kept++;
+            int k = Arrays.binarySearch(tails, 0, inPlace, source);
+            if (k < 0) {
+                k = -k - 1;
+            }
+            tails[k] = source;
+            if (k == inPlace) {
+                inPlace++;
+            }
+        }
+
+        return (sources.length - kept) + (size - kept) + (kept - inPlace);
+    }
+
     public static interface DiffEditor<T> {
         void add(int position, T letter);
 
         void delete(int position, T letter);
+
+        /**
+         * Removes the element at one position, then inserts it at another position in the shortened list
+         */
+        default void move(int from, int to, T letter) {
+            delete(from, letter);
+            add(to, letter);
+        }
+    }
+
+    private static final int NONE = -1;
+
+    // matches the second list against the first, which breaks ties between subsequences of equal length
+    // in favor of the earlier elements of the first list
+    private static <T> int[] match(final List<T> a, final List<T> b, final Comparator<T> cmp) {
+        return invert(new Matcher<>(b, a, (x, y) -> cmp.compare(y, x)).match(), a.size());
+    }
+
+    // pairs each unmatched element of the second list with the first equal and unmatched element, if any,
+    // of the original list; each pair is a move
+    private static <T> int[] pairUnmatched(final List<T> aList,
+                                           final List<T> bList,
+                                           final int[] aToB,
+                                           final int[] bToA,
+                                           final Comparator<T> cmp) {
+        TreeMap<T, Deque<Integer>> unmatched = new TreeMap<>(cmp);
+        for (int i = 0; i < aToB.length; i++) {
+            if (NONE == aToB[i]) {
+                unmatched.computeIfAbsent(aList.get(i), k -> new ArrayDeque<>()).add(i);
+            }
+        }
+        int[] movedFrom = new int[bList.size()];
+        Arrays.fill(movedFrom, NONE);
+        for (int j = 0; j < bToA.length; j++) {
+            if (NONE == bToA[j]) {
+                Deque<Integer> candidates = unmatched.get(bList.get(j));
+                if (null != candidates && !candidates.isEmpty()) {
+                    movedFrom[j] = candidates.removeFirst();
+                }
+            }
+        }
+        return movedFrom;
+    }
+
+    private static int[] invert(final int[] matches, final int size) {
+        int[] inverse = new int[size];
+        Arrays.fill(inverse, NONE);
+        for (int i = 0; i < matches.length; i++) {
+            if (NONE != matches[i]) {
+                inverse[matches[i]] = i;
+            }
+        }
+        return inverse;
+    }
+
+    /**
+     * Finds a longest common subsequence by recursive bisection of the edit graph at the middle of an optimal path.
+     * Only two vectors of size O(N + M) are needed at each level of recursion.
+     */
+    private static class Matcher<T> {
+        private final List<T> a;
+        private final List<T> b;
+        private final Comparator<T> cmp;
+        private final int[] aToB;
+
+        private Matcher(final List<T> a, final List<T> b, final Comparator<T> cmp) {
+            this.a = a;
+            this.b = b;
+            this.cmp = cmp;
+            aToB = new int[a.size()];
+            Arrays.fill(aToB, NONE);
+        }
+
+        private int[] match() {
+            match(0, a.size(), 0, b.size());
+            return aToB;
+        }
+
+        private boolean equal(final int i, final int j) {
+            return 0 == cmp.compare(a.get(i), b.get(j));
+        }
+
+        private void match(int aStart, int aEnd, int bStart, int bEnd) {
+            // common prefix and suffix
+            while (aStart < aEnd && bStart < bEnd && equal(aStart, bStart)) {
+                aToB[aStart++] = bStart++;
+            }
+            while (aStart < aEnd && bStart < bEnd && equal(aEnd - 1, bEnd - 1)) {
+                aToB[--aEnd] = --bEnd;
+            }
+            if (aStart == aEnd || bStart == bEnd) {
+                return;
+            }
+
+            int n = aEnd - aStart;
+            int m = bEnd - bStart;
+            int maxD = (n + m + 1) / 2;
+            int offset = maxD;
+            int length = 2 * maxD + 2;
+            int[] forward = new int[length];
+            int[] backward = new int[length];
+            Arrays.fill(forward, NONE);
+            Arrays.fill(backward, NONE);
+            forward[offset + 1] = 0;
+            backward[offset + 1] = 0;
+            int delta = n - m;
+            // if the difference in length is odd, the forward and backward paths meet on a forward step
+            boolean front = 0 != (delta & 1);
+            // bounds on the diagonals which remain within the edit graph
+            int k1Start = 0, k1End = 0, k2Start = 0, k2End = 0;
+
+            for (int d = 0; d < maxD; d++) {
+                for (int k1 = -d + k1Start; k1 <= d - k1End; k1 += 2) {
+                    int k1Offset = offset + k1;
+                    int x1 = k1 == -d || (k1 != d && forward[k1Offset - 1] < forward[k1Offset + 1])
+                            ? forward[k1Offset + 1]
+                            : forward[k1Offset - 1] + 1;
+                    int y1 = x1 - k1;
+                    while (x1 < n && y1 < m && equal(aStart + x1, bStart + y1)) {
+                        x1++;
+                        y1++;
+                    }
+                    forward[k1Offset] = x1;
+                    if (x1 > n) {
+                        k1End += 2;
+                    } else if (y1 > m) {
+                        k1Start += 2;
+                    } else if (front) {
+                        int k2Offset = offset + delta - k1;
+                        if (k2Offset >= 0 && k2Offset < length && NONE != backward[k2Offset]
+                                && x1 >= n - backward[k2Offset]) {
+                            split(aStart, aEnd, bStart, bEnd, x1, y1);
+                            return;
+                        }
+                    }
+                }
+
+                for (int k2 = -d + k2Start; k2 <= d - k2End; k2 += 2) {
+                    int k2Offset = offset + k2;
+                    int x2 = k2 == -d || (k2 != d && backward[k2Offset - 1] < backward[k2Offset + 1])
+                            ? backward[k2Offset + 1]
+                            : backward[k2Offset - 1] + 1;
+                    int y2 = x2 - k2;
+                    while (x2 < n && y2 < m && equal(aEnd - x2 - 1, bEnd - y2 - 1)) {
+                        x2++;
+                        y2++;
+                    }
+                    backward[k2Offset] = x2;
+                    if (x2 > n) {
+                        k2End += 2;
+                    } else if (y2 > m) {
+                        k2Start += 2;
+                    } else if (!front) {
+                        int k1Offset = offset + delta - k2;
+                        if (k1Offset >= 0 && k1Offset < length && NONE != forward[k1Offset]) {
+                            int x1 = forward[k1Offset];
+                            int y1 = offset + x1 - k1Offset;
+                            if (x1 >= n - x2) {
+                                split(aStart, aEnd, bStart, bEnd, x1, y1);
+                                return;
+                            }
+                        }
+                    }
+                }
+            }
+
+            // nothing in common
+        }
+
+        private void split(final int aStart, final int aEnd, final int bStart, final int bEnd,
+                           final int x, final int y) {
+            match(aStart, aStart + x, bStart, bStart + y);
+            match(aStart + x, aEnd, bStart + y, bEnd);
+        }
     }
 }
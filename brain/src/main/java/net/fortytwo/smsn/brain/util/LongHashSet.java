@@ -0,0 +1,124 @@
+package net.fortytwo.smsn.brain.util;
+
+import org.parboiled.common.Preconditions;
+
+/**
+ * A set of long values in a single open-addressed array, using eight bytes per slot and no per-element objects.
+ * Not thread-safe.
+ */
+public class LongHashSet {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    // zero marks an empty slot, so the value zero itself is kept apart
+    private long[] slots;
+    private boolean containsZero;
+    private int size;
+    private int threshold;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize the number of values to make room for, so that the set does not need to grow
+     */
+    public LongHashSet(final int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0, "expected size must be non-negative");
+
+        int capacity = 16;
+        while (capacity < MAX_CAPACITY && capacity * 3L / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @return whether the value was added, i.e. was not already in the set
+     */
+    public boolean add(final long value) {
+        if (0 == value) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int mask = slots.length - 1;
+        int i = indexFor(value, mask);
+        while (0 != slots[i]) {
+            if (value == slots[i]) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+
+        if (size >= threshold) {
+            grow();
+            add(value);
+            return true;
+        }
+
+        slots[i] = value;
+        size++;
+        return true;
+    }
+
+    public boolean contains(final long value) {
+        if (0 == value) {
+            return containsZero;
+        }
+
+        int mask = slots.length - 1;
+        int i = indexFor(value, mask);
+        while (0 != slots[i]) {
+            if (value == slots[i]) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(16);
+        containsZero = false;
+        size = 0;
+    }
+
+    private void allocate(final int capacity) {
+        slots = new long[capacity];
+        threshold = capacity / 4 * 3;
+    }
+
+    private void grow() {
+        if (slots.length == MAX_CAPACITY) {
+            throw new IllegalStateException("set is full");
+        }
+
+        long[] old = slots;
+        allocate(old.length << 1);
+        int mask = slots.length - 1;
+        for (long value : old) {
+            if (0 != value) {
+                int i = indexFor(value, mask);
+                while (0 != slots[i]) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = value;
+            }
+        }
+    }
+
+    // spreads the bits of the value, so that values which differ only in their high bits do not collide
+    private static int indexFor(final long value, final int mask) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
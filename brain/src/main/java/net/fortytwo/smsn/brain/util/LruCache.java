@@ -0,0 +1,81 @@
+package net.fortytwo.smsn.brain.util;
+
+import org.parboiled.common.Preconditions;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A bounded, thread-safe map which evicts its least recently used entries,
+ * and which counts hits and misses so that its capacity can be tuned
+ */
+public class LruCache<K, V> {
+
+    private final int capacity;
+    private final Map<K, V> map;
+
+    private long hits;
+    private long misses;
+
+    public LruCache(final int capacity) {
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+
+        this.capacity = capacity;
+        this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                return size() > LruCache.this.capacity;
+            }
+        };
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized V get(final K key) {
+        V value = map.get(key);
+        if (null == value) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves a value without counting a hit or miss, e.g. for the purpose of invalidating it
+     */
+    public synchronized V peek(final K key) {
+        return map.get(key);
+    }
+
+    public synchronized void put(final K key, final V value) {
+        map.put(key, value);
+    }
+
+    public synchronized V remove(final K key) {
+        return map.remove(key);
+    }
+
+    public synchronized void removeIf(final Predicate<V> predicate) {
+        map.values().removeIf(predicate);
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,130 @@
+package net.fortytwo.smsn.brain.util;
+
+import org.parboiled.common.Preconditions;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue for any number of producers and a single consumer, without locks.
+ * Each slot carries a sequence number which tells producers and the consumer whose turn it is:
+ * a producer claims a position by advancing the tail, fills the slot, then publishes it by advancing its sequence.
+ */
+public class RingBuffer<T> {
+
+    private static final int SPINS_BEFORE_PARKING = 100;
+    private static final long PARK_NANOS = 100000;
+
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final int capacity;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    // read and written only by the consumer
+    private long head;
+
+    /**
+     * @param capacity the number of items the buffer holds, which must be a power of two
+     */
+    public RingBuffer(final int capacity) {
+        Preconditions.checkArgument(capacity > 0 && 0 == (capacity & (capacity - 1)),
+                "capacity must be a positive power of two");
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        slots = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an item, if there is room for it
+     *
+     * @return whether the item was added
+     */
+    public boolean offer(final T item) {
+        Preconditions.checkArgNotNull(item, "item");
+
+        while (true) {
+            long position = tail.get();
+            int i = (int) position & mask;
+            long sequence = sequences.get(i);
+
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(i, item);
+                    sequences.lazySet(i, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                // the consumer has yet to take the item a full lap behind
+                return false;
+            }
+            // otherwise another producer has claimed this position; try the next
+        }
+    }
+
+    /**
+     * Adds an item, waiting for room if the buffer is full
+     */
+    public void put(final T item) {
+        int spins = 0;
+        while (!offer(item)) {
+            if (++spins < SPINS_BEFORE_PARKING) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Takes the next item. To be called only by the consumer
+     *
+     * @return the next item, or null if there is none
+     */
+    public T poll() {
+        int i = (int) head & mask;
+        if (sequences.get(i) != head + 1) {
+            return null;
+        }
+
+        T item = slots.get(i);
+        slots.lazySet(i, null);
+        sequences.lazySet(i, head + capacity);
+        head++;
+        return item;
+    }
+
+    /**
+     * Takes up to the given number of items, in order. To be called only by the consumer
+     *
+     * @return the number of items taken
+     */
+    public int drainTo(final Collection<? super T> items, final int maxItems) {
+        int n = 0;
+        T item;
+        while (n < maxItems && null != (item = poll())) {
+            items.add(item);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * @return the number of items added since the buffer was created, including those not yet taken
+     */
+    public long getAddedCount() {
+        return tail.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
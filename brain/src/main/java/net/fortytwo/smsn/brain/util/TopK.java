@@ -0,0 +1,99 @@
+package net.fortytwo.smsn.brain.util;
+
+import org.parboiled.common.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A collector of the k highest-scoring of a stream of items, in space proportional to k.
+ * Items of equal score are kept in the order in which they were added.
+ */
+public class TopK<T> {
+
+    private final int k;
+    private final PriorityQueue<Entry<T>> heap;
+
+    private long added;
+
+    public TopK(final int k) {
+        Preconditions.checkArgument(k >= 0, "k must be non-negative");
+
+        this.k = k;
+        // the head of the heap is the lowest-ranked entry, i.e. the next to be displaced
+        this.heap = new PriorityQueue<>(Math.min(k, 64) + 1);
+    }
+
+    /**
+     * @return the number of items needed to fill a page of results at a given offset,
+     * or Integer.MAX_VALUE if this exceeds the range of an int
+     */
+    public static int capacityFor(final int offset, final int limit) {
+        Preconditions.checkArgument(offset >= 0, "offset must be non-negative");
+        Preconditions.checkArgument(limit >= 0, "limit must be non-negative");
+
+        return (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+    }
+
+    public void add(final T item, final float score) {
+        if (0 == k) return;
+
+        Entry<T> entry = new Entry<>(item, score, added++);
+        if (heap.size() < k) {
+            heap.add(entry);
+        } else if (entry.compareTo(heap.peek()) > 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    /**
+     * @return the number of items added, whether or not they were retained
+     */
+    public long getAdded() {
+        return added;
+    }
+
+    /**
+     * @return the retained items, by decreasing score
+     */
+    public List<T> toList() {
+        return toList(0);
+    }
+
+    /**
+     * @param skip the number of top-ranked items to leave out, e.g. the offset of a page of results
+     * @return the retained items after the first skip items, by decreasing score
+     */
+    public List<T> toList(final int skip) {
+        List<Entry<T>> entries = new ArrayList<>(heap);
+        entries.sort(Collections.reverseOrder());
+
+        List<T> items = new ArrayList<>(Math.max(0, entries.size() - skip));
+        for (int i = skip; i < entries.size(); i++) {
+            items.add(entries.get(i).item);
+        }
+        return items;
+    }
+
+    private static class Entry<T> implements Comparable<Entry<T>> {
+        private final T item;
+        private final float score;
+        private final long sequence;
+
+        private Entry(final T item, final float score, final long sequence) {
+            this.item = item;
+            this.score = score;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final Entry<T> other) {
+            // higher scores rank higher, and of equal scores, the earlier ranks higher
+            int c = Float.compare(score, other.score);
+            return 0 != c ? c : Long.compare(other.sequence, sequence);
+        }
+    }
+}
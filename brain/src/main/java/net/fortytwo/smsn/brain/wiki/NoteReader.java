@@ -286,6 +286,9 @@ public class NoteReader {
         if (json.has(NoteWriter.HAS_CHILDREN)) {
             n.setHasChildren(json.optBoolean(NoteWriter.HAS_CHILDREN));
         }
+        if (json.has(NoteWriter.NUMBER_OF_CHILDREN)) {
+            n.setNumberOfChildren(json.getInt(NoteWriter.NUMBER_OF_CHILDREN));
+        }
 
         JSONArray a = json.optJSONArray(NoteWriter.CHILDREN);
         if (null != a) {
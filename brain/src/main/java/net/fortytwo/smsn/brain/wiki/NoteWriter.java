@@ -19,6 +19,7 @@ public class NoteWriter {
     public static final String HAS_CHILDREN = "hasChildren";
     public static final String ID = "id";
     public static final String META = "meta";
+    public static final String NUMBER_OF_CHILDREN = "numberOfChildren";
 
     private int valueLengthCutoff = -1;
 
@@ -39,6 +40,10 @@ public class NoteWriter {
         json.put(SemanticSynchrony.CREATED, n.getCreated());
         json.put(HAS_CHILDREN, n.getHasChildren());
 
+        if (null != n.getNumberOfChildren()) {
+            json.put(NUMBER_OF_CHILDREN, n.getNumberOfChildren());
+        }
+
         Float priority = n.getPriority();
         if (null != priority && priority > 0) {
             json.put(SemanticSynchrony.PRIORITY, priority);
@@ -558,6 +558,43 @@ public class NoteQueriesTest extends BrainTestBase {
         assertEquals("two", children.get(2).getValue());
     }
 
+    @Test
+    public void testLargeUpdateIsAppliedAtOnce() throws Exception {
+        NoteQueries.ViewStyle style = NoteQueries.forwardViewStyle;
+
+        StringBuilder before = new StringBuilder();
+        for (int i = 10; i < 30; i++) {
+            before.append("* :0").append(i).append(": child ").append(i).append("\n");
+        }
+        // reverse the children, dropping the first five and adding five new ones
+        StringBuilder after = new StringBuilder();
+        for (int i = 34; i >= 15; i--) {
+            after.append("* :0").append(i).append(": child ").append(i).append("\n");
+        }
+
+        Atom root = atomGraph.createAtomWithProperties(filter, "000");
+        root.setValue("root");
+
+        Note b = parser.fromWikiText(before.toString());
+        b.setId(root.getId());
+        queries.update(b, 2, filter, style);
+        assertEquals(20, root.getNumberOfChildren());
+
+        Note a = parser.fromWikiText(after.toString());
+        a.setId(root.getId());
+        queries.update(a, 2, filter, style);
+
+        List<Atom> children = root.getNotes().toJavaList();
+        assertEquals(20, children.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("child " + (34 - i), children.get(i).getValue());
+        }
+        assertEquals(20, root.getNumberOfChildren());
+        assertEquals(0, atomGraph.getAtomById("010").getNumberOfParents());
+        assertEquals(1, atomGraph.getAtomById("034").getNumberOfParents());
+        assertEquals(1, atomGraph.getAtomById("020").getNumberOfParents());
+    }
+
     @Test
     public void testFindRootsAndIsolatedAtoms() throws Exception {
         assertEquals(0, queries.findRootAtoms(filter, NoteQueries.forwardViewStyle, 1).getChildren().size());
@@ -0,0 +1,71 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.model.pg.PGAtomGraph;
+import net.fortytwo.smsn.brain.model.pg.TinkerGraphWrapper;
+import net.fortytwo.smsn.brain.wiki.NoteWriter;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelViewTest {
+    private final NoteWriter writer = new NoteWriter();
+
+    private PGAtomGraph graph;
+    private Brain brain;
+    private Filter filter;
+    private Atom hub;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = new PGAtomGraph(new TinkerGraphWrapper(TinkerGraph.open()));
+        brain = new Brain(graph);
+        filter = new Filter(0f, 1f, 0.5f, 0.25f, 1f, 0.5f);
+
+        hub = createAtom("hub", 0.5f);
+        for (int i = 0; i < 40; i++) {
+            // every third child is invisible, so that its subtree is not expanded
+            Atom child = createAtom("child " + i, 0 == i % 3 ? 0.1f : 0.5f);
+            hub.addChildAt(child, i);
+            for (int j = 0; j < 3; j++) {
+                Atom grandchild = createAtom("grandchild " + i + "." + j, 0.5f);
+                child.addChildAt(grandchild, j);
+                grandchild.addChildAt(createAtom("leaf " + i + "." + j, 0.5f), 0);
+            }
+        }
+    }
+
+    @Test
+    public void parallelViewMatchesSequentialView() throws Exception {
+        // with the larger threshold, the hub has too few children for its view to be built in parallel
+        for (int threshold : new int[]{2, 100}) {
+            for (int height = 0; height <= 4; height++) {
+                assertViewsMatch(height, threshold);
+            }
+        }
+    }
+
+    private void assertViewsMatch(final int height, final int threshold) {
+        NoteQueries sequential = new NoteQueries(brain);
+        NoteQueries parallel = new NoteQueries(brain);
+        parallel.setParallelViewThreshold(threshold);
+
+        Note expected = sequential.view(hub, height, filter, NoteQueries.forwardViewStyle);
+        brain.getViewCache().clear();
+        Note actual = parallel.view(hub, height, filter, NoteQueries.forwardViewStyle);
+        brain.getViewCache().clear();
+
+        assertEquals(writer.toJSON(expected).toString(), writer.toJSON(actual).toString());
+    }
+
+    private Atom createAtom(final String value, final float sharability) {
+        Atom a = graph.createAtomWithProperties(filter, null);
+        a.setValue(value);
+        a.setSharability(sharability);
+        return a;
+    }
+}
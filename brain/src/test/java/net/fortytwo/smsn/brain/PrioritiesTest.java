@@ -0,0 +1,86 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.compact.CompactAtomGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PrioritiesTest {
+    private CompactAtomGraph graph;
+    private Filter filter;
+    private Priorities priorities;
+
+    @Before
+    public void setUp() {
+        graph = new CompactAtomGraph(4);
+        filter = new Filter();
+        priorities = new Priorities();
+    }
+
+    @Test
+    public void atomsAreOrderedByPriorityThenWeight() {
+        prioritize("low", 0.2f, 1f);
+        prioritize("high", 0.9f, 0.5f);
+        prioritize("heavy", 0.5f, 1f);
+        prioritize("light", 0.5f, 0.25f);
+
+        assertEquals(Arrays.asList("high", "heavy", "light", "low"), idsOf(priorities.getAtoms()));
+    }
+
+    @Test
+    public void updatesReplaceEarlierPriorities() {
+        Atom a = prioritize("a", 0.2f, 0.5f);
+        prioritize("b", 0.5f, 0.5f);
+
+        a.setPriority(0.8f);
+        priorities.updatePriority(a);
+        priorities.updatePriority(a);
+        assertEquals(Arrays.asList("a", "b"), idsOf(priorities.getAtoms()));
+        assertEquals(2, priorities.size());
+
+        // an atom without a priority leaves the list
+        a.setPriority(null);
+        priorities.updatePriority(a);
+        assertEquals(Arrays.asList("b"), idsOf(priorities.getAtoms()));
+        assertEquals(1, priorities.size());
+    }
+
+    @Test
+    public void onlyTheAtomsReadAreVisited() {
+        for (int i = 0; i < 100; i++) {
+            prioritize("atom" + i, (i + 1) / 100f, 0.5f);
+        }
+
+        List<String> top = new ArrayList<>();
+        for (Atom a : priorities.getAtoms()) {
+            top.add(a.getId());
+            if (3 == top.size()) {
+                break;
+            }
+        }
+        assertEquals(Arrays.asList("atom99", "atom98", "atom97"), top);
+    }
+
+    private Atom prioritize(final String id, final float priority, final float weight) {
+        Atom a = graph.createAtomWithProperties(filter, id);
+        a.setPriority(priority);
+        a.setWeight(weight);
+        priorities.updatePriority(a);
+        return a;
+    }
+
+    private List<String> idsOf(final Iterable<Atom> atoms) {
+        List<String> ids = new ArrayList<>();
+        for (Atom a : atoms) {
+            ids.add(a.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,88 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.model.compact.CompactAtomGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SearchCacheTest {
+    private CompactAtomGraph graph;
+    private NoteQueries queries;
+    private SearchCache cache;
+    private Filter filter;
+    private Atom arthur;
+    private Atom ford;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = new CompactAtomGraph(16);
+        Brain brain = new Brain(graph);
+        queries = new NoteQueries(brain);
+        cache = brain.getSearchCache();
+        filter = new Filter();
+
+        arthur = createAtom("arthur", "Arthur Dent");
+        arthur.setShortcut("ad");
+        ford = createAtom("ford", "Ford Prefect");
+    }
+
+    @Test
+    public void repeatedSearchIsAnsweredFromCache() {
+        Note first = search("ad");
+        Note second = search("ad");
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, second.getChildren().size());
+        assertEquals(first.getChildren().get(0).getValue(), second.getChildren().get(0).getValue());
+
+        // a filter with different criteria is a different search
+        queries.search(NoteQueries.QueryType.Shortcut, "ad", 2,
+                new Filter(0f, 1f, 0.5f, 0.25f, 1f, 0.5f), NoteQueries.forwardViewStyle);
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void cachedResultsAreNotModifiedByCallers() {
+        search("ad").getChildren().get(0).setValue("changed");
+        assertEquals("Arthur Dent", search("ad").getChildren().get(0).getValue());
+    }
+
+    @Test
+    public void propertyChangeInvalidatesResults() {
+        search("ad");
+        ford.setShortcut("ad");
+
+        assertEquals(2, search("ad").getChildren().size());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void childChangeInvalidatesOnlyResultsWhichContainTheAtom() {
+        Atom towel = createAtom("towel", "towel");
+        search("ad");
+
+        ford.addChildAt(towel, 0);
+        search("ad");
+        assertEquals(1, cache.getHits());
+
+        arthur.addChildAt(towel, 0);
+        Note result = search("ad");
+        assertEquals(1, cache.getHits());
+        assertEquals(1, result.getChildren().get(0).getChildren().size());
+    }
+
+    private Note search(final String shortcut) {
+        return queries.search(NoteQueries.QueryType.Shortcut, shortcut, 2, filter, NoteQueries.forwardViewStyle);
+    }
+
+    private Atom createAtom(final String id, final String value) {
+        Atom a = graph.createAtomWithProperties(filter, id);
+        a.setValue(value);
+        return a;
+    }
+}
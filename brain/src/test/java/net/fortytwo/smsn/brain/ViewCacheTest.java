@@ -0,0 +1,110 @@
+package net.fortytwo.smsn.brain;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.model.compact.CompactAtomGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ViewCacheTest {
+    private CompactAtomGraph graph;
+    private NoteQueries queries;
+    private ViewCache cache;
+    private Filter filter;
+    private Atom journal;
+    private Atom monday;
+    private Atom towel;
+    private Atom unrelated;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = new CompactAtomGraph(16);
+        Brain brain = new Brain(graph);
+        queries = new NoteQueries(brain);
+        cache = brain.getViewCache();
+        filter = new Filter();
+
+        journal = createAtom("journal");
+        monday = createAtom("monday");
+        towel = createAtom("towel");
+        unrelated = createAtom("unrelated");
+        journal.addChildAt(monday, 0);
+        monday.addChildAt(towel, 0);
+    }
+
+    @Test
+    public void repeatedViewIsAnsweredFromCache() {
+        Note first = view(journal, 2);
+        Note second = view(journal, 2);
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals("towel", second.getChildren().get(0).getChildren().get(0).getValue());
+        assertEquals(first.getChildren().size(), second.getChildren().size());
+
+        // a different height is a different view
+        view(journal, 1);
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void changesOutsideOfViewDoNotInvalidateIt() {
+        view(journal, 2);
+        unrelated.setValue("changed");
+        unrelated.addChildAt(towel, 0);
+
+        view(journal, 2);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void changesInsideOfViewInvalidateIt() {
+        view(journal, 2);
+        towel.setValue("changed");
+
+        Note result = view(journal, 2);
+        assertEquals(0, cache.getHits());
+        assertEquals("changed", result.getChildren().get(0).getChildren().get(0).getValue());
+
+        monday.addChildAt(unrelated, 1);
+        result = view(journal, 2);
+        assertEquals(0, cache.getHits());
+        assertEquals(2, result.getChildren().get(0).getChildren().size());
+    }
+
+    @Test
+    public void newChildrenOfLeavesInvalidateView() {
+        Note result = view(journal, 2);
+        assertFalse(result.getChildren().get(0).getChildren().get(0).getHasChildren());
+
+        towel.addChildAt(unrelated, 0);
+        result = view(journal, 2);
+        assertEquals(0, cache.getHits());
+        assertTrue(result.getChildren().get(0).getChildren().get(0).getHasChildren());
+    }
+
+    @Test
+    public void backwardViewsAreInvalidatedByAnyChangeOfChildren() {
+        queries.view(towel, 1, filter, NoteQueries.backwardViewStyle);
+        unrelated.addChildAt(towel, 0);
+
+        Note result = queries.view(towel, 1, filter, NoteQueries.backwardViewStyle);
+        assertEquals(0, cache.getHits());
+        assertEquals(2, result.getChildren().size());
+    }
+
+    private Note view(final Atom root, final int height) {
+        return queries.view(root, height, filter, NoteQueries.forwardViewStyle);
+    }
+
+    private Atom createAtom(final String value) {
+        Atom a = graph.createAtomWithProperties(filter, value);
+        a.setValue(value);
+        return a;
+    }
+}
@@ -0,0 +1,67 @@
+package net.fortytwo.smsn.brain.index;
+
+import net.fortytwo.smsn.brain.model.Filter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AutocompleteIndexTest {
+    private AutocompleteIndex<Integer> index;
+
+    @Before
+    public void setUp() {
+        index = new AutocompleteIndex<>();
+        index.put(1, "Arthur Dent", "ad", 1f, 0.5f);
+        index.put(2, "Ford Prefect", null, 0.5f, 0.75f);
+        index.put(3, "The Hitchhiker's Guide to the Galaxy", "hhgttg", 1f, 1f);
+    }
+
+    @Test
+    public void valuesMatchByLeadingWords() {
+        assertEquals(Collections.singletonList(1), index.getTopByPrefix("Arth", null, 10));
+        assertEquals(Collections.singletonList(1), index.getTopByPrefix("dent", null, 10));
+        assertEquals(Collections.singletonList(1), index.getTopByPrefix("arthur  d", null, 10));
+        assertEquals(Collections.singletonList(3), index.getTopByPrefix("guide to", null, 10));
+        assertTrue(index.getTopByPrefix("arthur f", null, 10).isEmpty());
+    }
+
+    @Test
+    public void acronymsAndShortcutsMatch() {
+        assertEquals(Collections.singletonList(2), index.getTopByPrefix("fp", null, 10));
+        assertEquals(Collections.singletonList(3), index.getTopByPrefix("hhg", null, 10));
+        assertEquals(Collections.singletonList(1), index.getTopByPrefix("ad", null, 10));
+    }
+
+    @Test
+    public void resultsAreRankedAndFiltered() {
+        index.put(4, "Arthur Philip Dent", null, 1f, 1f);
+        assertEquals(Arrays.asList(4, 1), index.getTopByPrefix("a", null, 10));
+        assertEquals(Collections.singletonList(4), index.getTopByPrefix("a", null, 1));
+
+        Filter filter = new Filter(0.6f, 1f, 0.75f, 0.75f, 1f, 0.75f);
+        assertEquals(Arrays.asList(4, 3), index.getTopByPrefix("", filter, 10));
+    }
+
+    @Test
+    public void replacedAndRemovedAtomsDoNotMatch() {
+        index.put(1, "Zaphod Beeblebrox", null, 1f, 0.5f);
+        assertTrue(index.getTopByPrefix("arthur", null, 10).isEmpty());
+        assertEquals(Collections.singletonList(1), index.getTopByPrefix("zb", null, 10));
+
+        index.remove(1);
+        assertTrue(index.getTopByPrefix("zaphod", null, 10).isEmpty());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void clearedShortcutsDoNotMatch() {
+        index.put(3, "The Hitchhiker's Guide to the Galaxy", null, 1f, 1f);
+        assertTrue(index.getTopByPrefix("hhgttg", null, 10).isEmpty());
+        assertEquals(Collections.singletonList(3), index.getTopByPrefix("guide", null, 10));
+    }
+}
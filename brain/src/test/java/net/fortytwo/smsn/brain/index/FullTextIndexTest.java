@@ -0,0 +1,89 @@
+package net.fortytwo.smsn.brain.index;
+
+import net.fortytwo.smsn.brain.model.Filter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FullTextIndexTest {
+    private FullTextIndex<String> index;
+
+    @Before
+    public void setUp() {
+        index = new FullTextIndex<>();
+        index.put("arthur", "Arthur Dent", 0.5f, 0.5f, 1f);
+        index.put("ford", "Ford Prefect", 0.5f, 0.5f, 1f);
+        index.put("towel", "Arthur's towel, which Ford lent to Arthur", 0.5f, 0.5f, 1f);
+        index.put("secret", "Arthur's secret", 1f, 0.5f, 1f);
+    }
+
+    @Test
+    public void termsAreCombinedByDisjunction() {
+        assertEquals(3, keys("arthur").size());
+        assertEquals(4, keys("ARTHUR ford").size());
+        assertEquals(0, keys("zaphod").size());
+    }
+
+    @Test
+    public void shorterMatchesRankHigher() {
+        assertEquals("arthur", keys("arthur").get(0));
+        assertEquals("towel", keys("arthur").get(2));
+    }
+
+    @Test
+    public void moreFrequentMatchesRankHigher() {
+        index.put("tautology", "Dent is Dent", 0.5f, 0.5f, 1f);
+        index.put("fact", "Dent is Arthur", 0.5f, 0.5f, 1f);
+        assertEquals("tautology", keys("dent").get(0));
+    }
+
+    @Test
+    public void boostMultipliesScore() {
+        index.put("ford", "Ford Prefect", 0.5f, 0.5f, 10f);
+        assertEquals("ford", keys("ford arthur").get(0));
+    }
+
+    @Test
+    public void prefixesAndWildcardsMatch() {
+        assertEquals(3, keys("arth*").size());
+        assertEquals(0, keys("arth").size());
+        assertEquals(1, keys("*fect").size());
+        assertEquals(1, keys("t?wel").size());
+    }
+
+    @Test
+    public void phrasesMatchOnlyConsecutiveTerms() {
+        assertEquals(1, keys("\"arthur dent\"").size());
+        assertEquals(0, keys("\"dent arthur\"").size());
+        assertEquals(1, keys("\"lent to arthur\"").size());
+    }
+
+    @Test
+    public void filterIsAppliedToStoredProperties() {
+        Filter filter = new Filter(0f, 1f, 0.5f, 0f, 0.75f, 0.5f);
+        List<String> keys = index.search("arthur", filter).stream()
+                .map(FullTextIndex.Hit::getKey).collect(Collectors.toList());
+        assertEquals(2, keys.size());
+        assertTrue(!keys.contains("secret"));
+    }
+
+    @Test
+    public void documentsCanBeReplacedAndRemoved() {
+        index.put("arthur", "Zaphod Beeblebrox", 0.5f, 0.5f, 1f);
+        assertEquals(2, keys("arthur").size());
+        assertEquals(1, keys("zaphod").size());
+
+        index.remove("arthur");
+        assertEquals(0, keys("zaphod").size());
+        assertEquals(3, index.size());
+    }
+
+    private List<String> keys(final String query) {
+        return index.search(query, null).stream().map(FullTextIndex.Hit::getKey).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,55 @@
+package net.fortytwo.smsn.brain.index;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrefixTrieTest {
+    private final PrefixTrie<String> trie = new PrefixTrie<>();
+
+    @Test
+    public void topItemsAreRetrievedByPrefix() {
+        trie.put("arthur", "a", 0.5f);
+        trie.put("artichoke", "b", 0.8f);
+        trie.put("art", "c", 0.2f);
+        trie.put("ford", "d", 1f);
+
+        assertEquals(Arrays.asList("b", "a", "c"), trie.getTopByPrefix("art", 10, item -> true));
+        assertEquals(Arrays.asList("b", "a"), trie.getTopByPrefix("art", 2, item -> true));
+        assertEquals(Collections.singletonList("a"), trie.getTopByPrefix("arth", 10, item -> true));
+        assertEquals(Arrays.asList("d", "b"), trie.getTopByPrefix("", 2, item -> true));
+        assertTrue(trie.getTopByPrefix("zaphod", 10, item -> true).isEmpty());
+    }
+
+    @Test
+    public void itemsAreDistinctAndFiltered() {
+        trie.put("arthur", "a", 0.5f);
+        trie.put("arthur dent", "a", 0.5f);
+        trie.put("artichoke", "b", 0.8f);
+
+        assertEquals(Arrays.asList("b", "a"), trie.getTopByPrefix("art", 10, item -> true));
+        assertEquals(Collections.singletonList("a"), trie.getTopByPrefix("art", 10, item -> !item.equals("b")));
+    }
+
+    @Test
+    public void removedItemsAreNotRetrieved() {
+        trie.put("arthur", "a", 0.5f);
+        trie.put("artichoke", "b", 0.8f);
+
+        assertTrue(trie.remove("artichoke", "b"));
+        assertFalse(trie.remove("artichoke", "b"));
+        assertFalse(trie.remove("arthur", "b"));
+        assertEquals(Collections.singletonList("a"), trie.getTopByPrefix("art", 10, item -> true));
+        assertTrue(trie.getTopByPrefix("arti", 10, item -> true).isEmpty());
+
+        // a lower score replaces a higher one
+        trie.put("artichoke", "b", 0.8f);
+        trie.put("artichoke", "b", 0.1f);
+        assertEquals(Arrays.asList("a", "b"), trie.getTopByPrefix("art", 10, item -> true));
+    }
+}
@@ -0,0 +1,134 @@
+package net.fortytwo.smsn.brain.log;
+
+import net.fortytwo.smsn.brain.ActivityLog;
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.compact.CompactAtomGraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryActivityLogTest {
+    private CompactAtomGraph graph;
+    private Filter filter;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        graph = new CompactAtomGraph(4);
+        filter = new Filter();
+        directory = Files.createTempDirectory("smsn-activity-log").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (null != files) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void recordsAreReadBackInRange() throws Exception {
+        Atom a = graph.createAtomWithProperties(filter, "aaaaaaa");
+        Atom b = graph.createAtomWithProperties(filter, "bbbbbbb");
+
+        TestLog log = new TestLog(directory, BinaryActivityLog.DEFAULT_MAX_FILE_SIZE);
+        log.logAt(1000, ActivityLog.ActivityType.Create, a, null);
+        log.logAt(2000, ActivityLog.ActivityType.Link, a, b);
+        log.sync();
+        // records may be read while the log is still being written
+        assertEquals(2, readAll().size());
+
+        log.logAt(3000, ActivityLog.ActivityType.View, b, null);
+        log.shutDown();
+
+        List<ActivityRecord> records = readAll();
+        assertEquals(3, records.size());
+        assertEquals(ActivityLog.ActivityType.Link, records.get(1).getType());
+        assertEquals("aaaaaaa", records.get(1).getSubjectId());
+        assertEquals("bbbbbbb", records.get(1).getObjectId());
+        assertNull(records.get(0).getObjectId());
+
+        List<Long> timestamps = new ArrayList<>();
+        new ActivityLogReader(directory).read(1500, 3000, r -> timestamps.add(r.getTimestamp()));
+        assertEquals(Arrays.asList(2000L), timestamps);
+    }
+
+    @Test
+    public void filesAreRotatedAndCompressed() throws Exception {
+        Atom a = graph.createAtomWithProperties(filter, "aaaaaaa");
+
+        TestLog log = new TestLog(directory, 100);
+        for (int i = 0; i < 50; i++) {
+            log.logAt(i, ActivityLog.ActivityType.View, a, null);
+            if (0 == i % 10) {
+                log.sync();
+            }
+        }
+        log.shutDown();
+
+        File[] files = directory.listFiles();
+        assertTrue(files.length > 1);
+        for (File f : files) {
+            assertTrue(f.getName().endsWith(ActivityLogFormat.COMPRESSED_SUFFIX));
+        }
+
+        assertEquals(50, readAll().size());
+        List<Long> timestamps = new ArrayList<>();
+        new ActivityLogReader(directory).read(20, 23, r -> timestamps.add(r.getTimestamp()));
+        assertEquals(Arrays.asList(20L, 21L, 22L), timestamps);
+    }
+
+    @Test
+    public void incompleteBlocksAreIgnored() throws Exception {
+        Atom a = graph.createAtomWithProperties(filter, "aaaaaaa");
+
+        TestLog log = new TestLog(directory, BinaryActivityLog.DEFAULT_MAX_FILE_SIZE);
+        log.logAt(1000, ActivityLog.ActivityType.Create, a, null);
+        log.sync();
+        log.logAt(2000, ActivityLog.ActivityType.View, a, null);
+        log.sync();
+
+        // cut the last block short, as a crash during a write would
+        File active = ActivityLogFormat.listLogFiles(directory).get(0).file;
+        try (RandomAccessFile f = new RandomAccessFile(active, "rw")) {
+            f.setLength(f.length() - 3);
+        }
+        assertEquals(1, readAll().size());
+
+        log.shutDown();
+        assertEquals(1, readAll().size());
+    }
+
+    private List<ActivityRecord> readAll() throws IOException {
+        List<ActivityRecord> records = new ArrayList<>();
+        new ActivityLogReader(directory).read(records::add);
+        return records;
+    }
+
+    private static class TestLog extends BinaryActivityLog {
+        private TestLog(final File directory, final long maxFileSize) throws IOException {
+            super(directory, maxFileSize, 0);
+        }
+
+        private void logAt(final long timestamp, final ActivityType type, final Atom subject, final Atom object) {
+            log(timestamp, type, subject, object);
+        }
+    }
+}
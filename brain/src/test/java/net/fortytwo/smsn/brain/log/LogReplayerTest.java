@@ -0,0 +1,247 @@
+package net.fortytwo.smsn.brain.log;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.compact.CompactAtomGraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LogReplayerTest {
+    private CompactAtomGraph graph;
+    private Filter filter;
+    private File directory;
+    private File snapshot;
+    private BinaryActivityLog log;
+
+    @Before
+    public void setUp() throws IOException {
+        graph = new CompactAtomGraph(4);
+        filter = new Filter();
+        directory = Files.createTempDirectory("smsn-activity-log").toFile();
+        snapshot = File.createTempFile("smsn-snapshot", ".bin");
+        log = new BinaryActivityLog(directory, BinaryActivityLog.DEFAULT_MAX_FILE_SIZE, 0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        log.shutDown();
+        File[] files = directory.listFiles();
+        if (null != files) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+        snapshot.delete();
+    }
+
+    @Test
+    public void graphIsRestoredFromSnapshotAndLog() throws Exception {
+        Atom a = create("aaaaaaa", "apples");
+        Atom b = create("bbbbbbb", "bananas");
+        Atom c = create("ccccccc", "cherries");
+        setChildren(a, b, c);
+
+        log.sync();
+        AtomGraphSnapshot.write(graph, log.getSyncedSequence(), snapshot);
+
+        b.setValue("blueberries");
+        b.setShortcut("bb");
+        log.logSetProperties(b);
+        Atom d = create("ddddddd", "dates");
+        setChildren(a, c, d, b);
+        setChildren(b, c);
+        c.setShortcut("cc");
+        log.logSetProperties(c);
+        c.setShortcut(null);
+        log.logSetProperties(c);
+        create("eeeeeee", "elderberries");
+        graph.removeIsolatedAtoms(filter);
+        log.logRemoveIsolatedAtoms(filter);
+        log.sync();
+
+        CompactAtomGraph restored = new CompactAtomGraph(4);
+        LogReplayer replayer = LogReplayer.restore(restored, snapshot, directory);
+        assertEquals(stateOf(graph), stateOf(restored));
+        assertEquals(log.getSyncedSequence(), replayer.getSequence());
+        assertNull(restored.getAtomById("eeeeeee"));
+        assertNull(restored.getAtomById("ccccccc").getShortcut());
+    }
+
+    @Test
+    public void standbyFollowsLogAcrossFiles() throws Exception {
+        log.shutDown();
+        log = new BinaryActivityLog(directory, 200, 0);
+
+        CompactAtomGraph standbyGraph = new CompactAtomGraph(4);
+        WarmStandby standby = new WarmStandby(new LogReplayer(standbyGraph, 0), directory, 10);
+
+        Atom root = create("rrrrrrr", "root");
+        List<Atom> children = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            children.add(create("child" + i + "x", "child " + i));
+            setChildren(root, children.toArray(new Atom[children.size()]));
+            log.sync();
+            standby.poll();
+            assertEquals(stateOf(graph), stateOf(standbyGraph));
+        }
+
+        List<Atom> reversed = new ArrayList<>(children);
+        Collections.reverse(reversed);
+        setChildren(root, reversed.toArray(new Atom[reversed.size()]));
+        log.shutDown();
+        standby.poll();
+        assertEquals(stateOf(graph), stateOf(standbyGraph));
+        assertEquals(22, standby.getSequence());
+    }
+
+    @Test
+    public void recordsAreReplayedOverFuzzySnapshot() throws Exception {
+        Atom a = create("aaaaaaa", "apples");
+        Atom b = create("bbbbbbb", "bananas");
+        setChildren(a, b);
+        log.sync();
+        long sequence = log.getSyncedSequence();
+
+        // the snapshot reflects changes which were logged after its sequence number
+        Atom c = create("ccccccc", "cherries");
+        setChildren(a, c, b);
+        AtomGraphSnapshot.write(graph, sequence, snapshot);
+        a.setValue("avocados");
+        log.logSetProperties(a);
+        log.sync();
+
+        CompactAtomGraph restored = new CompactAtomGraph(4);
+        LogReplayer.restore(restored, snapshot, directory);
+        assertEquals(stateOf(graph), stateOf(restored));
+    }
+
+    @Test
+    public void rolledBackRecordsAreNotLogged() throws Exception {
+        log.begin();
+        create("aaaaaaa", "apples");
+        log.rollback();
+
+        log.begin();
+        create("bbbbbbb", "bananas");
+        log.commit();
+        log.sync();
+
+        List<String> records = new ArrayList<>();
+        new ActivityLogReader(directory).readAfter(0, r -> records.add(r.getType() + " " + r.getSubjectId()));
+        assertEquals(Arrays.asList("Begin null", "Create bbbbbbb", "Commit null"), records);
+    }
+
+    @Test
+    public void abortedTransactionsAreNotReplayed() throws Exception {
+        AtomGraphSnapshot.write(graph, 0, snapshot);
+
+        log.begin();
+        create("aaaaaaa", "apples");
+        log.prepare();
+        // the graph fails to commit the transaction once its records have been written
+        log.rollback();
+
+        log.begin();
+        create("bbbbbbb", "bananas");
+        log.prepare();
+        log.commit();
+        log.sync();
+
+        CompactAtomGraph restored = new CompactAtomGraph(4);
+        LogReplayer replayer = LogReplayer.restore(restored, snapshot, directory);
+        assertNull(restored.getAtomById("aaaaaaa"));
+        assertEquals("bananas", restored.getAtomById("bbbbbbb").getValue());
+        assertEquals(6, replayer.getSequence());
+    }
+
+    @Test
+    public void undecidedTransactionIsPresumedCommitted() throws Exception {
+        AtomGraphSnapshot.write(graph, 0, snapshot);
+
+        log.begin();
+        create("aaaaaaa", "apples");
+        log.commit();
+
+        // a crash after the records are forced, but before the commit marker is written
+        log.begin();
+        create("bbbbbbb", "bananas");
+        log.prepare();
+
+        CompactAtomGraph standbyGraph = new CompactAtomGraph(4);
+        LogReplayer standbyReplayer = new LogReplayer(standbyGraph, 0);
+        standbyReplayer.replay(new ActivityLogTailer(directory, 0));
+        // the transaction may yet be committed or aborted
+        assertNull(standbyGraph.getAtomById("bbbbbbb"));
+        assertEquals(3, standbyReplayer.getSequence());
+
+        CompactAtomGraph restored = new CompactAtomGraph(4);
+        LogReplayer.restore(restored, snapshot, directory);
+        assertEquals("apples", restored.getAtomById("aaaaaaa").getValue());
+        assertEquals("bananas", restored.getAtomById("bbbbbbb").getValue());
+    }
+
+    @Test
+    public void sequenceContinuesAfterRestart() throws Exception {
+        create("aaaaaaa", "apples");
+        log.shutDown();
+
+        log = new BinaryActivityLog(directory, BinaryActivityLog.DEFAULT_MAX_FILE_SIZE, 0);
+        create("bbbbbbb", "bananas");
+        log.sync();
+        assertEquals(2, log.getSyncedSequence());
+
+        List<ActivityRecord> records = new ArrayList<>();
+        new ActivityLogReader(directory).readAfter(1, records::add);
+        assertEquals(1, records.size());
+        assertEquals(2, records.get(0).getSequence());
+        assertEquals("bananas", records.get(0).getProperties().getValue());
+    }
+
+    private Atom create(final String id, final String value) {
+        Atom a = graph.createAtomWithProperties(filter, id);
+        a.setValue(value);
+        log.logCreate(a);
+        return a;
+    }
+
+    private void setChildren(final Atom parent, final Atom... children) {
+        List<Atom> list = Arrays.asList(children);
+        int[] sources = new int[children.length];
+        Arrays.fill(sources, -1);
+        while (parent.getNumberOfChildren() > 0) {
+            parent.deleteChildAt(0);
+        }
+        parent.setChildren(list, sources);
+        log.logChildren(parent);
+    }
+
+    private Map<String, String> stateOf(final AtomGraph g) {
+        Map<String, String> state = new TreeMap<>();
+        for (Atom a : g.getAllAtoms()) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(a.getValue()).append(" ").append(a.getShortcut())
+                    .append(" ").append(a.getWeight()).append(" ").append(a.getCreated());
+            for (Atom child : a.getChildren()) {
+                sb.append(" ").append(child.getId());
+            }
+            state.put(a.getId(), sb.toString());
+        }
+        return state;
+    }
+}
@@ -0,0 +1,14 @@
+package net.fortytwo.smsn.brain.model;
+
+import net.fortytwo.smsn.brain.model.pg.GraphWrapper;
+import net.fortytwo.smsn.brain.model.pg.PGAtomGraph;
+import net.fortytwo.smsn.brain.model.pg.TinkerGraphWrapper;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+
+public class EmbeddedIndexGetAtomsByValueTest extends GetAtomsByValueTest {
+
+    @Override
+    protected AtomGraph createAtomGraph() {
+        return new PGAtomGraph(new TinkerGraphWrapper(TinkerGraph.open(), GraphWrapper.FullTextBackend.Embedded));
+    }
+}
@@ -0,0 +1,42 @@
+package net.fortytwo.smsn.brain.model;
+
+import net.fortytwo.smsn.brain.BrainTestBase;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class GetAtomCountTest extends BrainTestBase {
+
+    @Override
+    protected AtomGraph createAtomGraph() throws IOException {
+        return createTinkerAtomGraph();
+    }
+
+    @Test
+    public void countIsMaintainedAsAtomsAreAddedAndRemoved() throws Exception {
+        assertEquals(0, atomGraph.getAtomCount());
+
+        Atom parent = atomGraph.createAtomWithProperties(filter, null);
+        parent.setValue("parent");
+        Atom child = atomGraph.createAtomWithProperties(filter, null);
+        child.setValue("child");
+        parent.setNotes(atomGraph.createAtomList(child));
+        for (int i = 0; i < 3; i++) {
+            atomGraph.createAtomWithProperties(filter, null).setValue("isolated atom #" + i);
+        }
+
+        // list vertices are not counted
+        assertEquals(5, atomGraph.getAtomCount());
+        assertEquals(5, countAtoms(atomGraph));
+
+        atomGraph.removeIsolatedAtoms(filter);
+        assertEquals(2, atomGraph.getAtomCount());
+        assertEquals(2, countAtoms(atomGraph));
+
+        atomGraph.createAtomWithProperties(filter, null).setValue("another atom");
+        atomGraph.commit();
+        assertEquals(3, atomGraph.getAtomCount());
+    }
+}
@@ -0,0 +1,108 @@
+package net.fortytwo.smsn.brain.model.cached;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.pg.PGAtomGraph;
+import net.fortytwo.smsn.brain.model.pg.TinkerGraphWrapper;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CachingAtomGraphTest {
+    private AtomGraph baseGraph;
+    private CachingAtomGraph graph;
+    private Filter filter;
+
+    @Before
+    public void setUp() {
+        baseGraph = new PGAtomGraph(new TinkerGraphWrapper(TinkerGraph.open()), PGAtomGraph.ChildLayout.ListNodes);
+        graph = new CachingAtomGraph(baseGraph, 2);
+        filter = new Filter();
+    }
+
+    @Test
+    public void repeatedReadsAreAnsweredFromMemory() {
+        Atom a = createAtom("arthur");
+        a.getValue();
+        long misses = graph.getMisses();
+
+        Atom same = graph.getAtomById(a.getId());
+        assertEquals("arthur", same.getValue());
+        assertEquals(0.5f, same.getWeight(), 0f);
+        same.getWeight();
+        assertEquals(misses + 1, graph.getMisses());
+        assertEquals(3, graph.getHits());
+    }
+
+    @Test
+    public void writesToTheBaseGraphInvalidateProperties() {
+        Atom a = createAtom("arthur");
+        assertEquals("arthur", a.getValue());
+
+        baseGraph.getAtomById(a.getId()).setValue("ford");
+        assertEquals("ford", a.getValue());
+        assertEquals("ford", graph.getAtomById(a.getId()).getValue());
+    }
+
+    @Test
+    public void writesThroughListsInvalidateChildren() {
+        Atom parent = createAtom("parent");
+        Atom one = createAtom("one");
+        parent.setNotes(graph.createAtomList(one, createAtom("two")));
+        assertChildren(parent, "one", "two");
+
+        parent.getNotes().getRest().setFirst(createAtom("three"));
+        assertChildren(parent, "one", "three");
+
+        parent.deleteChildAt(0);
+        assertChildren(parent, "three");
+        parent.addChildAt(one, 1);
+        assertChildren(parent, "three", "one");
+    }
+
+    @Test
+    public void leastRecentlyUsedAtomsAreEvicted() {
+        Atom a = createAtom("a"), b = createAtom("b"), c = createAtom("c");
+        a.getValue();
+        b.getValue();
+        c.getValue();
+        assertEquals(2, graph.size());
+
+        assertEquals("a", graph.getAtomById(a.getId()).getValue());
+        assertEquals("b", b.getValue());
+        assertNull(graph.getAtomById("nonexistent"));
+    }
+
+    @Test
+    public void cachedAtomsAreReusedAcrossLookups() {
+        Atom a = createAtom("arthur");
+        a.getValue();
+        assertSame(graph.getAtomById(a.getId()), graph.getAtomById(a.getId()));
+        assertEquals(a, graph.getAtomById(a.getId()));
+    }
+
+    private Atom createAtom(final String value) {
+        Atom a = graph.createAtomWithProperties(filter, null);
+        a.setValue(value);
+        return a;
+    }
+
+    private void assertChildren(final Atom parent, final String... values) {
+        List<String> actual = new LinkedList<>();
+        for (Atom child : parent.getChildren()) {
+            actual.add(child.getValue());
+        }
+        assertEquals(values.length, actual.size());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], actual.get(i));
+        }
+    }
+}
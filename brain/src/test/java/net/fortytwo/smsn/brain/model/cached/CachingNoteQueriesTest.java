@@ -0,0 +1,12 @@
+package net.fortytwo.smsn.brain.model.cached;
+
+import net.fortytwo.smsn.brain.NoteQueriesTest;
+import net.fortytwo.smsn.brain.model.AtomGraph;
+
+public class CachingNoteQueriesTest extends NoteQueriesTest {
+
+    @Override
+    protected AtomGraph createAtomGraph() {
+        return new CachingAtomGraph(createTinkerAtomGraph(), 100);
+    }
+}
@@ -0,0 +1,260 @@
+package net.fortytwo.smsn.brain.model.compact;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomList;
+import net.fortytwo.smsn.brain.model.Filter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompactAtomGraphTest {
+    private CompactAtomGraph graph;
+    private Filter filter;
+
+    @Before
+    public void setUp() {
+        graph = new CompactAtomGraph(4);
+        filter = new Filter();
+    }
+
+    @Test
+    public void packedAndIrregularIdsAreFound() {
+        String[] ids = new String[]{"aaaaaaa", "0000000", "-_0-ad_", "a", "abcdefghijk", "not base 64", "été"};
+        for (String id : ids) {
+            graph.createAtomWithProperties(filter, id).setValue("value of " + id);
+        }
+
+        for (String id : ids) {
+            assertEquals("value of " + id, graph.getAtomById(id).getValue());
+        }
+        assertNull(graph.getAtomById("aaaaaab"));
+        assertEquals(ids.length, graph.size());
+    }
+
+    @Test
+    public void listsBuiltBackwardBecomeChildren() {
+        Atom parent = createAtom("parent");
+        Atom[] children = new Atom[]{createAtom("one"), createAtom("two"), createAtom("three")};
+
+        // build the list from the end, as the VCS reader does
+        AtomList list = null;
+        for (int i = children.length - 1; i >= 0; i--) {
+            AtomList cur = graph.createAtomList((String) null);
+            cur.setFirst(children[i]);
+            cur.setRest(list);
+            list = cur;
+        }
+        parent.setNotes(list);
+
+        assertChildren(parent, "one", "two", "three");
+        assertEquals("parent", children[2].getFirstOf().iterator().next().getRestOf().getRestOf().getNotesOf().getValue());
+
+        // changes through a view of the original list now apply to the parent's children
+        list.getRest().setFirst(createAtom("four"));
+        assertChildren(parent, "one", "four", "three");
+        assertEquals(0, children[1].getFirstOf().size());
+    }
+
+    @Test
+    public void childrenCanBeMoved() {
+        Atom parent = createAtom("parent");
+        Atom one = createAtom("one"), two = createAtom("two"), three = createAtom("three");
+        parent.setNotes(graph.createAtomList(one, two, three));
+
+        parent.moveChild(0, 2);
+        assertChildren(parent, "two", "three", "one");
+        parent.moveChild(2, 1);
+        assertChildren(parent, "two", "one", "three");
+        assertEquals(1, one.getNumberOfParents());
+    }
+
+    @Test
+    public void childrenCanBeRewrittenAtOnce() {
+        Atom parent = createAtom("parent");
+        Atom one = createAtom("one"), two = createAtom("two"), three = createAtom("three"), four = createAtom("four");
+        parent.setNotes(graph.createAtomList(one, two, three));
+
+        // keep three and one, in that order, and add four between them; two is deleted
+        parent.setChildren(Arrays.asList(three, four, one), new int[]{2, -1, 0});
+        assertChildren(parent, "three", "four", "one");
+        assertEquals(3, parent.getNumberOfChildren());
+        assertEquals(0, two.getNumberOfParents());
+        assertEquals(1, four.getNumberOfParents());
+        assertEquals(1, one.getNumberOfParents());
+    }
+
+    @Test
+    public void childrenCanBeAddedAndDeleted() {
+        Atom parent = createAtom("parent");
+        Atom one = createAtom("one"), two = createAtom("two"), three = createAtom("three");
+
+        parent.addChildAt(two, 0);
+        parent.addChildAt(one, 0);
+        parent.addChildAt(three, 2);
+        parent.addChildAt(one, 3);
+        assertChildren(parent, "one", "two", "three", "one");
+        assertEquals(2, one.getFirstOf().size());
+        assertEquals(4, parent.getNumberOfChildren());
+        assertEquals(2, one.getNumberOfParents());
+
+        parent.deleteChildAt(1);
+        assertChildren(parent, "one", "three", "one");
+        assertEquals(0, two.getFirstOf().size());
+        assertEquals(3, parent.getNumberOfChildren());
+        assertEquals(0, two.getNumberOfParents());
+
+        parent.deleteChildAt(0);
+        parent.deleteChildAt(1);
+        parent.deleteChildAt(0);
+        assertNull(parent.getNotes());
+        assertEquals(0, one.getFirstOf().size());
+    }
+
+    @Test
+    public void allChildrenCanBeRemovedThroughTheirListNodes() {
+        Atom parent = createAtom("parent");
+        parent.setNotes(graph.createAtomList(createAtom("one"), createAtom("two"), createAtom("three")));
+
+        // remove children in the same way as the VCS reader
+        AtomList list = parent.getNotes();
+        while (null != list) {
+            AtomList rest = list.getRest();
+            list.setFirst(null);
+            list.setRest(null);
+            list = rest;
+        }
+        parent.setNotes(null);
+
+        assertNull(parent.getNotes());
+        graph.removeIsolatedAtoms(filter);
+        assertEquals(0, graph.size());
+        assertNull(graph.getAtomById("one"));
+    }
+
+    @Test
+    public void handlesOfRemovedAtomsAreReused() {
+        for (int i = 0; i < 10; i++) {
+            createAtom("atom" + i);
+        }
+        graph.removeIsolatedAtoms(filter);
+        assertEquals(0, graph.size());
+
+        Atom a = createAtom("atom0");
+        assertNull(a.getAlias());
+        assertNull(a.getPriority());
+        assertEquals(1, countAtoms());
+    }
+
+    @Test
+    public void filteredCopyRedactsInvisibleAtoms() {
+        Atom parent = createAtom("parent");
+        parent.setSharability(1f);
+        Atom secret = createAtom("secret");
+        secret.setSharability(0.25f);
+        parent.addChildAt(secret, 0);
+
+        CompactAtomGraph copy = graph.copyGraph(new Filter(0f, 1f, 0.5f, 0.5f, 1f, 0.75f));
+        Atom copiedParent = copy.getAtomById("parent");
+        assertEquals("parent", copiedParent.getValue());
+        List<Atom> copiedChildren = copiedParent.getNotes().toJavaList();
+        assertEquals(1, copiedChildren.size());
+        assertEquals("", copiedChildren.get(0).getValue());
+    }
+
+    @Test
+    public void valueQueriesMatchTermsPhrasesAndWildcards() {
+        createAtom("Arthur Dent");
+        createAtom("Arthur Philip Dent");
+        createAtom("Ford Prefect");
+
+        assertEquals(2, graph.getAtomsByValueQuery("dent", filter).size());
+        assertEquals(1, graph.getAtomsByValueQuery("\"arthur dent\"", filter).size());
+        assertEquals(1, graph.getAtomsByValueQuery("pref*", filter).size());
+        assertEquals(3, graph.getAtomsByValueQuery("Arthur Ford", filter).size());
+
+        Atom a = graph.getAtomById("Ford Prefect");
+        graph.reindexAtom(a);
+        assertTrue(graph.getAtomsByAcronym("fp", filter).contains(a));
+    }
+
+    @Test
+    public void valueQueriesArePaged() {
+        for (int i = 0; i < 10; i++) {
+            createAtom("item " + i);
+        }
+
+        List<Atom> all = graph.getAtomsByValueQuery("item", filter);
+        assertEquals(10, all.size());
+        assertEquals(all.subList(0, 3), graph.getAtomsByValueQuery("item", filter, 0, 3));
+        assertEquals(all.subList(3, 6), graph.getAtomsByValueQuery("item", filter, 3, 3));
+        assertEquals(all.subList(9, 10), graph.getAtomsByValueQuery("item", filter, 9, 3));
+        assertEquals(0, graph.getAtomsByValueQuery("item", filter, 10, 3).size());
+    }
+
+    @Test
+    public void prefixLookupsFollowReindexing() {
+        Atom arthur = createAtom("Arthur Dent");
+        Atom ford = createAtom("Ford Prefect");
+        graph.reindexAtom(arthur);
+        graph.reindexAtom(ford);
+
+        assertEquals(1, graph.getAtomsByPrefix("pre", filter, 10).size());
+        assertEquals(2, graph.getAtomsByPrefix("", filter, 10).size());
+
+        ford.setValue("Zaphod Beeblebrox");
+        graph.reindexAtom(ford);
+        assertEquals(0, graph.getAtomsByPrefix("pre", filter, 10).size());
+        assertTrue(graph.getAtomsByPrefix("zb", filter, 10).contains(ford));
+
+        graph.removeIsolatedAtoms(filter);
+        assertEquals(0, graph.getAtomsByPrefix("", filter, 10).size());
+    }
+
+    @Test
+    public void prefixLookupsRecheckVisibility() {
+        Filter publicFilter = new Filter(0f, 1f, 0.5f, 0.5f, 1f, 0.75f);
+        Atom arthur = createAtom("Arthur Dent");
+        arthur.setSharability(1f);
+        arthur.setShortcut("zz");
+        graph.reindexAtom(arthur);
+        assertEquals(1, graph.getAtomsByPrefix("zz", publicFilter, 10).size());
+
+        // not yet reindexed
+        arthur.setSharability(0.25f);
+        assertEquals(0, graph.getAtomsByPrefix("arthur", publicFilter, 10).size());
+        assertEquals(1, graph.getAtomsByPrefix("arthur", filter, 10).size());
+
+        arthur.setShortcut(null);
+        graph.reindexAtom(arthur);
+        assertEquals(0, graph.getAtomsByPrefix("zz", filter, 10).size());
+    }
+
+    private Atom createAtom(final String value) {
+        Atom a = graph.createAtomWithProperties(filter, value);
+        a.setValue(value);
+        return a;
+    }
+
+    private void assertChildren(final Atom parent, final String... values) {
+        List<Atom> children = parent.getNotes().toJavaList();
+        assertEquals(values.length, children.size());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], children.get(i).getValue());
+        }
+    }
+
+    private int countAtoms() {
+        int count = 0;
+        for (Atom a : graph.getAllAtoms()) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,12 @@
+package net.fortytwo.smsn.brain.model.compact;
+
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.rdf.KnowledgeBaseTest;
+
+public class CompactKnowledgeBaseTest extends KnowledgeBaseTest {
+
+    @Override
+    protected AtomGraph createAtomGraph() {
+        return new CompactAtomGraph();
+    }
+}
@@ -0,0 +1,12 @@
+package net.fortytwo.smsn.brain.model.compact;
+
+import net.fortytwo.smsn.brain.NoteQueriesTest;
+import net.fortytwo.smsn.brain.model.AtomGraph;
+
+public class CompactNoteQueriesTest extends NoteQueriesTest {
+
+    @Override
+    protected AtomGraph createAtomGraph() {
+        return new CompactAtomGraph();
+    }
+}
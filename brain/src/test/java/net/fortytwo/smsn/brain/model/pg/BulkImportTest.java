@@ -0,0 +1,97 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.Filter;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BulkImportTest {
+    private CountingGraphWrapper wrapper;
+    private PGAtomGraph graph;
+    private Filter filter;
+
+    @Before
+    public void setUp() {
+        wrapper = new CountingGraphWrapper(TinkerGraph.open());
+        graph = new PGAtomGraph(wrapper);
+        filter = new Filter();
+    }
+
+    @Test
+    public void indexingIsDeferredUntilTheEndOfABulkImport() {
+        Atom a = graph.createAtomWithProperties(filter, null);
+        a.setValue("one");
+        wrapper.valueUpdates.clear();
+
+        graph.beginBulkImport();
+        assertTrue(wrapper.isInBulkImport());
+        graph.reindexAtom(a);
+        a.setValue("two");
+        graph.reindexAtom(a);
+        assertEquals(0, wrapper.valueUpdates.size());
+
+        graph.endBulkImport();
+        assertFalse(wrapper.isInBulkImport());
+        assertEquals(1, wrapper.valueUpdates.size());
+        assertEquals("two", wrapper.valueUpdates.get(0));
+    }
+
+    @Test
+    public void nestedBulkImportsAreIndexedOnceAtTheEnd() {
+        Atom a = graph.createAtomWithProperties(filter, null);
+        a.setValue("one");
+        wrapper.valueUpdates.clear();
+
+        graph.beginBulkImport();
+        graph.beginBulkImport();
+        graph.reindexAtom(a);
+        graph.endBulkImport();
+        assertEquals(0, wrapper.valueUpdates.size());
+        graph.reindexAtom(a);
+        graph.endBulkImport();
+        assertEquals(1, wrapper.valueUpdates.size());
+    }
+
+    @Test
+    public void removedVerticesAreNotIndexed() {
+        Atom a = graph.createAtomWithProperties(filter, null);
+        a.setValue("one");
+        wrapper.valueUpdates.clear();
+
+        graph.beginBulkImport();
+        graph.reindexAtom(a);
+        ((PGAtom) a).asVertex().remove();
+        graph.endBulkImport();
+        assertEquals(0, wrapper.valueUpdates.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unmatchedEndIsRejected() {
+        graph.endBulkImport();
+    }
+
+    private static class CountingGraphWrapper extends TinkerGraphWrapper {
+        private final List<Object> valueUpdates = new LinkedList<>();
+
+        public CountingGraphWrapper(final TinkerGraph graph) {
+            super(graph);
+        }
+
+        @Override
+        protected void updateIndex(final Vertex updatedVertex, final String key, final Object value) {
+            if (key.equals(SemanticSynchrony.VALUE)) {
+                valueUpdates.add(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomList;
+import net.fortytwo.smsn.brain.model.Filter;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChildLayoutTest {
+    private TinkerGraphWrapper wrapper;
+    private PGAtomGraph listNodeGraph;
+    private PGAtomGraph indexedGraph;
+    private Filter filter;
+
+    @Before
+    public void setUp() {
+        wrapper = new TinkerGraphWrapper(TinkerGraph.open());
+        listNodeGraph = new PGAtomGraph(wrapper, PGAtomGraph.ChildLayout.ListNodes);
+        indexedGraph = new PGAtomGraph(wrapper, PGAtomGraph.ChildLayout.Indexed);
+        filter = new Filter();
+    }
+
+    @Test
+    public void indexedChildrenCanBeAddedAndDeleted() {
+        Atom parent = createAtom(indexedGraph, "parent");
+        Atom one = createAtom(indexedGraph, "one");
+        Atom two = createAtom(indexedGraph, "two");
+        Atom three = createAtom(indexedGraph, "three");
+
+        parent.addChildAt(two, 0);
+        parent.addChildAt(one, 0);
+        parent.addChildAt(three, 2);
+        parent.addChildAt(one, 3);
+        assertChildren(parent, "one", "two", "three", "one");
+        assertEquals(2, one.getFirstOf().size());
+        assertEquals("parent", three.getFirstOf().iterator().next().getRestOf().getRestOf().getNotesOf().getValue());
+
+        parent.deleteChildAt(1);
+        assertChildren(parent, "one", "three", "one");
+        assertEquals(0, two.getFirstOf().size());
+
+        parent.deleteChildAt(0);
+        parent.deleteChildAt(1);
+        parent.deleteChildAt(0);
+        assertNull(parent.getNotes());
+        assertEquals(0, countListVertices());
+    }
+
+    @Test
+    public void childrenCanBeMovedInEitherLayout() {
+        for (PGAtomGraph graph : new PGAtomGraph[]{listNodeGraph, indexedGraph}) {
+            Atom parent = createAtom(graph, "parent");
+            for (String value : new String[]{"one", "two", "three", "four"}) {
+                parent.addChildAt(createAtom(graph, value), parent.getNumberOfChildren());
+            }
+            int listVertices = countListVertices();
+
+            parent.moveChild(0, 3);
+            assertChildren(parent, "two", "three", "four", "one");
+            parent.moveChild(2, 0);
+            assertChildren(parent, "four", "two", "three", "one");
+            parent.moveChild(1, 2);
+            assertChildren(parent, "four", "three", "two", "one");
+
+            // list nodes are relinked rather than replaced
+            assertEquals(listVertices, countListVertices());
+        }
+    }
+
+    @Test
+    public void childrenCanBeRewrittenAtOnceInEitherLayout() {
+        for (PGAtomGraph graph : new PGAtomGraph[]{listNodeGraph, indexedGraph}) {
+            Atom parent = createAtom(graph, "parent");
+            Atom one = createAtom(graph, "one"), two = createAtom(graph, "two"), three = createAtom(graph, "three");
+            Atom four = createAtom(graph, "four");
+            for (Atom child : new Atom[]{one, two, three}) {
+                parent.addChildAt(child, parent.getNumberOfChildren());
+            }
+
+            // keep three and one, in that order, and add four between them; two is deleted
+            parent.setChildren(Arrays.asList(three, four, one), new int[]{2, -1, 0});
+            assertChildren(parent, "three", "four", "one");
+            assertEquals(3, parent.getNumberOfChildren());
+            assertEquals(0, two.getNumberOfParents());
+            assertEquals(1, four.getNumberOfParents());
+            assertEquals(1, one.getNumberOfParents());
+
+            parent.setChildren(new LinkedList<>(), new int[0]);
+            assertChildren(parent);
+            assertEquals(0, parent.getNumberOfChildren());
+            assertEquals(0, one.getNumberOfParents());
+        }
+        assertEquals(0, countListVertices());
+    }
+
+    @Test
+    public void listNodesAreReplacedWhenChildrenChange() {
+        Atom parent = createAtom(listNodeGraph, "parent");
+        parent.setNotes(listNodeGraph.createAtomList(
+                createAtom(listNodeGraph, "one"), createAtom(listNodeGraph, "two")));
+        assertEquals(2, countListVertices());
+
+        Atom sameParent = indexedGraph.getAtomById(parent.getId());
+        assertChildren(sameParent, "one", "two");
+
+        sameParent.addChildAt(createAtom(indexedGraph, "three"), 2);
+        assertChildren(sameParent, "one", "two", "three");
+        assertEquals(0, countListVertices());
+
+        // atoms with indexed children keep them, whatever the layout of the graph
+        assertChildren(listNodeGraph.getAtomById(parent.getId()), "one", "two", "three");
+    }
+
+    @Test
+    public void leftoverIndexedChildrenAreCopiedAsListNodes() {
+        Atom parent = createAtom(listNodeGraph, "parent");
+        parent.addChildAt(createAtom(listNodeGraph, "one"), 0);
+        assertFalse(listNodeGraph.hasIndexedChildren());
+
+        // written while the graph was configured for indexed children
+        Atom other = createAtom(indexedGraph, "other");
+        other.addChildAt(createAtom(indexedGraph, "two"), 0);
+        other.addChildAt(createAtom(indexedGraph, "three"), 1);
+        assertTrue(listNodeGraph.hasIndexedChildren());
+
+        PGAtomGraph copy = listNodeGraph.copyGraph(filter, PGAtomGraph.ChildLayout.ListNodes);
+        assertFalse(copy.hasIndexedChildren());
+        assertChildren(copy.getAtomById(other.getId()), "two", "three");
+        assertChildren(copy.getAtomById(parent.getId()), "one");
+    }
+
+    @Test
+    public void graphIsMigratedInBatches() {
+        for (int i = 0; i < 5; i++) {
+            Atom parent = createAtom(listNodeGraph, "parent" + i);
+            parent.setNotes(listNodeGraph.createAtomList(
+                    createAtom(listNodeGraph, "first child of " + i), createAtom(listNodeGraph, "second child of " + i)));
+        }
+        assertEquals(10, countListVertices());
+
+        assertEquals(3, indexedGraph.migrateChildLayout(3));
+        assertEquals(4, countListVertices());
+        assertEquals(2, indexedGraph.migrateChildLayout(3));
+        assertEquals(0, indexedGraph.migrateChildLayout(3));
+        assertEquals(0, countListVertices());
+
+        for (Atom a : indexedGraph.getAllAtoms()) {
+            if (a.getValue().startsWith("parent")) {
+                String i = a.getValue().substring(6);
+                assertChildren(a, "first child of " + i, "second child of " + i);
+            }
+        }
+    }
+
+    private Atom createAtom(final PGAtomGraph graph, final String value) {
+        Atom a = graph.createAtomWithProperties(filter, null);
+        a.setValue(value);
+        return a;
+    }
+
+    private void assertChildren(final Atom parent, final String... values) {
+        List<Atom> children = new LinkedList<>();
+        for (Atom child : parent.getChildren()) {
+            children.add(child);
+        }
+        assertEquals(values.length, children.size());
+        AtomList notes = parent.getNotes();
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], children.get(i).getValue());
+            assertEquals(values[i], notes.getFirst().getValue());
+            notes = notes.getRest();
+        }
+        assertNull(notes);
+    }
+
+    private int countListVertices() {
+        int count = 0;
+        Iterator<Vertex> vertices = wrapper.getGraph().vertices();
+        while (vertices.hasNext()) {
+            if (SemanticSynchrony.ATOM_LIST.equals(vertices.next().label())) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
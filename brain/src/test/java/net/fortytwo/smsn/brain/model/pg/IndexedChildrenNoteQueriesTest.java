@@ -0,0 +1,13 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.brain.NoteQueriesTest;
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+
+public class IndexedChildrenNoteQueriesTest extends NoteQueriesTest {
+
+    @Override
+    protected AtomGraph createAtomGraph() {
+        return new PGAtomGraph(new TinkerGraphWrapper(TinkerGraph.open()), PGAtomGraph.ChildLayout.Indexed);
+    }
+}
@@ -0,0 +1,197 @@
+package net.fortytwo.smsn.brain.model.pg;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.Filter;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.tinkergraph.structure.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParentIndexTest {
+    private TinkerGraphWrapper wrapper;
+    private PGAtomGraph listNodeGraph;
+    private PGAtomGraph indexedGraph;
+    private Filter filter;
+
+    @Before
+    public void setUp() {
+        wrapper = new TinkerGraphWrapper(TinkerGraph.open());
+        listNodeGraph = new PGAtomGraph(wrapper, PGAtomGraph.ChildLayout.ListNodes);
+        indexedGraph = new PGAtomGraph(wrapper, PGAtomGraph.ChildLayout.Indexed);
+        filter = new Filter();
+    }
+
+    @Test
+    public void parentsFollowChangesToChildren() {
+        Atom one = createAtom("one");
+        Atom two = createAtom("two");
+        Atom child = createAtom("child");
+        Atom x = createAtom("x");
+        Atom y = createAtom("y");
+        assertTrue(((PGAtom) child).hasIndexedParents());
+
+        one.addChildAt(child, 0);
+        one.addChildAt(x, 0);
+        one.addChildAt(child, 2);
+        two.setNotes(listNodeGraph.createAtomList(y, child));
+        assertParents(child, "one", "one", "two");
+        assertParents(x, "one");
+
+        one.deleteChildAt(0);
+        one.deleteChildAt(0);
+        assertParents(child, "one", "two");
+        assertParents(x);
+
+        two.getNotes().getRest().setFirst(x);
+        assertParents(child, "one");
+        assertParents(x, "two");
+
+        two.getNotes().setRest(null);
+        assertParents(x);
+        assertParents(y, "two");
+
+        two.setNotes(null);
+        assertParents(y);
+    }
+
+    @Test
+    public void parentsAreFoundWithoutIndex() {
+        Atom parent = createAtom("parent");
+        Atom child = createAtom("child");
+        parent.setNotes(listNodeGraph.createAtomList(createAtom("first"), child));
+        parent.addChildAt(child, 0);
+        clearIndex(child);
+
+        assertFalse(((PGAtom) child).hasIndexedParents());
+        assertParents(child, "parent", "parent");
+
+        // changes to the children of another atom need not be tracked for an atom which is not indexed
+        createAtom("other").addChildAt(child, 0);
+        assertParents(child, "other", "parent", "parent");
+    }
+
+    @Test
+    public void indexIsRebuiltInBatches() {
+        Atom parent = createAtom("parent");
+        for (int i = 0; i < 5; i++) {
+            Atom child = createAtom("child" + i);
+            parent.addChildAt(child, i);
+            clearIndex(child);
+        }
+        clearIndex(parent);
+
+        assertEquals(3, listNodeGraph.rebuildParentIndex(3));
+        assertEquals(3, listNodeGraph.rebuildParentIndex(3));
+        assertEquals(0, listNodeGraph.rebuildParentIndex(3));
+
+        for (Atom a : listNodeGraph.getAllAtoms()) {
+            assertTrue(((PGAtom) a).hasIndexedParents());
+            if (a.getValue().startsWith("child")) {
+                assertParents(a, "parent");
+            } else {
+                assertParents(a);
+            }
+        }
+    }
+
+    @Test
+    public void indexedChildrenAreFoundAsParents() {
+        Atom parent = createAtom("parent");
+        Atom child = createAtom("child");
+        parent.setNotes(listNodeGraph.createAtomList(child, createAtom("other"), child));
+        assertParents(child, "parent", "parent");
+
+        assertEquals(1, indexedGraph.migrateChildLayout(10));
+        assertFalse(((PGAtom) child).asVertex().edges(Direction.OUT, SemanticSynchrony.PARENT).hasNext());
+        assertParents(child, "parent", "parent");
+    }
+
+    @Test
+    public void countsFollowChangesToChildren() {
+        Atom one = createAtom("one");
+        Atom two = createAtom("two");
+        Atom a = createAtom("a");
+        Atom b = createAtom("b");
+
+        one.addChildAt(a, 0);
+        one.addChildAt(b, 1);
+        one.addChildAt(a, 2);
+        assertCounts(one, 3, 0);
+        assertCounts(a, 0, 2);
+        assertCounts(b, 0, 1);
+
+        one.deleteChildAt(1);
+        assertCounts(one, 2, 0);
+        assertCounts(b, 0, 0);
+
+        one.getNotes().setRest(null);
+        assertCounts(one, 1, 0);
+        assertCounts(a, 0, 1);
+
+        two.setNotes(listNodeGraph.createAtomList(a, b));
+        assertCounts(two, 2, 0);
+        assertCounts(a, 0, 2);
+        assertCounts(b, 0, 1);
+
+        assertEquals(2, indexedGraph.migrateChildLayout(10));
+        indexedGraph.getAtomById(two.getId()).deleteChildAt(0);
+        assertCounts(two, 1, 0);
+        assertCounts(a, 0, 1);
+        assertCounts(b, 0, 1);
+    }
+
+    @Test
+    public void countsAreStoredByRebuild() {
+        Atom parent = createAtom("parent");
+        Atom child = createAtom("child");
+        parent.setNotes(listNodeGraph.createAtomList(child, createAtom("other"), child));
+        clearIndex(child);
+        clearIndex(parent);
+        ((PGAtom) parent).asVertex().property(SemanticSynchrony.CHILD_COUNT).remove();
+        assertCounts(parent, 3, 0);
+        assertCounts(child, 0, 2);
+
+        listNodeGraph.rebuildParentIndex(10);
+        assertEquals(Integer.valueOf(3), ((PGAtom) parent).asVertex().value(SemanticSynchrony.CHILD_COUNT));
+        assertEquals(Integer.valueOf(2), ((PGAtom) child).asVertex().value(SemanticSynchrony.PARENT_COUNT));
+        assertCounts(parent, 3, 0);
+        assertCounts(child, 0, 2);
+    }
+
+    private Atom createAtom(final String value) {
+        Atom a = listNodeGraph.createAtomWithProperties(filter, null);
+        a.setValue(value);
+        return a;
+    }
+
+    // makes an atom appear as if it had been created before parents were indexed
+    private void clearIndex(final Atom a) {
+        Vertex v = ((PGAtom) a).asVertex();
+        v.property(SemanticSynchrony.PARENTS_INDEXED).remove();
+        v.property(SemanticSynchrony.PARENT_COUNT).remove();
+        v.edges(Direction.OUT, SemanticSynchrony.PARENT).forEachRemaining(e -> e.remove());
+    }
+
+    private void assertCounts(final Atom a, final int children, final int parents) {
+        assertEquals(children, a.getNumberOfChildren());
+        assertEquals(parents, a.getNumberOfParents());
+    }
+
+    private void assertParents(final Atom child, final String... values) {
+        List<String> parents = new ArrayList<>();
+        child.forEachParent(parent -> parents.add(parent.getValue()));
+        Collections.sort(parents);
+        assertEquals(Arrays.asList(values), parents);
+    }
+}
@@ -0,0 +1,130 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomList;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.compact.CompactAtomGraph;
+import net.fortytwo.smsn.brain.rdf.classes.Document;
+import net.fortytwo.smsn.brain.rdf.classes.LinkedConcept;
+import net.fortytwo.smsn.brain.rdf.classes.Person;
+import net.fortytwo.smsn.brain.rdf.classes.TODOTask;
+import net.fortytwo.smsn.brain.rdf.classes.WebPage;
+import net.fortytwo.smsn.brain.rdf.classes.collections.DocumentCollection;
+import net.fortytwo.smsn.brain.rdf.classes.collections.GenericCollection;
+import net.fortytwo.smsn.brain.rdf.classes.collections.PersonCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares member matching by compiled automata with the interpreted regexes which they replace,
+ * matching the children of many atoms against the member regexes of several classes.
+ * Run with the test classpath, e.g. from an IDE, using the main method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AtomRegexBenchmark {
+    private static final int NUMBER_OF_ATOMS = 1000;
+    private static final int MAX_CHILDREN = 12;
+
+    private static final List<Class<? extends AtomClass>> types = Arrays.asList(
+            Document.class, LinkedConcept.class, Person.class, TODOTask.class, WebPage.class,
+            DocumentCollection.class, GenericCollection.class, PersonCollection.class);
+
+    private final List<AtomRegex> regexes = new ArrayList<>();
+    private final List<AtomRegex.Automaton> automata = new ArrayList<>();
+    private final List<AtomList> memberLists = new ArrayList<>();
+    private final Map<String, List<InterpretedAtomRegex.Entry>> classifications = new HashMap<>();
+    private InterpretedAtomRegex.CompiledMatcher matcher;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        CompactAtomGraph graph = new CompactAtomGraph(NUMBER_OF_ATOMS * MAX_CHILDREN);
+        Filter filter = new Filter();
+
+        Map<Class<? extends AtomClass>, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < types.size(); i++) {
+            ordinals.put(types.get(i), i);
+        }
+        for (Class<? extends AtomClass> c : types) {
+            AtomRegex regex = c.newInstance().memberRegex;
+            if (null != regex) {
+                regexes.add(regex);
+                automata.add(regex.compile(ordinals));
+            }
+        }
+
+        for (int i = 0; i < NUMBER_OF_ATOMS; i++) {
+            Atom[] children = new Atom[random.nextInt(MAX_CHILDREN + 1)];
+            for (int j = 0; j < children.length; j++) {
+                children[j] = graph.createAtomWithProperties(filter, null);
+                List<InterpretedAtomRegex.Entry> entries = new ArrayList<>();
+                for (Class<? extends AtomClass> c : types) {
+                    if (0 == random.nextInt(4)) {
+                        entries.add(new InterpretedAtomRegex.Entry(c, ordinals.get(c), random.nextInt(2)));
+                    }
+                }
+                if (entries.size() > 0) {
+                    classifications.put(children[j].getId(), entries);
+                }
+            }
+            memberLists.add(0 == children.length ? null : graph.createAtomList(children));
+        }
+
+        matcher = new InterpretedAtomRegex.CompiledMatcher(classifications);
+    }
+
+    @Benchmark
+    public void interpreted(final Blackhole blackhole) {
+        for (AtomList members : memberLists) {
+            for (AtomRegex regex : regexes) {
+                // as before compilation, evidence was collected in a new list for each class and atom
+                List<InterpretedAtomRegex.Entry> evidence = new LinkedList<>();
+                blackhole.consume(InterpretedAtomRegex.run(regex, members, classifications, evidence));
+                blackhole.consume(evidence);
+            }
+        }
+    }
+
+    @Benchmark
+    public void compiled(final Blackhole blackhole) {
+        for (AtomList members : memberLists) {
+            for (AtomRegex.Automaton automaton : automata) {
+                matcher.evidence.clear();
+                blackhole.consume(automaton.run(members, matcher));
+            }
+        }
+        blackhole.consume(matcher.evidence);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AtomRegexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,155 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomList;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.compact.CompactAtomGraph;
+import net.fortytwo.smsn.brain.rdf.classes.Document;
+import net.fortytwo.smsn.brain.rdf.classes.Person;
+import net.fortytwo.smsn.brain.rdf.classes.TODOTask;
+import net.fortytwo.smsn.brain.rdf.classes.WebPage;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class AtomRegexTest {
+    private static final List<Class<? extends AtomClass>> types
+            = Arrays.asList(Document.class, Person.class, TODOTask.class, WebPage.class);
+
+    private final Random random = new Random(42);
+
+    private CompactAtomGraph graph;
+    private Filter filter;
+    private Map<Class<? extends AtomClass>, Integer> ordinals;
+
+    @Before
+    public void setUp() {
+        graph = new CompactAtomGraph(4);
+        filter = new Filter();
+        ordinals = new HashMap<>();
+        for (int i = 0; i < types.size(); i++) {
+            ordinals.put(types.get(i), i);
+        }
+    }
+
+    @Test
+    public void membersAreMatchedInOrder() {
+        Map<String, List<InterpretedAtomRegex.Entry>> classifications = new HashMap<>();
+        Atom page = createAtom(classifications, WebPage.class, 1);
+        Atom task = createAtom(classifications, TODOTask.class, 0);
+        Atom other = createAtom();
+
+        AtomRegex regex = new AtomRegex(Arrays.asList(
+                new AtomRegex.El(null, AtomRegex.Modifier.ZeroOrOne, WebPage.class),
+                new AtomRegex.El(null, AtomRegex.Modifier.OneOrMore, TODOTask.class),
+                new AtomRegex.El(null, AtomRegex.Modifier.ZeroOrMore)));
+
+        // a supported member scores two points, an unsupported member one, and a wildcard none
+        assertEquals(2 + 1 + 1, runCompiled(regex, classifications, page, task, task, other));
+        assertEquals(1, runCompiled(regex, classifications, task));
+        assertEquals(AtomRegex.Automaton.FAIL, runCompiled(regex, classifications, page, other));
+        assertEquals(AtomRegex.Automaton.FAIL, runCompiled(regex, classifications));
+    }
+
+    @Test
+    public void atomWithoutMembersIsMatchedAsUnclassified() {
+        Map<String, List<InterpretedAtomRegex.Entry>> classifications = new HashMap<>();
+
+        AtomRegex optional = new AtomRegex(Arrays.asList(
+                new AtomRegex.El(null, AtomRegex.Modifier.ZeroOrOne, Person.class),
+                new AtomRegex.El(null, AtomRegex.Modifier.ZeroOrMore, WebPage.class),
+                new AtomRegex.El(null, AtomRegex.Modifier.ZeroOrMore)));
+        assertEquals(0, runCompiled(optional, classifications));
+    }
+
+    @Test
+    public void compiledRegexMatchesAsInterpreted() {
+        for (int i = 0; i < 5000; i++) {
+            Map<String, List<InterpretedAtomRegex.Entry>> classifications = new HashMap<>();
+            Atom[] members = new Atom[random.nextInt(5)];
+            for (int j = 0; j < members.length; j++) {
+                members[j] = createRandomAtom(classifications);
+            }
+            AtomList list = createList(members);
+            AtomRegex regex = createRandomRegex();
+
+            List<InterpretedAtomRegex.Entry> expectedEvidence = new ArrayList<>();
+            int expected = InterpretedAtomRegex.run(regex, list, classifications, expectedEvidence);
+
+            InterpretedAtomRegex.CompiledMatcher matcher = new InterpretedAtomRegex.CompiledMatcher(classifications);
+            int actual = regex.compile(ordinals).run(list, matcher);
+
+            if (expected < 0) {
+                assertEquals(AtomRegex.Automaton.FAIL, actual);
+            } else {
+                assertEquals(expected, actual);
+                assertEquals(expectedEvidence, matcher.evidence);
+            }
+        }
+    }
+
+    private int runCompiled(final AtomRegex regex,
+                            final Map<String, List<InterpretedAtomRegex.Entry>> classifications,
+                            final Atom... members) {
+        InterpretedAtomRegex.CompiledMatcher matcher = new InterpretedAtomRegex.CompiledMatcher(classifications);
+        return regex.compile(ordinals).run(createList(members), matcher);
+    }
+
+    private AtomRegex createRandomRegex() {
+        List<AtomRegex.El> elements = new ArrayList<>();
+        int length = random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            List<Class<? extends AtomClass>> alternatives = new ArrayList<>();
+            for (Class<? extends AtomClass> c : types) {
+                if (random.nextInt(3) == 0) {
+                    alternatives.add(c);
+                }
+            }
+            AtomRegex.Modifier modifier = AtomRegex.Modifier.values()[random.nextInt(4)];
+            @SuppressWarnings("unchecked")
+            Class<? extends AtomClass>[] alts = alternatives.toArray(new Class[alternatives.size()]);
+            elements.add(new AtomRegex.El(random.nextInt(3), null, modifier, alts));
+        }
+        return new AtomRegex(elements);
+    }
+
+    private Atom createRandomAtom(final Map<String, List<InterpretedAtomRegex.Entry>> classifications) {
+        Atom a = createAtom();
+        List<InterpretedAtomRegex.Entry> entries = new ArrayList<>();
+        for (Class<? extends AtomClass> c : types) {
+            if (random.nextInt(3) == 0) {
+                entries.add(new InterpretedAtomRegex.Entry(c, ordinals.get(c), random.nextInt(2)));
+            }
+        }
+        // as in the knowledge base, an atom with no classes has no entries at all
+        if (entries.size() > 0) {
+            classifications.put(a.getId(), entries);
+        }
+        return a;
+    }
+
+    private Atom createAtom(final Map<String, List<InterpretedAtomRegex.Entry>> classifications,
+                           final Class<? extends AtomClass> type,
+                           final int outScore) {
+        Atom a = createAtom();
+        classifications.put(a.getId(), Arrays.asList(
+                new InterpretedAtomRegex.Entry(type, ordinals.get(type), outScore)));
+        return a;
+    }
+
+    private Atom createAtom() {
+        return graph.createAtomWithProperties(filter, null);
+    }
+
+    private AtomList createList(final Atom... members) {
+        return 0 == members.length ? null : graph.createAtomList(members);
+    }
+}
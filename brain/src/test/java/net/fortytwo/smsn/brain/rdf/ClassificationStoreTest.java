@@ -0,0 +1,160 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClassificationStoreTest {
+
+    @Test
+    public void entriesArePacked() {
+        long entry = ClassificationStore.pack(42, 7, 3);
+        assertEquals(42, ClassificationStore.ordinalOf(entry));
+        assertEquals(7, ClassificationStore.outScoreOf(entry));
+        assertEquals(3, ClassificationStore.inScoreOf(entry));
+
+        entry = ClassificationStore.withInScore(entry, 11);
+        assertEquals(42, ClassificationStore.ordinalOf(entry));
+        assertEquals(7, ClassificationStore.outScoreOf(entry));
+        assertEquals(11, ClassificationStore.inScoreOf(entry));
+
+        // scores are limited to the width of their fields
+        entry = ClassificationStore.pack(ClassificationStore.MAX_ORDINAL, Integer.MAX_VALUE, -1);
+        assertEquals(ClassificationStore.MAX_ORDINAL, ClassificationStore.ordinalOf(entry));
+        assertEquals(ClassificationStore.MAX_SCORE, ClassificationStore.outScoreOf(entry));
+        assertEquals(0, ClassificationStore.inScoreOf(entry));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ordinalMustFit() {
+        ClassificationStore.pack(ClassificationStore.MAX_ORDINAL + 1, 0, 0);
+    }
+
+    @Test
+    public void inScoresAreAddedToCopies() {
+        ClassificationStore store = new ClassificationStore();
+        long[] entries = {ClassificationStore.pack(1, 2, 0), ClassificationStore.pack(3, 1, 1)};
+        store.put("a", entries);
+
+        assertTrue(store.addToInScore("a", 3, 2));
+        assertEquals(3, ClassificationStore.inScoreOf(store.get("a")[1]));
+        // a reader holding the old array is not affected
+        assertEquals(1, ClassificationStore.inScoreOf(entries[1]));
+
+        assertTrue(store.addToInScore("a", 1, -1));
+        assertEquals(0, ClassificationStore.inScoreOf(store.get("a")[0]));
+        assertFalse(store.addToInScore("a", 2, 1));
+        assertFalse(store.addToInScore("b", 1, 1));
+
+        store.put("a", new long[0]);
+        assertNull(store.get("a"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void snapshotIsReadWithNewOrdinals() throws IOException {
+        ClassificationStore store = new ClassificationStore();
+        store.put("a", new long[]{ClassificationStore.pack(0, 2, 1), ClassificationStore.pack(1, 1, 0)});
+        store.put("b", new long[]{ClassificationStore.pack(2, 0, 1)});
+        ClassificationStore.Evidence evidence = new ClassificationStore.Evidence();
+        evidence.add("a", 0);
+        evidence.add("b", 2);
+        store.putEvidence("c", evidence);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.writeSnapshot(out, Arrays.asList("Person", "Document", "WebPage"));
+
+        // the classes have been reordered, and one of them is no longer known
+        Map<String, Integer> ordinals = new HashMap<>();
+        ordinals.put("WebPage", 0);
+        ordinals.put("Person", 1);
+        ClassificationStore restored = new ClassificationStore();
+        restored.put("stale", new long[]{ClassificationStore.pack(0, 1, 1)});
+        restored.readSnapshot(new ByteArrayInputStream(out.toByteArray()), ordinals);
+
+        assertEquals(2, restored.size());
+        assertNull(restored.get("stale"));
+        assertArrayEquals(new long[]{ClassificationStore.pack(1, 2, 1)}, restored.get("a"));
+        assertArrayEquals(new long[]{ClassificationStore.pack(0, 0, 1)}, restored.get("b"));
+
+        ClassificationStore.Evidence restoredEvidence = restored.getEvidence("c");
+        assertEquals(2, restoredEvidence.size());
+        assertEquals("a", restoredEvidence.getMemberId(0));
+        assertEquals(1, restoredEvidence.getOrdinal(0));
+        assertEquals("b", restoredEvidence.getMemberId(1));
+        assertEquals(0, restoredEvidence.getOrdinal(1));
+    }
+
+    @Test
+    public void truncatedSnapshotLeavesStoreEmpty() throws IOException {
+        ClassificationStore store = new ClassificationStore();
+        store.put("a", new long[]{ClassificationStore.pack(0, 2, 1)});
+        store.put("b", new long[]{ClassificationStore.pack(1, 0, 1)});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.writeSnapshot(out, Arrays.asList("Person", "Document"));
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 6);
+
+        Map<String, Integer> ordinals = new HashMap<>();
+        ordinals.put("Person", 0);
+        ordinals.put("Document", 1);
+        ClassificationStore restored = new ClassificationStore();
+        restored.put("stale", new long[]{ClassificationStore.pack(0, 1, 1)});
+        try {
+            restored.readSnapshot(new ByteArrayInputStream(truncated), ordinals);
+            fail("truncated snapshot was read");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertEquals(0, restored.size());
+        assertNull(restored.get("stale"));
+    }
+
+    @Test
+    public void oversizedCountsAreRejected() throws IOException {
+        ClassificationStore store = new ClassificationStore();
+        store.put("a", new long[]{ClassificationStore.pack(0, 2, 1)});
+        store.put("b", new long[]{ClassificationStore.pack(1, 0, 1)});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.writeSnapshot(out, Arrays.asList("Person", "Document"));
+
+        Map<String, Integer> ordinals = new HashMap<>();
+        ordinals.put("Person", 0);
+        ordinals.put("Document", 1);
+
+        // the number of classes follows the magic number and version
+        // the number of entries of the first atom follows the class names, the number of atoms and the atom's id
+        for (int offset : new int[]{8, 8 + 4 + (2 + 6) + (2 + 8) + 4 + (2 + 1)}) {
+            byte[] corrupt = out.toByteArray();
+            ByteBuffer.wrap(corrupt).putInt(offset, 0x7fffffff);
+
+            ClassificationStore restored = new ClassificationStore();
+            try {
+                restored.readSnapshot(new ByteArrayInputStream(corrupt), ordinals);
+                fail("oversized count was read");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("exceeds"));
+            }
+            assertEquals(0, restored.size());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreNotRead() throws IOException {
+        new ClassificationStore().readSnapshot(
+                new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}), new HashMap<>());
+    }
+}
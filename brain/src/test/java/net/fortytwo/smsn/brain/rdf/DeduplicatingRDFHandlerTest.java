@@ -0,0 +1,48 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import org.junit.Test;
+import org.openrdf.model.IRI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.helpers.StatementCollector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class DeduplicatingRDFHandlerTest {
+    private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+    @Test
+    public void distinctStatementsArePassedOnInOrder() throws Exception {
+        IRI a = vf.createIRI("http://example.org/a");
+        IRI b = vf.createIRI("http://example.org/b");
+
+        StatementCollector collector = new StatementCollector();
+        DeduplicatingRDFHandler handler = new DeduplicatingRDFHandler(collector);
+        handler.startRDF();
+        handler.handleStatement(vf.createStatement(a, RDFS.LABEL, vf.createLiteral("a")));
+        handler.handleStatement(vf.createStatement(b, RDFS.LABEL, vf.createLiteral("b")));
+        handler.handleStatement(vf.createStatement(a, RDFS.LABEL, vf.createLiteral("a")));
+        // the same label in a language is a different literal
+        handler.handleStatement(vf.createStatement(a, RDFS.LABEL, vf.createLiteral("a", "en")));
+        handler.endRDF();
+
+        assertEquals(3, collector.getStatements().size());
+        assertEquals(3, handler.getStatementCount());
+        assertEquals(1, handler.getDuplicateCount());
+    }
+
+    @Test
+    public void fingerprintsDistinguishKindsOfValue() {
+        IRI a = vf.createIRI("http://example.org/a");
+        String x = "http://example.org/x";
+
+        assertNotEquals(
+                DeduplicatingRDFHandler.fingerprintOf(vf.createStatement(a, RDFS.SEEALSO, vf.createIRI(x))),
+                DeduplicatingRDFHandler.fingerprintOf(vf.createStatement(a, RDFS.SEEALSO, vf.createLiteral(x))));
+        assertNotEquals(
+                DeduplicatingRDFHandler.fingerprintOf(vf.createStatement(a, RDFS.SEEALSO, vf.createBNode("x"))),
+                DeduplicatingRDFHandler.fingerprintOf(vf.createStatement(a, RDFS.SEEALSO, vf.createLiteral("_:x"))));
+    }
+}
@@ -0,0 +1,192 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomList;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The member-matching loop of the knowledge base as it was before member regexes were compiled,
+ * kept as a reference for the compiled automaton in tests and benchmarks.
+ * Members are classified by a map from atom ids to entries, in the order in which they are tried.
+ */
+class InterpretedAtomRegex {
+
+    static class Entry {
+        final Class<? extends AtomClass> type;
+        final int ordinal;
+        final int outScore;
+
+        Entry(final Class<? extends AtomClass> type, final int ordinal, final int outScore) {
+            this.type = type;
+            this.ordinal = ordinal;
+            this.outScore = outScore;
+        }
+    }
+
+    /**
+     * @return the out-score of the members, or a negative number if they do not match.
+     * Evidence is added only if the members match
+     */
+    static int run(final AtomRegex regex,
+                   final AtomList members,
+                   final Map<String, List<Entry>> classifications,
+                   final List<Entry> evidence) {
+        List<Entry> evidenceEntries = new LinkedList<>();
+        int outScore = 0;
+
+        AtomList cur = members;
+        Atom first = null;
+        int eli = 0;
+        AtomRegex.El el = null;
+        AtomRegex.Modifier mod = null;
+        boolean advanceInput = true;
+        boolean advanceRegex = true;
+        boolean matched;
+        boolean fail = false;
+
+        while (!fail) {
+            if (advanceRegex) {
+                if (regex.getElements().size() > eli) {
+                    el = regex.getElements().get(eli++);
+                    mod = el.getModifier();
+                } else {
+                    if (null != cur) {
+                        fail = true;
+                    }
+
+                    break;
+                }
+
+                advanceRegex = false;
+            }
+
+            if (advanceInput) {
+                if (null == cur) {
+                    if (AtomRegex.Modifier.One == mod || AtomRegex.Modifier.OneOrMore == mod) {
+                        fail = true;
+                        break;
+                    } else {
+                        advanceRegex = true;
+                        advanceInput = false;
+                        continue;
+                    }
+                } else {
+                    first = cur.getFirst();
+                    cur = cur.getRest();
+                    advanceInput = false;
+                }
+            }
+
+            int points = match(first, el, classifications, evidenceEntries);
+            if (points > 0) {
+                outScore += points;
+            }
+
+            matched = points >= 0;
+
+            switch (mod) {
+                case ZeroOrOne:
+                    if (matched) {
+                        advanceRegex = true;
+                        advanceInput = true;
+                    } else {
+                        advanceRegex = true;
+                    }
+                    break;
+                case ZeroOrMore:
+                    if (matched) {
+                        advanceInput = true;
+                    } else {
+                        advanceRegex = true;
+                    }
+                    break;
+                case One:
+                    if (matched) {
+                        advanceRegex = true;
+                        advanceInput = true;
+                    } else {
+                        fail = true;
+                    }
+                    break;
+                case OneOrMore:
+                    if (matched) {
+                        mod = AtomRegex.Modifier.ZeroOrMore;
+                        advanceInput = true;
+                    } else {
+                        fail = true;
+                    }
+                    break;
+            }
+        }
+
+        if (fail) {
+            return -1;
+        }
+
+        evidence.addAll(evidenceEntries);
+        return outScore;
+    }
+
+    private static int match(final Atom childAtom,
+                             final AtomRegex.El el,
+                             final Map<String, List<Entry>> classifications,
+                             final List<Entry> evidenceEntries) {
+        Set<Class<? extends AtomClass>> alts = el.getAlternatives();
+
+        List<Entry> entries = null == childAtom ? null : classifications.get(childAtom.getId());
+        if (null == entries) {
+            return 0 == alts.size() ? 0 : -1;
+        }
+
+        for (Entry entry : entries) {
+            if (0 == alts.size() || alts.contains(entry.type)) {
+                if (el.getWeight() > 0) {
+                    evidenceEntries.add(entry);
+                }
+
+                return entry.outScore > 0 ? el.getWeight() * 2 : el.getWeight();
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Matches members in the same way, for a compiled automaton
+     */
+    static class CompiledMatcher implements AtomRegex.MemberMatcher {
+        private final Map<String, List<Entry>> classifications;
+        final List<Entry> evidence = new ArrayList<>();
+
+        CompiledMatcher(final Map<String, List<Entry>> classifications) {
+            this.classifications = classifications;
+        }
+
+        @Override
+        public int match(final Atom member, final AtomRegex.Automaton regex, final int state) {
+            List<Entry> entries = null == member ? null : classifications.get(member.getId());
+            if (null == entries) {
+                return regex.isWildcard(state) ? 0 : -1;
+            }
+
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                if (regex.accepts(state, entry.ordinal)) {
+                    int weight = regex.getWeight(state);
+                    if (weight > 0) {
+                        evidence.add(entry);
+                    }
+
+                    return entry.outScore > 0 ? weight * 2 : weight;
+                }
+            }
+
+            return -1;
+        }
+    }
+}
@@ -53,6 +53,7 @@ import org.openrdf.sail.Sail;
 import org.openrdf.sail.memory.MemoryStore;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -61,9 +62,12 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -328,38 +332,8 @@ public class KnowledgeBaseTest extends BrainTestBase {
     @Test
     public void testInference() throws Exception {
         AtomGraph atomGraph = createTinkerAtomGraph();
-        Brain brain = new Brain(atomGraph);
         KnowledgeBase kb = new KnowledgeBase(atomGraph);
-        NoteReader parser = new NoteReader();
-        NoteQueries queries = new NoteQueries(brain);
-        Filter filter = new Filter();
-        Atom root = atomGraph.createAtomWithProperties(filter, SemanticSynchrony.createRandomId());
-        root.setValue("root");
-        String rootId = root.getId();
-
-        try (InputStream in = getClass().getResourceAsStream("inference-example-1.txt")) {
-            BufferedReader br = new BufferedReader(new InputStreamReader(in));
-            String line;
-            while (null != (line = br.readLine())) {
-                int height = Integer.valueOf(line.trim());
-                StringBuilder sb = new StringBuilder();
-
-                while (null != (line = br.readLine()) && 0 < line.trim().length()) {
-                    sb.append(line).append("\n");
-                }
-                String text = sb.toString().trim();
-                Note rootNote = parser.fromWikiText(text);
-                //System.out.println("children: " + rootNote.getChildren().size() + ", height: " + height);
-                for (Note c : rootNote.getChildren()) {
-                    System.out.println("\t" + c.getValue());
-                    for (Note c2 : c.getChildren()) {
-                        System.out.println("\t\t" + c2.getValue());
-                    }
-                }
-                rootNote.setId(rootId);
-                queries.update(rootNote, height, filter, NoteQueries.forwardViewStyle);
-            }
-        }
+        loadInferenceExample(atomGraph);
 
         kb.addDefaultClasses();
 
@@ -484,6 +458,178 @@ public class KnowledgeBaseTest extends BrainTestBase {
         }
     }
 
+    @Test
+    public void testParallelInferenceDoesNotDependOnThreads() throws Exception {
+        AtomGraph atomGraph = createTinkerAtomGraph();
+        loadInferenceExample(atomGraph);
+        KnowledgeBase oneThread = new KnowledgeBase(atomGraph);
+        oneThread.addDefaultClasses();
+        KnowledgeBase manyThreads = new KnowledgeBase(atomGraph);
+        manyThreads.addDefaultClasses();
+        KnowledgeBase sequential = new KnowledgeBase(atomGraph);
+        sequential.addDefaultClasses();
+
+        ForkJoinPool onePool = new ForkJoinPool(1);
+        ForkJoinPool manyPool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 6; i++) {
+                oneThread.inferClassesInParallel(onePool);
+                manyThreads.inferClassesInParallel(manyPool);
+                sequential.inferClasses(null, null);
+                assertEquals(describeClasses(atomGraph, oneThread), describeClasses(atomGraph, manyThreads));
+            }
+        } finally {
+            onePool.shutdown();
+            manyPool.shutdown();
+        }
+
+        // once settled, parallel steps agree with sequential steps on every classification and score
+        assertEquals(describeClasses(atomGraph, sequential), describeClasses(atomGraph, manyThreads));
+
+        String[][] expected = {
+                {"yOXFhhN", "person"},
+                {"Z5UUQn6", "works-collection"},
+                {"mRwSsu2", "document"},
+                {"xKWD1wC", "bibtex-entry"},
+                {"5OfUlUN", "quoted-value-collection"},
+                {"vtdNdMF", "quoted-value-collection"},
+                {"yWBqSc2", "social-network-collection"},
+                {"gsaYMBs", "webpage"},
+                {"0rYY9z0", "person"}};
+        for (String[] e : expected) {
+            Atom a = atomGraph.getAtomById(e[0]);
+            assertClassEquals(e[1], a, sequential);
+            assertClassEquals(e[1], a, manyThreads);
+        }
+    }
+
+    @Test
+    public void testChangedAtomsAreReclassified() throws Exception {
+        AtomGraph atomGraph = createTinkerAtomGraph();
+        KnowledgeBase kb = new KnowledgeBase(atomGraph);
+        kb.addDefaultClasses();
+        Filter filter = new Filter();
+
+        Atom list = atomGraph.createAtomWithProperties(filter, null);
+        list.setValue("some things to do");
+        Atom task = atomGraph.createAtomWithProperties(filter, null);
+        task.setValue("TODO: write a test");
+        list.addChildAt(task, 0);
+
+        for (int i = 0; i < 2; i++) {
+            kb.inferClasses(null, null);
+        }
+        assertNotNull(findEntry("todo-collection", list, kb));
+        assertTrue(findEntry("todo", task, kb).getInScore() > 0);
+        assertEquals(0, kb.inferChangedClasses());
+
+        // only the list is changed, and it no longer counts as evidence for the task
+        list.setValue("things which are done");
+        assertEquals(1, kb.inferChangedClasses());
+        assertNull(findEntry("todo-collection", list, kb));
+        assertEquals(0, findEntry("todo", task, kb).getInScore());
+
+        // a changed member changes the classification of its parent in turn, at the latest on the next call
+        list.setValue("some things to do");
+        task.setValue("done: write a test");
+        kb.inferChangedClasses();
+        kb.inferChangedClasses();
+        assertNull(findEntry("todo", task, kb));
+        assertNull(findEntry("todo-collection", list, kb));
+    }
+
+    @Test
+    public void testClassificationsAreRestoredFromSnapshot() throws Exception {
+        AtomGraph atomGraph = createTinkerAtomGraph();
+        loadInferenceExample(atomGraph);
+        KnowledgeBase kb = new KnowledgeBase(atomGraph);
+        kb.addDefaultClasses();
+        for (int i = 0; i < 4; i++) {
+            kb.inferClasses(null, null);
+        }
+
+        File file = File.createTempFile("smsn-classifications", ".bin");
+        file.deleteOnExit();
+        kb.writeSnapshot(file);
+
+        KnowledgeBase restored = new KnowledgeBase(atomGraph);
+        restored.addDefaultClasses();
+        assertTrue(restored.readSnapshot(file));
+        assertEquals(describeClasses(atomGraph, kb), describeClasses(atomGraph, restored));
+        assertClassEquals("person", atomGraph.getAtomById("yOXFhhN"), restored);
+
+        // restored evidence is withdrawn as for any other, when the atoms which gave it change
+        Atom einsteinFamily = atomGraph.getAtomById("yWBqSc2");
+        einsteinFamily.setValue("nobody in particular");
+        kb.inferChangedClasses();
+        restored.inferChangedClasses();
+        assertEquals(describeClasses(atomGraph, kb), describeClasses(atomGraph, restored));
+
+        assertFalse(restored.readSnapshot(new File(file.getPath() + ".missing")));
+    }
+
+    private void loadInferenceExample(final AtomGraph atomGraph) throws Exception {
+        Brain brain = new Brain(atomGraph);
+        NoteReader parser = new NoteReader();
+        NoteQueries queries = new NoteQueries(brain);
+        Filter filter = new Filter();
+        Atom root = atomGraph.createAtomWithProperties(filter, SemanticSynchrony.createRandomId());
+        root.setValue("root");
+        String rootId = root.getId();
+
+        try (InputStream in = getClass().getResourceAsStream("inference-example-1.txt")) {
+            BufferedReader br = new BufferedReader(new InputStreamReader(in));
+            String line;
+            while (null != (line = br.readLine())) {
+                int height = Integer.valueOf(line.trim());
+                StringBuilder sb = new StringBuilder();
+
+                while (null != (line = br.readLine()) && 0 < line.trim().length()) {
+                    sb.append(line).append("\n");
+                }
+                String text = sb.toString().trim();
+                Note rootNote = parser.fromWikiText(text);
+                //System.out.println("children: " + rootNote.getChildren().size() + ", height: " + height);
+                for (Note c : rootNote.getChildren()) {
+                    System.out.println("\t" + c.getValue());
+                    for (Note c2 : c.getChildren()) {
+                        System.out.println("\t\t" + c2.getValue());
+                    }
+                }
+                rootNote.setId(rootId);
+                queries.update(rootNote, height, filter, NoteQueries.forwardViewStyle);
+            }
+        }
+    }
+
+    // every classification of every atom, with its scores
+    private String describeClasses(final AtomGraph atomGraph, final KnowledgeBase kb) {
+        List<String> descriptions = new LinkedList<>();
+        for (Atom a : atomGraph.getAllAtoms()) {
+            List<KnowledgeBase.AtomClassEntry> entries = kb.getClassInfo(a);
+            if (null != entries) {
+                for (KnowledgeBase.AtomClassEntry e : entries) {
+                    descriptions.add(a.getId() + " " + e.getInferredClassName()
+                            + " " + e.getOutScore() + "+" + e.getInScore());
+                }
+            }
+        }
+        Collections.sort(descriptions);
+        return String.join("\n", descriptions);
+    }
+
+    private KnowledgeBase.AtomClassEntry findEntry(final String className, final Atom atom, final KnowledgeBase kb) {
+        List<KnowledgeBase.AtomClassEntry> entries = kb.getClassInfo(atom);
+        if (null != entries) {
+            for (KnowledgeBase.AtomClassEntry e : entries) {
+                if (e.getInferredClassName().equals(className)) {
+                    return e;
+                }
+            }
+        }
+        return null;
+    }
+
     private void assertClassEquals(final String className, final Atom atom, final KnowledgeBase kb) {
         List<KnowledgeBase.AtomClassEntry> entries = kb.getClassInfo(atom);
         assertTrue(null != entries && entries.size() > 0);
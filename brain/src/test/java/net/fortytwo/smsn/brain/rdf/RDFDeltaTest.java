@@ -0,0 +1,155 @@
+package net.fortytwo.smsn.brain.rdf;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.IRI;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.SimpleValueFactory;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class RDFDeltaTest {
+    private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+    private final IRI a = vf.createIRI("http://example.org/a");
+    private final IRI b = vf.createIRI("http://example.org/b");
+
+    private File manifest;
+
+    @Before
+    public void setUp() throws Exception {
+        manifest = File.createTempFile("smsn-rdf-manifest", ".bin");
+        manifest.delete();
+        manifest.deleteOnExit();
+    }
+
+    @Test
+    public void firstExportAddsEverything() throws Exception {
+        String update = export(new TestAtom("1", label(a, "a")), new TestAtom("2", label(b, "b")));
+
+        assertEquals(Arrays.asList(), removed(update));
+        assertEquals(Arrays.asList(ntriples(a, "a"), ntriples(b, "b")), added(update));
+    }
+
+    @Test
+    public void onlyChangesAreExported() throws Exception {
+        export(new TestAtom("1", label(a, "a")), new TestAtom("2", label(b, "b")));
+
+        String update = export(new TestAtom("1", label(a, "a")), new TestAtom("2", label(b, "bee")));
+        assertEquals(Arrays.asList(ntriples(b, "b")), removed(update));
+        assertEquals(Arrays.asList(ntriples(b, "bee")), added(update));
+
+        update = export(new TestAtom("1", label(a, "a")), new TestAtom("2", label(b, "bee")));
+        assertEquals(Arrays.asList(), removed(update));
+        assertEquals(Arrays.asList(), added(update));
+    }
+
+    @Test
+    public void statementsOfRemovedAtomsAreRemoved() throws Exception {
+        export(new TestAtom("1", label(a, "a")), new TestAtom("2", label(b, "b")));
+
+        String update = export(new TestAtom("1", label(a, "a")));
+        assertEquals(Arrays.asList(ntriples(b, "b")), removed(update));
+        assertEquals(Arrays.asList(), added(update));
+    }
+
+    @Test
+    public void sharedStatementsRemainWhileAnyAtomGeneratesThem() throws Exception {
+        export(new TestAtom("1", label(a, "a")), new TestAtom("2", label(a, "a")));
+
+        String update = export(new TestAtom("1", label(a, "a")), new TestAtom("2"));
+        assertEquals(Arrays.asList(), removed(update));
+
+        // a statement which moves from one atom to another is unchanged
+        update = export(new TestAtom("1"), new TestAtom("2", label(a, "a")));
+        assertEquals(Arrays.asList(), removed(update));
+        assertEquals(Arrays.asList(), added(update));
+
+        update = export(new TestAtom("1"), new TestAtom("2"));
+        assertEquals(Arrays.asList(ntriples(a, "a")), removed(update));
+    }
+
+    @Test
+    public void manifestIsUnchangedByAbandonedExport() throws Exception {
+        export(new TestAtom("1", label(a, "a")));
+
+        try (RDFDelta delta = new RDFDelta(manifest)) {
+            delta.startAtom("1");
+        }
+        assertFalse(new File(manifest.getPath() + ".new").exists());
+
+        String update = export(new TestAtom("1", label(a, "a")));
+        assertEquals(Arrays.asList(), added(update));
+    }
+
+    @Test(expected = RDFHandlerException.class)
+    public void blankNodesAreRejected() throws Exception {
+        export(new TestAtom("1", vf.createStatement(vf.createBNode(), RDFS.LABEL, vf.createLiteral("a"))));
+    }
+
+    private String export(final TestAtom... atoms) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (RDFDelta delta = new RDFDelta(manifest)) {
+            delta.startRDF();
+            for (TestAtom atom : atoms) {
+                delta.startAtom(atom.id);
+                for (Statement s : atom.statements) {
+                    delta.handleStatement(s);
+                }
+            }
+            delta.endRDF();
+            delta.writeUpdate(out);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private Statement label(final IRI subject, final String label) {
+        return vf.createStatement(subject, RDFS.LABEL, vf.createLiteral(label));
+    }
+
+    private String ntriples(final IRI subject, final String label) {
+        Statement s = label(subject, label);
+        return NTriplesUtil.toNTriplesString(s.getSubject()) + " " + NTriplesUtil.toNTriplesString(s.getPredicate())
+                + " " + NTriplesUtil.toNTriplesString(s.getObject()) + " .";
+    }
+
+    private List<String> removed(final String update) {
+        return statementsOf(update.substring(0, update.indexOf("INSERT DATA")), "DELETE DATA");
+    }
+
+    private List<String> added(final String update) {
+        return statementsOf(update.substring(update.indexOf("INSERT DATA")), "INSERT DATA");
+    }
+
+    private List<String> statementsOf(final String block, final String operation) {
+        List<String> statements = new ArrayList<>();
+        for (String line : block.split("\n")) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith(operation) && !line.equals("}") && !line.equals(";")) {
+                statements.add(line);
+            }
+        }
+        return statements;
+    }
+
+    private static class TestAtom {
+        private final String id;
+        private final List<Statement> statements;
+
+        private TestAtom(final String id, final Statement... statements) {
+            this.id = id;
+            this.statements = Arrays.asList(statements);
+        }
+    }
+}
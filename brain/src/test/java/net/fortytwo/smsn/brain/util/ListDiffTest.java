@@ -2,7 +2,11 @@ package net.fortytwo.smsn.brain.util;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Random;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -56,6 +60,40 @@ public class ListDiffTest {
         return ListDiff.toString(work);
     }
 
+    private int moves;
+
+    private String applyDiffWithMoves(final String before,
+                                      final String after) {
+        additions = 0;
+        removals = 0;
+        moves = 0;
+
+        final List<String> work = new ArrayList<>(ListDiff.toList(before));
+
+        ListDiff.DiffEditor<String> ed = new ListDiff.DiffEditor<String>() {
+            public void add(int position, String letter) {
+                work.add(position, letter);
+                additions++;
+            }
+
+            public void delete(int position, String letter) {
+                assertEquals(letter, work.remove(position));
+                removals++;
+            }
+
+            public void move(int from, int to, String letter) {
+                String moved = work.remove(from);
+                assertEquals(letter, moved);
+                work.add(to, moved);
+                moves++;
+            }
+        };
+
+        ListDiff.applyDiff(ListDiff.toList(before), ListDiff.toList(after), cmp, ed);
+
+        return ListDiff.toString(work);
+    }
+
     @Test
     public void testSubstitutionAtEndOfString() throws Exception {
         String before = "atg";
@@ -237,4 +275,117 @@ public class ListDiffTest {
         assertEquals(5, additions);
         assertEquals(10, removals);
     }
+
+    @Test
+    public void testSwapAdjacentIsOneMove() throws Exception {
+        String before = "...XY..";
+        String after = "...YX..";
+
+        assertEquals(after, applyDiffWithMoves(before, after));
+        assertEquals(0, additions);
+        assertEquals(0, removals);
+        assertEquals(1, moves);
+    }
+
+    @Test
+    public void testReverseWithMoves() throws Exception {
+        String before = "...ABC..";
+        String after = "...CBA..";
+
+        assertEquals(after, applyDiffWithMoves(before, after));
+        assertEquals(0, additions);
+        assertEquals(0, removals);
+        assertEquals(2, moves);
+    }
+
+    @Test
+    public void testMoveFromStartToEnd() throws Exception {
+        String before = "abcdef";
+        String after = "bcdefa";
+
+        assertEquals(after, applyDiffWithMoves(before, after));
+        assertEquals(0, additions);
+        assertEquals(0, removals);
+        assertEquals(1, moves);
+    }
+
+    @Test
+    public void testMovesWithAdditionsAndRemovals() throws Exception {
+        String before = "abcdefg";
+        String after = "gxbdcay";
+
+        assertEquals(after, applyDiffWithMoves(before, after));
+        assertEquals(2, additions);
+        assertEquals(2, removals);
+    }
+
+    @Test
+    public void testRepeatedElementsAreMoved() throws Exception {
+        String before = "aabba";
+        String after = "babaa";
+
+        assertEquals(after, applyDiffWithMoves(before, after));
+        assertEquals(0, additions);
+        assertEquals(0, removals);
+    }
+
+    @Test
+    public void testLargeShuffle() throws Exception {
+        List<String> before = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            before.add("" + i);
+        }
+        List<String> after = new ArrayList<>(before);
+        Collections.shuffle(after, new Random(42));
+
+        List<String> lcs = ListDiff.longestCommonSubsequence(before, after, cmp);
+        final List<String> work = new ArrayList<>(before);
+        int[] changes = {0};
+        ListDiff.applyDiff(before, after, cmp, new ListDiff.DiffEditor<String>() {
+            public void add(int position, String letter) {
+                throw new AssertionError("unexpected addition");
+            }
+
+            public void delete(int position, String letter) {
+                throw new AssertionError("unexpected removal");
+            }
+
+            public void move(int from, int to, String letter) {
+                work.add(to, work.remove(from));
+                changes[0]++;
+            }
+        });
+
+        assertEquals(after, work);
+        assertEquals(before.size() - lcs.size(), changes[0]);
+    }
+
+    @Test
+    public void testSourcesKeepMovedElements() throws Exception {
+        List<String> before = ListDiff.toList("abcde");
+        List<String> after = ListDiff.toList("eaxbd");
+
+        int[] sources = ListDiff.findSources(before, after, cmp);
+        assertEquals("[4, 0, -1, 1, 3]", Arrays.toString(sources));
+        assertEquals("[true, true, false, true, true]", Arrays.toString(ListDiff.findKept(sources, before.size())));
+
+        // one addition, one deletion and one move
+        assertEquals(3, ListDiff.countEdits(sources, before.size()));
+    }
+
+    @Test
+    public void testEditsAreCountedLikeApplyDiff() throws Exception {
+        String[][] cases = {{"abcde", "abcde"}, {"", "abc"}, {"abc", ""}, {"abcde", "edcba"},
+                {"aabba", "babaa"}, {"abcdefg", "gxafbyc"}};
+        for (String[] c : cases) {
+            applyDiffWithMoves(c[0], c[1]);
+            int[] sources = ListDiff.findSources(ListDiff.toList(c[0]), ListDiff.toList(c[1]), cmp);
+            assertEquals(additions + removals + moves, ListDiff.countEdits(sources, c[0].length()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSourcesMayNotRepeat() throws Exception {
+        ListDiff.findKept(new int[]{0, 1, 0}, 3);
+    }
 }
@@ -0,0 +1,57 @@
+package net.fortytwo.smsn.brain.util;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongHashSetTest {
+
+    @Test
+    public void valuesAreAddedOnce() {
+        LongHashSet set = new LongHashSet();
+        assertTrue(set.add(42L));
+        assertFalse(set.add(42L));
+        assertTrue(set.add(-42L));
+        assertTrue(set.contains(42L));
+        assertFalse(set.contains(43L));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    public void zeroIsAValue() {
+        LongHashSet set = new LongHashSet();
+        assertFalse(set.contains(0L));
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        assertTrue(set.contains(0L));
+        assertEquals(1, set.size());
+
+        set.clear();
+        assertFalse(set.contains(0L));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    public void setGrowsAsAHashSetWould() {
+        Random random = new Random(42);
+        LongHashSet set = new LongHashSet(4);
+        Set<Long> expected = new HashSet<>();
+
+        for (int i = 0; i < 100000; i++) {
+            // include values which differ only in their high bits
+            long value = 0 == i % 3 ? (long) random.nextInt(1000) << 48 : random.nextInt(50000);
+            assertEquals(expected.add(value), set.add(value));
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (long value : expected) {
+            assertTrue(set.contains(value));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package net.fortytwo.smsn.brain.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferTest {
+
+    @Test
+    public void itemsAreTakenInOrderUntilFull() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+
+        assertEquals(0, (int) buffer.poll());
+        assertTrue(buffer.offer(4));
+
+        List<Integer> items = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(items, 10));
+        assertEquals(4, (int) items.get(3));
+        assertNull(buffer.poll());
+        assertEquals(5, buffer.getAddedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBeAPowerOfTwo() {
+        new RingBuffer<Integer>(6);
+    }
+
+    @Test
+    public void concurrentProducersLoseNothing() throws Exception {
+        final int producers = 4, itemsPerProducer = 100000;
+        RingBuffer<long[]> buffer = new RingBuffer<>(256);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            Thread t = new Thread(() -> {
+                for (int i = 0; i < itemsPerProducer; i++) {
+                    buffer.put(new long[]{producer, i});
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+
+        // each producer's items arrive in the order in which it added them
+        long[] next = new long[producers];
+        int taken = 0;
+        while (taken < producers * itemsPerProducer) {
+            long[] item = buffer.poll();
+            if (null == item) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[(int) item[0]]++, item[1]);
+            taken++;
+        }
+
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertNull(buffer.poll());
+    }
+}
@@ -0,0 +1,66 @@
+package net.fortytwo.smsn.brain.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TopKTest {
+
+    @Test
+    public void highestScoresAreKeptInOrder() {
+        TopK<String> top = new TopK<>(3);
+        top.add("c", 0.3f);
+        top.add("a", 0.9f);
+        top.add("e", 0.1f);
+        top.add("b", 0.5f);
+        top.add("d", 0.2f);
+
+        assertEquals(Arrays.asList("a", "b", "c"), top.toList());
+        assertEquals(Arrays.asList("b", "c"), top.toList(1));
+        assertEquals(5, top.getAdded());
+    }
+
+    @Test
+    public void tiesAreKeptInOrderOfAddition() {
+        TopK<Integer> top = new TopK<>(3);
+        for (int i = 0; i < 10; i++) {
+            top.add(i, 1f);
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2), top.toList());
+    }
+
+    @Test
+    public void pagesAreConsistentWithAFullRanking() {
+        Random random = new Random(42);
+        float[] scores = new float[1000];
+        TopK<Integer> all = new TopK<>(Integer.MAX_VALUE);
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextFloat();
+            all.add(i, scores[i]);
+        }
+
+        TopK<Integer> page = new TopK<>(TopK.capacityFor(40, 20));
+        for (int i = 0; i < scores.length; i++) {
+            page.add(i, scores[i]);
+        }
+
+        assertEquals(all.toList().subList(40, 60), page.toList(40));
+    }
+
+    @Test
+    public void capacityDoesNotOverflow() {
+        assertEquals(Integer.MAX_VALUE, TopK.capacityFor(10, Integer.MAX_VALUE));
+        assertEquals(30, TopK.capacityFor(10, 20));
+    }
+
+    @Test
+    public void skippingPastTheEndGivesAnEmptyPage() {
+        TopK<String> top = new TopK<>(5);
+        top.add("a", 1f);
+        assertEquals(0, top.toList(3).size());
+    }
+}
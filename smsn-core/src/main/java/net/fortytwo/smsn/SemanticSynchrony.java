@@ -21,6 +21,7 @@ public class SemanticSynchrony {
     public static final String
             BASE_URI = "net.fortytwo.smsn.baseURI",
             ACTIVITY_LOG = "net.fortytwo.smsn.activityLog",
+            ACTIVITY_LOG_FORMAT = "net.fortytwo.smsn.activityLogFormat",
             ATOM_NAMESPACE = "net.fortytwo.smsn.atomNamespace",
             VERSION = "net.fortytwo.smsn.version";
 
@@ -60,6 +61,12 @@ public class SemanticSynchrony {
     // extended schema constants
     public static final String
             ACRONYM = "acronym",
+            CHILD = "child",
+            CHILD_COUNT = "childCount",
+            CHILDREN = "children",
+            PARENT = "parent",
+            PARENT_COUNT = "parentCount",
+            PARENTS_INDEXED = "parentsIndexed",
             PRIORITY = "priority",
             SHORTCUT = "shortcut";
 
@@ -1,16 +1,19 @@
 package net.fortytwo.smsn.brain.io;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterators;
+import net.fortytwo.smsn.brain.ActivityLog;
 import net.fortytwo.smsn.brain.Brain;
 import net.fortytwo.smsn.brain.model.Atom;
 import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.model.cached.CachingAtomGraph;
+import net.fortytwo.smsn.brain.model.pg.PGAtomGraph;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -31,16 +34,27 @@ public abstract class BrainReader {
 
         assertFileExists(file);
 
-        if (format.getType().equals(Format.Type.DirectoryBased)) {
-            assertIsDirectory(file);
-            importDirectoryNonrecursive(file, format, brain);
-        } else {
-            if (file.isDirectory()) {
-                if (recursive) {
-                    importDirectoryRecursive(file, format, brain);
-                }
+        // index maintenance is deferred until all files have been imported
+        PGAtomGraph pgGraph = asPGAtomGraph(brain.getAtomGraph());
+        if (null != pgGraph) {
+            pgGraph.beginBulkImport();
+        }
+        try {
+            if (format.getType().equals(Format.Type.DirectoryBased)) {
+                assertIsDirectory(file);
+                importDirectoryNonrecursive(file, format, brain);
             } else {
-                importSingleFile(file, format, brain);
+                if (file.isDirectory()) {
+                    if (recursive) {
+                        importDirectoryRecursive(file, format, brain);
+                    }
+                } else {
+                    importSingleFile(file, format, brain);
+                }
+            }
+        } finally {
+            if (null != pgGraph) {
+                pgGraph.endBulkImport();
             }
         }
     }
@@ -52,15 +66,50 @@ public abstract class BrainReader {
 
         AtomGraph destGraph = context.getAtomGraph();
 
-        // note: we assume the graph is small
-        importInternal(context);
-        reindexVertices(destGraph);
+        PGAtomGraph pgGraph = asPGAtomGraph(destGraph);
+        if (null != pgGraph) {
+            pgGraph.beginBulkImport();
+        }
+        try {
+            if (writesThroughAtomGraph()) {
+                // reindex and log only the atoms touched by this import, rather than the entire graph
+                Set<String> changedIds = new HashSet<>();
+                Set<String> changedParentIds = new HashSet<>();
+                AtomGraph.ChangeListener listener = new ChangedAtomCollector(changedIds, changedParentIds);
+                destGraph.addChangeListener(listener);
+                try {
+                    importInternal(context);
+                } finally {
+                    destGraph.removeChangeListener(listener);
+                }
+                reindexAtoms(destGraph, changedIds);
+                logAtoms(context.getActivityLog(),
+                        toAtoms(destGraph, changedIds), toAtoms(destGraph, changedParentIds));
+            } else {
+                importInternal(context);
+                reindexAllAtoms(destGraph);
+                logAtoms(context.getActivityLog(), destGraph.getAllAtoms(), destGraph.getAllAtoms());
+            }
+        } finally {
+            if (null != pgGraph) {
+                pgGraph.endBulkImport();
+            }
+        }
 
         long after = System.currentTimeMillis();
         logger.info("imported " + context.getFormat() + " data in " + (after - before) + " ms (before commit). " +
                 "Resulting graph has " + getSizeOf(context) + " atoms");
     }
 
+    /**
+     * @return whether this reader makes all of its changes through the atom graph,
+     * so that the atoms it changes may be tracked and reindexed individually.
+     * A reader which writes to the underlying property graph must return false.
+     */
+    protected boolean writesThroughAtomGraph() {
+        return true;
+    }
+
     protected void assertFileExists(final File file) {
         Preconditions.checkArgument(file.exists(), "directory " + file.getAbsolutePath() + " does not exist");
     }
@@ -83,12 +132,13 @@ public abstract class BrainReader {
     }
 
     private long getSizeOf(final Context context) {
-        return Iterators.size(context.getAtomGraph().getAllAtoms().iterator());
+        return context.getAtomGraph().getAtomCount();
     }
 
     private void importDirectoryNonrecursive(File dir, Format format, Brain brain) throws IOException {
         Context context = new Context();
         context.setAtomGraph(brain.getAtomGraph());
+        context.setActivityLog(brain.getActivityLog());
         context.setSourceDirectory(dir);
         context.setFormat(format);
 
@@ -120,6 +170,7 @@ public abstract class BrainReader {
 
             Context context = new Context();
             context.setAtomGraph(brain.getAtomGraph());
+            context.setActivityLog(brain.getActivityLog());
             context.setSourceStream(sourceStream);
             context.setFormat(format);
 
@@ -127,15 +178,83 @@ public abstract class BrainReader {
         }
     }
 
-    private void reindexVertices(AtomGraph destGraph) {
+    private void reindexAtoms(final AtomGraph destGraph, final Set<String> ids) {
+        for (String id : ids) {
+            Atom a = destGraph.getAtomById(id);
+            // atoms may have been removed since they were changed
+            if (null != a) reindexIfValued(destGraph, a);
+        }
+    }
+
+    private void reindexAllAtoms(final AtomGraph destGraph) {
         for (Atom a : destGraph.getAllAtoms()) {
-            String value = a.getValue();
-            if (null != value) destGraph.reindexAtom(a);
+            reindexIfValued(destGraph, a);
+        }
+    }
+
+    /*
+    Imported atoms are not logged as they are written, so their final state is logged once the import is complete,
+    so that the import is not lost when the graph is restored from a snapshot and the log.
+    Properties are logged before children, so that each atom is known by the time it is linked to.
+     */
+    private void logAtoms(final ActivityLog log,
+                          final Iterable<Atom> withProperties,
+                          final Iterable<Atom> withChildren) {
+        if (null == log) return;
+
+        for (Atom a : withProperties) {
+            log.logSetProperties(a);
+        }
+        for (Atom a : withChildren) {
+            if (a.getNumberOfChildren() > 0) {
+                log.logChildren(a);
+            }
+        }
+    }
+
+    private static List<Atom> toAtoms(final AtomGraph destGraph, final Set<String> ids) {
+        List<Atom> atoms = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Atom a = destGraph.getAtomById(id);
+            if (null != a) atoms.add(a);
+        }
+        return atoms;
+    }
+
+    private void reindexIfValued(final AtomGraph destGraph, final Atom a) {
+        String value = a.getValue();
+        if (null != value) destGraph.reindexAtom(a);
+    }
+
+    private static PGAtomGraph asPGAtomGraph(final AtomGraph graph) {
+        AtomGraph base = graph instanceof CachingAtomGraph ? ((CachingAtomGraph) graph).getBaseGraph() : graph;
+        return base instanceof PGAtomGraph ? (PGAtomGraph) base : null;
+    }
+
+    private static class ChangedAtomCollector implements AtomGraph.ChangeListener {
+        private final Set<String> changedIds;
+        private final Set<String> changedParentIds;
+
+        private ChangedAtomCollector(final Set<String> changedIds, final Set<String> changedParentIds) {
+            this.changedIds = changedIds;
+            this.changedParentIds = changedParentIds;
+        }
+
+        @Override
+        public void propertiesChanged(final String atomId) {
+            changedIds.add(atomId);
+        }
+
+        @Override
+        public void childrenChanged(final String atomId) {
+            // the order of children is not indexed, but it is logged
+            changedParentIds.add(atomId);
         }
     }
 
     public static class Context {
         private AtomGraph atomGraph;
+        private ActivityLog activityLog;
         private InputStream sourceStream;
         private File sourceDirectory;
         private Format format;
@@ -148,6 +267,14 @@ public abstract class BrainReader {
             this.atomGraph = atomGraph;
         }
 
+        public ActivityLog getActivityLog() {
+            return activityLog;
+        }
+
+        public void setActivityLog(ActivityLog activityLog) {
+            this.activityLog = activityLog;
+        }
+
         public InputStream getSourceStream() {
             return sourceStream;
         }
@@ -2,6 +2,8 @@ package net.fortytwo.smsn.brain.io.graphml;
 
 import net.fortytwo.smsn.brain.io.BrainReader;
 import net.fortytwo.smsn.brain.io.Format;
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.model.cached.CachingAtomGraph;
 import net.fortytwo.smsn.brain.model.pg.PGAtomGraph;
 
 import java.io.IOException;
@@ -15,13 +17,25 @@ public class GraphMLReader extends BrainReader {
         return Arrays.asList(GraphMLFormat.getInstance());
     }
 
+    @Override
+    protected boolean writesThroughAtomGraph() {
+        return false;
+    }
+
     @Override
     protected void importInternal(Context context) throws IOException {
+        AtomGraph atomGraph = context.getAtomGraph();
+        if (atomGraph instanceof CachingAtomGraph) {
+            // the property graph is written to directly, so cached atoms can't be kept
+            ((CachingAtomGraph) atomGraph).clear();
+            atomGraph = ((CachingAtomGraph) atomGraph).getBaseGraph();
+        }
 
-        if (context.getAtomGraph() instanceof PGAtomGraph) {
+        if (atomGraph instanceof PGAtomGraph) {
             org.apache.tinkerpop.gremlin.structure.io.graphml.GraphMLReader r
                     = org.apache.tinkerpop.gremlin.structure.io.graphml.GraphMLReader.build().create();
-            r.readGraph(context.getSourceStream(), ((PGAtomGraph) context.getAtomGraph()).getPropertyGraph());
+            r.readGraph(context.getSourceStream(), ((PGAtomGraph) atomGraph).getPropertyGraph());
+            ((PGAtomGraph) atomGraph).invalidateAtomCount();
         } else {
             throw new UnsupportedOperationException("GraphML I/O is not supported for this graph");
         }
@@ -2,7 +2,9 @@ package net.fortytwo.smsn.brain.io.graphml;
 
 import net.fortytwo.smsn.brain.io.BrainWriter;
 import net.fortytwo.smsn.brain.io.Format;
+import net.fortytwo.smsn.brain.model.AtomGraph;
 import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.brain.model.cached.CachingAtomGraph;
 import net.fortytwo.smsn.brain.model.pg.PGAtomGraph;
 
 import java.io.IOException;
@@ -18,12 +20,24 @@ public class GraphMLWriter extends BrainWriter {
 
     @Override
     public void doExport(Context context) throws IOException {
-        if (!(context.getAtomGraph() instanceof PGAtomGraph)) throw new UnsupportedOperationException();
-        PGAtomGraph originalGraph = (PGAtomGraph) context.getAtomGraph();
+        AtomGraph atomGraph = context.getAtomGraph();
+        if (atomGraph instanceof CachingAtomGraph) {
+            atomGraph = ((CachingAtomGraph) atomGraph).getBaseGraph();
+        }
+        if (!(atomGraph instanceof PGAtomGraph)) throw new UnsupportedOperationException();
+        PGAtomGraph originalGraph = (PGAtomGraph) atomGraph;
         Filter filter = context.getFilter();
-        PGAtomGraph newGraph = null == filter || filter.isTrivial()
-                ? originalGraph
-                : originalGraph.copyGraph(context.getFilter());
+        PGAtomGraph newGraph;
+        if (PGAtomGraph.ChildLayout.Indexed == originalGraph.getChildLayout() || originalGraph.hasIndexedChildren()) {
+            // GraphML can't hold arrays of edge ids, nor preserve edge ids, so export children as list nodes.
+            // This holds for atoms left with indexed children by an earlier configuration as well
+            newGraph = originalGraph.copyGraph(
+                    null == filter ? new Filter() : filter, PGAtomGraph.ChildLayout.ListNodes);
+        } else {
+            newGraph = null == filter || filter.isTrivial()
+                    ? originalGraph
+                    : originalGraph.copyGraph(context.getFilter());
+        }
 
         org.apache.tinkerpop.gremlin.structure.io.graphml.GraphMLWriter writer
                 = org.apache.tinkerpop.gremlin.structure.io.graphml.GraphMLWriter.build().normalize(true).create();
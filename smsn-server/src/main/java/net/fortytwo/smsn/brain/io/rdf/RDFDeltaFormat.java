@@ -0,0 +1,15 @@
+package net.fortytwo.smsn.brain.io.rdf;
+
+import net.fortytwo.smsn.brain.io.Format;
+
+public class RDFDeltaFormat extends Format {
+    private static final RDFDeltaFormat instance = new RDFDeltaFormat();
+
+    private RDFDeltaFormat() {
+        super("RDF-Delta", Type.FileBased, "ru");
+    }
+
+    public static RDFDeltaFormat getInstance() {
+        return instance;
+    }
+}
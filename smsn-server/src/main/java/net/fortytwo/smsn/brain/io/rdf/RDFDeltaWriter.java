@@ -0,0 +1,47 @@
+package net.fortytwo.smsn.brain.io.rdf;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.io.BrainWriter;
+import net.fortytwo.smsn.brain.io.Format;
+import net.fortytwo.smsn.util.TypedProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the changes to the RDF of the knowledge base since the last export in this format, as a SPARQL Update
+ */
+public class RDFDeltaWriter extends BrainWriter {
+
+    /**
+     * The file in which the statements of the last export are kept. It belongs to a single brain and is required;
+     * there is no default, as a manifest shared between brains would produce wrong deltas for each of them
+     */
+    public static final String PROP_RDF_MANIFEST = "net.fortytwo.smsn.brain.rdfManifest";
+
+    @Override
+    public List<Format> getFormats() {
+        return Arrays.asList(RDFDeltaFormat.getInstance());
+    }
+
+    @Override
+    public void doExport(Context context) throws IOException {
+        context.getKnowledgeBase().exportRDFDelta(context.getDestStream(), context.getFilter(), getManifestFile());
+    }
+
+    private File getManifestFile() throws IOException {
+        File file;
+        try {
+            file = SemanticSynchrony.getConfiguration().getFile(PROP_RDF_MANIFEST, null);
+        } catch (TypedProperties.PropertyException e) {
+            throw new IOException(e);
+        }
+
+        if (null == file) {
+            throw new IOException("an RDF manifest is required for delta export; set " + PROP_RDF_MANIFEST);
+        }
+        return file;
+    }
+}
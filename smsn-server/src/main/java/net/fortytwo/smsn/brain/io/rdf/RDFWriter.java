@@ -4,7 +4,6 @@ import net.fortytwo.smsn.brain.io.BrainWriter;
 import net.fortytwo.smsn.brain.io.Format;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFHandlerException;
-import org.openrdf.sail.SailException;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -45,7 +44,7 @@ public class RDFWriter extends BrainWriter {
 
         try {
             context.getKnowledgeBase().exportRDF(context.getDestStream(), rdfFormat, context.getFilter());
-        } catch (SailException | RDFHandlerException e) {
+        } catch (RDFHandlerException e) {
             throw new IOException(e);
         }
     }
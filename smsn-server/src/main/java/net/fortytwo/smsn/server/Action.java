@@ -1,14 +1,18 @@
 package net.fortytwo.smsn.server;
 
 import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.ActivityLog;
 import net.fortytwo.smsn.brain.Brain;
 import net.fortytwo.smsn.brain.NoteHistory;
 import net.fortytwo.smsn.brain.NoteQueries;
 import net.fortytwo.smsn.brain.Params;
+import net.fortytwo.smsn.brain.SearchCache;
+import net.fortytwo.smsn.brain.ViewCache;
 import net.fortytwo.smsn.brain.model.Atom;
 import net.fortytwo.smsn.brain.model.AtomGraph;
 import net.fortytwo.smsn.brain.model.Filter;
 import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.brain.model.cached.CachingAtomGraph;
 import net.fortytwo.smsn.brain.model.pg.GraphWrapper;
 import net.fortytwo.smsn.brain.model.pg.Neo4jGraphWrapper;
 import net.fortytwo.smsn.brain.model.pg.PGAtomGraph;
@@ -16,6 +20,7 @@ import net.fortytwo.smsn.brain.wiki.NoteReader;
 import net.fortytwo.smsn.brain.wiki.NoteWriter;
 import net.fortytwo.smsn.server.errors.BadRequestException;
 import net.fortytwo.smsn.server.errors.RequestProcessingException;
+import net.fortytwo.smsn.util.TypedProperties;
 import org.apache.tinkerpop.gremlin.neo4j.structure.Neo4jGraph;
 import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.apache.tinkerpop.shaded.jackson.annotation.JsonIgnoreProperties;
@@ -28,6 +33,7 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /*
@@ -45,11 +51,37 @@ public abstract class Action {
 
     private static final String CREATE_NEW_ATOM = "create-new-atom";
 
-    private static final Map<Graph, Brain> brains = new HashMap<>();
-    private static final Map<Graph, GraphWrapper> wrappers = new HashMap<>();
+    private static final Map<Graph, Brain> brains = new ConcurrentHashMap<>();
+    private static final Map<Graph, GraphWrapper> wrappers = new ConcurrentHashMap<>();
 
     private static final NoteHistory noteHistory = new NoteHistory();
 
+    private static final RequestScheduler scheduler = new RequestScheduler();
+
+    public static final String
+            PROP_PARALLEL_VIEW_THRESHOLD = "net.fortytwo.smsn.server.parallelViewThreshold";
+
+    // the minimum number of children of a note in a read-only view for their subtrees to be built in parallel,
+    // or 0 to build all views sequentially
+    public static final int DEFAULT_PARALLEL_VIEW_THRESHOLD = 32;
+
+    private static final int atomCacheSize;
+    private static final int parallelViewThreshold;
+
+    static {
+        try {
+            atomCacheSize = SemanticSynchrony.getConfiguration().getInt(
+                    CachingAtomGraph.PROP_ATOM_CACHE_SIZE, CachingAtomGraph.DEFAULT_ATOM_CACHE_SIZE);
+            parallelViewThreshold = SemanticSynchrony.getConfiguration().getInt(
+                    PROP_PARALLEL_VIEW_THRESHOLD, DEFAULT_PARALLEL_VIEW_THRESHOLD);
+            if (parallelViewThreshold < 0) {
+                throw new IllegalArgumentException(PROP_PARALLEL_VIEW_THRESHOLD + " must be non-negative");
+            }
+        } catch (TypedProperties.PropertyException | IllegalArgumentException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     @NotNull
     private String action;
 
@@ -69,31 +101,42 @@ public abstract class Action {
 
     protected abstract boolean doesWrite();
 
-    private synchronized static Brain getBrain(final GraphWrapper wrapper)
-            throws Brain.BrainException {
+    /**
+     * @return whether this action exports the brain, in which case it may run concurrently with writes
+     * rather than holding up requests which are queued behind it
+     */
+    protected boolean isExport() {
+        return false;
+    }
 
+    // an existing brain is found without locking; a new one is created only once for each graph
+    private static Brain getBrain(final GraphWrapper wrapper) {
         Brain brain = brains.get(wrapper.getGraph());
 
-        if (null == brain) {
-            logger.info("instantiating Extend-o-Brain with base graph " + wrapper.getGraph());
-            AtomGraph bg = new PGAtomGraph(wrapper);
-            brain = new Brain(bg);
-            brain.startBackgroundTasks();
-            brains.put(wrapper.getGraph(), brain);
+        return null == brain ? brains.computeIfAbsent(wrapper.getGraph(), graph -> createBrain(wrapper)) : brain;
+    }
+
+    private static Brain createBrain(final GraphWrapper wrapper) {
+        logger.info("instantiating Extend-o-Brain with base graph " + wrapper.getGraph());
+        AtomGraph bg = new PGAtomGraph(wrapper);
+        if (atomCacheSize > 0) {
+            bg = new CachingAtomGraph(bg, atomCacheSize);
         }
 
+        Brain brain;
+        try {
+            brain = new Brain(bg);
+        } catch (Brain.BrainException e) {
+            throw new RequestProcessingException(e);
+        }
+        brain.startBackgroundTasks();
         return brain;
     }
 
-    private synchronized static GraphWrapper getWrapper(final Neo4jGraph graph) {
+    private static GraphWrapper getWrapper(final Neo4jGraph graph) {
         GraphWrapper wrapper = wrappers.get(graph);
 
-        if (null == wrapper) {
-            wrapper = new Neo4jGraphWrapper(graph);
-            wrappers.put(graph, wrapper);
-        }
-
-        return wrapper;
+        return null == wrapper ? wrappers.computeIfAbsent(graph, g -> new Neo4jGraphWrapper(graph)) : wrapper;
     }
 
     public void handleRequest(final RequestParams params) {
@@ -101,14 +144,44 @@ public abstract class Action {
         setNonTransactionalParams(params);
 
         long before = System.currentTimeMillis();
-        wrapTransactionAndExceptions(params);
+        // requests which only read the brain run concurrently; requests which write to it wait their turn
+        if (isExport()) {
+            scheduler.runExport(params.getBrain(), () -> wrapTransactionAndExceptions(params));
+        } else {
+            scheduler.run(params.getBrain(), doesWrite(), () -> wrapTransactionAndExceptions(params));
+        }
         long after = System.currentTimeMillis();
 
-        SemanticSynchrony.logInfo("completed " + getClass().getSimpleName() + " action in " + (after - before) + " ms");
+        SemanticSynchrony.logInfo("completed " + getClass().getSimpleName() + " action in " + (after - before) + " ms"
+                + describeCache(params));
 
         logActivity(params);
     }
 
+    private static String describeCache(final RequestParams params) {
+        if (null == params.getBrain()) {
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        if (params.getBrain().getAtomGraph() instanceof CachingAtomGraph) {
+            CachingAtomGraph graph = (CachingAtomGraph) params.getBrain().getAtomGraph();
+            sb.append(" (atom cache: ").append(graph.size()).append(" atoms, ")
+                    .append(graph.getHits()).append(" hits, ").append(graph.getMisses()).append(" misses)");
+        }
+        SearchCache searchCache = params.getBrain().getSearchCache();
+        if (null != searchCache) {
+            sb.append(" (search cache: ").append(searchCache.size()).append(" results, ")
+                    .append(searchCache.getHits()).append(" hits, ").append(searchCache.getMisses()).append(" misses)");
+        }
+        ViewCache viewCache = params.getBrain().getViewCache();
+        if (null != viewCache) {
+            sb.append(" (view cache: ").append(viewCache.size()).append(" views, ")
+                    .append(String.format("%.2f", viewCache.getHitRatio())).append(" hit ratio)");
+        }
+        return sb.toString();
+    }
+
     protected void addView(final Note n,
                            final RequestParams p) throws IOException {
         JSONObject json;
@@ -151,15 +224,36 @@ public abstract class Action {
     }
 
     private void wrapTransactionAndExceptions(final RequestParams params) {
+        // activities are written ahead of the commit of the graph, and marked as committed or aborted
+        // while other writers are still held off, so that the log is in the order of the commits
+        ActivityLog log = params.getBrain().getActivityLog();
+        if (null != log) {
+            log.begin();
+        }
+
+        boolean success = false;
         try {
             AtomGraph.wrapInTransaction(params.getBrain().getAtomGraph(), () -> {
                 // must be done within the transaction, as it involves graph operations
                 setTransactionalParams(params);
 
                 performTransaction(params);
+
+                if (null != log) {
+                    log.prepare();
+                }
             });
+            success = true;
         } catch (Exception e) {
             throw new RequestProcessingException(e);
+        } finally {
+            if (null != log) {
+                if (success) {
+                    log.commit();
+                } else {
+                    log.rollback();
+                }
+            }
         }
     }
 
@@ -202,15 +296,15 @@ public abstract class Action {
     }
 
     private void setBrain(final RequestParams params) {
-        try {
-            params.setBrain(getBrain(params.getGraphWrapper()));
-        } catch (Brain.BrainException e) {
-            throw new RequestProcessingException(e);
-        }
+        params.setBrain(getBrain(params.getGraphWrapper()));
     }
 
     private void setIO(final RequestParams params) {
-        params.setQueries(new NoteQueries(params.getBrain()));
+        NoteQueries queries = new NoteQueries(params.getBrain());
+        if (!doesWrite()) {
+            queries.setParallelViewThreshold(parallelViewThreshold);
+        }
+        params.setQueries(queries);
         params.setParser(new NoteReader());
         params.setWriter(new NoteWriter());
     }
@@ -21,8 +21,10 @@ public class RequestParams {
     private String format;
     private boolean includeTypes;
     private JSONObject jsonView;
+    private Integer limit;
     private Map<String, Object> map;
     private Integer maxResults;
+    private Integer offset;
     private NoteReader parser;
     private String propertyName;
     private Object propertyValue;
@@ -125,6 +127,22 @@ public class RequestParams {
         this.maxResults = maxResults;
     }
 
+    public Integer getOffset() {
+        return offset;
+    }
+
+    public void setOffset(Integer offset) {
+        this.offset = offset;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
     public NoteReader getParser() {
         return parser;
     }
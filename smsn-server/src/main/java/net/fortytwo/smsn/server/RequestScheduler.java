@@ -0,0 +1,74 @@
+package net.fortytwo.smsn.server;
+
+import net.fortytwo.smsn.brain.Brain;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Schedules requests against each brain according to whether they write to it.
+ * Requests which do not write, such as views and searches, run concurrently with each other;
+ * requests which write run one at a time, to the exclusion of all other requests against the same brain.
+ * Locks are fair, so that a writer waits only for the requests ahead of it, and readers arriving later wait for the writer.
+ * <p>
+ * Exports, which may read the entire graph, are kept apart from this lock: otherwise a writer queued behind an export
+ * would hold up every later view and search until the export had finished. Exports of a brain run one at a time,
+ * concurrently with any other request, each in its own transaction. The trade-off is that an export is not
+ * a point-in-time copy of the graph: changes committed while it runs may be reflected in part.
+ * A consistent copy is to be taken with a snapshot, which excludes writers for its duration.
+ */
+public class RequestScheduler {
+
+    private final Map<Brain, ReadWriteLock> locks = new ConcurrentHashMap<>();
+    private final Map<Brain, Lock> exportLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Runs a request, once no conflicting request against the same brain is running
+     *
+     * @param brain   the brain against which the request is made
+     * @param writes  whether the request writes to the brain
+     * @param request the request to run
+     */
+    public void run(final Brain brain, final boolean writes, final Runnable request) {
+        Lock lock = writes ? getLock(brain).writeLock() : getLock(brain).readLock();
+
+        lock.lock();
+        try {
+            request.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs an export, once no other export of the same brain is running
+     *
+     * @param brain   the brain to export
+     * @param request the export to run
+     */
+    public void runExport(final Brain brain, final Runnable request) {
+        Lock lock = getExportLock(brain);
+
+        lock.lock();
+        try {
+            request.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReadWriteLock getLock(final Brain brain) {
+        // the lock of a brain is created only once, so it is usually found without locking the map
+        ReadWriteLock lock = locks.get(brain);
+        return null == lock ? locks.computeIfAbsent(brain, b -> new ReentrantReadWriteLock(true)) : lock;
+    }
+
+    private Lock getExportLock(final Brain brain) {
+        Lock lock = exportLocks.get(brain);
+        return null == lock ? exportLocks.computeIfAbsent(brain, b -> new ReentrantLock(true)) : lock;
+    }
+}
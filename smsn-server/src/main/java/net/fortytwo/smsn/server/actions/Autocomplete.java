@@ -0,0 +1,69 @@
+package net.fortytwo.smsn.server.actions;
+
+import net.fortytwo.smsn.brain.Params;
+import net.fortytwo.smsn.brain.model.Note;
+import net.fortytwo.smsn.server.RequestParams;
+import net.fortytwo.smsn.server.errors.RequestProcessingException;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+
+/**
+ * A service for type-ahead lookup of atoms by a prefix of their acronym, shortcut or value
+ */
+public class Autocomplete extends FilteredAction {
+
+    @NotNull
+    private String prefix;
+
+    private int limit = 10;
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException(Params.LIMIT + " parameter must be a positive integer");
+        }
+
+        this.limit = limit;
+    }
+
+    @Override
+    public void parseRequest(final RequestParams p) throws IOException {
+        p.setQuery(getPrefix());
+        p.setLimit(getLimit());
+        p.setFilter(getFilter());
+    }
+
+    @Override
+    protected void performTransaction(final RequestParams p) throws RequestProcessingException {
+        Note n = p.getQueries().autocomplete(p.getQuery(), p.getLimit(), p.getFilter());
+        try {
+            addView(n, p);
+        } catch (IOException e) {
+            throw new RequestProcessingException(e);
+        }
+
+        p.getMap().put("title", p.getQuery());
+    }
+
+    @Override
+    protected boolean doesRead() {
+        return true;
+    }
+
+    @Override
+    protected boolean doesWrite() {
+        return false;
+    }
+}
@@ -52,4 +52,9 @@ public class BroadcastRDF extends Action {
         // pushing of events is currently not considered writing... to the graph
         return false;
     }
+
+    @Override
+    protected boolean isExport() {
+        return true;
+    }
 }
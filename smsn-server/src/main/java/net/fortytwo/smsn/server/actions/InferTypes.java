@@ -38,4 +38,9 @@ public class InferTypes extends Action {
     protected boolean doesWrite() {
         return false;
     }
+
+    @Override
+    protected boolean isExport() {
+        return true;
+    }
 }
@@ -0,0 +1,59 @@
+package net.fortytwo.smsn.server.actions;
+
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.model.cached.CachingAtomGraph;
+import net.fortytwo.smsn.brain.model.pg.PGAtomGraph;
+import net.fortytwo.smsn.server.Action;
+import net.fortytwo.smsn.server.RequestParams;
+import net.fortytwo.smsn.server.errors.BadRequestException;
+import net.fortytwo.smsn.server.errors.RequestProcessingException;
+
+/**
+ * A service for converting the children of a batch of atoms from list nodes to the indexed layout.
+ * Repeated calls migrate a graph incrementally, while it remains online.
+ */
+public class MigrateChildLayout extends Action {
+
+    private static final int DEFAULT_LIMIT = 1000;
+
+    private int limit = DEFAULT_LIMIT;
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public void parseRequest(final RequestParams p) {
+        if (limit <= 0) {
+            throw new BadRequestException("limit must be positive");
+        }
+    }
+
+    @Override
+    protected void performTransaction(final RequestParams p) throws RequestProcessingException, BadRequestException {
+        AtomGraph graph = p.getBrain().getAtomGraph();
+        if (graph instanceof CachingAtomGraph) {
+            graph = ((CachingAtomGraph) graph).getBaseGraph();
+        }
+        if (!(graph instanceof PGAtomGraph)) {
+            throw new BadRequestException("atom graph does not support child layouts");
+        }
+
+        int migrated = ((PGAtomGraph) graph).migrateChildLayout(limit);
+        logger.info("migrated children of " + migrated + " atoms to the indexed layout");
+    }
+
+    @Override
+    protected boolean doesRead() {
+        return false;
+    }
+
+    @Override
+    protected boolean doesWrite() {
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package net.fortytwo.smsn.server.actions;
+
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.model.cached.CachingAtomGraph;
+import net.fortytwo.smsn.brain.model.pg.PGAtomGraph;
+import net.fortytwo.smsn.server.Action;
+import net.fortytwo.smsn.server.RequestParams;
+import net.fortytwo.smsn.server.errors.BadRequestException;
+import net.fortytwo.smsn.server.errors.RequestProcessingException;
+
+/**
+ * A service for adding direct links from child to parent to a batch of atoms which do not yet have them.
+ * Repeated calls index a graph incrementally, while it remains online.
+ */
+public class RebuildParentIndex extends Action {
+
+    private static final int DEFAULT_LIMIT = 1000;
+
+    private int limit = DEFAULT_LIMIT;
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public void parseRequest(final RequestParams p) {
+        if (limit <= 0) {
+            throw new BadRequestException("limit must be positive");
+        }
+    }
+
+    @Override
+    protected void performTransaction(final RequestParams p) throws RequestProcessingException, BadRequestException {
+        AtomGraph graph = p.getBrain().getAtomGraph();
+        if (graph instanceof CachingAtomGraph) {
+            graph = ((CachingAtomGraph) graph).getBaseGraph();
+        }
+        if (!(graph instanceof PGAtomGraph)) {
+            throw new BadRequestException("atom graph does not support a parent index");
+        }
+
+        int indexed = ((PGAtomGraph) graph).rebuildParentIndex(limit);
+        logger.info("indexed parents of " + indexed + " atoms");
+    }
+
+    @Override
+    protected boolean doesRead() {
+        return false;
+    }
+
+    @Override
+    protected boolean doesWrite() {
+        return true;
+    }
+}
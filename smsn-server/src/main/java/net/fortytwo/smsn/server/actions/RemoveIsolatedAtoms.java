@@ -19,6 +19,10 @@ public class RemoveIsolatedAtoms extends FilteredAction {
     @Override
     protected void performTransaction(final RequestParams p) throws RequestProcessingException, BadRequestException {
         p.getBrain().getAtomGraph().removeIsolatedAtoms(p.getFilter());
+
+        if (null != p.getBrain().getActivityLog()) {
+            p.getBrain().getActivityLog().logRemoveIsolatedAtoms(p.getFilter());
+        }
     }
 
     @Override
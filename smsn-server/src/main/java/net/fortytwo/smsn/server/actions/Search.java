@@ -1,6 +1,7 @@
 package net.fortytwo.smsn.server.actions;
 
 import net.fortytwo.smsn.brain.NoteQueries;
+import net.fortytwo.smsn.brain.Params;
 import net.fortytwo.smsn.brain.model.Note;
 import net.fortytwo.smsn.server.RequestParams;
 import net.fortytwo.smsn.server.errors.BadRequestException;
@@ -23,6 +24,10 @@ public class Search extends BasicViewAction {
 
     private int valueCutoff = 100;
 
+    // by default, all results are returned
+    private int offset = 0;
+    private int limit = Integer.MAX_VALUE;
+
     public NoteQueries.QueryType getQueryType() {
         return queryType;
     }
@@ -50,6 +55,30 @@ public class Search extends BasicViewAction {
         this.valueCutoff = valueCutoff;
     }
 
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException(Params.OFFSET + " parameter must be a non-negative integer");
+        }
+
+        this.offset = offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException(Params.LIMIT + " parameter must be a positive integer");
+        }
+
+        this.limit = limit;
+    }
+
     @Override
     public void parseRequest(final RequestParams p) throws IOException {
         p.setHeight(getHeight());
@@ -58,6 +87,8 @@ public class Search extends BasicViewAction {
         p.setStyleName(getStyle());
         p.setFilter(getFilter());
         p.setValueCutoff(getValueCutoff());
+        p.setOffset(getOffset());
+        p.setLimit(getLimit());
     }
 
     @Override
@@ -88,7 +119,8 @@ public class Search extends BasicViewAction {
     }
 
     private void addSearchResults(final RequestParams params) throws IOException {
-        Note n = params.getQueries().search(params.getQueryType(), params.getQuery(), params.getHeight(), params.getFilter(), params.getStyle());
+        Note n = params.getQueries().search(params.getQueryType(), params.getQuery(),
+                params.getOffset(), params.getLimit(), params.getHeight(), params.getFilter(), params.getStyle());
         addView(n, params);
     }
 
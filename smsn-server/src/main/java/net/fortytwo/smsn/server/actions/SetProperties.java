@@ -109,6 +109,11 @@ public class SetProperties extends Action {
                 String shortcut = (String) p.getPropertyValue();
                 for (Atom a : p.getBrain().getAtomGraph().getAtomsByShortcut(shortcut, p.getFilter())) {
                     a.setShortcut(null);
+                    p.getBrain().getAtomGraph().reindexAtom(a);
+
+                    if (null != p.getBrain().getActivityLog()) {
+                        p.getBrain().getActivityLog().logSetProperties(a);
+                    }
                 }
 
                 p.getRoot().setShortcut(shortcut);
@@ -117,6 +122,11 @@ public class SetProperties extends Action {
                 throw new IllegalStateException();
         }
 
+        // weight, sharability and shortcut are also held in the search indices, which filter and rank by them
+        if (!SemanticSynchrony.PRIORITY.equals(p.getPropertyName())) {
+            p.getBrain().getAtomGraph().reindexAtom(p.getRoot());
+        }
+
         p.getBrain().getAtomGraph().notifyOfUpdate();
 
         p.getMap().put("key", p.getBrain().getAtomGraph().idOfAtom(p.getRoot()));
@@ -107,6 +107,11 @@ public class WriteGraph extends FilteredAction {
         return false;
     }
 
+    @Override
+    protected boolean isExport() {
+        return true;
+    }
+
     private Format getFormat(final RequestParams p) {
         if (null == p.getFormat()) {
             throw new BadRequestException("format is required");
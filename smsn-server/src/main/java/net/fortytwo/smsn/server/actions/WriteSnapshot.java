@@ -0,0 +1,56 @@
+package net.fortytwo.smsn.server.actions;
+
+import net.fortytwo.smsn.server.Action;
+import net.fortytwo.smsn.server.RequestParams;
+import net.fortytwo.smsn.server.errors.BadRequestException;
+import net.fortytwo.smsn.server.errors.RequestProcessingException;
+
+import javax.validation.constraints.NotNull;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A service for writing a snapshot of an Extend-o-Brain graph,
+ * from which the graph may be restored quickly together with the binary activity log
+ */
+public class WriteSnapshot extends Action {
+
+    @NotNull
+    private String file;
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    @Override
+    public void parseRequest(final RequestParams p) throws IOException {
+        p.setFile(getFile());
+    }
+
+    @Override
+    protected void performTransaction(final RequestParams p) throws RequestProcessingException, BadRequestException {
+        long sequence;
+        try {
+            sequence = p.getBrain().writeSnapshot(new File(p.getFile()));
+        } catch (IOException | IllegalStateException e) {
+            throw new RequestProcessingException(e);
+        }
+
+        p.getMap().put("sequence", String.valueOf(sequence));
+    }
+
+    @Override
+    protected boolean doesRead() {
+        return false;
+    }
+
+    @Override
+    protected boolean doesWrite() {
+        // the graph is only read, but no other request may write to it while the snapshot is taken
+        return false;
+    }
+}
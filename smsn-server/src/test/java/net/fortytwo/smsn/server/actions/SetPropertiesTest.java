@@ -0,0 +1,100 @@
+package net.fortytwo.smsn.server.actions;
+
+import net.fortytwo.smsn.SemanticSynchrony;
+import net.fortytwo.smsn.brain.Brain;
+import net.fortytwo.smsn.brain.BrainTestBase;
+import net.fortytwo.smsn.brain.model.Atom;
+import net.fortytwo.smsn.brain.model.AtomGraph;
+import net.fortytwo.smsn.brain.model.Filter;
+import net.fortytwo.smsn.server.RequestParams;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SetPropertiesTest extends BrainTestBase {
+
+    private final Filter publicFilter = new Filter(0f, 1f, 0.5f, 0.5f, 1f, 0.75f);
+
+    @Override
+    protected AtomGraph createAtomGraph() throws IOException {
+        return createTinkerAtomGraph();
+    }
+
+    @Test
+    public void searchReflectsNewSharability() throws Exception {
+        Brain brain = new Brain(atomGraph);
+        Atom a = createAtom("snakes and ladders", 1.0f);
+
+        assertEquals(1, atomGraph.getAtomsByValueQuery("snakes", publicFilter, 0, 10).size());
+        assertEquals(1, atomGraph.getAtomsByAcronym("sal", publicFilter, 0, 10).size());
+
+        setProperty(brain, a, SemanticSynchrony.SHARABILITY, 0.25);
+
+        assertTrue(atomGraph.getAtomsByValueQuery("snakes", publicFilter, 0, 10).isEmpty());
+        assertTrue(atomGraph.getAtomsByAcronym("sal", publicFilter, 0, 10).isEmpty());
+        assertTrue(atomGraph.getAtomsByPrefix("snakes", publicFilter, 10).isEmpty());
+        assertEquals(1, atomGraph.getAtomsByValueQuery("snakes", filter, 0, 10).size());
+
+        setProperty(brain, a, SemanticSynchrony.SHARABILITY, 1.0);
+
+        assertEquals(1, atomGraph.getAtomsByValueQuery("snakes", publicFilter, 0, 10).size());
+    }
+
+    @Test
+    public void searchReflectsNewShortcut() throws Exception {
+        Brain brain = new Brain(atomGraph);
+        Atom a = createAtom("snakes and ladders", 1.0f);
+        Atom b = createAtom("chutes and ladders", 1.0f);
+
+        setProperty(brain, a, SemanticSynchrony.SHORTCUT, "sl");
+        assertEquals(a.getId(), atomGraph.getAtomsByShortcut("sl", publicFilter, 0, 10).get(0).getId());
+
+        // a shortcut is taken from any atom already holding it
+        setProperty(brain, b, SemanticSynchrony.SHORTCUT, "sl");
+        List<Atom> results = atomGraph.getAtomsByShortcut("sl", publicFilter, 0, 10);
+        assertEquals(1, results.size());
+        assertEquals(b.getId(), results.get(0).getId());
+    }
+
+    @Test
+    public void autocompleteReflectsNewShortcut() throws Exception {
+        Brain brain = new Brain(atomGraph);
+        Atom a = createAtom("snakes and ladders", 1.0f);
+        Atom b = createAtom("chutes and ladders", 1.0f);
+        assertTrue(atomGraph.getAtomsByPrefix("qq", filter, 10).isEmpty());
+
+        setProperty(brain, a, SemanticSynchrony.SHORTCUT, "qq");
+        assertEquals(a.getId(), atomGraph.getAtomsByPrefix("qq", filter, 10).get(0).getId());
+
+        setProperty(brain, b, SemanticSynchrony.SHORTCUT, "qq");
+        List<Atom> results = atomGraph.getAtomsByPrefix("qq", filter, 10);
+        assertEquals(1, results.size());
+        assertEquals(b.getId(), results.get(0).getId());
+    }
+
+    private Atom createAtom(final String value, final float sharability) {
+        Atom a = atomGraph.createAtomWithProperties(filter, SemanticSynchrony.createRandomId());
+        a.setValue(value);
+        a.setSharability(sharability);
+        atomGraph.reindexAtom(a);
+        return a;
+    }
+
+    private void setProperty(final Brain brain, final Atom root, final String name, final Object value)
+            throws Exception {
+        RequestParams p = new RequestParams();
+        p.setBrain(brain);
+        p.setFilter(filter);
+        p.setMap(new HashMap<>());
+        p.setRoot(root);
+        p.setPropertyName(name);
+        p.setPropertyValue(value);
+
+        new SetProperties().performTransaction(p);
+    }
+}